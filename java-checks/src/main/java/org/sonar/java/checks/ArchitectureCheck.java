@@ -21,10 +21,11 @@ package org.sonar.java.checks;
 
 import com.google.common.collect.Maps;
 import org.apache.commons.lang.StringUtils;
-import org.sonar.api.utils.WildcardPattern;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.AnalysisScopeAware;
 import org.sonar.java.bytecode.asm.AsmClass;
 import org.sonar.java.bytecode.asm.AsmEdge;
 import org.sonar.java.bytecode.asm.AsmMethod;
@@ -34,6 +35,7 @@ import org.sonar.squidbridge.annotations.RuleTemplate;
 import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceFile;
 
+import java.util.BitSet;
 import java.util.Map;
 
 @Rule(
@@ -42,7 +44,7 @@ import java.util.Map;
   priority = Priority.MAJOR)
 @RuleTemplate
 @NoSqale
-public class ArchitectureCheck extends BytecodeVisitor {
+public class ArchitectureCheck extends BytecodeVisitor implements AnalysisScopeAware {
 
   public static final String RULE_KEY = "ArchitecturalConstraint";
 
@@ -52,8 +54,9 @@ public class ArchitectureCheck extends BytecodeVisitor {
   @RuleProperty(description = "Mandatory. Ex : java.util.Vector, java.util.Hashtable, java.util.Enumeration")
   private String toClasses = "";
 
-  private WildcardPattern[] fromPatterns;
-  private WildcardPattern[] toPatterns;
+  private ClassPatternIndex classPatternIndex;
+  private BitSet fromPatterns;
+  private BitSet toPatterns;
   private AsmClass asmClass;
   private Map<String, CheckMessage> internalNames;
 
@@ -73,10 +76,15 @@ public class ArchitectureCheck extends BytecodeVisitor {
     this.toClasses = patterns;
   }
 
+  @Override
+  public void setAnalysisScope(AnalysisScope analysisScope) {
+    classPatternIndex = ClassPatternIndex.of(analysisScope);
+  }
+
   @Override
   public void visitClass(AsmClass asmClass) {
     String nameAsmClass = asmClass.getInternalName();
-    if (WildcardPattern.match(getFromPatterns(), nameAsmClass)) {
+    if (classPatternIndex().matches(getFromPatterns(), nameAsmClass)) {
       this.asmClass = asmClass;
       this.internalNames = Maps.newHashMap();
     } else {
@@ -99,7 +107,7 @@ public class ArchitectureCheck extends BytecodeVisitor {
     if (asmClass != null && edge != null) {
       String internalNameTargetClass = edge.getTargetAsmClass().getInternalName();
       if (!internalNames.containsKey(internalNameTargetClass)) {
-        if (WildcardPattern.match(getToPatterns(), internalNameTargetClass)) {
+        if (classPatternIndex().matches(getToPatterns(), internalNameTargetClass)) {
           int sourceLineNumber = getSourceLineNumber(edge);
           logMessage(asmClass.getInternalName(), internalNameTargetClass, sourceLineNumber);
         }
@@ -132,16 +140,24 @@ public class ArchitectureCheck extends BytecodeVisitor {
     internalNames.put(toClass, message);
   }
 
-  private WildcardPattern[] getFromPatterns() {
+  private ClassPatternIndex classPatternIndex() {
+    if (classPatternIndex == null) {
+      // not part of an analysis sharing the index, typically in tests
+      classPatternIndex = new ClassPatternIndex();
+    }
+    return classPatternIndex;
+  }
+
+  private BitSet getFromPatterns() {
     if (fromPatterns == null) {
-      fromPatterns = PatternUtils.createPatterns(StringUtils.defaultIfEmpty(fromClasses, "**"));
+      fromPatterns = classPatternIndex().register(StringUtils.defaultIfEmpty(fromClasses, "**"));
     }
     return fromPatterns;
   }
 
-  private WildcardPattern[] getToPatterns() {
+  private BitSet getToPatterns() {
     if (toPatterns == null) {
-      toPatterns = PatternUtils.createPatterns(toClasses);
+      toPatterns = classPatternIndex().register(toClasses);
     }
     return toPatterns;
   }
@@ -0,0 +1,96 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.MultiWildcardPatternMatcher;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class name patterns shared by all the architectural constraints of an analysis: the patterns of every constraint are
+ * compiled into one automaton, and the patterns matched by each class are computed once, whatever the number of
+ * constraints and of dependencies on this class.
+ */
+final class ClassPatternIndex {
+
+  private static final BitSet NO_MATCH = new BitSet();
+
+  private final List<String> registeredPatterns = Lists.newArrayList();
+  private final Map<String, BitSet> matchesByClass = Maps.newHashMap();
+  private MultiWildcardPatternMatcher matcher;
+
+  /**
+   * @return the index shared by the architectural constraints of the given analysis
+   */
+  static ClassPatternIndex of(AnalysisScope analysisScope) {
+    return analysisScope.getOrCreate(ClassPatternIndex.class, new Supplier<ClassPatternIndex>() {
+      @Override
+      public ClassPatternIndex get() {
+        return new ClassPatternIndex();
+      }
+    });
+  }
+
+  /**
+   * @param patterns comma separated class name patterns, with '.' or '/' as package separator
+   * @return indexes of the registered patterns
+   */
+  BitSet register(String patterns) {
+    BitSet indexes = new BitSet();
+    for (String pattern : StringUtils.split(patterns, ',')) {
+      String internalNamePattern = StringUtils.trim(StringUtils.replace(pattern, ".", "/"));
+      int index = registeredPatterns.indexOf(internalNamePattern);
+      if (index < 0) {
+        index = registeredPatterns.size();
+        registeredPatterns.add(internalNamePattern);
+        matcher = null;
+        matchesByClass.clear();
+      }
+      indexes.set(index);
+    }
+    return indexes;
+  }
+
+  /**
+   * @return true if the internal name of the class matches one of the given registered patterns
+   */
+  boolean matches(BitSet patterns, String internalName) {
+    BitSet matches = matchesByClass.get(internalName);
+    if (matches == null) {
+      if (matcher == null) {
+        matcher = new MultiWildcardPatternMatcher(registeredPatterns);
+      }
+      matches = matcher.match(internalName);
+      if (matches.isEmpty()) {
+        matches = NO_MATCH;
+      }
+      matchesByClass.put(internalName, matches);
+    }
+    return matches.intersects(patterns);
+  }
+
+}
@@ -19,41 +19,86 @@
  */
 package org.sonar.java.checks;
 
-import org.apache.commons.lang.StringUtils;
+import org.sonar.java.AnalysisScope;
 import org.sonar.java.model.InternalSyntaxTrivia;
 import org.sonar.plugins.java.api.tree.SyntaxTrivia;
 
+import java.util.List;
+
 public class CommentContainsPatternChecker {
 
   private final SubscriptionBaseVisitor newCheck;
   private final String pattern;
   private final String message;
+  private CommentPatternIndex commentPatternIndex;
 
   public CommentContainsPatternChecker(SubscriptionBaseVisitor check, String pattern, String message) {
     this.newCheck = check;
     this.pattern = pattern;
     this.message = message;
+    // not part of an analysis sharing the index until the scope is set, typically in tests
+    setCommentPatternIndex(new CommentPatternIndex());
   }
 
-  private boolean isLetterAround(String line, String pattern) {
-    int start = StringUtils.indexOfIgnoreCase(line, pattern);
-    int end = start + pattern.length();
+  /**
+   * To be called by the check owning this checker, so that the comments are scanned once for all the checks of the
+   * analysis.
+   */
+  public void setAnalysisScope(AnalysisScope analysisScope) {
+    setCommentPatternIndex(CommentPatternIndex.of(analysisScope));
+  }
 
-    boolean pre = start > 0 && Character.isLetter(line.charAt(start - 1));
-    boolean post = end < line.length() - 1 && Character.isLetter(line.charAt(end));
+  private void setCommentPatternIndex(CommentPatternIndex commentPatternIndex) {
+    this.commentPatternIndex = commentPatternIndex;
+    commentPatternIndex.register(pattern);
+  }
 
+  private boolean isLetterAround(String comment, int lineStart, int lineEnd, int start) {
+    int end = start + pattern.length();
+    boolean pre = start > lineStart && Character.isLetter(comment.charAt(start - 1));
+    boolean post = end < lineEnd - 1 && Character.isLetter(comment.charAt(end));
     return pre || post;
   }
 
   public void checkTrivia(SyntaxTrivia syntaxTrivia) {
+    List<Integer> occurrences = commentPatternIndex.occurrences(syntaxTrivia, pattern);
+    if (occurrences.isEmpty()) {
+      return;
+    }
     String comment = syntaxTrivia.comment();
-    if (StringUtils.containsIgnoreCase(comment, pattern)) {
-      String[] lines = comment.split("\r\n?|\n");
-      for (int i = 0; i < lines.length; i++) {
-        if (StringUtils.containsIgnoreCase(lines[i], pattern) && !isLetterAround(lines[i], pattern)) {
-          newCheck.addIssue(((InternalSyntaxTrivia)syntaxTrivia).getLine()+i, message);
+    int line = 0;
+    int lineStart = 0;
+    int lineEnd = lineEnd(comment, lineStart);
+    int lastReportedLine = -1;
+    for (int start : occurrences) {
+      while (start >= lineEnd) {
+        lineStart = nextLineStart(comment, lineEnd);
+        lineEnd = lineEnd(comment, lineStart);
+        line++;
+      }
+      // only the first occurrence of a line is considered
+      if (line != lastReportedLine && start + pattern.length() <= lineEnd) {
+        lastReportedLine = line;
+        if (!isLetterAround(comment, lineStart, lineEnd, start)) {
+          newCheck.addIssue(((InternalSyntaxTrivia) syntaxTrivia).getLine() + line, message);
         }
       }
     }
   }
+
+  private static int lineEnd(String comment, int lineStart) {
+    int i = lineStart;
+    while (i < comment.length() && comment.charAt(i) != '\n' && comment.charAt(i) != '\r') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int nextLineStart(String comment, int lineEnd) {
+    if (comment.charAt(lineEnd) == '\r' && lineEnd + 1 < comment.length() && comment.charAt(lineEnd + 1) == '\n') {
+      return lineEnd + 2;
+    }
+    return lineEnd + 1;
+  }
+
 }
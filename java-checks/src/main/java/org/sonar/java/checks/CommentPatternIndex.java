@@ -0,0 +1,94 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Sets;
+import org.sonar.java.AnalysisScope;
+import org.sonar.plugins.java.api.tree.SyntaxTrivia;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Comment analysis shared by all the rules of an analysis looking for patterns in comments: every comment is scanned
+ * once against all the registered patterns, and each rule then reads the occurrences of its own pattern.
+ */
+final class CommentPatternIndex {
+
+  private final Set<String> registeredPatterns = Sets.newLinkedHashSet();
+  /**
+   * Trivia are released with the tree of their file, and so are their entries.
+   */
+  private final Map<SyntaxTrivia, ListMultimap<String, Integer>> occurrencesByTrivia = new WeakHashMap<SyntaxTrivia, ListMultimap<String, Integer>>();
+  private MultiPatternMatcher matcher;
+
+  /**
+   * @return the index shared by the comment rules of the given analysis
+   */
+  static CommentPatternIndex of(AnalysisScope analysisScope) {
+    return analysisScope.getOrCreate(CommentPatternIndex.class, new Supplier<CommentPatternIndex>() {
+      @Override
+      public CommentPatternIndex get() {
+        return new CommentPatternIndex();
+      }
+    });
+  }
+
+  void register(String pattern) {
+    if (registeredPatterns.add(pattern)) {
+      matcher = null;
+      occurrencesByTrivia.clear();
+    }
+  }
+
+  /**
+   * @return start offsets, in the comment of the trivia, of the occurrences of the pattern, ignoring case
+   */
+  List<Integer> occurrences(SyntaxTrivia syntaxTrivia, String pattern) {
+    ListMultimap<String, Integer> occurrences = occurrencesByTrivia.get(syntaxTrivia);
+    if (occurrences == null) {
+      occurrences = scan(syntaxTrivia.comment());
+      occurrencesByTrivia.put(syntaxTrivia, occurrences);
+    }
+    return occurrences.get(pattern);
+  }
+
+  private ListMultimap<String, Integer> scan(String comment) {
+    if (matcher == null) {
+      matcher = new MultiPatternMatcher(registeredPatterns);
+    }
+    List<MultiPatternMatcher.Occurrence> found = matcher.findAll(comment);
+    if (found.isEmpty()) {
+      return ImmutableListMultimap.of();
+    }
+    ListMultimap<String, Integer> occurrences = ArrayListMultimap.create();
+    for (MultiPatternMatcher.Occurrence occurrence : found) {
+      occurrences.put(occurrence.pattern(), occurrence.start());
+    }
+    return occurrences;
+  }
+
+}
@@ -27,6 +27,7 @@ import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.java.CharsetAwareVisitor;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
 import org.sonar.squidbridge.annotations.SqaleSubCharacteristic;
@@ -45,7 +46,7 @@ import java.util.List;
   priority = Priority.BLOCKER)
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.SECURITY_FEATURES)
 @SqaleConstantRemediation("5min")
-public class FileHeaderCheck extends SubscriptionBaseVisitor implements CharsetAwareVisitor {
+public class FileHeaderCheck extends SubscriptionBaseVisitor implements CharsetAwareVisitor, SyntacticJavaFileScanner {
 
   private static final String DEFAULT_HEADER_FORMAT = "";
 
@@ -27,6 +27,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.java.model.JavaTree;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.BlockTree;
 import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
@@ -50,7 +51,7 @@ import java.util.List;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.DATA_RELIABILITY)
 @SqaleConstantRemediation("5min")
-public class HiddenFieldCheck extends SubscriptionBaseVisitor {
+public class HiddenFieldCheck extends SubscriptionBaseVisitor implements SyntacticJavaFileScanner {
 
   private final Deque<ImmutableMap<String, VariableTree>> fields = Lists.newLinkedList();
   private final Deque<List<VariableTree>> excludedVariables = Lists.newLinkedList();
@@ -26,6 +26,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.java.model.JavaTree;
 import org.sonar.java.model.SyntacticEquivalence;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.CaseGroupTree;
 import org.sonar.plugins.java.api.tree.CaseLabelTree;
 import org.sonar.plugins.java.api.tree.SwitchStatementTree;
@@ -43,7 +44,7 @@ import java.util.Set;
   priority = Priority.MAJOR)
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.LOGIC_RELIABILITY)
 @SqaleConstantRemediation("10min")
-public class IdenticalCasesInSwitchCheck extends SubscriptionBaseVisitor {
+public class IdenticalCasesInSwitchCheck extends SubscriptionBaseVisitor implements SyntacticJavaFileScanner {
 
   @Override
   public List<Tree.Kind> nodesToVisit() {
@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableList;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.IdentifierTree;
 import org.sonar.plugins.java.api.tree.ParameterizedTypeTree;
@@ -42,7 +43,7 @@ import java.util.List;
 @ActivatedByDefault
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("30min")
-public class ImplementsEnumerationCheck extends SubscriptionBaseVisitor {
+public class ImplementsEnumerationCheck extends SubscriptionBaseVisitor implements SyntacticJavaFileScanner {
 
   @Override
   public List<Tree.Kind> nodesToVisit() {
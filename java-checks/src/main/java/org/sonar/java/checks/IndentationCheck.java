@@ -26,6 +26,7 @@ import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.java.model.JavaTree;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.ArrayTypeTree;
 import org.sonar.plugins.java.api.tree.BlockTree;
 import org.sonar.plugins.java.api.tree.CaseGroupTree;
@@ -47,7 +48,7 @@ import java.util.List;
   priority = Priority.MINOR)
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("1min")
-public class IndentationCheck extends SubscriptionBaseVisitor {
+public class IndentationCheck extends SubscriptionBaseVisitor implements SyntacticJavaFileScanner {
 
   private static final Kind[] BLOCK_TYPES = new Kind[]{
       Kind.CLASS,
@@ -0,0 +1,139 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Case insensitive Aho-Corasick automaton: finds all the occurrences of a set of patterns in a text in a single pass,
+ * whatever the number of patterns.
+ */
+public class MultiPatternMatcher {
+
+  private final List<String> patterns;
+  private final Node root = new Node();
+
+  public MultiPatternMatcher(Collection<String> patterns) {
+    this.patterns = ImmutableList.copyOf(patterns);
+    for (int i = 0; i < this.patterns.size(); i++) {
+      addPattern(this.patterns.get(i), i);
+    }
+    computeFailureLinks();
+  }
+
+  public List<String> patterns() {
+    return patterns;
+  }
+
+  /**
+   * @return all the occurrences of the patterns in the text, including overlapping ones, ordered by end offset
+   */
+  public List<Occurrence> findAll(String text) {
+    List<Occurrence> occurrences = Lists.newArrayList();
+    Node node = root;
+    for (int i = 0; i < text.length(); i++) {
+      char c = normalize(text.charAt(i));
+      while (node != root && !node.children.containsKey(c)) {
+        node = node.failure;
+      }
+      Node next = node.children.get(c);
+      node = next == null ? root : next;
+      for (Node output = node; output != root; output = output.failure) {
+        for (Integer patternIndex : output.patternIndexes) {
+          String pattern = patterns.get(patternIndex);
+          occurrences.add(new Occurrence(pattern, i + 1 - pattern.length()));
+        }
+      }
+    }
+    return occurrences;
+  }
+
+  private void addPattern(String pattern, int index) {
+    Node node = root;
+    for (int i = 0; i < pattern.length(); i++) {
+      char c = normalize(pattern.charAt(i));
+      Node child = node.children.get(c);
+      if (child == null) {
+        child = new Node();
+        node.children.put(c, child);
+      }
+      node = child;
+    }
+    node.patternIndexes.add(index);
+  }
+
+  private void computeFailureLinks() {
+    Deque<Node> queue = Lists.newLinkedList();
+    root.failure = root;
+    for (Node child : root.children.values()) {
+      child.failure = root;
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      Node node = queue.poll();
+      for (Map.Entry<Character, Node> entry : node.children.entrySet()) {
+        Node child = entry.getValue();
+        Node failure = node.failure;
+        while (failure != root && !failure.children.containsKey(entry.getKey())) {
+          failure = failure.failure;
+        }
+        Node target = failure.children.get(entry.getKey());
+        child.failure = target == null || target == child ? root : target;
+        queue.add(child);
+      }
+    }
+  }
+
+  private static char normalize(char c) {
+    return Character.toLowerCase(Character.toUpperCase(c));
+  }
+
+  public static class Occurrence {
+    private final String pattern;
+    private final int start;
+
+    Occurrence(String pattern, int start) {
+      this.pattern = pattern;
+      this.start = start;
+    }
+
+    public String pattern() {
+      return pattern;
+    }
+
+    public int start() {
+      return start;
+    }
+  }
+
+  private static class Node {
+    private final Map<Character, Node> children = Maps.newHashMap();
+    private final List<Integer> patternIndexes = Lists.newArrayList();
+    private Node failure;
+  }
+
+}
@@ -23,6 +23,9 @@ import com.google.common.collect.ImmutableList;
 import org.sonar.api.server.rule.RulesDefinition;
 import org.sonar.check.Priority;
 import org.sonar.check.Rule;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.AnalysisScopeAware;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.SyntaxTrivia;
 import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
@@ -37,13 +40,18 @@ import java.util.List;
   priority = Priority.MINOR)
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.UNDERSTANDABILITY)
 @SqaleConstantRemediation("5min")
-public class NoCheckstyleTagPresenceCheck extends SubscriptionBaseVisitor {
+public class NoCheckstyleTagPresenceCheck extends SubscriptionBaseVisitor implements AnalysisScopeAware, SyntacticJavaFileScanner {
 
   private static final String PATTERN = "CHECKSTYLE:OFF";
   private static final String MESSAGE = "Remove usage of this \"CHECKSTYLE:OFF\" suppression comment filter.";
 
   private final CommentContainsPatternChecker checker = new CommentContainsPatternChecker(this, PATTERN, MESSAGE);
 
+  @Override
+  public void setAnalysisScope(AnalysisScope analysisScope) {
+    checker.setAnalysisScope(analysisScope);
+  }
+
   @Override
   public List<Tree.Kind> nodesToVisit() {
     return ImmutableList.of(Tree.Kind.TRIVIA);
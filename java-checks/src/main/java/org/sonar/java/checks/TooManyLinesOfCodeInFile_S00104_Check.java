@@ -25,6 +25,7 @@ import org.sonar.check.Priority;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.java.model.InternalSyntaxToken;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.SyntaxToken;
 import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.squidbridge.annotations.SqaleConstantRemediation;
@@ -40,7 +41,7 @@ import java.util.List;
   priority = Priority.MAJOR)
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("1h")
-public class TooManyLinesOfCodeInFile_S00104_Check extends SubscriptionBaseVisitor {
+public class TooManyLinesOfCodeInFile_S00104_Check extends SubscriptionBaseVisitor implements SyntacticJavaFileScanner {
 
   private static final int DEFAULT_MAXIMUM = 1000;
 
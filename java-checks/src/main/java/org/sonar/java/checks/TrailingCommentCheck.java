@@ -29,6 +29,7 @@ import org.sonar.check.RuleProperty;
 import org.sonar.java.model.InternalSyntaxToken;
 import org.sonar.java.model.InternalSyntaxTrivia;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.SyntaxToken;
 import org.sonar.plugins.java.api.tree.SyntaxTrivia;
 import org.sonar.plugins.java.api.tree.Tree;
@@ -46,7 +47,7 @@ import java.util.regex.Pattern;
   priority = Priority.INFO)
 @SqaleSubCharacteristic(RulesDefinition.SubCharacteristics.READABILITY)
 @SqaleConstantRemediation("1min")
-public class TrailingCommentCheck extends SubscriptionBaseVisitor {
+public class TrailingCommentCheck extends SubscriptionBaseVisitor implements SyntacticJavaFileScanner {
 
   private static final String DEFAULT_LEGAL_COMMENT_PATTERN = "^\\s*+[^\\s]++$";
   private static final Set<String> EXCLUDED_PATTERNS = ImmutableSet.of("NOSONAR", "NOPMD", "CHECKSTYLE:");
@@ -20,6 +20,8 @@
 package org.sonar.java.checks.methods;
 
 import com.google.common.collect.ImmutableList;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.AnalysisScopeAware;
 import org.sonar.java.checks.SubscriptionBaseVisitor;
 import org.sonar.plugins.java.api.tree.MethodInvocationTree;
 import org.sonar.plugins.java.api.tree.NewClassTree;
@@ -27,9 +29,19 @@ import org.sonar.plugins.java.api.tree.Tree;
 
 import java.util.List;
 
-public abstract class AbstractMethodDetection extends SubscriptionBaseVisitor {
+public abstract class AbstractMethodDetection extends SubscriptionBaseVisitor implements AnalysisScopeAware {
 
-  private List<MethodInvocationMatcher> matchers;
+  private MethodInvocationMatcherIndex matcherIndex;
+
+  /**
+   * Registers the matchers of this rule in the index shared by all the method detection rules of the analysis, so that
+   * each invocation is resolved once for all of them.
+   */
+  @Override
+  public void setAnalysisScope(AnalysisScope analysisScope) {
+    matcherIndex = MethodInvocationMatcherIndex.of(analysisScope);
+    matcherIndex.register(this, getMethodInvocationMatchers());
+  }
 
   @Override
   public List<Tree.Kind> nodesToVisit() {
@@ -39,22 +51,18 @@ public abstract class AbstractMethodDetection extends SubscriptionBaseVisitor {
   @Override
   public void visitNode(Tree tree) {
     if (hasSemantic()) {
-      for (MethodInvocationMatcher invocationMatcher : matchers()) {
-        checkInvocation(tree, invocationMatcher);
-      }
-    }
-  }
-
-  private void checkInvocation(Tree tree, MethodInvocationMatcher invocationMatcher) {
-    if (tree.is(Tree.Kind.METHOD_INVOCATION)) {
-      MethodInvocationTree mit = (MethodInvocationTree) tree;
-      if (invocationMatcher.matches(mit, getSemanticModel())) {
-        onMethodFound(mit);
-      }
-    } else if (tree.is(Tree.Kind.NEW_CLASS)) {
-      NewClassTree newClassTree = (NewClassTree) tree;
-      if (invocationMatcher.matches(newClassTree, getSemanticModel())) {
-        onConstructorFound(newClassTree);
+      if (tree.is(Tree.Kind.METHOD_INVOCATION)) {
+        MethodInvocationTree mit = (MethodInvocationTree) tree;
+        int matches = matcherIndex().matches(this, mit, getSemanticModel()).size();
+        for (int i = 0; i < matches; i++) {
+          onMethodFound(mit);
+        }
+      } else if (tree.is(Tree.Kind.NEW_CLASS)) {
+        NewClassTree newClassTree = (NewClassTree) tree;
+        int matches = matcherIndex().matches(this, newClassTree, getSemanticModel()).size();
+        for (int i = 0; i < matches; i++) {
+          onConstructorFound(newClassTree);
+        }
       }
     }
   }
@@ -69,10 +77,12 @@ public abstract class AbstractMethodDetection extends SubscriptionBaseVisitor {
     // Do nothing by default
   }
 
-  private List<MethodInvocationMatcher> matchers() {
-    if (matchers == null) {
-      matchers = getMethodInvocationMatchers();
+  private MethodInvocationMatcherIndex matcherIndex() {
+    if (matcherIndex == null) {
+      // not part of an analysis sharing the index, typically in tests
+      matcherIndex = new MethodInvocationMatcherIndex();
+      matcherIndex.register(this, getMethodInvocationMatchers());
     }
-    return matchers;
+    return matcherIndex;
   }
 }
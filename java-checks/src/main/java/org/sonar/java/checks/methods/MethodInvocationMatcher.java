@@ -32,6 +32,8 @@ import org.sonar.plugins.java.api.tree.MethodInvocationTree;
 import org.sonar.plugins.java.api.tree.NewClassTree;
 import org.sonar.plugins.java.api.tree.Tree;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import java.util.List;
 
 public class MethodInvocationMatcher {
@@ -96,6 +98,18 @@ public class MethodInvocationMatcher {
     return false;
   }
 
+  String getName() {
+    return methodName;
+  }
+
+  boolean hasCallSiteCriteria() {
+    return callSite != null;
+  }
+
+  boolean matches(Symbol.MethodSymbol methodSymbol, @Nullable Type callSiteType) {
+    return isSearchedMethod(methodSymbol, callSiteType);
+  }
+
   private boolean matches(IdentifierTree id, Type callSiteType, SemanticModel semanticModel) {
     Symbol symbol = semanticModel.getReference(id);
     if (symbol != null && symbol.isKind(Symbol.MTH)) {
@@ -107,7 +121,8 @@ public class MethodInvocationMatcher {
     return false;
   }
 
-  private Type getCallSiteType(MethodInvocationTree mit, SemanticModel semanticModel) {
+  @CheckForNull
+  static Type getCallSiteType(MethodInvocationTree mit, SemanticModel semanticModel) {
     if (mit.methodSelect().is(Tree.Kind.IDENTIFIER)) {
       return semanticModel.getEnclosingClass(mit).getType();
     } else if (mit.methodSelect().is(Tree.Kind.MEMBER_SELECT)) {
@@ -148,7 +163,8 @@ public class MethodInvocationMatcher {
     return true;
   }
 
-  private IdentifierTree getIdentifier(MethodInvocationTree mit) {
+  @CheckForNull
+  static IdentifierTree getIdentifier(MethodInvocationTree mit) {
     IdentifierTree id = null;
     if (mit.methodSelect().is(Tree.Kind.IDENTIFIER)) {
       id = (IdentifierTree) mit.methodSelect();
@@ -0,0 +1,192 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks.methods;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.model.expression.NewClassTreeImpl;
+import org.sonar.java.resolve.SemanticModel;
+import org.sonar.java.resolve.Symbol;
+import org.sonar.java.resolve.Type;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+import org.sonar.plugins.java.api.tree.NewClassTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import javax.annotation.CheckForNull;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * {@link MethodInvocationMatcher}s of all the method detection rules of an analysis, grouped by method name: an
+ * invocation is only confronted to the matchers searching for its name, its symbol and call site type are resolved once
+ * for all of them, and the matchers it matches are computed once for all the rules, each rule then reading its own hits.
+ */
+final class MethodInvocationMatcherIndex {
+
+  private static final String CONSTRUCTOR_NAME = "<init>";
+  private static final ListMultimap<Object, MethodInvocationMatcher> NO_MATCH = ImmutableListMultimap.of();
+
+  private final ListMultimap<String, RegisteredMatcher> matchersByName = ArrayListMultimap.create();
+  /**
+   * Trees are released with their file, and so are their entries.
+   */
+  private final Map<Tree, ListMultimap<Object, MethodInvocationMatcher>> matchesByInvocation = new WeakHashMap<Tree, ListMultimap<Object, MethodInvocationMatcher>>();
+
+  /**
+   * @return the index shared by the method detection rules of the given analysis
+   */
+  static MethodInvocationMatcherIndex of(AnalysisScope analysisScope) {
+    return analysisScope.getOrCreate(MethodInvocationMatcherIndex.class, new Supplier<MethodInvocationMatcherIndex>() {
+      @Override
+      public MethodInvocationMatcherIndex get() {
+        return new MethodInvocationMatcherIndex();
+      }
+    });
+  }
+
+  /**
+   * @param rule owner of the matchers, whose hits are read with the same instance
+   */
+  void register(Object rule, List<MethodInvocationMatcher> matchers) {
+    for (MethodInvocationMatcher matcher : matchers) {
+      // a matcher without name can not match any method
+      if (matcher.getName() != null) {
+        matchersByName.put(matcher.getName(), new RegisteredMatcher(rule, matcher));
+      }
+    }
+    matchesByInvocation.clear();
+  }
+
+  /**
+   * @return the matchers of the rule matching the given method invocation
+   */
+  List<MethodInvocationMatcher> matches(Object rule, MethodInvocationTree mit, SemanticModel semanticModel) {
+    ListMultimap<Object, MethodInvocationMatcher> matches = matchesByInvocation.get(mit);
+    if (matches == null) {
+      matches = computeMatches(mit, semanticModel);
+      matchesByInvocation.put(mit, matches);
+    }
+    return matches.get(rule);
+  }
+
+  /**
+   * @return the matchers of the rule matching the given constructor invocation
+   */
+  List<MethodInvocationMatcher> matches(Object rule, NewClassTree newClassTree, SemanticModel semanticModel) {
+    ListMultimap<Object, MethodInvocationMatcher> matches = matchesByInvocation.get(newClassTree);
+    if (matches == null) {
+      matches = computeMatches(newClassTree, semanticModel);
+      matchesByInvocation.put(newClassTree, matches);
+    }
+    return matches.get(rule);
+  }
+
+  private ListMultimap<Object, MethodInvocationMatcher> computeMatches(MethodInvocationTree mit, SemanticModel semanticModel) {
+    IdentifierTree id = MethodInvocationMatcher.getIdentifier(mit);
+    if (id == null) {
+      return NO_MATCH;
+    }
+    List<RegisteredMatcher> candidates = matchersByName.get(methodName(id));
+    if (candidates.isEmpty()) {
+      return NO_MATCH;
+    }
+    Symbol.MethodSymbol methodSymbol = methodSymbol(id, semanticModel);
+    if (methodSymbol == null) {
+      return NO_MATCH;
+    }
+    Type callSiteType = null;
+    boolean callSiteTypeResolved = false;
+    ListMultimap<Object, MethodInvocationMatcher> matches = NO_MATCH;
+    for (RegisteredMatcher candidate : candidates) {
+      if (candidate.matcher.hasCallSiteCriteria() && !callSiteTypeResolved) {
+        callSiteType = MethodInvocationMatcher.getCallSiteType(mit, semanticModel);
+        callSiteTypeResolved = true;
+      }
+      if (candidate.matcher.matches(methodSymbol, callSiteType)) {
+        matches = add(matches, candidate);
+      }
+    }
+    return matches;
+  }
+
+  private ListMultimap<Object, MethodInvocationMatcher> computeMatches(NewClassTree newClassTree, SemanticModel semanticModel) {
+    List<RegisteredMatcher> candidates = matchersByName.get(CONSTRUCTOR_NAME);
+    if (candidates.isEmpty()) {
+      return NO_MATCH;
+    }
+    Symbol.MethodSymbol methodSymbol = methodSymbol(((NewClassTreeImpl) newClassTree).getConstructorIdentifier(), semanticModel);
+    if (methodSymbol == null) {
+      return NO_MATCH;
+    }
+    ListMultimap<Object, MethodInvocationMatcher> matches = NO_MATCH;
+    for (RegisteredMatcher candidate : candidates) {
+      if (candidate.matcher.matches(methodSymbol, null)) {
+        matches = add(matches, candidate);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Most invocations match nothing, so the multimap is only allocated on the first hit.
+   */
+  private static ListMultimap<Object, MethodInvocationMatcher> add(ListMultimap<Object, MethodInvocationMatcher> matches, RegisteredMatcher hit) {
+    ListMultimap<Object, MethodInvocationMatcher> result = matches == NO_MATCH ? ArrayListMultimap.<Object, MethodInvocationMatcher>create() : matches;
+    result.put(hit.rule, hit.matcher);
+    return result;
+  }
+
+  /**
+   * Explicit constructor invocations, like <code>super(...)</code> or <code>this(...)</code>, refer to a constructor
+   * whose symbol is named <code>&lt;init&gt;</code>.
+   */
+  private static String methodName(IdentifierTree id) {
+    String name = id.name();
+    if ("super".equals(name) || "this".equals(name)) {
+      return CONSTRUCTOR_NAME;
+    }
+    return name;
+  }
+
+  @CheckForNull
+  private static Symbol.MethodSymbol methodSymbol(IdentifierTree id, SemanticModel semanticModel) {
+    Symbol symbol = semanticModel.getReference(id);
+    if (symbol != null && symbol.isKind(Symbol.MTH)) {
+      return (Symbol.MethodSymbol) symbol;
+    }
+    return null;
+  }
+
+  private static class RegisteredMatcher {
+    private final Object rule;
+    private final MethodInvocationMatcher matcher;
+
+    RegisteredMatcher(Object rule, MethodInvocationMatcher matcher) {
+      this.rule = rule;
+      this.matcher = matcher;
+    }
+  }
+
+}
@@ -0,0 +1,14 @@
+class A {
+  A(int i) {
+  }
+
+  void foo(int i) {
+  }
+
+  void bar() {
+    foo(1);
+    new A(2).foo(3);
+    bar();
+    this.foo(4);
+  }
+}
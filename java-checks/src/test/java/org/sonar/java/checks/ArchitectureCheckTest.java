@@ -59,6 +59,18 @@ public class ArchitectureCheckTest {
       .noMore();
   }
 
+  @Test
+  public void constraints_of_an_analysis_should_share_patterns() {
+    check.setToClasses("java.**.Pattern");
+    ArchitectureCheck otherCheck = new ArchitectureCheck();
+    otherCheck.setFromClasses("com.**");
+    otherCheck.setToClasses("java.**.Pattern, java.util.List");
+    SourceFile file = BytecodeFixture.scan("ArchitectureConstraint", check, otherCheck);
+    CheckMessagesVerifier.verify(file.getCheckMessages())
+      .next().atLine(27).withMessage("org/sonar/java/checks/targets/ArchitectureConstraint must not use java/util/regex/Pattern")
+      .noMore();
+  }
+
   @Test
   public void test_source_line_is_null_if_not_available () throws Exception {
     ArchitectureCheck archCheck = new ArchitectureCheck();
@@ -47,7 +47,7 @@ public class BytecodeFixture {
   private BytecodeFixture() {
   }
 
-  public static SourceFile scan(String target, CodeVisitor visitor) {
+  public static SourceFile scan(String target, CodeVisitor... visitors) {
     final File baseDir = new File("src/test/java/");
     File file = new File(baseDir, "org/sonar/java/checks/targets/" + target + ".java");
 
@@ -71,7 +71,7 @@ public class BytecodeFixture {
     when(pfs.getBasedir()).thenReturn(baseDir);
     DefaultJavaResourceLocator javaResourceLocator = new DefaultJavaResourceLocator(project, null, new SuppressWarningsFilter());
     javaResourceLocator.setSensorContext(sensorContext);
-    JavaSquid javaSquid = new JavaSquid(new JavaConfiguration(Charset.forName("UTF-8")), javaResourceLocator, visitor);
+    JavaSquid javaSquid = new JavaSquid(new JavaConfiguration(Charset.forName("UTF-8")), javaResourceLocator, visitors);
     javaSquid.scan(Collections.singleton(file), Collections.<File>emptyList(), Collections.singleton(bytecodeFile));
 
     Collection<SourceCode> sources = javaSquid.getIndex().search(new QueryByType(SourceFile.class));
@@ -0,0 +1,58 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks;
+
+import org.junit.Test;
+import org.sonar.java.AnalysisScope;
+
+import java.util.BitSet;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassPatternIndexTest {
+
+  @Test
+  public void should_match_registered_patterns() {
+    ClassPatternIndex index = new ClassPatternIndex();
+    BitSet collections = index.register("java.util.List, java.util.Set");
+    BitSet regex = index.register("java.**.Pattern");
+
+    assertThat(index.matches(collections, "java/util/List")).isTrue();
+    assertThat(index.matches(regex, "java/util/List")).isFalse();
+    assertThat(index.matches(regex, "java/util/regex/Pattern")).isTrue();
+    assertThat(index.matches(collections, "java/util/regex/Pattern")).isFalse();
+    assertThat(index.matches(index.register("java/util/Set"), "java/util/Set")).isTrue();
+  }
+
+  @Test
+  public void index_should_be_shared_by_an_analysis_only() {
+    AnalysisScope analysisScope = new AnalysisScope();
+    ClassPatternIndex index = ClassPatternIndex.of(analysisScope);
+    assertThat(ClassPatternIndex.of(analysisScope)).isSameAs(index);
+
+    index.register("java.util.List");
+    ClassPatternIndex otherIndex = ClassPatternIndex.of(new AnalysisScope());
+    assertThat(otherIndex).isNotSameAs(index);
+    BitSet patterns = otherIndex.register("java.util.Set");
+    assertThat(patterns.nextSetBit(0)).isEqualTo(0);
+    assertThat(otherIndex.matches(patterns, "java/util/List")).isFalse();
+  }
+
+}
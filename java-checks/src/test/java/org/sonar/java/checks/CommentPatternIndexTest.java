@@ -0,0 +1,57 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks;
+
+import org.junit.Test;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.model.InternalSyntaxTrivia;
+import org.sonar.plugins.java.api.tree.SyntaxTrivia;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CommentPatternIndexTest {
+
+  @Test
+  public void should_find_occurrences_of_registered_patterns() {
+    CommentPatternIndex index = new CommentPatternIndex();
+    index.register("TODO");
+    index.register("FIXME");
+    SyntaxTrivia trivia = InternalSyntaxTrivia.create("// todo: FIXME, then TODO", 1);
+
+    assertThat(index.occurrences(trivia, "TODO")).containsExactly(3, 21);
+    assertThat(index.occurrences(trivia, "FIXME")).containsExactly(9);
+    index.register("then");
+    assertThat(index.occurrences(trivia, "then")).containsExactly(16);
+  }
+
+  @Test
+  public void index_should_be_shared_by_an_analysis_only() {
+    AnalysisScope analysisScope = new AnalysisScope();
+    CommentPatternIndex index = CommentPatternIndex.of(analysisScope);
+    assertThat(CommentPatternIndex.of(analysisScope)).isSameAs(index);
+
+    index.register("TODO");
+    CommentPatternIndex otherIndex = CommentPatternIndex.of(new AnalysisScope());
+    assertThat(otherIndex).isNotSameAs(index);
+    otherIndex.register("FIXME");
+    assertThat(otherIndex.occurrences(InternalSyntaxTrivia.create("// TODO", 1), "TODO")).isEmpty();
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MultiPatternMatcherTest {
+
+  private final MultiPatternMatcher matcher = new MultiPatternMatcher(ImmutableList.of("he", "she", "his", "hers", "TODO"));
+
+  @Test
+  public void should_find_overlapping_occurrences() {
+    assertThat(find("ushers")).containsExactly("she@1", "he@2", "hers@2");
+  }
+
+  @Test
+  public void should_ignore_case() {
+    assertThat(find("// todo and ToDo")).containsExactly("todo@3", "ToDo@12");
+  }
+
+  @Test
+  public void should_find_nothing() {
+    assertThat(find("")).isEmpty();
+    assertThat(find("foo bar")).isEmpty();
+  }
+
+  private List<String> find(String text) {
+    List<String> result = Lists.newArrayList();
+    for (MultiPatternMatcher.Occurrence occurrence : matcher.findAll(text)) {
+      String pattern = occurrence.pattern();
+      result.add(text.substring(occurrence.start(), occurrence.start() + pattern.length()) + "@" + occurrence.start());
+    }
+    return result;
+  }
+
+}
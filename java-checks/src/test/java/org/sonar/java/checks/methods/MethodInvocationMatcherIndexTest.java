@@ -0,0 +1,166 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.checks.methods;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.java.AnalysisScope;
+import org.sonar.java.JavaAstScanner;
+import org.sonar.java.checks.SubscriptionBaseVisitor;
+import org.sonar.java.model.VisitorsBridge;
+import org.sonar.java.resolve.SemanticModel;
+import org.sonar.java.resolve.Symbol;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.MethodInvocationTree;
+import org.sonar.plugins.java.api.tree.NewClassTree;
+import org.sonar.plugins.java.api.tree.Tree;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MethodInvocationMatcherIndexTest {
+
+  private final SemanticModel semanticModel = mock(SemanticModel.class);
+
+  @Test
+  public void should_match_method_invocations_by_name() {
+    CountingVisitor visitor = scan(
+      MethodInvocationMatcher.create().name("foo").addParameter("int"),
+      MethodInvocationMatcher.create().name("foo").withNoParameterConstraint(),
+      MethodInvocationMatcher.create().name("bar"),
+      MethodInvocationMatcher.create().name("qix").withNoParameterConstraint());
+
+    // foo(1), new A(2).foo(3), bar() and this.foo(4)
+    assertThat(visitor.methodMatches).containsExactly(2, 2, 1, 2);
+    assertThat(visitor.constructorMatches).containsExactly(0);
+  }
+
+  @Test
+  public void should_match_constructor_invocations() {
+    CountingVisitor visitor = scan(
+      MethodInvocationMatcher.create().name("<init>").typeDefinition("A").addParameter("int"),
+      MethodInvocationMatcher.create().name("<init>").withNoParameterConstraint(),
+      MethodInvocationMatcher.create().name("foo").withNoParameterConstraint());
+
+    assertThat(visitor.methodMatches).containsExactly(1, 1, 0, 1);
+    assertThat(visitor.constructorMatches).containsExactly(2);
+  }
+
+  @Test
+  public void matchers_without_name_should_not_match() {
+    CountingVisitor visitor = scan(MethodInvocationMatcher.create().withNoParameterConstraint());
+
+    assertThat(visitor.methodMatches).containsExactly(0, 0, 0, 0);
+    assertThat(visitor.constructorMatches).containsExactly(0);
+  }
+
+  @Test
+  public void explicit_constructor_invocations_should_be_matched_as_constructors() {
+    MethodInvocationMatcherIndex index = new MethodInvocationMatcherIndex();
+    Object rule = new Object();
+    index.register(rule, ImmutableList.of(
+      MethodInvocationMatcher.create().name("<init>").withNoParameterConstraint(),
+      MethodInvocationMatcher.create().name("super").withNoParameterConstraint(),
+      MethodInvocationMatcher.create().name("this").withNoParameterConstraint()));
+    Symbol.MethodSymbol constructor = new Symbol.MethodSymbol(0, "<init>", null);
+
+    assertThat(index.matches(rule, explicitConstructorInvocation("super", constructor), semanticModel)).hasSize(1);
+    assertThat(index.matches(rule, explicitConstructorInvocation("this", constructor), semanticModel)).hasSize(1);
+  }
+
+  @Test
+  public void rules_sharing_the_index_should_read_their_own_hits_of_an_invocation_resolved_once() {
+    MethodInvocationMatcherIndex index = new MethodInvocationMatcherIndex();
+    Object rule = new Object();
+    Object otherRule = new Object();
+    Object ruleWithoutHit = new Object();
+    MethodInvocationMatcher matcher = MethodInvocationMatcher.create().name("<init>").withNoParameterConstraint();
+    MethodInvocationMatcher otherMatcher = MethodInvocationMatcher.create().name("<init>").withNoParameterConstraint();
+    index.register(rule, ImmutableList.of(matcher));
+    index.register(otherRule, ImmutableList.of(otherMatcher, MethodInvocationMatcher.create().name("super").withNoParameterConstraint()));
+    index.register(ruleWithoutHit, ImmutableList.of(MethodInvocationMatcher.create().name("foo").withNoParameterConstraint()));
+    MethodInvocationTree mit = explicitConstructorInvocation("super", new Symbol.MethodSymbol(0, "<init>", null));
+
+    assertThat(index.matches(rule, mit, semanticModel)).containsExactly(matcher);
+    assertThat(index.matches(otherRule, mit, semanticModel)).containsExactly(otherMatcher);
+    assertThat(index.matches(ruleWithoutHit, mit, semanticModel)).isEmpty();
+    verify(semanticModel, times(1)).getReference(any(IdentifierTree.class));
+  }
+
+  @Test
+  public void analysis_scope_should_share_the_index() {
+    AnalysisScope analysisScope = new AnalysisScope();
+
+    assertThat(MethodInvocationMatcherIndex.of(analysisScope)).isSameAs(MethodInvocationMatcherIndex.of(analysisScope));
+    assertThat(MethodInvocationMatcherIndex.of(analysisScope)).isNotSameAs(MethodInvocationMatcherIndex.of(new AnalysisScope()));
+  }
+
+  private MethodInvocationTree explicitConstructorInvocation(String keyword, Symbol.MethodSymbol constructor) {
+    IdentifierTree identifier = mock(IdentifierTree.class);
+    when(identifier.is(Tree.Kind.IDENTIFIER)).thenReturn(true);
+    when(identifier.name()).thenReturn(keyword);
+    MethodInvocationTree mit = mock(MethodInvocationTree.class);
+    when(mit.methodSelect()).thenReturn(identifier);
+    when(semanticModel.getReference(identifier)).thenReturn(constructor);
+    return mit;
+  }
+
+  private static CountingVisitor scan(MethodInvocationMatcher... matchers) {
+    MethodInvocationMatcherIndex index = new MethodInvocationMatcherIndex();
+    CountingVisitor visitor = new CountingVisitor(index);
+    index.register(visitor, ImmutableList.copyOf(matchers));
+    JavaAstScanner.scanSingleFile(new File("src/test/files/checks/methods/MethodInvocationMatcherIndex.java"), new VisitorsBridge(visitor));
+    return visitor;
+  }
+
+  private static class CountingVisitor extends SubscriptionBaseVisitor {
+
+    private final MethodInvocationMatcherIndex index;
+    private final List<Integer> methodMatches = Lists.newArrayList();
+    private final List<Integer> constructorMatches = Lists.newArrayList();
+
+    CountingVisitor(MethodInvocationMatcherIndex index) {
+      this.index = index;
+    }
+
+    @Override
+    public List<Tree.Kind> nodesToVisit() {
+      return ImmutableList.of(Tree.Kind.METHOD_INVOCATION, Tree.Kind.NEW_CLASS);
+    }
+
+    @Override
+    public void visitNode(Tree tree) {
+      if (tree.is(Tree.Kind.METHOD_INVOCATION)) {
+        methodMatches.add(index.matches(this, (MethodInvocationTree) tree, getSemanticModel()).size());
+      } else {
+        constructorMatches.add(index.matches(this, (NewClassTree) tree, getSemanticModel()).size());
+      }
+    }
+  }
+
+}
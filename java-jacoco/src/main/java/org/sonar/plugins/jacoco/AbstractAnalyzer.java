@@ -19,16 +19,11 @@
  */
 package org.sonar.plugins.jacoco;
 
-import com.google.common.collect.Maps;
-import com.google.common.io.Closeables;
-import org.apache.commons.lang.StringUtils;
-import org.jacoco.core.analysis.Analyzer;
+import com.google.common.annotations.VisibleForTesting;
 import org.jacoco.core.analysis.CoverageBuilder;
 import org.jacoco.core.analysis.ICounter;
 import org.jacoco.core.analysis.ILine;
 import org.jacoco.core.analysis.ISourceFileCoverage;
-import org.jacoco.core.data.ExecutionData;
-import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
@@ -37,59 +32,57 @@ import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.resources.ResourceUtils;
-import org.sonar.api.scan.filesystem.ModuleFileSystem;
-import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.test.MutableTestCase;
 import org.sonar.api.test.MutableTestPlan;
 import org.sonar.api.test.MutableTestable;
 import org.sonar.api.test.Testable;
 import org.sonar.api.utils.SonarException;
-import org.sonar.java.JavaClasspath;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 
-import java.io.BufferedInputStream;
+import javax.annotation.Nullable;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.common.collect.Lists.newArrayList;
 
 public abstract class AbstractAnalyzer {
 
+  @VisibleForTesting
+  static final int MAX_PENDING_SESSIONS_PER_WORKER = 4;
+
   private final ResourcePerspectives perspectives;
-  private final ModuleFileSystem fileSystem;
-  private final PathResolver pathResolver;
   private final JavaResourceLocator javaResourceLocator;
+  private final JacocoAnalysisCache analysisCache;
   private final boolean readCoveragePerTests;
 
-  private Map<String, File> classFilesCache;
-  private JavaClasspath javaClasspath;
-
-  public AbstractAnalyzer(ResourcePerspectives perspectives, ModuleFileSystem fileSystem, PathResolver pathResolver,
-                          JavaResourceLocator javaResourceLocator, JavaClasspath javaClasspath) {
-    this(perspectives, fileSystem, pathResolver, javaResourceLocator, javaClasspath, true);
+  public AbstractAnalyzer(ResourcePerspectives perspectives, JavaResourceLocator javaResourceLocator, JacocoAnalysisCache analysisCache) {
+    this(perspectives, javaResourceLocator, analysisCache, true);
   }
-  public AbstractAnalyzer(ResourcePerspectives perspectives, ModuleFileSystem fileSystem,
-                          PathResolver pathResolver, JavaResourceLocator javaResourceLocator, JavaClasspath javaClasspath, boolean readCoveragePerTests) {
+
+  public AbstractAnalyzer(ResourcePerspectives perspectives, JavaResourceLocator javaResourceLocator, JacocoAnalysisCache analysisCache,
+                          boolean readCoveragePerTests) {
     this.perspectives = perspectives;
-    this.fileSystem = fileSystem;
-    this.pathResolver = pathResolver;
     this.javaResourceLocator = javaResourceLocator;
+    this.analysisCache = analysisCache;
     this.readCoveragePerTests = readCoveragePerTests;
-    this.javaClasspath = javaClasspath;
-  }
-
-  private static String fullyQualifiedClassName(String packageName, String simpleClassName) {
-    return ("".equals(packageName) ? "" : packageName + "/") + StringUtils.substringBeforeLast(simpleClassName, ".");
   }
 
   private Resource getResource(ISourceFileCoverage coverage, SensorContext context) {
-    String className = fullyQualifiedClassName(coverage.getPackageName(), coverage.getName());
+    return getResource(ProbeLineIndex.fullyQualifiedClassName(coverage.getPackageName(), coverage.getName()), context);
+  }
 
+  private Resource getResource(String className, SensorContext context) {
     Resource resourceInContext = context.getResource(javaResourceLocator.findResourceByClassName(className));
     if (resourceInContext == null) {
       // Do not save measures on resource which doesn't exist in the context
@@ -104,66 +97,42 @@ public abstract class AbstractAnalyzer {
   }
 
   public final void analyse(Project project, SensorContext context) {
-    classFilesCache = Maps.newHashMap();
-    for (File classesDir : javaClasspath.getBinaryDirs()) {
-      populateClassFilesCache(classesDir, "");
-    }
-
-    if (classFilesCache.isEmpty()) {
+    if (analysisCache.classFiles().isEmpty()) {
       JaCoCoExtensions.LOG.info("No JaCoCo analysis of project coverage can be done since there is no class files.");
       return;
     }
-    String path = getReportPath(project);
-    File jacocoExecutionData = pathResolver.relativeFile(fileSystem.baseDir(), path);
-
     try {
-      readExecutionData(jacocoExecutionData, context);
+      readExecutionData(getReports(project), context);
     } catch (IOException e) {
       throw new SonarException(e);
     }
-
-    classFilesCache = null;
   }
 
-  private void populateClassFilesCache(File dir, String path) {
-    File[] files = dir.listFiles();
-    if (files == null) {
-      return;
-    }
-    for (File file : files) {
-      if (file.isDirectory()) {
-        populateClassFilesCache(file, path + file.getName() + "/");
-      } else if (file.getName().endsWith(".class")) {
-        String className = path + StringUtils.removeEnd(file.getName(), ".class");
-        classFilesCache.put(className, file);
+  public final void readExecutionData(List<File> reports, SensorContext context) throws IOException {
+    CoveragePerTest coveragePerTest = readCoveragePerTests ? new CoveragePerTest(context) : null;
+    boolean executionDataFound = false;
+    try {
+      for (File report : reports) {
+        if (report != null && report.isFile()) {
+          JaCoCoExtensions.LOG.info("Analysing {}", report);
+          analysisCache.executionData(report, coveragePerTest);
+          readCompactCoveragePerTest(report, coveragePerTest);
+          executionDataFound = true;
+        }
       }
-    }
-  }
-
-  public final void readExecutionData(File jacocoExecutionData, SensorContext context) throws IOException {
-    ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor();
-
-    if (jacocoExecutionData == null || !jacocoExecutionData.isFile()) {
-      JaCoCoExtensions.LOG.info("Project coverage is set to 0% as no JaCoCo execution data has been dumped: {}", jacocoExecutionData);
-      jacocoExecutionData = null;
-    } else {
-      JaCoCoExtensions.LOG.info("Analysing {}", jacocoExecutionData);
-
-      InputStream inputStream = null;
-      try {
-        inputStream = new BufferedInputStream(new FileInputStream(jacocoExecutionData));
-        ExecutionDataReader reader = new ExecutionDataReader(inputStream);
-        reader.setSessionInfoVisitor(executionDataVisitor);
-        reader.setExecutionDataVisitor(executionDataVisitor);
-        reader.read();
-      } finally {
-        Closeables.closeQuietly(inputStream);
+      if (coveragePerTest != null) {
+        coveragePerTest.finish();
+      }
+    } finally {
+      if (coveragePerTest != null) {
+        coveragePerTest.close();
       }
     }
+    if (!executionDataFound) {
+      JaCoCoExtensions.LOG.info("Project coverage is set to 0% as no JaCoCo execution data has been dumped: {}", reports);
+    }
 
-    boolean collectedCoveragePerTest = readCoveragePerTests(context, executionDataVisitor);
-
-    CoverageBuilder coverageBuilder = analyze(executionDataVisitor.getMerged());
+    CoverageBuilder coverageBuilder = analysisCache.coverage(reports);
     int analyzedResources = 0;
     for (ISourceFileCoverage coverage : coverageBuilder.getSourceFiles()) {
       Resource resource = getResource(coverage, context);
@@ -175,72 +144,134 @@ public abstract class AbstractAnalyzer {
     }
     if (analyzedResources == 0) {
       JaCoCoExtensions.LOG.warn("Coverage information was not collected. Perhaps you forget to include debug information into compiled classes?");
-    } else if (collectedCoveragePerTest) {
+    } else if (coveragePerTest != null && coveragePerTest.collected) {
       JaCoCoExtensions.LOG.info("Information about coverage per test has been collected.");
-    } else if (jacocoExecutionData != null) {
+    } else if (executionDataFound) {
       JaCoCoExtensions.LOG.info("No information about coverage per test.");
     }
   }
 
-  private boolean readCoveragePerTests(SensorContext context, ExecutionDataVisitor executionDataVisitor) {
-    boolean collectedCoveragePerTest = false;
-    if(readCoveragePerTests) {
-      for (Map.Entry<String, ExecutionDataStore> entry : executionDataVisitor.getSessions().entrySet()) {
-        if (analyzeLinesCoveredByTests(entry.getKey(), entry.getValue(), context)) {
-          collectedCoveragePerTest = true;
+  private static void readCompactCoveragePerTest(File report, @Nullable CoveragePerTest coveragePerTest) throws IOException {
+    File sidecarFile = CompactCoverageReader.sidecarFile(report);
+    if (coveragePerTest != null && sidecarFile.isFile()) {
+      JaCoCoExtensions.LOG.info("Analysing {}", sidecarFile);
+      CompactCoverageReader.read(sidecarFile, coveragePerTest);
+    }
+  }
+
+  /**
+   * Saves the lines covered by each test as soon as its session has been read, so that the execution data of the
+   * sessions are never all in memory.
+   * <p/>
+   * Covered lines of the sessions are computed by a pool of workers, at most {@link #MAX_PENDING_SESSIONS_PER_WORKER}
+   * sessions per worker being pending at a time. Resources are looked up and coverage is saved on the sensor thread,
+   * in the order of the sessions.
+   */
+  private class CoveragePerTest implements ExecutionDataVisitor.SessionListener, CompactCoverageReader.TestListener {
+
+    private final SensorContext context;
+    private final int workers = Runtime.getRuntime().availableProcessors();
+    private final Deque<PendingSession> pendingSessions = new ArrayDeque<PendingSession>();
+    private ExecutorService executor;
+    private ProbeLineIndex probeLineIndex;
+    private boolean collected = false;
+
+    CoveragePerTest(SensorContext context) {
+      this.context = context;
+    }
+
+    @Override
+    public void onSession(String sessionId, final ExecutionDataStore executionDataStore) {
+      submit(sessionId, new Callable<Map<String, BitSet>>() {
+        @Override
+        public Map<String, BitSet> call() {
+          return probeLineIndex.coveredLines(executionDataStore);
+        }
+      });
+    }
+
+    @Override
+    public void onTest(String sessionId, final List<CompactCoverageReader.ClassHits> classHits) {
+      submit(sessionId, new Callable<Map<String, BitSet>>() {
+        @Override
+        public Map<String, BitSet> call() {
+          return probeLineIndex.coveredLines(classHits);
         }
+      });
+    }
+
+    private void submit(String sessionId, Callable<Map<String, BitSet>> coveredLinesComputation) {
+      int i = sessionId.indexOf(' ');
+      if (i < 0) {
+        return;
+      }
+      String testClassName = sessionId.substring(0, i);
+      Resource testResource = context.getResource(javaResourceLocator.findResourceByClassName(testClassName));
+      if (testResource == null) {
+        // No such test class
+        return;
+      }
+      if (executor == null) {
+        probeLineIndex = analysisCache.probeLineIndex();
+        executor = Executors.newFixedThreadPool(workers);
+      }
+      Future<Map<String, BitSet>> coveredLines = executor.submit(coveredLinesComputation);
+      pendingSessions.add(new PendingSession(testResource, sessionId.substring(i + 1), coveredLines));
+      while (pendingSessions.size() > workers * MAX_PENDING_SESSIONS_PER_WORKER) {
+        saveCoverage(pendingSessions.poll());
       }
     }
-    return collectedCoveragePerTest;
-  }
 
-  private boolean analyzeLinesCoveredByTests(String sessionId, ExecutionDataStore executionDataStore, SensorContext context) {
-    int i = sessionId.indexOf(' ');
-    if (i < 0) {
-      return false;
+    void finish() {
+      while (!pendingSessions.isEmpty()) {
+        saveCoverage(pendingSessions.poll());
+      }
     }
-    String testClassName = sessionId.substring(0, i);
-    String testName = sessionId.substring(i + 1);
-    Resource testResource = context.getResource(javaResourceLocator.findResourceByClassName(testClassName));
-    if (testResource == null) {
-      // No such test class
-      return false;
+
+    void close() {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
     }
 
-    boolean result = false;
-    CoverageBuilder coverageBuilder = analyze2(executionDataStore);
-    for (ISourceFileCoverage coverage : coverageBuilder.getSourceFiles()) {
-      Resource resource = getResource(coverage, context);
-      if (resource != null) {
-        CoverageMeasuresBuilder builder = analyzeFile(resource, coverage);
-        List<Integer> coveredLines = getCoveredLines(builder);
-        if (!coveredLines.isEmpty() && addCoverage(resource, testResource, testName, coveredLines)) {
-          result = true;
+    private void saveCoverage(PendingSession session) {
+      Map<String, BitSet> coveredLinesByClass;
+      try {
+        coveredLinesByClass = session.coveredLines.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SonarException(e);
+      } catch (ExecutionException e) {
+        throw new SonarException(e.getCause());
+      }
+      for (Map.Entry<String, BitSet> entry : coveredLinesByClass.entrySet()) {
+        Resource resource = getResource(entry.getKey(), context);
+        if (resource != null) {
+          List<Integer> coveredLines = getCoveredLines(entry.getValue());
+          if (!coveredLines.isEmpty() && addCoverage(resource, session.testResource, session.testName, coveredLines)) {
+            collected = true;
+          }
         }
       }
     }
-    return result;
   }
 
-  private CoverageBuilder analyze2(ExecutionDataStore executionDataStore) {
-    CoverageBuilder coverageBuilder = new CoverageBuilder();
-    Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
-    for (ExecutionData data : executionDataStore.getContents()) {
-      String vmClassName = data.getName();
-      File classFile = classFilesCache.get(vmClassName);
-      if (classFile != null) {
-        analyzeClassFile(analyzer, classFile);
-      }
+  private static class PendingSession {
+    private final Resource testResource;
+    private final String testName;
+    private final Future<Map<String, BitSet>> coveredLines;
+
+    PendingSession(Resource testResource, String testName, Future<Map<String, BitSet>> coveredLines) {
+      this.testResource = testResource;
+      this.testName = testName;
+      this.coveredLines = coveredLines;
     }
-    return coverageBuilder;
   }
 
-  private List<Integer> getCoveredLines(CoverageMeasuresBuilder builder) {
+  private static List<Integer> getCoveredLines(BitSet lines) {
     List<Integer> linesCover = newArrayList();
-    for (Map.Entry<Integer, Integer> hitsByLine : builder.getHitsByLine().entrySet()) {
-      if (hitsByLine.getValue() > 0) {
-        linesCover.add(hitsByLine.getKey());
-      }
+    for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+      linesCover.add(line);
     }
     return linesCover;
   }
@@ -260,31 +291,6 @@ public abstract class AbstractAnalyzer {
     return result;
   }
 
-  private CoverageBuilder analyze(ExecutionDataStore executionDataStore) {
-    CoverageBuilder coverageBuilder = new CoverageBuilder();
-    Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
-    for (File classFile : classFilesCache.values()) {
-      analyzeClassFile(analyzer, classFile);
-    }
-    return coverageBuilder;
-  }
-
-  /**
-   * Caller must guarantee that {@code classFile} is actually class file.
-   */
-  private void analyzeClassFile(Analyzer analyzer, File classFile) {
-    InputStream inputStream = null;
-    try {
-      inputStream = new FileInputStream(classFile);
-      analyzer.analyzeClass(inputStream, classFile.getPath());
-    } catch (IOException e) {
-      // (Godin): in fact JaCoCo includes name into exception
-      JaCoCoExtensions.LOG.warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
-    } finally {
-      Closeables.closeQuietly(inputStream);
-    }
-  }
-
   private CoverageMeasuresBuilder analyzeFile(Resource resource, ISourceFileCoverage coverage) {
     CoverageMeasuresBuilder builder = CoverageMeasuresBuilder.create();
     for (int lineId = coverage.getFirstLine(); lineId <= coverage.getLastLine(); lineId++) {
@@ -318,6 +324,9 @@ public abstract class AbstractAnalyzer {
 
   protected abstract void saveMeasures(SensorContext context, Resource resource, Collection<Measure> measures);
 
-  protected abstract String getReportPath(Project project);
+  /**
+   * @return report files whose execution data is merged to compute coverage
+   */
+  protected abstract List<File> getReports(Project project);
 
 }
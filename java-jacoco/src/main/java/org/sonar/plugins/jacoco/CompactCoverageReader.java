@@ -0,0 +1,155 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Closeables;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads the coverage per test written in a compact format by the listeners of sonar-jacoco-listeners, in a sidecar
+ * file of the execution data file. The hit probes of each test are handed over to the listener as soon as read, without
+ * being expanded to execution data stores.
+ */
+class CompactCoverageReader {
+
+  static final String SUFFIX = ".tests";
+
+  private static final int HEADER_RECORD = 0x00;
+  private static final int CLASS_RECORD = 0x01;
+  private static final int TEST_RECORD = 0x02;
+  private static final int MAGIC = 0x534A5443;
+  private static final int FORMAT_VERSION = 2;
+
+  interface TestListener {
+
+    void onTest(String sessionId, List<ClassHits> classHits);
+
+  }
+
+  private CompactCoverageReader() {
+  }
+
+  static File sidecarFile(File report) {
+    return new File(report.getPath() + SUFFIX);
+  }
+
+  static void read(File file, TestListener listener) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      List<ClassHits> classes = Lists.newArrayList();
+      int record;
+      while ((record = in.read()) != -1) {
+        switch (record) {
+          case HEADER_RECORD:
+            readHeader(in, file);
+            classes.clear();
+            break;
+          case CLASS_RECORD:
+            classes.add(new ClassHits(in.readLong(), in.readUTF(), null));
+            break;
+          case TEST_RECORD:
+            listener.onTest(in.readUTF(), readTest(in, classes));
+            break;
+          default:
+            throw new IOException("Invalid record type " + record + " in " + file);
+        }
+      }
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private static void readHeader(DataInputStream in, File file) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException(file + " is not a file of coverage per test");
+    }
+    int version = in.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported version " + version + " of coverage per test in " + file);
+    }
+  }
+
+  private static List<ClassHits> readTest(DataInputStream in, List<ClassHits> classes) throws IOException {
+    int classCount = readVarInt(in);
+    List<ClassHits> result = Lists.newArrayListWithCapacity(classCount);
+    for (int i = 0; i < classCount; i++) {
+      ClassHits classHits = classes.get(readVarInt(in));
+      int[] probes = new int[readVarInt(in)];
+      int probe = 0;
+      for (int j = 0; j < probes.length; j++) {
+        probe += readVarInt(in);
+        probes[j] = probe;
+      }
+      result.add(new ClassHits(classHits.id, classHits.name, probes));
+    }
+    return result;
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.read();
+      if (b == -1) {
+        throw new EOFException();
+      }
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  /**
+   * Hit probes of a class by a test.
+   */
+  static class ClassHits {
+    private final long id;
+    private final String name;
+    private final int[] probes;
+
+    ClassHits(long id, String name, int[] probes) {
+      this.id = id;
+      this.name = name;
+      this.probes = probes;
+    }
+
+    long getId() {
+      return id;
+    }
+
+    String getName() {
+      return name;
+    }
+
+    int[] getProbes() {
+      return probes;
+    }
+  }
+
+}
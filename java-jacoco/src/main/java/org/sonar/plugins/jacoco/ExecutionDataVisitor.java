@@ -19,46 +19,175 @@
  */
 package org.sonar.plugins.jacoco;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.jacoco.core.data.ExecutionData;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.IExecutionDataVisitor;
 import org.jacoco.core.data.ISessionInfoVisitor;
 import org.jacoco.core.data.SessionInfo;
 
+import javax.annotation.Nullable;
 import java.util.Map;
+import java.util.Set;
 
 public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionDataVisitor {
 
+  /**
+   * Receives the execution data of each session as soon as it has been read.
+   */
+  public interface SessionListener {
+
+    void onSession(String sessionId, ExecutionDataStore executionDataStore);
+
+  }
+
   private final Map<String, ExecutionDataStore> sessions = Maps.newHashMap();
+  private final boolean keepSessions;
+  @Nullable
+  private final SessionListener sessionListener;
+  private final Set<String> sessionIdsInSeveralBlocks;
+  private final Set<String> visitedSessionIds = Sets.newHashSet();
+  private final Map<String, ExecutionDataStore> sessionsInSeveralBlocks = Maps.newLinkedHashMap();
 
+  private String sessionId;
   private ExecutionDataStore executionDataStore;
   private ExecutionDataStore merged = new ExecutionDataStore();
 
+  /**
+   * Keeps the execution data of all the sessions, see {@link #getSessions()}.
+   */
+  public ExecutionDataVisitor() {
+    this(null, Sets.<String>newHashSet(), true);
+  }
+
+  /**
+   * Streaming mode, for a report whose sessions are never split in non-consecutive blocks.
+   *
+   * @see #ExecutionDataVisitor(SessionListener, Set)
+   */
+  public ExecutionDataVisitor(SessionListener sessionListener) {
+    this(sessionListener, ImmutableSet.<String>of());
+  }
+
+  /**
+   * Streaming mode: the execution data of a session is handed to the listener, then discarded, as soon as the next
+   * session starts or {@link #visitEnd()} is called. Consecutive blocks of a same session are handed over at once.
+   * Nothing is kept, not even the merged execution data.
+   * <p/>
+   * Sessions split in non-consecutive blocks are kept until {@link #visitEnd()}, then handed over in the order in which
+   * they started.
+   *
+   * @param sessionIdsInSeveralBlocks ids of the sessions of the report which are split in non-consecutive blocks, as
+   *                                  found by a previous read in {@link #mergeOnly() merge-only mode}
+   */
+  public ExecutionDataVisitor(SessionListener sessionListener, Set<String> sessionIdsInSeveralBlocks) {
+    this(sessionListener, sessionIdsInSeveralBlocks, false);
+  }
+
+  private ExecutionDataVisitor(@Nullable SessionListener sessionListener, Set<String> sessionIdsInSeveralBlocks, boolean keepSessions) {
+    this.sessionListener = sessionListener;
+    this.sessionIdsInSeveralBlocks = sessionIdsInSeveralBlocks;
+    this.keepSessions = keepSessions;
+  }
+
+  /**
+   * Merge-only mode: only the merged execution data and the ids of the sessions split in non-consecutive blocks are
+   * kept, see {@link #getMerged()} and {@link #getSessionIdsInSeveralBlocks()}.
+   */
+  public static ExecutionDataVisitor mergeOnly() {
+    return new ExecutionDataVisitor(null, Sets.<String>newHashSet(), false);
+  }
+
   @Override
   public void visitSessionInfo(SessionInfo info) {
-    String sessionId = info.getId();
-    executionDataStore = sessions.get(sessionId);
-    if (executionDataStore == null) {
-      executionDataStore = new ExecutionDataStore();
-      sessions.put(sessionId, executionDataStore);
+    String id = info.getId();
+    if (id.equals(sessionId)) {
+      // next block of the session being read
+      return;
     }
+    if (sessionListener != null) {
+      handOverSession();
+      executionDataStore = sessionIdsInSeveralBlocks.contains(id) ? sessionInSeveralBlocks(id) : new ExecutionDataStore();
+    } else {
+      if (!visitedSessionIds.add(id)) {
+        sessionIdsInSeveralBlocks.add(id);
+      }
+      if (keepSessions) {
+        executionDataStore = sessions.get(id);
+        if (executionDataStore == null) {
+          executionDataStore = new ExecutionDataStore();
+          sessions.put(id, executionDataStore);
+        }
+      }
+    }
+    sessionId = id;
   }
 
   @Override
   public void visitClassExecution(ExecutionData data) {
-    executionDataStore.put(data);
-    merged.put(defensiveCopy(data));
+    if (executionDataStore != null) {
+      executionDataStore.put(data);
+    }
+    if (sessionListener == null) {
+      // the store merges probes into the instance it holds, which must not be the one of a session
+      merged.put(executionDataStore == null ? data : defensiveCopy(data));
+    }
+  }
+
+  private ExecutionDataStore sessionInSeveralBlocks(String id) {
+    ExecutionDataStore store = sessionsInSeveralBlocks.get(id);
+    if (store == null) {
+      store = new ExecutionDataStore();
+      sessionsInSeveralBlocks.put(id, store);
+    }
+    return store;
+  }
+
+  /**
+   * Hands the session being read, then the sessions split in several blocks, over to the listener, to be called once
+   * all the execution data has been read.
+   */
+  public void visitEnd() {
+    handOverSession();
+    if (sessionListener != null) {
+      for (Map.Entry<String, ExecutionDataStore> session : sessionsInSeveralBlocks.entrySet()) {
+        sessionListener.onSession(session.getKey(), session.getValue());
+      }
+    }
+    sessionsInSeveralBlocks.clear();
   }
 
+  private void handOverSession() {
+    if (sessionListener != null && executionDataStore != null && !sessionIdsInSeveralBlocks.contains(sessionId)) {
+      sessionListener.onSession(sessionId, executionDataStore);
+    }
+    sessionId = null;
+    executionDataStore = null;
+  }
+
+  /**
+   * @return execution data by session id, always empty in streaming and merge-only modes
+   */
   public Map<String, ExecutionDataStore> getSessions() {
     return sessions;
   }
 
+  /**
+   * @return merged execution data of all the sessions, always empty in streaming mode
+   */
   public ExecutionDataStore getMerged() {
     return merged;
   }
 
+  /**
+   * @return ids of the sessions which are split in non-consecutive blocks
+   */
+  public Set<String> getSessionIdsInSeveralBlocks() {
+    return sessionIdsInSeveralBlocks;
+  }
+
   private static ExecutionData defensiveCopy(ExecutionData data) {
     boolean[] src = data.getProbes();
     boolean[] dest = new boolean[src.length];
@@ -28,11 +28,12 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
-import org.sonar.java.JavaClasspath;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 public class JaCoCoItSensor implements Sensor {
   private final JacocoConfiguration configuration;
@@ -40,16 +41,16 @@ public class JaCoCoItSensor implements Sensor {
   private final ModuleFileSystem fileSystem;
   private final PathResolver pathResolver;
   private final JavaResourceLocator javaResourceLocator;
-  private final JavaClasspath javaClasspath;
+  private final JacocoAnalysisCache analysisCache;
 
   public JaCoCoItSensor(JacocoConfiguration configuration, ResourcePerspectives perspectives, ModuleFileSystem fileSystem, PathResolver pathResolver,
-                        JavaResourceLocator javaResourceLocator, JavaClasspath javaClasspath) {
+                        JavaResourceLocator javaResourceLocator, JacocoAnalysisCache analysisCache) {
     this.configuration = configuration;
     this.perspectives = perspectives;
     this.fileSystem = fileSystem;
     this.pathResolver = pathResolver;
     this.javaResourceLocator = javaResourceLocator;
-    this.javaClasspath = javaClasspath;
+    this.analysisCache = analysisCache;
   }
 
   @Override
@@ -70,12 +71,12 @@ public class JaCoCoItSensor implements Sensor {
 
   class ITAnalyzer extends AbstractAnalyzer {
     public ITAnalyzer(ResourcePerspectives perspectives) {
-      super(perspectives, fileSystem, pathResolver, javaResourceLocator, javaClasspath);
+      super(perspectives, javaResourceLocator, analysisCache);
     }
 
     @Override
-    protected String getReportPath(Project project) {
-      return configuration.getItReportPath();
+    protected List<File> getReports(Project project) {
+      return Collections.singletonList(analysisCache.reportFile(configuration.getItReportPath()));
     }
 
     @Override
@@ -19,11 +19,6 @@
  */
 package org.sonar.plugins.jacoco;
 
-import com.google.common.io.Closeables;
-import org.jacoco.core.data.ExecutionDataReader;
-import org.jacoco.core.data.ExecutionDataStore;
-import org.jacoco.core.data.ExecutionDataWriter;
-import org.jacoco.core.data.SessionInfoStore;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
@@ -33,38 +28,30 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
-import org.sonar.api.utils.SonarException;
-import org.sonar.java.JavaClasspath;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
 public class JaCoCoOverallSensor implements Sensor {
 
-  public static final String JACOCO_OVERALL = "jacoco-overall.exec";
-
   private final JacocoConfiguration configuration;
   private final ResourcePerspectives perspectives;
   private final ModuleFileSystem fileSystem;
   private final PathResolver pathResolver;
   private final JavaResourceLocator javaResourceLocator;
-  private final JavaClasspath javaClasspath;
+  private final JacocoAnalysisCache analysisCache;
 
   public JaCoCoOverallSensor(JacocoConfiguration configuration, ResourcePerspectives perspectives, ModuleFileSystem fileSystem, PathResolver pathResolver,
-                             JavaResourceLocator javaResourceLocator, JavaClasspath javaClasspath) {
+                             JavaResourceLocator javaResourceLocator, JacocoAnalysisCache analysisCache) {
     this.configuration = configuration;
     this.perspectives = perspectives;
     this.fileSystem = fileSystem;
     this.pathResolver = pathResolver;
     this.javaResourceLocator = javaResourceLocator;
-    this.javaClasspath = javaClasspath;
+    this.analysisCache = analysisCache;
   }
 
   @Override
@@ -81,67 +68,19 @@ public class JaCoCoOverallSensor implements Sensor {
 
   @Override
   public void analyse(Project project, SensorContext context) {
-    File reportUTs = pathResolver.relativeFile(fileSystem.baseDir(), configuration.getReportPath());
-    File reportITs = pathResolver.relativeFile(fileSystem.baseDir(), configuration.getItReportPath());
-
-    File reportOverall = new File(fileSystem.workingDir(), JACOCO_OVERALL);
-    reportOverall.getParentFile().mkdirs();
-
-    mergeReports(reportOverall, reportUTs, reportITs);
-
-    new OverallAnalyzer(reportOverall, perspectives).analyse(project, context);
-  }
-
-  private void mergeReports(File reportOverall, File... reports) {
-    SessionInfoStore infoStore = new SessionInfoStore();
-    ExecutionDataStore dataStore = new ExecutionDataStore();
-
-    loadSourceFiles(infoStore, dataStore, reports);
-
-    BufferedOutputStream outputStream = null;
-    try {
-      outputStream = new BufferedOutputStream(new FileOutputStream(reportOverall));
-      ExecutionDataWriter dataWriter = new ExecutionDataWriter(outputStream);
-
-      infoStore.accept(dataWriter);
-      dataStore.accept(dataWriter);
-    } catch (IOException e) {
-      throw new SonarException(String.format("Unable to write overall coverage report %s", reportOverall.getAbsolutePath()), e);
-    } finally {
-      Closeables.closeQuietly(outputStream);
-    }
-  }
-
-  private void loadSourceFiles(SessionInfoStore infoStore, ExecutionDataStore dataStore, File... reports) {
-    for (File report : reports) {
-      if(report.isFile()) {
-        InputStream resourceStream = null;
-        try {
-          resourceStream = new BufferedInputStream(new FileInputStream(report));
-          ExecutionDataReader reader = new ExecutionDataReader(resourceStream);
-          reader.setSessionInfoVisitor(infoStore);
-          reader.setExecutionDataVisitor(dataStore);
-          reader.read();
-        } catch (IOException e) {
-          throw new SonarException(String.format("Unable to read %s", report.getAbsolutePath()), e);
-        } finally {
-          Closeables.closeQuietly(resourceStream);
-        }
-      }
-    }
+    new OverallAnalyzer(perspectives).analyse(project, context);
   }
 
   class OverallAnalyzer extends AbstractAnalyzer {
-    private final File report;
 
-    OverallAnalyzer(File report, ResourcePerspectives perspectives) {
-      super(perspectives, fileSystem, pathResolver, javaResourceLocator, javaClasspath, false);
-      this.report = report;
+    OverallAnalyzer(ResourcePerspectives perspectives) {
+      super(perspectives, javaResourceLocator, analysisCache, false);
     }
 
     @Override
-    protected String getReportPath(Project project) {
-      return report.getAbsolutePath();
+    protected List<File> getReports(Project project) {
+      // execution data of unit and integration tests are merged in memory
+      return Arrays.asList(analysisCache.reportFile(configuration.getReportPath()), analysisCache.reportFile(configuration.getItReportPath()));
     }
 
     @Override
@@ -0,0 +1,232 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.objectweb.asm.ClassReader;
+import org.sonar.api.BatchExtension;
+import org.sonar.api.scan.filesystem.ModuleFileSystem;
+import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.java.CompiledClassIndex;
+import org.sonar.java.JavaClasspath;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * State shared by the JaCoCo sensors of a module: class files and merged execution data of reports are read once, execution data of unit
+ * and integration tests are merged in memory for overall coverage, and the class files are analysed in a single pass
+ * for all the coverages the sensors are going to ask for.
+ */
+public class JacocoAnalysisCache implements BatchExtension {
+
+  private final JacocoConfiguration configuration;
+  private final ModuleFileSystem fileSystem;
+  private final PathResolver pathResolver;
+  private final JavaClasspath javaClasspath;
+
+  private Map<String, File> classFiles;
+  private final Map<File, ReportExecutionData> executionDataByReport = Maps.newHashMap();
+  private final Map<List<File>, CoverageBuilder> coverageByReports = Maps.newHashMap();
+  private ProbeLineIndex probeLineIndex;
+
+  public JacocoAnalysisCache(JacocoConfiguration configuration, ModuleFileSystem fileSystem, PathResolver pathResolver, JavaClasspath javaClasspath) {
+    this.configuration = configuration;
+    this.fileSystem = fileSystem;
+    this.pathResolver = pathResolver;
+    this.javaClasspath = javaClasspath;
+  }
+
+  File reportFile(@Nullable String path) {
+    return pathResolver.relativeFile(fileSystem.baseDir(), path);
+  }
+
+  /**
+   * @return class files of the module, by VM name of the class
+   */
+  Map<String, File> classFiles() {
+    if (classFiles == null) {
+      classFiles = Maps.newHashMap();
+      for (CompiledClassIndex.CompiledClass compiledClass : javaClasspath.getCompiledClassIndex().classes()) {
+        classFiles.put(compiledClass.getName(), compiledClass.getFile());
+      }
+    }
+    return classFiles;
+  }
+
+  ProbeLineIndex probeLineIndex() {
+    if (probeLineIndex == null) {
+      probeLineIndex = new ProbeLineIndex(classFiles());
+    }
+    return probeLineIndex;
+  }
+
+  /**
+   * @return merged execution data of the report, empty if the report does not exist
+   */
+  ExecutionDataStore executionData(@Nullable File report) throws IOException {
+    return executionData(report, null);
+  }
+
+  /**
+   * Reads the report, handing the execution data of each of its sessions over to the listener if any. Sessions are not
+   * kept in memory, except the ones split in non-consecutive blocks. Those are found, along with the merged execution
+   * data, by the first read of the report, which is the only one when no listener is given.
+   *
+   * @return merged execution data of the report, empty if the report does not exist
+   */
+  ExecutionDataStore executionData(@Nullable File report, @Nullable ExecutionDataVisitor.SessionListener sessionListener) throws IOException {
+    ReportExecutionData reportExecutionData = executionDataByReport.get(report);
+    if (reportExecutionData == null) {
+      ExecutionDataVisitor executionDataVisitor = ExecutionDataVisitor.mergeOnly();
+      if (isFile(report)) {
+        read(report, executionDataVisitor, executionDataVisitor);
+      }
+      reportExecutionData = new ReportExecutionData(executionDataVisitor.getMerged(), executionDataVisitor.getSessionIdsInSeveralBlocks());
+      executionDataByReport.put(report, reportExecutionData);
+    }
+    if (sessionListener != null && isFile(report)) {
+      ExecutionDataVisitor executionDataVisitor = new ExecutionDataVisitor(sessionListener, reportExecutionData.sessionIdsInSeveralBlocks);
+      read(report, executionDataVisitor, executionDataVisitor);
+      executionDataVisitor.visitEnd();
+    }
+    return reportExecutionData.merged;
+  }
+
+  private static void read(File report, ISessionInfoVisitor sessionInfoVisitor, IExecutionDataVisitor executionDataVisitor) throws IOException {
+    InputStream inputStream = null;
+    try {
+      inputStream = new BufferedInputStream(new FileInputStream(report));
+      ExecutionDataReader reader = new ExecutionDataReader(inputStream);
+      reader.setSessionInfoVisitor(sessionInfoVisitor);
+      reader.setExecutionDataVisitor(executionDataVisitor);
+      reader.read();
+    } finally {
+      Closeables.closeQuietly(inputStream);
+    }
+  }
+
+  private ExecutionDataStore mergedExecutionData(List<File> reports) throws IOException {
+    if (reports.size() == 1) {
+      return executionData(reports.get(0));
+    }
+    ExecutionDataStore merged = new ExecutionDataStore();
+    for (File report : reports) {
+      for (ExecutionData data : executionData(report).getContents()) {
+        // the store merges probes into the instance it holds, which must not be the one of the report
+        merged.put(new ExecutionData(data.getId(), data.getName(), data.getProbes().clone()));
+      }
+    }
+    return merged;
+  }
+
+  /**
+   * Coverage of the classes of the module by the merged execution data of the reports.
+   * All the coverages which are expected to be asked for by the sensors are computed along with the first one.
+   */
+  CoverageBuilder coverage(List<File> reports) throws IOException {
+    CoverageBuilder coverageBuilder = coverageByReports.remove(reports);
+    if (coverageBuilder == null) {
+      analyseClasses(reports);
+      coverageBuilder = coverageByReports.remove(reports);
+    }
+    return coverageBuilder;
+  }
+
+  private void analyseClasses(List<File> requestedReports) throws IOException {
+    Set<List<File>> reportsToAnalyse = Sets.newLinkedHashSet();
+    reportsToAnalyse.add(requestedReports);
+    File unitTestsReport = reportFile(configuration.getReportPath());
+    File itReport = reportFile(configuration.getItReportPath());
+    boolean unitTestsReportFound = isFile(unitTestsReport);
+    boolean itReportFound = isFile(itReport);
+    if (unitTestsReportFound) {
+      reportsToAnalyse.add(Arrays.asList(unitTestsReport));
+    }
+    if (itReportFound) {
+      reportsToAnalyse.add(Arrays.asList(itReport));
+    }
+    if (unitTestsReportFound || itReportFound) {
+      reportsToAnalyse.add(Arrays.asList(unitTestsReport, itReport));
+    }
+
+    List<Analyzer> analyzers = Lists.newArrayList();
+    for (List<File> reports : reportsToAnalyse) {
+      if (!coverageByReports.containsKey(reports)) {
+        CoverageBuilder coverageBuilder = new CoverageBuilder();
+        analyzers.add(new Analyzer(mergedExecutionData(reports), coverageBuilder));
+        coverageByReports.put(reports, coverageBuilder);
+      }
+    }
+    for (File classFile : classFiles().values()) {
+      analyzeClassFile(analyzers, classFile);
+    }
+  }
+
+  private static boolean isFile(@Nullable File file) {
+    return file != null && file.isFile();
+  }
+
+  /**
+   * Caller must guarantee that {@code classFile} is actually class file.
+   */
+  private static void analyzeClassFile(Collection<Analyzer> analyzers, File classFile) {
+    try {
+      ClassReader classReader = new ClassReader(Files.toByteArray(classFile));
+      for (Analyzer analyzer : analyzers) {
+        analyzer.analyzeClass(classReader);
+      }
+    } catch (IOException e) {
+      // (Godin): in fact JaCoCo includes name into exception
+      JaCoCoExtensions.LOG.warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
+    }
+  }
+
+  private static class ReportExecutionData {
+    private final ExecutionDataStore merged;
+    private final Set<String> sessionIdsInSeveralBlocks;
+
+    ReportExecutionData(ExecutionDataStore merged, Set<String> sessionIdsInSeveralBlocks) {
+      this.merged = merged;
+      this.sessionIdsInSeveralBlocks = sessionIdsInSeveralBlocks;
+    }
+  }
+
+}
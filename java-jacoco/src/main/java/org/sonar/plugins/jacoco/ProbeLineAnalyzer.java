@@ -0,0 +1,350 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the source lines covered by each probe of a class in a single pass over its bytecode, with the control flow
+ * analysis of JaCoCo's {@link org.jacoco.core.analysis.Analyzer}: a hit probe covers the instruction it follows and,
+ * through their predecessors, all the instructions executed before this one.
+ */
+class ProbeLineAnalyzer extends ClassProbesVisitor {
+
+  private static final int UNKNOWN_LINE = -1;
+
+  private final List<Instruction> probeInstructions = Lists.newArrayList();
+  private String packageName = "";
+  private String sourceFileName;
+  private int probeCount;
+
+  private ProbeLineAnalyzer() {
+  }
+
+  /**
+   * @return the lines covered by each probe of the class, by probe id, or null if the class has no source file
+   */
+  static ProbeLines analyze(byte[] classBytes) {
+    ProbeLineAnalyzer analyzer = new ProbeLineAnalyzer();
+    new ClassReader(classBytes).accept(new ClassProbesAdapter(analyzer, false), 0);
+    return analyzer.probeLines();
+  }
+
+  private ProbeLines probeLines() {
+    if (sourceFileName == null) {
+      return null;
+    }
+    int[][] linesByProbe = new int[probeCount][];
+    for (int probeId = 0; probeId < probeCount; probeId++) {
+      Instruction instruction = probeId < probeInstructions.size() ? probeInstructions.get(probeId) : null;
+      BitSet lines = new BitSet();
+      // predecessors loop back in loops: the walk stops at the first instruction already met for this probe
+      while (instruction != null && instruction.walkedProbe != probeId) {
+        instruction.walkedProbe = probeId;
+        if (instruction.line != UNKNOWN_LINE) {
+          lines.set(instruction.line);
+        }
+        instruction = instruction.predecessor;
+      }
+      linesByProbe[probeId] = toArray(lines);
+    }
+    return new ProbeLines(ProbeLineIndex.fullyQualifiedClassName(packageName, sourceFileName), linesByProbe);
+  }
+
+  private static int[] toArray(BitSet lines) {
+    int[] result = new int[lines.cardinality()];
+    int i = 0;
+    for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+      result[i] = line;
+      i++;
+    }
+    return result;
+  }
+
+  @Override
+  public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+    int lastSlash = name.lastIndexOf('/');
+    packageName = lastSlash == -1 ? "" : name.substring(0, lastSlash);
+  }
+
+  @Override
+  public void visitSource(String source, String debug) {
+    sourceFileName = source;
+  }
+
+  @Override
+  public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+    // same as JaCoCo's analysis, which ignores synthetic methods
+    if ((access & Opcodes.ACC_SYNTHETIC) != 0) {
+      return null;
+    }
+    return new MethodAnalyzer();
+  }
+
+  @Override
+  public void visitTotalProbeCount(int count) {
+    probeCount = count;
+  }
+
+  private void setProbeInstruction(int probeId, Instruction instruction) {
+    while (probeInstructions.size() <= probeId) {
+      probeInstructions.add(null);
+    }
+    probeInstructions.set(probeId, instruction);
+  }
+
+  static class ProbeLines {
+    private final String sourceClassName;
+    private final int[][] linesByProbe;
+
+    ProbeLines(String sourceClassName, int[][] linesByProbe) {
+      this.sourceClassName = sourceClassName;
+      this.linesByProbe = linesByProbe;
+    }
+
+    /**
+     * @return fully qualified name of the class of the source file (i.e. top level class)
+     */
+    String getSourceClassName() {
+      return sourceClassName;
+    }
+
+    int getProbeCount() {
+      return linesByProbe.length;
+    }
+
+    /**
+     * @return covered lines, in ascending order
+     */
+    int[] getLines(int probeId) {
+      return linesByProbe[probeId];
+    }
+  }
+
+  private static class Instruction {
+    private final int line;
+    private Instruction predecessor;
+    private int walkedProbe = -1;
+
+    Instruction(int line) {
+      this.line = line;
+    }
+  }
+
+  /**
+   * Same wiring of instructions as JaCoCo's method analysis: an instruction follows the previous one unless a label which
+   * is not a successor separates them, and the target of a jump without probe follows the jump.
+   */
+  private class MethodAnalyzer extends MethodProbesVisitor {
+
+    private final List<Label> currentLabels = Lists.newArrayList();
+    private final Map<Label, Instruction> instructionsByLabel = Maps.newIdentityHashMap();
+    private final List<Label> jumpTargets = Lists.newArrayList();
+    private final List<Instruction> jumpSources = Lists.newArrayList();
+    private int currentLine = UNKNOWN_LINE;
+    private Instruction lastInstruction;
+
+    @Override
+    public void visitLabel(Label label) {
+      currentLabels.add(label);
+      if (!LabelInfo.isSuccessor(label)) {
+        lastInstruction = null;
+      }
+    }
+
+    @Override
+    public void visitLineNumber(int line, Label start) {
+      currentLine = line;
+    }
+
+    private void visitInstruction() {
+      Instruction instruction = new Instruction(currentLine);
+      instruction.predecessor = lastInstruction;
+      for (Label label : currentLabels) {
+        instructionsByLabel.put(label, instruction);
+      }
+      currentLabels.clear();
+      lastInstruction = instruction;
+    }
+
+    private void addJump(Label target) {
+      jumpSources.add(lastInstruction);
+      jumpTargets.add(target);
+    }
+
+    private void addProbe(int probeId) {
+      setProbeInstruction(probeId, lastInstruction);
+    }
+
+    @Override
+    public void visitInsn(int opcode) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitIntInsn(int opcode, int operand) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitVarInsn(int opcode, int var) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitTypeInsn(int opcode, String type) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitJumpInsn(int opcode, Label label) {
+      visitInstruction();
+      addJump(label);
+    }
+
+    @Override
+    public void visitLdcInsn(Object cst) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitIincInsn(int var, int increment) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+      visitSwitchInsn(dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+      visitSwitchInsn(dflt, labels);
+    }
+
+    private void visitSwitchInsn(Label dflt, Label[] labels) {
+      visitInstruction();
+      LabelInfo.resetDone(labels);
+      addJump(dflt);
+      LabelInfo.setDone(dflt);
+      for (Label label : labels) {
+        if (!LabelInfo.isDone(label)) {
+          addJump(label);
+          LabelInfo.setDone(label);
+        }
+      }
+    }
+
+    @Override
+    public void visitMultiANewArrayInsn(String desc, int dims) {
+      visitInstruction();
+    }
+
+    @Override
+    public void visitProbe(int probeId) {
+      addProbe(probeId);
+      lastInstruction = null;
+    }
+
+    @Override
+    public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+      visitInstruction();
+      addProbe(probeId);
+    }
+
+    @Override
+    public void visitInsnWithProbe(int opcode, int probeId) {
+      visitInstruction();
+      addProbe(probeId);
+    }
+
+    @Override
+    public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+      visitSwitchInsnWithProbes(dflt, labels);
+    }
+
+    @Override
+    public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+      visitSwitchInsnWithProbes(dflt, labels);
+    }
+
+    private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+      visitInstruction();
+      LabelInfo.resetDone(dflt);
+      LabelInfo.resetDone(labels);
+      visitSwitchTarget(dflt);
+      for (Label label : labels) {
+        visitSwitchTarget(label);
+      }
+    }
+
+    private void visitSwitchTarget(Label label) {
+      if (!LabelInfo.isDone(label)) {
+        int probeId = LabelInfo.getProbeId(label);
+        if (probeId == LabelInfo.NO_PROBE) {
+          addJump(label);
+        } else {
+          addProbe(probeId);
+        }
+        LabelInfo.setDone(label);
+      }
+    }
+
+    @Override
+    public void visitEnd() {
+      for (int i = 0; i < jumpTargets.size(); i++) {
+        Instruction target = instructionsByLabel.get(jumpTargets.get(i));
+        if (target != null) {
+          target.predecessor = jumpSources.get(i);
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.apache.commons.lang.StringUtils;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps the probes of analysed classes to the source lines they cover, so that the lines covered by an execution data store
+ * are the union of the lines of its hit probes.
+ * <p>
+ * A class file is read and analysed once, the first time one of its probes is hit, into a table of the lines covered by
+ * each of its probes, see {@link ProbeLineAnalyzer}, whereas analysing each execution data store with JaCoCo re-reads and
+ * re-analyses every class it covers.
+ * <p>
+ * Covered lines of several execution data stores can be computed concurrently: a class may then be analysed more than
+ * once, but always to the same result.
+ */
+class ProbeLineIndex {
+
+  private static final ProbeLineAnalyzer.ProbeLines MISSING_CLASS = new ProbeLineAnalyzer.ProbeLines("", new int[0][]);
+
+  private final Map<String, File> classFiles;
+  private final ConcurrentMap<Long, ProbeLineAnalyzer.ProbeLines> classesById = Maps.newConcurrentMap();
+
+  ProbeLineIndex(Map<String, File> classFiles) {
+    this.classFiles = classFiles;
+  }
+
+  /**
+   * @return covered lines, by fully qualified name of the class of the source file (i.e. top level class)
+   */
+  Map<String, BitSet> coveredLines(ExecutionDataStore executionDataStore) {
+    Map<String, BitSet> coveredLines = Maps.newHashMap();
+    for (ExecutionData data : executionDataStore.getContents()) {
+      ProbeLineAnalyzer.ProbeLines probeLines = probeLines(data.getId(), data.getName());
+      boolean[] probes = data.getProbes();
+      for (int probeId = 0; probeId < probes.length; probeId++) {
+        if (probes[probeId]) {
+          addLines(probeLines, probeId, coveredLines);
+        }
+      }
+    }
+    return coveredLines;
+  }
+
+  /**
+   * @return covered lines of the hit probes of a test read from the compact format, by fully qualified name of the
+   * class of the source file
+   */
+  Map<String, BitSet> coveredLines(List<CompactCoverageReader.ClassHits> classHits) {
+    Map<String, BitSet> coveredLines = Maps.newHashMap();
+    for (CompactCoverageReader.ClassHits hits : classHits) {
+      ProbeLineAnalyzer.ProbeLines probeLines = probeLines(hits.getId(), hits.getName());
+      for (int probeId : hits.getProbes()) {
+        addLines(probeLines, probeId, coveredLines);
+      }
+    }
+    return coveredLines;
+  }
+
+  private static void addLines(ProbeLineAnalyzer.ProbeLines probeLines, int probeId, Map<String, BitSet> coveredLines) {
+    if (probeId >= probeLines.getProbeCount()) {
+      return;
+    }
+    int[] lines = probeLines.getLines(probeId);
+    if (lines.length > 0) {
+      BitSet sourceLines = coveredLines.get(probeLines.getSourceClassName());
+      if (sourceLines == null) {
+        sourceLines = new BitSet();
+        coveredLines.put(probeLines.getSourceClassName(), sourceLines);
+      }
+      for (int line : lines) {
+        sourceLines.set(line);
+      }
+    }
+  }
+
+  private ProbeLineAnalyzer.ProbeLines probeLines(long id, String name) {
+    ProbeLineAnalyzer.ProbeLines probeLines = classesById.get(id);
+    if (probeLines == null) {
+      File classFile = classFiles.get(name);
+      probeLines = classFile == null ? null : readClass(id, classFile);
+      ProbeLineAnalyzer.ProbeLines previous = classesById.putIfAbsent(id, probeLines == null ? MISSING_CLASS : probeLines);
+      if (previous != null) {
+        probeLines = previous;
+      }
+    }
+    return probeLines == null ? MISSING_CLASS : probeLines;
+  }
+
+  /**
+   * @return null if the class file can not be read, has no source file, or is not the one the execution data was
+   * recorded with
+   */
+  private static ProbeLineAnalyzer.ProbeLines readClass(long id, File classFile) {
+    byte[] classBytes;
+    try {
+      classBytes = Files.toByteArray(classFile);
+    } catch (IOException e) {
+      JaCoCoExtensions.LOG.warn("Exception during analysis of file " + classFile.getAbsolutePath(), e);
+      return null;
+    }
+    if (CRC64.checksum(classBytes) != id) {
+      return null;
+    }
+    return ProbeLineAnalyzer.analyze(classBytes);
+  }
+
+  static String fullyQualifiedClassName(String packageName, String simpleClassName) {
+    return ("".equals(packageName) ? "" : packageName + "/") + StringUtils.substringBeforeLast(simpleClassName, ".");
+  }
+
+}
@@ -0,0 +1,103 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompactCoverageReaderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_read_hit_probes_of_each_test() throws Exception {
+    File file = temp.newFile();
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+    writeHeader(out);
+    // class dictionary
+    out.writeByte(0x01);
+    out.writeLong(7L);
+    out.writeUTF("org/example/Foo");
+    // test covering probes 3 and 200 of Foo
+    out.writeByte(0x02);
+    out.writeUTF("org.example.FooTest test");
+    out.write(new byte[] {1, 0, 2, 3, (byte) 0xC5, 0x01});
+    // second batch, class indexes start again
+    writeHeader(out);
+    out.writeByte(0x01);
+    out.writeLong(8L);
+    out.writeUTF("org/example/Bar");
+    out.writeByte(0x02);
+    out.writeUTF("org.example.BarTest test");
+    out.write(new byte[] {1, 0, 1, 0});
+    out.close();
+
+    final List<String> tests = Lists.newArrayList();
+    final List<CompactCoverageReader.ClassHits> hits = Lists.newArrayList();
+    CompactCoverageReader.read(file, new CompactCoverageReader.TestListener() {
+      @Override
+      public void onTest(String sessionId, List<CompactCoverageReader.ClassHits> classHits) {
+        tests.add(sessionId);
+        hits.addAll(classHits);
+      }
+    });
+
+    assertThat(tests).containsExactly("org.example.FooTest test", "org.example.BarTest test");
+    assertThat(hits).hasSize(2);
+    assertThat(hits.get(0).getId()).isEqualTo(7L);
+    assertThat(hits.get(0).getName()).isEqualTo("org/example/Foo");
+    assertThat(hits.get(0).getProbes()).isEqualTo(new int[] {3, 200});
+    assertThat(hits.get(1).getId()).isEqualTo(8L);
+    assertThat(hits.get(1).getProbes()).isEqualTo(new int[] {0});
+  }
+
+  @Test(expected = IOException.class)
+  public void should_fail_on_unknown_format() throws Exception {
+    File file = temp.newFile();
+    DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+    out.writeByte(0x00);
+    out.writeInt(42);
+    out.close();
+    CompactCoverageReader.read(file, null);
+  }
+
+  @Test
+  public void sidecar_file() {
+    assertThat(CompactCoverageReader.sidecarFile(new File("target/jacoco.exec")).getPath()).isEqualTo(new File("target/jacoco.exec.tests").getPath());
+  }
+
+  private static void writeHeader(DataOutputStream out) throws IOException {
+    out.writeByte(0x00);
+    out.writeInt(0x534A5443);
+    out.writeByte(2);
+  }
+
+}
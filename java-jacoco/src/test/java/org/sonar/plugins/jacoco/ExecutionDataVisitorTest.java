@@ -19,10 +19,17 @@
  */
 package org.sonar.plugins.jacoco;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.data.SessionInfo;
 import org.junit.Test;
 
+import java.util.List;
+import java.util.Map;
+
 import static org.fest.assertions.Assertions.assertThat;
 
 public class ExecutionDataVisitorTest {
@@ -46,6 +53,92 @@ public class ExecutionDataVisitorTest {
     assertThat(visitor.getSessions().get("bar").getContents()).hasSize(1);
     assertThat(visitor.getSessions().get("bar").get(1).getProbes()).isEqualTo(new boolean[] {false, true, false});
     assertThat(visitor.getMerged().get(1).getProbes()).isEqualTo(new boolean[] {true, true, true});
+    assertThat(visitor.getSessionIdsInSeveralBlocks()).containsOnly("foo");
+  }
+
+  @Test
+  public void merge_only_mode_should_keep_merged_execution_data_and_sessions_in_several_blocks() {
+    ExecutionDataVisitor visitor = ExecutionDataVisitor.mergeOnly();
+
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {true, false, false}));
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(2, "", new boolean[] {true}));
+
+    visitor.visitSessionInfo(new SessionInfo("bar", 2L, 2L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, true, false}));
+
+    visitor.visitSessionInfo(new SessionInfo("baz", 3L, 3L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, false, false}));
+
+    visitor.visitSessionInfo(new SessionInfo("bar", 4L, 4L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, false, true}));
+
+    assertThat(visitor.getSessions()).isEmpty();
+    assertThat(visitor.getSessionIdsInSeveralBlocks()).containsOnly("bar");
+    assertThat(visitor.getMerged().get(1).getProbes()).isEqualTo(new boolean[] {true, true, true});
+    assertThat(visitor.getMerged().get(2).getProbes()).isEqualTo(new boolean[] {true});
+  }
+
+  @Test
+  public void streaming_mode_should_hand_sessions_over_as_soon_as_read() {
+    final Map<String, boolean[]> probesBySession = Maps.newLinkedHashMap();
+    ExecutionDataVisitor visitor = new ExecutionDataVisitor(new ExecutionDataVisitor.SessionListener() {
+      @Override
+      public void onSession(String sessionId, ExecutionDataStore executionDataStore) {
+        probesBySession.put(sessionId, executionDataStore.get(1).getProbes());
+      }
+    });
+
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {true, false, false}));
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, false, true}));
+    assertThat(probesBySession).isEmpty();
+
+    visitor.visitSessionInfo(new SessionInfo("bar", 2L, 2L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, true, false}));
+    assertThat(probesBySession.keySet()).containsOnly("foo");
+    assertThat(probesBySession.get("foo")).isEqualTo(new boolean[] {true, false, true});
+
+    visitor.visitEnd();
+    assertThat(probesBySession.keySet()).containsOnly("foo", "bar");
+    assertThat(probesBySession.get("bar")).isEqualTo(new boolean[] {false, true, false});
+    assertThat(visitor.getSessions()).isEmpty();
+    assertThat(visitor.getMerged().getContents()).isEmpty();
+  }
+
+  @Test
+  public void streaming_mode_should_merge_non_consecutive_blocks_of_a_session() {
+    final List<String> sessionIds = Lists.newArrayList();
+    final Map<String, boolean[]> probesBySession = Maps.newHashMap();
+    ExecutionDataVisitor visitor = new ExecutionDataVisitor(new ExecutionDataVisitor.SessionListener() {
+      @Override
+      public void onSession(String sessionId, ExecutionDataStore executionDataStore) {
+        sessionIds.add(sessionId);
+        probesBySession.put(sessionId, executionDataStore.get(1).getProbes());
+      }
+    }, ImmutableSet.of("foo"));
+
+    visitor.visitSessionInfo(new SessionInfo("foo", 1L, 1L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {true, false, false}));
+    visitor.visitSessionInfo(new SessionInfo("bar", 2L, 2L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, true, false}));
+    visitor.visitSessionInfo(new SessionInfo("baz", 3L, 3L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, true, true}));
+    assertThat(sessionIds).containsExactly("bar");
+
+    visitor.visitSessionInfo(new SessionInfo("foo", 4L, 4L));
+    visitor.visitClassExecution(new ExecutionData(1, "", new boolean[] {false, false, true}));
+    assertThat(sessionIds).containsExactly("bar", "baz");
+
+    visitor.visitEnd();
+    assertThat(sessionIds).containsExactly("bar", "baz", "foo");
+    assertThat(probesBySession.get("foo")).isEqualTo(new boolean[] {true, false, true});
+    assertThat(probesBySession.get("bar")).isEqualTo(new boolean[] {false, true, false});
+    assertThat(probesBySession.get("baz")).isEqualTo(new boolean[] {false, true, true});
+    assertThat(visitor.getSessions()).isEmpty();
+    assertThat(visitor.getMerged().getContents()).isEmpty();
   }
 
 }
@@ -31,6 +31,7 @@ import org.sonar.api.resources.Resource;
 import org.sonar.api.scan.filesystem.ModuleFileSystem;
 import org.sonar.api.scan.filesystem.PathResolver;
 import org.sonar.api.test.IsMeasure;
+import org.sonar.java.CompiledClassIndex;
 import org.sonar.java.JavaClasspath;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 import org.sonar.test.TestUtils;
@@ -69,7 +70,8 @@ public class JaCoCoOverallSensorTest {
     pathResolver = mock(PathResolver.class);
     project = mock(Project.class);
     perspectives = mock(ResourcePerspectives.class);
-    sensor = new JaCoCoOverallSensor(configuration, perspectives, fileSystem, pathResolver, javaResourceLocator, javaClasspath);
+    sensor = new JaCoCoOverallSensor(configuration, perspectives, fileSystem, pathResolver, javaResourceLocator,
+      new JacocoAnalysisCache(configuration, fileSystem, pathResolver, javaClasspath));
   }
 
   @Test
@@ -167,10 +169,9 @@ public class JaCoCoOverallSensorTest {
     when(configuration.getReportPath()).thenReturn(utReport);
     when(configuration.getItReportPath()).thenReturn(itReport);
     when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(outputDir)));
     when(pathResolver.relativeFile(any(File.class), eq(utReport))).thenReturn(new File(outputDir, utReport));
     when(pathResolver.relativeFile(any(File.class), eq(itReport))).thenReturn(new File(outputDir, itReport));
-    when(pathResolver.relativeFile(any(File.class), eq(new File("target/sonar/jacoco-overall.exec").getAbsolutePath()))).thenReturn(new File("target/sonar/jacoco-overall.exec"));
-    when(fileSystem.workingDir()).thenReturn(new File("target/sonar"));
 
     sensor.analyse(project, context);
     return resource;
@@ -20,9 +20,21 @@
 package org.sonar.plugins.jacoco;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.data.SessionInfoStore;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.measures.CoreMetrics;
@@ -35,18 +47,27 @@ import org.sonar.api.test.IsMeasure;
 import org.sonar.api.test.MutableTestCase;
 import org.sonar.api.test.MutableTestPlan;
 import org.sonar.api.test.MutableTestable;
+import org.sonar.java.CompiledClassIndex;
 import org.sonar.java.JavaClasspath;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 import org.sonar.test.TestUtils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -56,6 +77,9 @@ import static org.mockito.Mockito.when;
 
 public class JaCoCoSensorTest {
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private File jacocoExecutionData;
   private File outputDir;
   private JacocoConfiguration configuration;
@@ -82,7 +106,8 @@ public class JaCoCoSensorTest {
     configuration = mock(JacocoConfiguration.class);
     perspectives = mock(ResourcePerspectives.class);
     javaClasspath = mock(JavaClasspath.class);
-    sensor = new JaCoCoSensor(configuration, perspectives, fileSystem, pathResolver, javaResourceLocator, javaClasspath);
+    sensor = new JaCoCoSensor(configuration, perspectives, fileSystem, pathResolver, javaResourceLocator,
+      new JacocoAnalysisCache(configuration, fileSystem, pathResolver, javaClasspath));
   }
 
   @Test
@@ -115,6 +140,8 @@ public class JaCoCoSensorTest {
     when(context.getResource(any(Resource.class))).thenReturn(resource);
 
     when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(outputDir)));
     when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(jacocoExecutionData);
 
     sensor.analyse(project, context);
@@ -140,6 +167,7 @@ public class JaCoCoSensorTest {
     org.sonar.api.resources.File resource = mock(org.sonar.api.resources.File.class);
     when(context.getResource(any(Resource.class))).thenReturn(resource);
     when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(outputDir)));
     when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(jacocoExecutionData);
 
     MutableTestable testAbleFile = mock(MutableTestable.class);
@@ -157,10 +185,132 @@ public class JaCoCoSensorTest {
     verify(testCase).setCoverageBlock(testAbleFile, newArrayList(3, 6));
   }
 
+  @Test
+  public void coverage_per_test_should_be_saved_in_the_order_of_the_sessions() throws IOException {
+    outputDir = TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/");
+    Files.copy(TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/org/example/App.class.toCopy"),
+        new File(outputDir, "/org/example/App.class"));
+    // enough sessions for the oldest ones to be saved while the next ones are read
+    int maxPendingSessions = Runtime.getRuntime().availableProcessors() * AbstractAnalyzer.MAX_PENDING_SESSIONS_PER_WORKER;
+    int sessions = 2 * maxPendingSessions + 3;
+    List<String> sessionIds = Lists.newArrayList();
+    for (int i = 0; i < sessions; i++) {
+      sessionIds.add("org.example.AppTest test" + i);
+    }
+    File executionData = temp.newFile("jacoco.exec");
+    writeSessions(new File(outputDir, "jacoco.exec"), executionData, sessionIds);
+
+    org.sonar.api.resources.File resource = mock(org.sonar.api.resources.File.class);
+    when(context.getResource(any(Resource.class))).thenReturn(resource);
+    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(outputDir)));
+    when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(executionData);
+    // the test class is looked up once per session, when the session is read
+    final AtomicInteger readSessions = new AtomicInteger();
+    when(javaResourceLocator.findResourceByClassName("org.example.AppTest")).thenAnswer(new Answer<Resource>() {
+      @Override
+      public Resource answer(InvocationOnMock invocation) {
+        readSessions.incrementAndGet();
+        return null;
+      }
+    });
+
+    MutableTestable testAbleFile = mock(MutableTestable.class);
+    when(perspectives.as(eq(MutableTestable.class), any(org.sonar.api.resources.File.class))).thenReturn(testAbleFile);
+    MutableTestPlan testPlan = mock(MutableTestPlan.class);
+    when(perspectives.as(eq(MutableTestPlan.class), any(Resource.class))).thenReturn(testPlan);
+    final List<Integer> readSessionsWhenSaved = Lists.newArrayList();
+    List<MutableTestCase> testCases = Lists.newArrayList();
+    for (int i = 0; i < sessions; i++) {
+      MutableTestCase testCase = mock(MutableTestCase.class);
+      doAnswer(new Answer<Void>() {
+        @Override
+        public Void answer(InvocationOnMock invocation) {
+          readSessionsWhenSaved.add(readSessions.get());
+          return null;
+        }
+      }).when(testCase).setCoverageBlock(any(MutableTestable.class), any(List.class));
+      when(testPlan.testCasesByName("test" + i)).thenReturn(newArrayList(testCase));
+      testCases.add(testCase);
+    }
+
+    sensor.analyse(project, context);
+
+    InOrder inOrder = inOrder(testCases.toArray());
+    for (MutableTestCase testCase : testCases) {
+      inOrder.verify(testCase).setCoverageBlock(eq(testAbleFile), any(List.class));
+    }
+    assertThat(readSessions.get()).isEqualTo(sessions);
+    assertThat(readSessionsWhenSaved).hasSize(sessions);
+    // pending sessions are bounded
+    assertThat(readSessionsWhenSaved.get(0)).isEqualTo(maxPendingSessions + 1);
+    assertThat(readSessionsWhenSaved.get(sessions - maxPendingSessions - 1)).isEqualTo(sessions);
+  }
+
+  @Test
+  public void coverage_per_test_should_merge_non_consecutive_blocks_of_a_session() throws IOException {
+    outputDir = TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/");
+    Files.copy(TestUtils.getResource("/org/sonar/plugins/jacoco/JaCoCoSensorTest2/org/example/App.class.toCopy"),
+        new File(outputDir, "/org/example/App.class"));
+    File executionData = temp.newFile("jacoco.exec");
+    writeSessions(new File(outputDir, "jacoco.exec"), executionData,
+      ImmutableList.of("org.example.AppTest test0", "org.example.AppTest test1", "org.example.AppTest test0"));
+
+    org.sonar.api.resources.File resource = mock(org.sonar.api.resources.File.class);
+    when(context.getResource(any(Resource.class))).thenReturn(resource);
+    when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(outputDir)));
+    when(pathResolver.relativeFile(any(File.class), any(String.class))).thenReturn(executionData);
+
+    MutableTestable testAbleFile = mock(MutableTestable.class);
+    when(perspectives.as(eq(MutableTestable.class), any(org.sonar.api.resources.File.class))).thenReturn(testAbleFile);
+    MutableTestPlan testPlan = mock(MutableTestPlan.class);
+    when(perspectives.as(eq(MutableTestPlan.class), any(Resource.class))).thenReturn(testPlan);
+    MutableTestCase firstTestCase = mock(MutableTestCase.class);
+    when(testPlan.testCasesByName("test0")).thenReturn(newArrayList(firstTestCase));
+    MutableTestCase secondTestCase = mock(MutableTestCase.class);
+    when(testPlan.testCasesByName("test1")).thenReturn(newArrayList(secondTestCase));
+
+    sensor.analyse(project, context);
+
+    // coverage of a test can be saved only once
+    verify(firstTestCase, times(1)).setCoverageBlock(eq(testAbleFile), any(List.class));
+    verify(secondTestCase, times(1)).setCoverageBlock(eq(testAbleFile), any(List.class));
+  }
+
+  /**
+   * Writes the given sessions, each of them with all the execution data of the source report.
+   */
+  private static void writeSessions(File sourceReport, File report, List<String> sessionIds) throws IOException {
+    ExecutionDataStore executionDataStore = new ExecutionDataStore();
+    InputStream in = new FileInputStream(sourceReport);
+    try {
+      ExecutionDataReader reader = new ExecutionDataReader(in);
+      reader.setSessionInfoVisitor(new SessionInfoStore());
+      reader.setExecutionDataVisitor(executionDataStore);
+      reader.read();
+    } finally {
+      in.close();
+    }
+    OutputStream out = new FileOutputStream(report);
+    try {
+      ExecutionDataWriter writer = new ExecutionDataWriter(out);
+      for (int i = 0; i < sessionIds.size(); i++) {
+        writer.visitSessionInfo(new SessionInfo(sessionIds.get(i), i, i));
+        for (ExecutionData data : executionDataStore.getContents()) {
+          writer.visitClassExecution(data);
+        }
+      }
+    } finally {
+      out.close();
+    }
+  }
+
   @Test
   public void do_not_save_measure_on_resource_which_doesnt_exist_in_the_context() {
     when(context.getResource(any(Resource.class))).thenReturn(null);
     when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(outputDir));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(outputDir)));
 
     sensor.analyse(project, context);
 
@@ -170,6 +320,7 @@ public class JaCoCoSensorTest {
   @Test
   public void should_do_nothing_if_output_dir_does_not_exists() {
     when(javaClasspath.getBinaryDirs()).thenReturn(ImmutableList.of(new File("nowhere")));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(ImmutableList.of(new File("nowhere"))));
 
     sensor.analyse(project, context);
 
@@ -0,0 +1,181 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.jacoco;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.ISourceFileCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ProbeLineIndexTest {
+
+  private static final String SAMPLE = "org/sonar/plugins/jacoco/ProbeLineIndexTest$Sample";
+
+  private File classFile;
+  private byte[] classBytes;
+  private long id;
+  private int probeCount;
+  private ProbeLineIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    classFile = new File(getClass().getResource("ProbeLineIndexTest$Sample.class").toURI());
+    classBytes = Files.toByteArray(classFile);
+    id = CRC64.checksum(classBytes);
+    probeCount = ProbeLineAnalyzer.analyze(classBytes).getProbeCount();
+    index = new ProbeLineIndex(ImmutableMap.of(SAMPLE, classFile));
+  }
+
+  @Test
+  public void lines_of_each_probe_should_be_the_ones_of_a_jacoco_analysis() throws Exception {
+    assertThat(probeCount).isGreaterThan(10);
+    for (int probeId = 0; probeId < probeCount; probeId++) {
+      boolean[] probes = new boolean[probeCount];
+      probes[probeId] = true;
+      assertThat(index.coveredLines(store(id, probes))).as("probe " + probeId).isEqualTo(analyzerLines(probes));
+    }
+  }
+
+  @Test
+  public void lines_of_several_probes_should_be_the_ones_of_a_jacoco_analysis() throws Exception {
+    Random random = new Random(1);
+    for (int i = 0; i < 20; i++) {
+      boolean[] probes = new boolean[probeCount];
+      for (int probeId = 0; probeId < probeCount; probeId++) {
+        probes[probeId] = random.nextBoolean();
+      }
+      assertThat(index.coveredLines(store(id, probes))).isEqualTo(analyzerLines(probes));
+    }
+  }
+
+  @Test
+  public void class_file_not_matching_execution_data_should_cover_nothing() {
+    boolean[] probes = new boolean[probeCount];
+    probes[0] = true;
+    assertThat(index.coveredLines(store(id + 1, probes))).isEmpty();
+    assertThat(new ProbeLineIndex(ImmutableMap.<String, File>of()).coveredLines(store(id, probes))).isEmpty();
+  }
+
+  private static ExecutionDataStore store(long id, boolean[] probes) {
+    ExecutionDataStore store = new ExecutionDataStore();
+    store.put(new ExecutionData(id, SAMPLE, probes));
+    return store;
+  }
+
+  private Map<String, BitSet> analyzerLines(boolean[] probes) throws Exception {
+    CoverageBuilder coverageBuilder = new CoverageBuilder();
+    new Analyzer(store(id, probes), coverageBuilder).analyzeClass(new ByteArrayInputStream(classBytes), SAMPLE);
+    Map<String, BitSet> coveredLines = Maps.newHashMap();
+    for (ISourceFileCoverage coverage : coverageBuilder.getSourceFiles()) {
+      BitSet lines = new BitSet();
+      for (int line = coverage.getFirstLine(); line <= coverage.getLastLine(); line++) {
+        int status = coverage.getLine(line).getInstructionCounter().getStatus();
+        if (status == ICounter.FULLY_COVERED || status == ICounter.PARTLY_COVERED) {
+          lines.set(line);
+        }
+      }
+      if (!lines.isEmpty()) {
+        coveredLines.put(ProbeLineIndex.fullyQualifiedClassName(coverage.getPackageName(), coverage.getName()), lines);
+      }
+    }
+    return coveredLines;
+  }
+
+  static class Sample {
+
+    private int count;
+
+    int loop(int[] values) {
+      int sum = 0;
+      for (int value : values) {
+        if (value > 0) {
+          sum += value;
+        } else {
+          count++;
+        }
+      }
+      return sum;
+    }
+
+    String tableSwitch(int value) {
+      switch (value) {
+        case 0:
+          return "zero";
+        case 1:
+        case 2:
+          return "small";
+        default:
+          break;
+      }
+      return value < 0 ? "negative" : "large";
+    }
+
+    int lookupSwitch(int value) {
+      switch (value) {
+        case 10:
+          count++;
+          break;
+        case 1000:
+          count--;
+          break;
+        default:
+          count = 0;
+      }
+      return count;
+    }
+
+    int tryCatch(String value) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException(value, e);
+      } finally {
+        count++;
+      }
+    }
+
+    void loopWithBreak(int limit) {
+      int i = 0;
+      while (true) {
+        if (i++ > limit) {
+          break;
+        }
+        count += i;
+      }
+    }
+  }
+
+}
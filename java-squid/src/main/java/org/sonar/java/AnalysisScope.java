@@ -0,0 +1,47 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * Components shared by the visitors of a single analysis, typically indexes computed once for several rules. They are
+ * released with the analysis, so they never leak state from one analysis to the next one.
+ */
+public class AnalysisScope {
+
+  private final Map<Class<?>, Object> components = Maps.newHashMap();
+
+  /**
+   * @return the component of the given type, created with the given supplier the first time it is requested
+   */
+  public <T> T getOrCreate(Class<T> type, Supplier<T> supplier) {
+    Object component = components.get(type);
+    if (component == null) {
+      component = supplier.get();
+      components.put(type, component);
+    }
+    return type.cast(component);
+  }
+
+}
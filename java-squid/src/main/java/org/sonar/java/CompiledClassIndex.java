@@ -0,0 +1,268 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Index of the class files of the binary directories of a module, built by a single walk of each directory.
+ * <p/>
+ * Size and modification time of each class file come with the walk, so that looking up a class does not hit the file
+ * system. The CRC of a class file is computed the first time it is requested, and can be persisted in order to be reused
+ * by the next analysis as long as the size and modification time of the file are unchanged.
+ */
+public class CompiledClassIndex {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CompiledClassIndex.class);
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final List<File> binaryDirs;
+  private final ListMultimap<String, CompiledClass> classesByName = ArrayListMultimap.create();
+  private final Map<String, long[]> previousChecksums;
+
+  CompiledClassIndex(List<File> binaryDirs, Map<String, long[]> previousChecksums) {
+    this.binaryDirs = ImmutableList.copyOf(binaryDirs);
+    this.previousChecksums = previousChecksums;
+    for (File binaryDir : this.binaryDirs) {
+      index(binaryDir);
+    }
+  }
+
+  public static CompiledClassIndex create(List<File> binaryDirs) {
+    return new CompiledClassIndex(binaryDirs, Maps.<String, long[]>newHashMap());
+  }
+
+  /**
+   * Builds the index, reusing the checksums saved by a previous analysis in the given file if it can be read.
+   */
+  public static CompiledClassIndex load(List<File> binaryDirs, File indexFile) {
+    Map<String, long[]> previousChecksums = Maps.newHashMap();
+    if (indexFile.isFile()) {
+      ObjectInputStream in = null;
+      try {
+        in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(indexFile))));
+        previousChecksums = (HashMap<String, long[]>) in.readObject();
+      } catch (Exception e) {
+        LOG.warn("Unable to read compiled class index " + indexFile.getAbsolutePath() + ", checksums of class files will be computed again", e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return new CompiledClassIndex(binaryDirs, previousChecksums);
+  }
+
+  private void index(final File binaryDir) {
+    if (!binaryDir.isDirectory()) {
+      return;
+    }
+    final Path root = binaryDir.toPath();
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+          String fileName = file.getFileName().toString();
+          if (attrs.isRegularFile() && fileName.endsWith(CLASS_SUFFIX)) {
+            String relativePath = root.relativize(file).toString().replace(File.separatorChar, '/');
+            String className = relativePath.substring(0, relativePath.length() - CLASS_SUFFIX.length());
+            classesByName.put(className, new CompiledClass(className, binaryDir, file.toFile(), attrs.size(), attrs.lastModifiedTime().toMillis()));
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+          LOG.debug("Unable to read " + file, exc);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list class files of " + binaryDir.getAbsolutePath(), e);
+    }
+  }
+
+  public List<File> getBinaryDirs() {
+    return binaryDirs;
+  }
+
+  public boolean isEmpty() {
+    return classesByName.isEmpty();
+  }
+
+  /**
+   * @param className VM name of the class, for instance {@code org/sonar/java/CompiledClassIndex}
+   * @return the class file found first in the binary directories, or null if there is none
+   */
+  @CheckForNull
+  public CompiledClass get(String className) {
+    List<CompiledClass> classes = classesByName.get(className);
+    return classes.isEmpty() ? null : classes.get(0);
+  }
+
+  /**
+   * @return whether the class file is in the given binary directory, always false if the directory is not indexed
+   */
+  public boolean contains(File binaryDir, String className) {
+    for (CompiledClass compiledClass : classesByName.get(className)) {
+      if (compiledClass.binaryDir.equals(binaryDir)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return one class file per class name, the one found first in the binary directories
+   */
+  public Collection<CompiledClass> classes() {
+    List<CompiledClass> result = Lists.newArrayListWithCapacity(classesByName.keySet().size());
+    for (String className : classesByName.keySet()) {
+      result.add(get(className));
+    }
+    return result;
+  }
+
+  /**
+   * Saves the checksums computed so far, along with the ones of the previous analysis which are still valid.
+   */
+  public void save(File indexFile) {
+    HashMap<String, long[]> checksums = Maps.newHashMap();
+    for (CompiledClass compiledClass : classesByName.values()) {
+      long[] checksum = compiledClass.checksum();
+      if (checksum != null) {
+        checksums.put(compiledClass.file.getAbsolutePath(), checksum);
+      }
+    }
+    ObjectOutputStream out = null;
+    try {
+      indexFile.getParentFile().mkdirs();
+      out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile))));
+      out.writeObject(checksums);
+    } catch (IOException e) {
+      LOG.warn("Unable to save compiled class index " + indexFile.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+  }
+
+  public final class CompiledClass {
+
+    private final String name;
+    private final File binaryDir;
+    private final File file;
+    private final long size;
+    private final long lastModified;
+    private Long crc;
+
+    private CompiledClass(String name, File binaryDir, File file, long size, long lastModified) {
+      this.name = name;
+      this.binaryDir = binaryDir;
+      this.file = file;
+      this.size = size;
+      this.lastModified = lastModified;
+      long[] previous = previousChecksums.get(file.getAbsolutePath());
+      if (previous != null && previous[0] == size && previous[1] == lastModified) {
+        crc = previous[2];
+      }
+    }
+
+    /**
+     * @return VM name of the class
+     */
+    public String getName() {
+      return name;
+    }
+
+    public File getFile() {
+      return file;
+    }
+
+    public long getSize() {
+      return size;
+    }
+
+    public long getLastModified() {
+      return lastModified;
+    }
+
+    /**
+     * @return CRC-32 of the content of the class file
+     */
+    public long getCrc() {
+      if (crc == null) {
+        crc = computeCrc(file);
+      }
+      return crc;
+    }
+
+    @CheckForNull
+    private long[] checksum() {
+      return crc == null ? null : new long[] {size, lastModified, crc};
+    }
+  }
+
+  private static long computeCrc(File file) {
+    CRC32 crc32 = new CRC32();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        crc32.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read " + file.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return crc32.getValue();
+  }
+
+}
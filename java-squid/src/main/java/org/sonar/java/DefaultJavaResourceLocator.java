@@ -31,15 +31,22 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.java.bytecode.visitor.ResourceMapping;
 import org.sonar.java.filters.SuppressWarningsFilter;
-import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.java.filters.SuppressWarningsRange;
+import org.sonar.java.incremental.AnalysisCacheAware;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
 import org.sonar.plugins.java.api.JavaResourceLocator;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-public class DefaultJavaResourceLocator implements JavaResourceLocator, JavaFileScanner {
+public class DefaultJavaResourceLocator implements JavaResourceLocator, SyntacticJavaFileScanner, AnalysisCacheAware {
 
   private static final Logger LOG = LoggerFactory.getLogger(JavaResourceLocator.class);
 
@@ -52,6 +59,9 @@ public class DefaultJavaResourceLocator implements JavaResourceLocator, JavaFile
   private final Map<String, Integer> methodStartLines;
   private final ResourceMapping resourceMapping;
   private SensorContext sensorContext;
+  private FileAnalysisCache analysisCache;
+  private ImmutableSortedSet<String> sortedClassKeys;
+  private ImmutableList<File> classFiles;
 
   public DefaultJavaResourceLocator(Project project, JavaClasspath javaClasspath, SuppressWarningsFilter suppressWarningsFilter) {
     this.project = project;
@@ -85,23 +95,30 @@ public class DefaultJavaResourceLocator implements JavaResourceLocator, JavaFile
 
   @Override
   public Collection<String> classKeys() {
-    return ImmutableSortedSet.<String>naturalOrder().addAll(resourcesByClass.keySet()).build();
+    return sortedClassKeys();
+  }
+
+  private ImmutableSortedSet<String> sortedClassKeys() {
+    if (sortedClassKeys == null) {
+      sortedClassKeys = ImmutableSortedSet.copyOf(resourcesByClass.keySet());
+    }
+    return sortedClassKeys;
   }
 
   @Override
   public Collection<File> classFilesToAnalyze() {
-    ImmutableList.Builder<File> result = ImmutableList.builder();
-    for (String key : classKeys()) {
-      String filePath = key + ".class";
-      for (File binaryDir : javaClasspath.getBinaryDirs()) {
-        File classFile = new File(binaryDir, filePath);
-        if (classFile.isFile()) {
-          result.add(classFile);
-          break;
+    if (classFiles == null) {
+      ImmutableList.Builder<File> result = ImmutableList.builder();
+      CompiledClassIndex compiledClassIndex = javaClasspath.getCompiledClassIndex();
+      for (String key : sortedClassKeys()) {
+        CompiledClassIndex.CompiledClass compiledClass = compiledClassIndex.get(key);
+        if (compiledClass != null) {
+          result.add(compiledClass.getFile());
         }
       }
+      classFiles = result.build();
     }
-    return result.build();
+    return classFiles;
   }
 
   @Override
@@ -119,26 +136,51 @@ public class DefaultJavaResourceLocator implements JavaResourceLocator, JavaFile
     return resourceMapping;
   }
 
+  @Override
+  public void setAnalysisCache(FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
   @Override
   public void scanFile(JavaFileScannerContext context) {
     Preconditions.checkNotNull(sensorContext);
     JavaFilesCache javaFilesCache = new JavaFilesCache();
     javaFilesCache.scanFile(context);
-    org.sonar.api.resources.File currentResource = org.sonar.api.resources.File.fromIOFile(context.getFile(), project);
+    addFile(context.getFile(), context.getFileKey(), javaFilesCache.getResourcesCache().keySet(), javaFilesCache.getMethodStartLines(),
+      javaFilesCache.getSuppressWarningRanges());
+    CachedFileAnalysis recording = analysisCache == null ? null : analysisCache.recording();
+    if (recording != null) {
+      recording.setResources(javaFilesCache.getResourcesCache().keySet(), javaFilesCache.getMethodStartLines(), javaFilesCache.getSuppressWarningRanges());
+    }
+  }
+
+  @Override
+  public void replay(File file, CachedFileAnalysis cachedAnalysis) {
+    Preconditions.checkNotNull(sensorContext);
+    addFile(file, file.getAbsolutePath(), cachedAnalysis.getClassKeys(), cachedAnalysis.getMethodStartLines(), cachedAnalysis.getSuppressWarningRanges());
+  }
+
+  private void addFile(File file, @Nullable String fileKey, Set<String> classKeys, Map<String, Integer> methodStartLinesOfFile,
+    List<SuppressWarningsRange> suppressWarningRanges) {
+    org.sonar.api.resources.File currentResource = org.sonar.api.resources.File.fromIOFile(file, project);
     if (currentResource == null) {
-      throw new IllegalStateException("resource not found : " + context.getFileKey());
+      throw new IllegalStateException("resource not found : " + fileKey);
+    }
+    resourceMapping.addResource(currentResource, fileKey);
+    if (!classKeys.isEmpty()) {
+      sortedClassKeys = null;
+      classFiles = null;
     }
-    resourceMapping.addResource(currentResource, context.getFileKey());
-    for (Map.Entry<String, File> classIOFileEntry : javaFilesCache.getResourcesCache().entrySet()) {
-      resourcesByClass.put(classIOFileEntry.getKey(), currentResource);
-      if (context.getFileKey() != null) {
-        sourceFileByClass.put(classIOFileEntry.getKey(), context.getFileKey());
+    for (String classKey : classKeys) {
+      resourcesByClass.put(classKey, currentResource);
+      if (fileKey != null) {
+        sourceFileByClass.put(classKey, fileKey);
       }
     }
-    methodStartLines.putAll(javaFilesCache.getMethodStartLines());
+    methodStartLines.putAll(methodStartLinesOfFile);
     org.sonar.api.resources.File indexedResource = sensorContext.getResource(currentResource);
-    if (indexedResource != null && javaFilesCache.hasSuppressWarningLines()) {
-      suppressWarningsFilter.addComponent(indexedResource.getEffectiveKey(), javaFilesCache.getSuppressWarningLines());
+    if (indexedResource != null && !suppressWarningRanges.isEmpty()) {
+      suppressWarningsFilter.addComponent(indexedResource.getEffectiveKey(), suppressWarningRanges);
     }
   }
 }
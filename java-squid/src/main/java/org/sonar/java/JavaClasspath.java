@@ -21,15 +21,6 @@ package org.sonar.java;
 
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOCase;
-import org.apache.commons.io.filefilter.AndFileFilter;
-import org.apache.commons.io.filefilter.DirectoryFileFilter;
-import org.apache.commons.io.filefilter.FalseFileFilter;
-import org.apache.commons.io.filefilter.IOFileFilter;
-import org.apache.commons.io.filefilter.OrFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.lang.StringUtils;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.project.MavenProject;
@@ -42,20 +33,16 @@ import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.SonarException;
-import org.sonar.api.utils.WildcardPattern;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import java.io.File;
-import java.io.FileFilter;
-import java.util.Collection;
-import java.util.Iterator;
 import java.util.List;
 
-import static org.apache.commons.io.filefilter.FileFilterUtils.suffixFileFilter;
-
 public class JavaClasspath implements BatchExtension {
 
   private static final char SEPARATOR = ',';
+  private static final String COMPILED_CLASS_INDEX_FILE = "java-compiled-classes.index";
   private static final Logger LOG = LoggerFactory.getLogger(JavaClasspath.class);
   private final Project project;
   private final Settings settings;
@@ -65,6 +52,7 @@ public class JavaClasspath implements BatchExtension {
 
   private List<File> binaries;
   private List<File> elements;
+  private CompiledClassIndex compiledClassIndex;
   private boolean validateLibraries;
   private boolean hasJavaSources;
   private boolean initalized;
@@ -133,13 +121,14 @@ public class JavaClasspath implements BatchExtension {
     List<File> result = Lists.newArrayList();
     String fileList = settings.getString(property);
     if (StringUtils.isNotEmpty(fileList)) {
-      Iterable<String> fileNames = Splitter.on(SEPARATOR).omitEmptyStrings().split(fileList);
-      for (String pathPattern : fileNames) {
-        boolean isLibraryProperty = property.endsWith("libraries");
-        List<File> libraryFilesForPattern = getFilesForPattern(baseDir, pathPattern, isLibraryProperty);
+      List<String> pathPatterns = Lists.newArrayList(Splitter.on(SEPARATOR).omitEmptyStrings().split(fileList));
+      boolean isLibraryProperty = property.endsWith("libraries");
+      List<List<File>> filesPerPattern = PathPatternResolver.resolve(baseDir, pathPatterns, isLibraryProperty);
+      for (int i = 0; i < pathPatterns.size(); i++) {
+        List<File> libraryFilesForPattern = filesPerPattern.get(i);
         if (validateLibraries && libraryFilesForPattern.isEmpty() && hasJavaSources) {
           LOG.error("Invalid value for " + property);
-          String message = "No files nor directories matching '" + pathPattern + "'";
+          String message = "No files nor directories matching '" + pathPatterns.get(i) + "'";
           throw new IllegalStateException(message);
         }
         result.addAll(libraryFilesForPattern);
@@ -148,75 +137,6 @@ public class JavaClasspath implements BatchExtension {
     return result;
   }
 
-
-  private List<File> getFilesForPattern(File baseDir, String pathPattern, boolean libraryProperty) {
-    String dirPath = pathPattern;
-    String filePattern;
-    int wildcardIndex = pathPattern.indexOf('*');
-    if (wildcardIndex >= 0) {
-      dirPath = pathPattern.substring(0, wildcardIndex);
-    }
-    int lastPathSeparator = Math.max(dirPath.lastIndexOf('/'), dirPath.lastIndexOf('\\'));
-    if (lastPathSeparator == -1) {
-      dirPath = ".";
-      filePattern = pathPattern;
-    } else {
-      dirPath = pathPattern.substring(0, lastPathSeparator);
-      filePattern = pathPattern.substring(lastPathSeparator + 1);
-    }
-    File dir = resolvePath(baseDir, dirPath);
-    if (!dir.isDirectory()) {
-      return Lists.newArrayList();
-    }
-    return getMatchingFiles(filePattern, dir, libraryProperty);
-  }
-
-  private List<File> getMatchingFiles(String pattern, File dir, boolean libraryProperty) {
-    WilcardPatternFileFilter wilcardPatternFileFilter = new WilcardPatternFileFilter(dir, pattern);
-    FileFilter fileFilter = wilcardPatternFileFilter;
-    List<File> files = Lists.newArrayList();
-    if (libraryProperty) {
-      if (pattern.endsWith("*")) {
-        fileFilter = new AndFileFilter((IOFileFilter) fileFilter,
-            new OrFileFilter(Lists.newArrayList(suffixFileFilter(".jar", IOCase.INSENSITIVE), suffixFileFilter(".zip", IOCase.INSENSITIVE))));
-      }
-      //find jar and zip files
-      files.addAll(Lists.newArrayList(FileUtils.listFiles(dir, (IOFileFilter) fileFilter, TrueFileFilter.TRUE)));
-    }
-    //find directories matching pattern.
-    IOFileFilter subdirectories = pattern.isEmpty() ? FalseFileFilter.FALSE : TrueFileFilter.TRUE;
-    Collection<File> dirs = FileUtils.listFilesAndDirs(dir, new AndFileFilter(wilcardPatternFileFilter, DirectoryFileFilter.DIRECTORY), subdirectories);
-    //remove searching dir from matching as listFilesAndDirs always includes it in the list see https://issues.apache.org/jira/browse/IO-328
-    if (!pattern.isEmpty()) {
-      dirs.remove(dir);
-      //remove subdirectories that were included during search
-      Iterator<File> iterator = dirs.iterator();
-      while (iterator.hasNext()) {
-        File matchingDir = iterator.next();
-        if (!wilcardPatternFileFilter.accept(matchingDir)) {
-          iterator.remove();
-        }
-      }
-    }
-
-    if (libraryProperty) {
-      for (File directory : dirs) {
-        files.addAll(getMatchingFiles("**/*.jar", directory, true));
-        files.addAll(getMatchingFiles("**/*.zip", directory, true));
-      }
-    }
-    files.addAll(dirs);
-    return files;
-  }
-
-  private File resolvePath(File baseDir, String fileName) {
-    File file = new File(fileName);
-    if (!file.isAbsolute()) {
-      file = new File(baseDir, fileName);
-    }
-    return file;
-  }
-
   public List<File> getElements() {
     init();
     return elements;
@@ -227,25 +147,31 @@ public class JavaClasspath implements BatchExtension {
     return binaries;
   }
 
-  private static class WilcardPatternFileFilter implements IOFileFilter {
-    private File baseDir;
-    private WildcardPattern wildcardPattern;
-
-    public WilcardPatternFileFilter(File baseDir, String wildcardPattern) {
-      this.baseDir = baseDir;
-      this.wildcardPattern = WildcardPattern.create(FilenameUtils.separatorsToSystem(wildcardPattern), File.separator);
+  /**
+   * @return index of the class files of the binary directories, shared by all the sensors of the module
+   */
+  public CompiledClassIndex getCompiledClassIndex() {
+    if (compiledClassIndex == null) {
+      File indexFile = compiledClassIndexFile();
+      compiledClassIndex = indexFile == null ? CompiledClassIndex.create(getBinaryDirs()) : CompiledClassIndex.load(getBinaryDirs(), indexFile);
     }
+    return compiledClassIndex;
+  }
 
-    @Override
-    public boolean accept(File dir, String name) {
-      return accept(new File(dir, name));
+  /**
+   * Saves the checksums of the class files computed during this analysis, so that the next one only computes the ones
+   * of the class files which have changed.
+   */
+  public void saveCompiledClassIndex() {
+    File indexFile = compiledClassIndexFile();
+    if (compiledClassIndex != null && indexFile != null) {
+      compiledClassIndex.save(indexFile);
     }
+  }
 
-    @Override
-    public boolean accept(File file) {
-      String path = file.getAbsolutePath();
-      path = path.substring(baseDir.getAbsolutePath().length() + 1);
-      return wildcardPattern.match(path);
-    }
+  @CheckForNull
+  private File compiledClassIndexFile() {
+    File workDir = fs.workDir();
+    return workDir == null ? null : new File(workDir, COMPILED_CLASS_INDEX_FILE);
   }
 }
@@ -19,12 +19,21 @@
  */
 package org.sonar.java;
 
+import org.sonar.java.incremental.ClassAnalysisCache;
+import org.sonar.java.incremental.FileAnalysisCache;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import java.nio.charset.Charset;
 
 public class JavaConfiguration {
 
   private final Charset charset;
   private boolean separateAccessorsFromMethods = true;
+  private FileAnalysisCache analysisCache;
+  private ClassAnalysisCache classAnalysisCache;
+  private CompiledClassIndex compiledClassIndex;
+  private boolean streamBytecode = false;
 
   public JavaConfiguration(Charset charset) {
     this.charset = charset;
@@ -42,4 +51,51 @@ public class JavaConfiguration {
     this.separateAccessorsFromMethods = separateAccessorsFromMethods;
   }
 
+  /**
+   * @return the cache used for incremental analysis, or null if all files have to be analyzed
+   */
+  @CheckForNull
+  public FileAnalysisCache getAnalysisCache() {
+    return analysisCache;
+  }
+
+  public void setAnalysisCache(@Nullable FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  /**
+   * @return the cache used for incremental bytecode analysis, or null if all classes have to be analyzed
+   */
+  @CheckForNull
+  public ClassAnalysisCache getClassAnalysisCache() {
+    return classAnalysisCache;
+  }
+
+  public void setClassAnalysisCache(@Nullable ClassAnalysisCache classAnalysisCache) {
+    this.classAnalysisCache = classAnalysisCache;
+  }
+
+  /**
+   * @return index of the class files of the binary directories, or null if they have to be looked up on the file system
+   */
+  @CheckForNull
+  public CompiledClassIndex getCompiledClassIndex() {
+    return compiledClassIndex;
+  }
+
+  public void setCompiledClassIndex(@Nullable CompiledClassIndex compiledClassIndex) {
+    this.compiledClassIndex = compiledClassIndex;
+  }
+
+  /**
+   * @return whether the bytecode of each class is released once analyzed, at the cost of reading it twice
+   */
+  public boolean streamsBytecode() {
+    return streamBytecode;
+  }
+
+  public void setStreamBytecode(boolean streamBytecode) {
+    this.streamBytecode = streamBytecode;
+  }
+
 }
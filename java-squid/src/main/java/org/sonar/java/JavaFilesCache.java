@@ -20,17 +20,16 @@
 package org.sonar.java;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import org.apache.commons.lang.StringUtils;
+import org.sonar.java.filters.SuppressWarningsRange;
 import org.sonar.java.model.InternalSyntaxToken;
 import org.sonar.java.model.JavaTree;
 import org.sonar.java.signature.MethodSignaturePrinter;
 import org.sonar.java.signature.MethodSignatureScanner;
-import org.sonar.plugins.java.api.JavaFileScanner;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.AnnotationTree;
 import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
 import org.sonar.plugins.java.api.tree.ClassTree;
@@ -48,7 +47,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
-public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
+public class JavaFilesCache extends BaseTreeVisitor implements SyntacticJavaFileScanner {
 
   @VisibleForTesting
   Map<String, File> resourcesCache = Maps.newHashMap();
@@ -57,7 +56,7 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
   Map<String, Integer> methodStartLines = Maps.newHashMap();
 
   @VisibleForTesting
-  Multimap<Integer, String> suppressWarningLines = HashMultimap.create();
+  List<SuppressWarningsRange> suppressWarningRanges = Lists.newArrayList();
 
   private File currentFile;
   private Deque<String> currentClassKey = new LinkedList<String>();
@@ -73,12 +72,12 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
     return methodStartLines;
   }
 
-  public Multimap<Integer, String> getSuppressWarningLines() {
-    return suppressWarningLines;
+  public List<SuppressWarningsRange> getSuppressWarningRanges() {
+    return suppressWarningRanges;
   }
 
-  public boolean hasSuppressWarningLines() {
-    return !suppressWarningLines.isEmpty();
+  public boolean hasSuppressWarningRanges() {
+    return !suppressWarningRanges.isEmpty();
   }
 
   @Override
@@ -89,7 +88,7 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
     currentClassKey.clear();
     parent.clear();
     anonymousInnerClassCounter.clear();
-    suppressWarningLines.clear();
+    suppressWarningRanges.clear();
     scan(tree);
   }
 
@@ -161,8 +160,8 @@ public class JavaFilesCache extends BaseTreeVisitor implements JavaFileScanner {
         break;
       }
     }
-    for (int i = startLine; i <= endLine; i++) {
-      suppressWarningLines.putAll(i, warnings);
+    if (!warnings.isEmpty()) {
+      suppressWarningRanges.add(new SuppressWarningsRange(startLine, endLine, warnings));
     }
   }
 
@@ -34,6 +34,9 @@ import org.sonar.java.ast.visitors.FileLinesVisitor;
 import org.sonar.java.ast.visitors.SyntaxHighlighterVisitor;
 import org.sonar.java.bytecode.BytecodeScanner;
 import org.sonar.java.bytecode.visitor.DependenciesVisitor;
+import org.sonar.java.bytecode.visitor.DependencyGraph;
+import org.sonar.java.incremental.ClassAnalysisCache;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.java.model.TestFileVisitorsBridge;
 import org.sonar.java.model.VisitorsBridge;
 import org.sonar.plugins.java.api.JavaResourceLocator;
@@ -56,7 +59,12 @@ public class JavaSquid implements SourceCodeSearchEngine {
   private final AstScanner astScanner;
   private final AstScanner astScannerForTests;
   private final BytecodeScanner bytecodeScanner;
-  private final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+  private final JavaResourceLocator javaResourceLocator;
+  private final DependencyGraph dependencyGraph = new DependencyGraph();
+  private DirectedGraph<Resource, Dependency> graph;
+  private final FileAnalysisCache analysisCache;
+  private final ClassAnalysisCache classAnalysisCache;
+  private final CompiledClassIndex compiledClassIndex;
 
   private boolean bytecodeScanned = false;
 
@@ -69,7 +77,11 @@ public class JavaSquid implements SourceCodeSearchEngine {
                    @Nullable SonarComponents sonarComponents, @Nullable Measurer measurer,
                    JavaResourceLocator javaResourceLocator, CodeVisitor... visitors) {
 
+    this.javaResourceLocator = javaResourceLocator;
     astScanner = JavaAstScanner.create(conf);
+    analysisCache = conf.getAnalysisCache();
+    classAnalysisCache = conf.getClassAnalysisCache();
+    compiledClassIndex = conf.getCompiledClassIndex();
 
     Iterable<CodeVisitor> visitorsToBridge = Iterables.concat(Arrays.asList(javaResourceLocator), Arrays.asList(visitors));
     if(measurer != null) {
@@ -87,25 +99,44 @@ public class JavaSquid implements SourceCodeSearchEngine {
     visitorsBridge.setAnalyseAccessors(conf.separatesAccessorsFromMethods());
     astScanner.accept(visitorsBridge);
 
+    if (analysisCache != null) {
+      astScanner.setAnalysisCache(analysisCache);
+      visitorsBridge.setAnalysisCache(analysisCache);
+    }
+
     if (sonarComponents != null) {
-      astScanner.accept(new FileLinesVisitor(sonarComponents, conf.getCharset()));
-      astScanner.accept(new SyntaxHighlighterVisitor(sonarComponents, conf.getCharset()));
+      FileLinesVisitor fileLinesVisitor = new FileLinesVisitor(sonarComponents, conf.getCharset());
+      SyntaxHighlighterVisitor syntaxHighlighterVisitor = new SyntaxHighlighterVisitor(sonarComponents, conf.getCharset());
+      if (analysisCache != null) {
+        fileLinesVisitor.setAnalysisCache(analysisCache);
+        syntaxHighlighterVisitor.setAnalysisCache(analysisCache);
+      }
+      astScanner.accept(fileLinesVisitor);
+      astScanner.accept(syntaxHighlighterVisitor);
     }
 
     // TODO unchecked cast
     squidIndex = (SquidIndex) astScanner.getIndex();
 
-    bytecodeScanner = new BytecodeScanner(squidIndex, javaResourceLocator);
-    bytecodeScanner.accept(new DependenciesVisitor(graph));
+    bytecodeScanner = new BytecodeScanner(squidIndex, javaResourceLocator, compiledClassIndex);
+    bytecodeScanner.setStreaming(conf.streamsBytecode());
+    bytecodeScanner.accept(new DependenciesVisitor(dependencyGraph));
 
     // External visitors (typically Check ones):
+    AnalysisScope analysisScope = new AnalysisScope();
     for (CodeVisitor visitor : visitors) {
       if (visitor instanceof CharsetAwareVisitor) {
         ((CharsetAwareVisitor) visitor).setCharset(conf.getCharset());
       }
+      if (visitor instanceof AnalysisScopeAware) {
+        ((AnalysisScopeAware) visitor).setAnalysisScope(analysisScope);
+      }
       astScanner.accept(visitor);
       bytecodeScanner.accept(visitor);
     }
+    if (classAnalysisCache != null) {
+      bytecodeScanner.setAnalysisCache(classAnalysisCache);
+    }
 
     astScannerForTests = new AstScanner(astScanner);
     astScannerForTests.accept(new TestFileVisitorsBridge(javaResourceLocator));
@@ -120,6 +151,9 @@ public class JavaSquid implements SourceCodeSearchEngine {
   private void scanSources(Iterable<File> sourceFiles) {
     TimeProfiler profiler = new TimeProfiler(getClass()).start("Java Main Files AST scan");
     astScanner.scan(sourceFiles);
+    if (analysisCache != null) {
+      analysisCache.save();
+    }
     profiler.stop();
   }
 
@@ -130,10 +164,13 @@ public class JavaSquid implements SourceCodeSearchEngine {
   }
 
   private void scanBytecode(Collection<File> bytecodeFilesOrDirectories) {
-    if (hasBytecode(bytecodeFilesOrDirectories)) {
+    if (hasIndexedBytecode(bytecodeFilesOrDirectories) || hasBytecode(bytecodeFilesOrDirectories)) {
       TimeProfiler profiler = new TimeProfiler(getClass()).start("Java bytecode scan");
 
       bytecodeScanner.scan(bytecodeFilesOrDirectories);
+      if (classAnalysisCache != null) {
+        classAnalysisCache.save();
+      }
       bytecodeScanned = true;
       profiler.stop();
     } else {
@@ -142,6 +179,10 @@ public class JavaSquid implements SourceCodeSearchEngine {
     }
   }
 
+  private boolean hasIndexedBytecode(@Nullable Collection<File> bytecodeFilesOrDirectories) {
+    return compiledClassIndex != null && !compiledClassIndex.isEmpty() && bytecodeFilesOrDirectories != null && !bytecodeFilesOrDirectories.isEmpty();
+  }
+
   static boolean hasBytecode(Collection<File> bytecodeFilesOrDirectories) {
     if (bytecodeFilesOrDirectories == null) {
       return false;
@@ -164,7 +205,14 @@ public class JavaSquid implements SourceCodeSearchEngine {
     return squidIndex;
   }
 
+  /**
+   * Dependencies between files and between packages found by the bytecode scan, converted from the dependency graph
+   * on the first call.
+   */
   public DirectedGraph<Resource, Dependency> getGraph() {
+    if (graph == null) {
+      graph = dependencyGraph.toDirectedGraph(javaResourceLocator.getResourceMapping());
+    }
     return graph;
   }
 
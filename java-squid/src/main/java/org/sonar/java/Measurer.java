@@ -19,9 +19,10 @@
  */
 package org.sonar.java;
 
-import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.io.Files;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
@@ -30,28 +31,72 @@ import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.measures.RangeDistributionBuilder;
 import org.sonar.api.resources.File;
 import org.sonar.api.resources.Project;
+import org.sonar.api.utils.ParsingUtils;
 import org.sonar.java.ast.visitors.AccessorVisitor;
 import org.sonar.java.ast.visitors.CommentLinesVisitor;
-import org.sonar.java.ast.visitors.LinesOfCodeVisitor;
 import org.sonar.java.ast.visitors.PublicApiChecker;
-import org.sonar.java.ast.visitors.StatementVisitor;
 import org.sonar.java.ast.visitors.SubscriptionVisitor;
+import org.sonar.java.incremental.AnalysisCacheAware;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
+import org.sonar.java.model.InternalSyntaxToken;
+import org.sonar.java.model.JavaTree;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
+import org.sonar.plugins.java.api.tree.BlockTree;
+import org.sonar.plugins.java.api.tree.CaseLabelTree;
 import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.ForStatementTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 import org.sonar.plugins.java.api.tree.NewClassTree;
+import org.sonar.plugins.java.api.tree.StatementTree;
+import org.sonar.plugins.java.api.tree.SyntaxToken;
+import org.sonar.plugins.java.api.tree.SyntaxTrivia;
 import org.sonar.plugins.java.api.tree.Tree;
+import org.sonar.plugins.java.api.tree.TryStatementTree;
+import org.sonar.plugins.java.api.tree.VariableTree;
 
-import java.io.IOException;
-import java.nio.charset.Charset;
+import javax.annotation.Nullable;
 import java.util.Deque;
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor {
+/**
+ * Computes all the file metrics in a single walk over the tree followed by a single pass over the tokens.
+ * Complexity, statements and public API are accumulated the same way as {@link org.sonar.java.ast.visitors.ComplexityVisitor},
+ * {@link org.sonar.java.ast.visitors.StatementVisitor} and {@link PublicApiChecker} would, lines of code and comment lines
+ * the same way as {@link org.sonar.java.ast.visitors.LinesOfCodeVisitor} and {@link CommentLinesVisitor}.
+ */
+public class Measurer extends SubscriptionVisitor implements AnalysisCacheAware, SyntacticJavaFileScanner {
 
   private static final Number[] LIMITS_COMPLEXITY_METHODS = {1, 2, 4, 6, 8, 10, 12};
   private static final Number[] LIMITS_COMPLEXITY_FILES = {0, 5, 10, 20, 30, 60, 90};
+  private static final Map<String, Metric> FILE_METRICS = metricsByKey(CoreMetrics.CLASSES, CoreMetrics.FUNCTIONS, CoreMetrics.ACCESSORS,
+    CoreMetrics.COMPLEXITY_IN_FUNCTIONS, CoreMetrics.COMPLEXITY, CoreMetrics.PUBLIC_API, CoreMetrics.PUBLIC_DOCUMENTED_API_DENSITY,
+    CoreMetrics.PUBLIC_UNDOCUMENTED_API, CoreMetrics.COMMENT_LINES, CoreMetrics.STATEMENTS, CoreMetrics.NCLOC, CoreMetrics.LINES);
+
+  private static final Set<Tree.Kind> CLASS_KINDS = EnumSet.of(Tree.Kind.CLASS, Tree.Kind.INTERFACE, Tree.Kind.ENUM, Tree.Kind.ANNOTATION_TYPE);
+  private static final Set<Tree.Kind> METHOD_KINDS = EnumSet.of(Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR);
+  // interfaces are not taken into account as enclosing classes when computing complexity
+  private static final Set<Tree.Kind> COMPLEXITY_CLASS_KINDS = EnumSet.of(Tree.Kind.CLASS, Tree.Kind.ENUM, Tree.Kind.ANNOTATION_TYPE);
+  private static final Set<Tree.Kind> COMPLEXITY_KINDS = EnumSet.of(Tree.Kind.IF_STATEMENT, Tree.Kind.FOR_STATEMENT, Tree.Kind.FOR_EACH_STATEMENT,
+    Tree.Kind.DO_STATEMENT, Tree.Kind.WHILE_STATEMENT, Tree.Kind.RETURN_STATEMENT, Tree.Kind.THROW_STATEMENT, Tree.Kind.CATCH,
+    Tree.Kind.CONDITIONAL_EXPRESSION, Tree.Kind.CONDITIONAL_AND, Tree.Kind.CONDITIONAL_OR);
+  private static final Set<Tree.Kind> STATEMENT_KINDS = EnumSet.of(Tree.Kind.EMPTY_STATEMENT, Tree.Kind.IF_STATEMENT, Tree.Kind.ASSERT_STATEMENT,
+    Tree.Kind.SWITCH_STATEMENT, Tree.Kind.WHILE_STATEMENT, Tree.Kind.DO_STATEMENT, Tree.Kind.FOR_STATEMENT, Tree.Kind.FOR_EACH_STATEMENT,
+    Tree.Kind.BREAK_STATEMENT, Tree.Kind.CONTINUE_STATEMENT, Tree.Kind.RETURN_STATEMENT, Tree.Kind.THROW_STATEMENT,
+    Tree.Kind.SYNCHRONIZED_STATEMENT, Tree.Kind.EXPRESSION_STATEMENT);
+  private static final List<Tree.Kind> NODES_TO_VISIT = ImmutableList.<Tree.Kind>builder()
+    .addAll(CLASS_KINDS)
+    .addAll(METHOD_KINDS)
+    .addAll(COMPLEXITY_KINDS)
+    .addAll(STATEMENT_KINDS)
+    .add(Tree.Kind.NEW_CLASS, Tree.Kind.ENUM_CONSTANT, Tree.Kind.CASE_LABEL, Tree.Kind.TRY_STATEMENT, Tree.Kind.VARIABLE, Tree.Kind.TOKEN)
+    .build();
+  private static final Set<Tree.Kind> SUBSCRIBED_KINDS = EnumSet.copyOf(NODES_TO_VISIT);
 
   private final SensorContext sensorContext;
   private final Project project;
@@ -64,8 +109,32 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
 
   private final Deque<ClassTree> classTrees = new LinkedList<ClassTree>();
   private final AccessorVisitor accessorVisitor;
-  private Charset charset;
   private double classes;
+  private FileAnalysisCache analysisCache;
+  private CachedFileAnalysis recording;
+
+  // complexity
+  private int fileComplexity;
+  private final Deque<ClassTree> complexityClassTrees = new LinkedList<ClassTree>();
+  private final Deque<MethodComplexity> measuredMethods = new LinkedList<MethodComplexity>();
+
+  // statements
+  private int statements;
+  private final Set<Tree> variableTypes = Sets.newHashSet();
+
+  // public API
+  private PublicApiChecker publicApiChecker;
+  private final Deque<Tree> apiParents = new LinkedList<Tree>();
+  private int newClassDepth;
+  private double publicApi;
+  private double documentedPublicApi;
+
+  // lines
+  private final CommentLinesVisitor.JavaCommentAnalyser commentAnalyser = new CommentLinesVisitor.JavaCommentAnalyser();
+  private final Set<Integer> linesOfCode = Sets.newHashSet();
+  private final Set<Integer> commentLines = Sets.newHashSet();
+  private boolean seenFirstToken;
+  private int lines;
 
   public Measurer(Project project, SensorContext context, boolean separateAccessorsFromMethods) {
     this.project = project;
@@ -76,60 +145,110 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
 
   @Override
   public List<Tree.Kind> nodesToVisit() {
-    return ImmutableList.of(Tree.Kind.CLASS, Tree.Kind.INTERFACE, Tree.Kind.ENUM, Tree.Kind.ANNOTATION_TYPE,
-        Tree.Kind.NEW_CLASS, Tree.Kind.ENUM_CONSTANT,
-        Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR);
+    return NODES_TO_VISIT;
   }
 
+  @Override
+  protected boolean isSubscribed(Tree tree) {
+    return SUBSCRIBED_KINDS.contains(((JavaTree) tree).getKind());
+  }
+
+  private static Map<String, Metric> metricsByKey(Metric... metrics) {
+    ImmutableMap.Builder<String, Metric> builder = ImmutableMap.builder();
+    for (Metric metric : metrics) {
+      builder.put(metric.getKey(), metric);
+    }
+    return builder.build();
+  }
+
+  @Override
+  public void setAnalysisCache(FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  @Override
+  public void replay(java.io.File file, CachedFileAnalysis cachedAnalysis) {
+    sonarFile = File.fromIOFile(file, project);
+    recording = null;
+    for (Map.Entry<String, Double> measure : cachedAnalysis.getMeasures().entrySet()) {
+      saveMetricOnFile(FILE_METRICS.get(measure.getKey()), measure.getValue());
+    }
+    methodComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, LIMITS_COMPLEXITY_METHODS);
+    for (Integer methodComplexity : cachedAnalysis.getMethodComplexities()) {
+      methodComplexityDistribution.add(methodComplexity);
+    }
+    saveComplexityDistributions(cachedAnalysis.getFileComplexity());
+  }
 
   @Override
   public void scanFile(JavaFileScannerContext context) {
     sonarFile = File.fromIOFile(context.getFile(), project);
+    recording = analysisCache == null ? null : analysisCache.recording();
     classTrees.clear();
     methods = 0;
     complexityInMethods = 0;
     accessors = 0;
     classes = 0;
-    PublicApiChecker publicApiChecker = PublicApiChecker.newInstanceWithAccessorsHandledAsMethods();
+    fileComplexity = 0;
+    complexityClassTrees.clear();
+    measuredMethods.clear();
+    statements = 0;
+    variableTypes.clear();
+    publicApiChecker = PublicApiChecker.newInstanceWithAccessorsHandledAsMethods();
     if (separateAccessorsFromMethods) {
       publicApiChecker = PublicApiChecker.newInstanceWithAccessorsSeparatedFromMethods();
     }
-    publicApiChecker.scan(context.getTree());
+    apiParents.clear();
+    newClassDepth = 0;
+    publicApi = 0;
+    documentedPublicApi = 0;
+    linesOfCode.clear();
+    commentLines.clear();
+    seenFirstToken = false;
+    lines = 0;
     methodComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FUNCTION_COMPLEXITY_DISTRIBUTION, LIMITS_COMPLEXITY_METHODS);
+    // walks the tree, then the tokens
     super.scanFile(context);
     //leave file.
-    int fileComplexity = context.getComplexity(context.getTree());
     saveMetricOnFile(CoreMetrics.CLASSES, classes);
     saveMetricOnFile(CoreMetrics.FUNCTIONS, methods);
     saveMetricOnFile(CoreMetrics.ACCESSORS, accessors);
     saveMetricOnFile(CoreMetrics.COMPLEXITY_IN_FUNCTIONS, complexityInMethods);
     saveMetricOnFile(CoreMetrics.COMPLEXITY, fileComplexity);
-    saveMetricOnFile(CoreMetrics.PUBLIC_API, publicApiChecker.getPublicApi());
-    saveMetricOnFile(CoreMetrics.PUBLIC_DOCUMENTED_API_DENSITY, publicApiChecker.getDocumentedPublicApiDensity());
-    saveMetricOnFile(CoreMetrics.PUBLIC_UNDOCUMENTED_API, publicApiChecker.getUndocumentedPublicApi());
-    saveMetricOnFile(CoreMetrics.COMMENT_LINES, new CommentLinesVisitor().commentLines(context.getTree()));
-    saveMetricOnFile(CoreMetrics.STATEMENTS, new StatementVisitor().numberOfStatements(context.getTree()));
-    saveMetricOnFile(CoreMetrics.NCLOC, new LinesOfCodeVisitor().linesOfCode(context.getTree()));
+    saveMetricOnFile(CoreMetrics.PUBLIC_API, publicApi);
+    saveMetricOnFile(CoreMetrics.PUBLIC_DOCUMENTED_API_DENSITY, documentedPublicApiDensity());
+    saveMetricOnFile(CoreMetrics.PUBLIC_UNDOCUMENTED_API, publicApi - documentedPublicApi);
+    saveMetricOnFile(CoreMetrics.COMMENT_LINES, commentLines.size());
+    saveMetricOnFile(CoreMetrics.STATEMENTS, statements + variableTypes.size());
+    saveMetricOnFile(CoreMetrics.NCLOC, linesOfCode.size());
+    saveMetricOnFile(CoreMetrics.LINES, lines);
 
+    saveComplexityDistributions(fileComplexity);
+    if (recording != null) {
+      recording.setFileComplexity(fileComplexity);
+    }
+
+  }
+
+  private void saveComplexityDistributions(int fileComplexity) {
     sensorContext.saveMeasure(sonarFile, methodComplexityDistribution.build(true).setPersistenceMode(PersistenceMode.MEMORY));
 
     RangeDistributionBuilder fileComplexityDistribution = new RangeDistributionBuilder(CoreMetrics.FILE_COMPLEXITY_DISTRIBUTION, LIMITS_COMPLEXITY_FILES);
     sensorContext.saveMeasure(sonarFile, fileComplexityDistribution.add(fileComplexity).build(true).setPersistenceMode(PersistenceMode.MEMORY));
-    saveLinesMetric();
-
   }
 
-  private void saveLinesMetric() {
-    try {
-      String content = Files.toString(context.getFile(), charset);
-      saveMetricOnFile(CoreMetrics.LINES, content.split("(\r)?\n|\r", -1).length);
-    } catch (IOException e) {
-      Throwables.propagate(e);
+  private double documentedPublicApiDensity() {
+    if (Double.doubleToRawLongBits(publicApi) == 0L) {
+      return 100.0;
     }
+    return ParsingUtils.scaleValue(documentedPublicApi / publicApi * 100, 2);
   }
 
   @Override
   public void visitNode(Tree tree) {
+    visitNodeForPublicApi(tree);
+    visitNodeForComplexity(tree);
+    visitNodeForStatements(tree);
     if (isClassTree(tree)) {
       classes++;
       classTrees.push((ClassTree) tree);
@@ -144,9 +263,10 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
         accessors++;
       } else {
         methods++;
-        int methodComplexity = context.getMethodComplexity(classTrees.peek(), methodTree);
-        methodComplexityDistribution.add(methodComplexity);
-        complexityInMethods += methodComplexity;
+        // complexity of the method is known when leaving it
+        MethodComplexity measuredMethod = new MethodComplexity(methodTree, classTrees.peek(), complexityClassTrees.size());
+        measuredMethod.complexity = methodComplexity(methodTree, classTrees.peek(), false);
+        measuredMethods.push(measuredMethod);
       }
     }
 
@@ -157,18 +277,186 @@ public class Measurer extends SubscriptionVisitor implements CharsetAwareVisitor
     if (isClassTree(tree)) {
       classTrees.pop();
     }
+    if (!measuredMethods.isEmpty() && measuredMethods.peek().methodTree == tree) {
+      int methodComplexity = measuredMethods.pop().complexity;
+      methodComplexityDistribution.add(methodComplexity);
+      complexityInMethods += methodComplexity;
+      if (recording != null) {
+        recording.addMethodComplexity(methodComplexity);
+      }
+    }
+    if (is(tree, COMPLEXITY_CLASS_KINDS)) {
+      complexityClassTrees.pop();
+    }
+    leaveNodeForStatements(tree);
+    leaveNodeForPublicApi(tree);
+  }
+
+  private void visitNodeForComplexity(Tree tree) {
+    if (is(tree, COMPLEXITY_CLASS_KINDS)) {
+      complexityClassTrees.push((ClassTree) tree);
+    } else if (tree.is(Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR)) {
+      // the enclosing class of a method differs whether complexity is computed for the file or for an enclosing method
+      MethodTree methodTree = (MethodTree) tree;
+      fileComplexity += methodComplexity(methodTree, complexityClassTrees.peek(), complexityClassTrees.isEmpty());
+      for (MethodComplexity measuredMethod : measuredMethods) {
+        ClassTree enclosingClass = complexityClassTrees.size() > measuredMethod.classDepth ? complexityClassTrees.peek() : measuredMethod.enclosingClass;
+        measuredMethod.complexity += methodComplexity(methodTree, enclosingClass, false);
+      }
+    } else if (tree.is(Tree.Kind.CASE_LABEL)) {
+      if (!"default".equals(((CaseLabelTree) tree).caseOrDefaultKeyword().text())) {
+        addComplexity(1);
+      }
+    } else if (is(tree, COMPLEXITY_KINDS)) {
+      addComplexity(1);
+    }
+  }
+  private void addComplexity(int increment) {
+    fileComplexity += increment;
+    for (MethodComplexity measuredMethod : measuredMethods) {
+      measuredMethod.complexity += increment;
+    }
   }
 
-  private boolean isClassTree(Tree tree) {
-    return tree.is(Tree.Kind.CLASS) || tree.is(Tree.Kind.INTERFACE) || tree.is(Tree.Kind.ENUM) || tree.is(Tree.Kind.ANNOTATION_TYPE);
+  private int methodComplexity(MethodTree methodTree, @Nullable ClassTree enclosingClass, boolean noEnclosingClass) {
+    int complexity = 0;
+    BlockTree block = methodTree.block();
+    if (block != null) {
+      if (noEnclosingClass || !(separateAccessorsFromMethods && accessorVisitor.isAccessor(enclosingClass, methodTree))) {
+        complexity++;
+      }
+      if (!block.body().isEmpty() && Iterables.getLast(block.body()).is(Tree.Kind.RETURN_STATEMENT)) {
+        //minus one because the return is going to be counted with +1
+        complexity--;
+      }
+    }
+    return complexity;
+  }
+
+  private void visitNodeForStatements(Tree tree) {
+    if (is(tree, STATEMENT_KINDS)) {
+      statements++;
+    } else if (tree.is(Tree.Kind.TRY_STATEMENT)) {
+      TryStatementTree tryStatementTree = (TryStatementTree) tree;
+      statements += 1 - tryStatementTree.resources().size() - tryStatementTree.catches().size();
+    } else if (tree.is(Tree.Kind.VARIABLE)) {
+      variableTypes.add(((VariableTree) tree).type());
+    }
+  }
+
+  private void leaveNodeForStatements(Tree tree) {
+    if (tree.is(Tree.Kind.FOR_STATEMENT)) {
+      ForStatementTree forStatementTree = (ForStatementTree) tree;
+      removeVariables(forStatementTree.initializer());
+      removeVariables(forStatementTree.update());
+    } else if (is(tree, METHOD_KINDS)) {
+      for (VariableTree variableTree : ((MethodTree) tree).parameters()) {
+        variableTypes.remove(variableTree.type());
+      }
+    } else if (is(tree, CLASS_KINDS)) {
+      for (Tree member : ((ClassTree) tree).members()) {
+        if (member.is(Tree.Kind.VARIABLE)) {
+          variableTypes.remove(((VariableTree) member).type());
+        }
+      }
+    }
+  }
+
+  private void removeVariables(List<StatementTree> statementTrees) {
+    for (StatementTree statementTree : statementTrees) {
+      if (statementTree.is(Tree.Kind.VARIABLE)) {
+        variableTypes.remove(((VariableTree) statementTree).type());
+      } else {
+        statements--;
+      }
+    }
+  }
+
+  private void visitNodeForPublicApi(Tree tree) {
+    if (tree.is(Tree.Kind.NEW_CLASS)) {
+      // nothing in an anonymous class is part of public api.
+      newClassDepth++;
+    }
+    if (newClassDepth > 0 || !(is(tree, CLASS_KINDS) || is(tree, METHOD_KINDS) || tree.is(Tree.Kind.VARIABLE))) {
+      return;
+    }
+    Tree currentParent = apiParents.peek();
+    if (!tree.is(Tree.Kind.VARIABLE)) {
+      apiParents.push(tree);
+    }
+    if (publicApiChecker.isPublicApi(currentParent, tree)) {
+      publicApi++;
+      if (publicApiChecker.getApiJavadoc(tree) != null) {
+        documentedPublicApi++;
+      }
+    }
+  }
+
+  private void leaveNodeForPublicApi(Tree tree) {
+    if (tree.is(Tree.Kind.NEW_CLASS)) {
+      newClassDepth--;
+    } else if (newClassDepth == 0 && (is(tree, CLASS_KINDS) || is(tree, METHOD_KINDS))) {
+      apiParents.pop();
+    }
+  }
+
+  @Override
+  public void visitToken(SyntaxToken syntaxToken) {
+    InternalSyntaxToken token = (InternalSyntaxToken) syntaxToken;
+    if (token.isEOF()) {
+      // line terminators are handled by the lexer the same way as in the file lines count
+      lines = token.getLine();
+      return;
+    }
+    linesOfCode.add(token.getLine());
+    for (SyntaxTrivia trivia : syntaxToken.trivias()) {
+      if (seenFirstToken) {
+        addCommentLines(trivia);
+      } else {
+        // the very first comment of the file (i.e. license header) is not counted
+        seenFirstToken = true;
+      }
+    }
+    seenFirstToken = true;
+  }
+
+  private void addCommentLines(SyntaxTrivia trivia) {
+    String[] triviaLines = commentAnalyser.getContents(trivia.comment()).split("(\r)?\n|\r", -1);
+    int line = trivia.startLine();
+    for (String commentLine : triviaLines) {
+      if (!commentLine.contains("NOSONAR") && !commentAnalyser.isBlank(commentLine)) {
+        commentLines.add(line);
+      }
+      line++;
+    }
+  }
+
+  private static boolean isClassTree(Tree tree) {
+    return is(tree, CLASS_KINDS);
+  }
+
+  private static boolean is(Tree tree, Set<Tree.Kind> kinds) {
+    return kinds.contains(((JavaTree) tree).getKind());
   }
 
   private void saveMetricOnFile(Metric metric, double value) {
     sensorContext.saveMeasure(sonarFile, new Measure(metric, value));
+    if (recording != null) {
+      recording.putMeasure(metric.getKey(), value);
+    }
   }
 
-  @Override
-  public void setCharset(Charset charset) {
-    this.charset = charset;
+  private static class MethodComplexity {
+    private final MethodTree methodTree;
+    private final ClassTree enclosingClass;
+    // number of enclosing classes, as seen by complexity, when entering the method
+    private final int classDepth;
+    private int complexity;
+
+    MethodComplexity(MethodTree methodTree, ClassTree enclosingClass, int classDepth) {
+      this.methodTree = methodTree;
+      this.enclosingClass = enclosingClass;
+      this.classDepth = classDepth;
+    }
   }
 }
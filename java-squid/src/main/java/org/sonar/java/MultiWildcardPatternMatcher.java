@@ -0,0 +1,225 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches a name against a set of wildcard patterns, with the syntax of {@link org.sonar.api.utils.WildcardPattern} and
+ * '/' as separator, in a single pass whatever the number of patterns: the patterns are merged into one
+ * non-deterministic automaton sharing their common prefixes.
+ */
+public class MultiWildcardPatternMatcher {
+
+  private static final char SEPARATOR = '/';
+
+  private static final String ANY_NAME_CHARACTER = "?";
+  private static final String ANY_NAME_CHARACTERS = "*";
+  private static final String ANY_CHARACTERS = "**";
+  private static final String ANY_DIRECTORIES = "**/";
+
+  private final List<String> patterns;
+  private final List<State> states = Lists.newArrayList();
+  private final State root = newState();
+
+  public MultiWildcardPatternMatcher(Collection<String> patterns) {
+    this.patterns = ImmutableList.copyOf(patterns);
+    for (int i = 0; i < this.patterns.size(); i++) {
+      addPattern(this.patterns.get(i), i);
+    }
+  }
+
+  public List<String> patterns() {
+    return patterns;
+  }
+
+  /**
+   * @return indexes of the patterns matching the whole name, leading and trailing separators excepted
+   */
+  public BitSet match(String name) {
+    int start = !name.isEmpty() && name.charAt(0) == SEPARATOR ? 1 : 0;
+    int end = name.length() > start && name.charAt(name.length() - 1) == SEPARATOR ? name.length() - 1 : name.length();
+    BitSet matches = new BitSet(patterns.size());
+    for (State state : run(name, start, end, false)) {
+      matches.or(state.accepted);
+    }
+    return matches;
+  }
+
+  /**
+   * @return whether a pattern may match a name under the given directory, that is starting with the directory followed by
+   * a separator, which allows to skip the directories none of the patterns can match anything in
+   */
+  public boolean matchesBelow(String directory) {
+    int start = !directory.isEmpty() && directory.charAt(0) == SEPARATOR ? 1 : 0;
+    for (State state : run(directory, start, directory.length(), directory.length() > start)) {
+      if (!state.literals.isEmpty() || !state.nameCharacters.isEmpty() || !state.anyCharacters.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return states reached once the characters of the name between the given indexes have been read, followed by a
+   * separator if requested
+   */
+  private List<State> run(String name, int start, int end, boolean trailingSeparator) {
+    List<State> current = Lists.newArrayList();
+    BitSet visited = new BitSet(states.size());
+    addWithEpsilonClosure(root, current, visited);
+    int length = trailingSeparator ? end + 1 : end;
+    for (int i = start; i < length && !current.isEmpty(); i++) {
+      char c = i < end ? name.charAt(i) : SEPARATOR;
+      List<State> next = Lists.newArrayList();
+      visited.clear();
+      for (State state : current) {
+        State target = state.literals.get(c);
+        if (target != null) {
+          addWithEpsilonClosure(target, next, visited);
+        }
+        if (c != SEPARATOR) {
+          for (State nameCharacterTarget : state.nameCharacters) {
+            addWithEpsilonClosure(nameCharacterTarget, next, visited);
+          }
+        }
+        for (State anyCharacterTarget : state.anyCharacters) {
+          addWithEpsilonClosure(anyCharacterTarget, next, visited);
+        }
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  private static void addWithEpsilonClosure(State state, List<State> states, BitSet visited) {
+    if (!visited.get(state.id)) {
+      visited.set(state.id);
+      states.add(state);
+      for (State epsilonTarget : state.epsilons) {
+        addWithEpsilonClosure(epsilonTarget, states, visited);
+      }
+    }
+  }
+
+  private void addPattern(String pattern, int index) {
+    State state = root;
+    for (String token : tokenize(pattern)) {
+      State next = state.tokenTargets.get(token);
+      if (next == null) {
+        next = newState();
+        addTransition(state, token, next);
+        state.tokenTargets.put(token, next);
+      }
+      state = next;
+    }
+    state.accepted.set(index);
+  }
+
+  private void addTransition(State from, String token, State to) {
+    if (ANY_NAME_CHARACTER.equals(token)) {
+      from.nameCharacters.add(to);
+    } else if (ANY_NAME_CHARACTERS.equals(token)) {
+      State loop = newState();
+      loop.nameCharacters.add(loop);
+      loop.epsilons.add(to);
+      from.epsilons.add(loop);
+    } else if (ANY_CHARACTERS.equals(token)) {
+      State loop = newState();
+      loop.anyCharacters.add(loop);
+      loop.epsilons.add(to);
+      from.epsilons.add(loop);
+    } else if (ANY_DIRECTORIES.equals(token)) {
+      State loop = newState();
+      loop.anyCharacters.add(loop);
+      loop.literals.put(SEPARATOR, to);
+      from.epsilons.add(loop);
+      from.epsilons.add(to);
+    } else {
+      from.literals.put(token.charAt(0), to);
+    }
+  }
+
+  /**
+   * Same reading of the pattern as {@link org.sonar.api.utils.WildcardPattern}: "**" followed by a separator matches
+   * zero or more directories, "**" anywhere else matches any sequence of characters, "*" any sequence of characters
+   * without separator and "?" one character other than a separator.
+   */
+  private static List<String> tokenize(String pattern) {
+    List<String> tokens = Lists.newArrayList();
+    int i = !pattern.isEmpty() && isSlash(pattern.charAt(0)) ? 1 : 0;
+    while (i < pattern.length()) {
+      char c = pattern.charAt(i);
+      if (c == '*') {
+        if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '*') {
+          if (i + 2 < pattern.length() && isSlash(pattern.charAt(i + 2))) {
+            tokens.add(ANY_DIRECTORIES);
+            i += 2;
+          } else {
+            tokens.add(ANY_CHARACTERS);
+            i += 1;
+          }
+        } else {
+          tokens.add(ANY_NAME_CHARACTERS);
+        }
+      } else if (c == '?') {
+        tokens.add(ANY_NAME_CHARACTER);
+      } else if (isSlash(c)) {
+        tokens.add(String.valueOf(SEPARATOR));
+      } else {
+        tokens.add(String.valueOf(c));
+      }
+      i++;
+    }
+    return tokens;
+  }
+
+  private static boolean isSlash(char c) {
+    return c == '/' || c == '\\';
+  }
+
+  private State newState() {
+    State state = new State(states.size());
+    states.add(state);
+    return state;
+  }
+
+  private static class State {
+    private final int id;
+    private final Map<String, State> tokenTargets = Maps.newHashMap();
+    private final Map<Character, State> literals = Maps.newHashMap();
+    private final List<State> nameCharacters = Lists.newArrayList();
+    private final List<State> anyCharacters = Lists.newArrayList();
+    private final List<State> epsilons = Lists.newArrayList();
+    private final BitSet accepted = new BitSet();
+
+    State(int id) {
+      this.id = id;
+    }
+  }
+
+}
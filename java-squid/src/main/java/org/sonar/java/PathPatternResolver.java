@@ -0,0 +1,226 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the path patterns of a classpath property with a single walk of each directory the patterns start from: the
+ * patterns starting from the same directory are compiled into one {@link MultiWildcardPatternMatcher}, and the
+ * subdirectories in which none of them can match anything are not walked.
+ */
+final class PathPatternResolver {
+
+  private static final char SEPARATOR = '/';
+
+  private final boolean libraryPatterns;
+  private final List<String> filePatterns = Lists.newArrayList();
+  private final List<Set<File>> matchingFiles = Lists.newArrayList();
+  private final List<Set<File>> matchingDirs = Lists.newArrayList();
+
+  private PathPatternResolver(boolean libraryPatterns) {
+    this.libraryPatterns = libraryPatterns;
+  }
+
+  /**
+   * @param libraryPatterns whether files are matched as well as directories, in which case the jar and zip files of the
+   * matched directories are added too
+   * @return the files and directories matched by each pattern, in the order of the patterns
+   */
+  static List<List<File>> resolve(File baseDir, List<String> pathPatterns, boolean libraryPatterns) {
+    PathPatternResolver resolver = new PathPatternResolver(libraryPatterns);
+    Map<File, List<Integer>> patternsByDir = Maps.newLinkedHashMap();
+    for (int i = 0; i < pathPatterns.size(); i++) {
+      File dir = resolver.addPattern(baseDir, pathPatterns.get(i));
+      if (dir.isDirectory()) {
+        List<Integer> patterns = patternsByDir.get(dir);
+        if (patterns == null) {
+          patterns = Lists.newArrayList();
+          patternsByDir.put(dir, patterns);
+        }
+        patterns.add(i);
+      }
+    }
+    for (Map.Entry<File, List<Integer>> entry : patternsByDir.entrySet()) {
+      resolver.walk(entry.getKey(), entry.getValue());
+    }
+    List<List<File>> result = Lists.newArrayListWithCapacity(pathPatterns.size());
+    for (int i = 0; i < pathPatterns.size(); i++) {
+      List<File> files = Lists.newArrayList(resolver.matchingFiles.get(i));
+      files.addAll(resolver.matchingDirs.get(i));
+      result.add(files);
+    }
+    return result;
+  }
+
+  /**
+   * Splits the pattern into the directory preceding its first wildcard and the pattern of the paths relative to this
+   * directory.
+   *
+   * @return the directory the pattern starts from
+   */
+  private File addPattern(File baseDir, String pathPattern) {
+    String dirPath = pathPattern;
+    String filePattern;
+    int wildcardIndex = pathPattern.indexOf('*');
+    if (wildcardIndex >= 0) {
+      dirPath = pathPattern.substring(0, wildcardIndex);
+    }
+    int lastPathSeparator = Math.max(dirPath.lastIndexOf('/'), dirPath.lastIndexOf('\\'));
+    if (lastPathSeparator == -1) {
+      dirPath = ".";
+      filePattern = pathPattern;
+    } else {
+      dirPath = pathPattern.substring(0, lastPathSeparator);
+      filePattern = pathPattern.substring(lastPathSeparator + 1);
+    }
+    filePatterns.add(filePattern);
+    matchingFiles.add(Sets.<File>newLinkedHashSet());
+    matchingDirs.add(Sets.<File>newLinkedHashSet());
+    return resolvePath(baseDir, dirPath);
+  }
+
+  private static File resolvePath(File baseDir, String fileName) {
+    File file = new File(fileName);
+    if (!file.isAbsolute()) {
+      file = new File(baseDir, fileName);
+    }
+    return file;
+  }
+
+  private void walk(File dir, List<Integer> patternIndexes) {
+    try {
+      Files.walkFileTree(dir.toPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new PatternVisitor(dir.toPath(), patternIndexes));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to list files of " + dir.getAbsolutePath(), e);
+    }
+  }
+
+  private static boolean isArchive(Path path, boolean ignoreCase) {
+    String name = path.getFileName().toString();
+    if (ignoreCase) {
+      name = name.toLowerCase(Locale.ENGLISH);
+    }
+    return name.endsWith(".jar") || name.endsWith(".zip");
+  }
+
+  private class PatternVisitor extends SimpleFileVisitor<Path> {
+
+    private final Path root;
+    private final List<Integer> patternIndexes;
+    private final MultiWildcardPatternMatcher matcher;
+    private final BitSet emptyPatterns = new BitSet();
+    private final BitSet archivePatterns = new BitSet();
+    /**
+     * Patterns matching the directory being walked or one of its parents, whose jar and zip files are added.
+     */
+    private final Deque<BitSet> libraryDirs = new ArrayDeque<BitSet>();
+
+    PatternVisitor(Path root, List<Integer> patternIndexes) {
+      this.root = root;
+      this.patternIndexes = patternIndexes;
+      List<String> patterns = Lists.newArrayListWithCapacity(patternIndexes.size());
+      for (int i = 0; i < patternIndexes.size(); i++) {
+        String filePattern = filePatterns.get(patternIndexes.get(i));
+        patterns.add(filePattern);
+        // only the patterns denoting the directory itself match it
+        emptyPatterns.set(i, filePattern.isEmpty());
+        // a pattern ending with a wildcard only matches jar and zip files
+        archivePatterns.set(i, filePattern.endsWith("*"));
+      }
+      matcher = new MultiWildcardPatternMatcher(patterns);
+    }
+
+    @Override
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+      String path = relativePath(dir);
+      BitSet matches = path.isEmpty() ? emptyPatterns : matcher.match(path);
+      add(matchingDirs, matches, dir);
+      BitSet enclosingLibraryDirs = libraryDirs.isEmpty() ? new BitSet() : (BitSet) libraryDirs.peek().clone();
+      if (libraryPatterns) {
+        if (!enclosingLibraryDirs.isEmpty() && isArchive(dir, false)) {
+          add(matchingFiles, enclosingLibraryDirs, dir);
+        }
+        enclosingLibraryDirs.or(matches);
+      }
+      if (enclosingLibraryDirs.isEmpty() && !matcher.matchesBelow(path)) {
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+      libraryDirs.push(enclosingLibraryDirs);
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+      if (libraryPatterns) {
+        BitSet matches = matcher.match(relativePath(file));
+        if (!isArchive(file, true)) {
+          matches.andNot(archivePatterns);
+        }
+        add(matchingFiles, matches, file);
+        if (isArchive(file, false)) {
+          add(matchingFiles, libraryDirs.peek(), file);
+        }
+      }
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+      return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+      libraryDirs.pop();
+      return FileVisitResult.CONTINUE;
+    }
+
+    private String relativePath(Path path) {
+      return root.relativize(path).toString().replace(File.separatorChar, SEPARATOR);
+    }
+
+    private void add(List<Set<File>> matchingPaths, BitSet matches, Path path) {
+      for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+        matchingPaths.get(patternIndexes.get(i)).add(path.toFile());
+      }
+    }
+  }
+
+}
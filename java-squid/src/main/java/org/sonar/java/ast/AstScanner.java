@@ -21,6 +21,7 @@ package org.sonar.java.ast;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.Grammar;
 import com.sonar.sslr.api.RecognitionException;
@@ -30,18 +31,24 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.java.ProgressReport;
 import org.sonar.java.ast.visitors.VisitorContext;
+import org.sonar.java.incremental.AnalysisCacheAware;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.squidbridge.AstScannerExceptionHandler;
 import org.sonar.squidbridge.CommentAnalyser;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.squidbridge.api.AnalysisException;
 import org.sonar.squidbridge.api.CodeVisitor;
 import org.sonar.squidbridge.api.SourceCodeSearchEngine;
+import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.api.SourceProject;
 import org.sonar.squidbridge.indexer.SquidIndex;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 public class AstScanner {
@@ -53,6 +60,7 @@ public class AstScanner {
   private final List<AstScannerExceptionHandler> astScannerExceptionHandlers = Lists.newArrayList();
   private final Parser<LexerlessGrammar> parser;
   private CommentAnalyser commentAnalyser;
+  private FileAnalysisCache analysisCache;
 
   public AstScanner(Parser<LexerlessGrammar> parser) {
     this.parser = parser;
@@ -102,14 +110,27 @@ public class AstScanner {
 
       context.setFile(file);
 
+      if (analysisCache != null) {
+        CachedFileAnalysis cachedAnalysis = analysisCache.lookup(file);
+        if (cachedAnalysis != null) {
+          replay(context, file, cachedAnalysis);
+          continue;
+        }
+        analysisCache.startRecording(file);
+      }
+
       try {
         AstNode ast = parser.parse(file);
         astWalker.walkAndVisit(ast);
+        recordIssues(file);
       } catch (RecognitionException e) {
         LOG.error("Unable to parse source file : " + file.getAbsolutePath());
         LOG.error(e.getMessage());
 
         parseErrorWalkAndVisit(e, file);
+        if (analysisCache != null) {
+          analysisCache.discardRecording(file);
+        }
       } catch (Exception e) {
         throw new AnalysisException(getAnalyisExceptionMessage(file), e);
       }
@@ -121,6 +142,33 @@ public class AstScanner {
     }
   }
 
+  private void recordIssues(File file) {
+    if (analysisCache != null) {
+      CachedFileAnalysis recording = analysisCache.recording();
+      SourceFile sourceFile = (SourceFile) index.search(file.getAbsolutePath());
+      if (recording != null && sourceFile != null) {
+        recording.recordIssues(sourceFile);
+      }
+      analysisCache.stopRecording();
+    }
+  }
+
+  private void replay(VisitorContext context, File file, CachedFileAnalysis cachedAnalysis) {
+    SourceFile sourceFile = new SourceFile(file.getAbsolutePath(), file.getPath());
+    context.addSourceCode(sourceFile);
+    Map<String, Object> checksByClassName = Maps.newHashMap();
+    for (SquidAstVisitor<LexerlessGrammar> visitor : visitors) {
+      checksByClassName.put(visitor.getClass().getName(), visitor);
+    }
+    cachedAnalysis.replayIssues(sourceFile, checksByClassName);
+    for (SquidAstVisitor<LexerlessGrammar> visitor : visitors) {
+      if (visitor instanceof AnalysisCacheAware) {
+        ((AnalysisCacheAware) visitor).replay(file, cachedAnalysis);
+      }
+    }
+    context.popSourceCode();
+  }
+
   private void parseErrorWalkAndVisit(RecognitionException e, File file) {
     try {
       // Process the exception
@@ -160,6 +208,13 @@ public class AstScanner {
     this.commentAnalyser = commentAnalyser;
   }
 
+  /**
+   * Enables the incremental mode: files whose results are in the given cache are not parsed anymore.
+   */
+  public void setAnalysisCache(@Nullable FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
   public void accept(CodeVisitor visitor) {
     if (visitor instanceof SquidAstVisitor) {
       withSquidAstVisitor((SquidAstVisitor<LexerlessGrammar>) visitor);
@@ -30,9 +30,13 @@ import com.sonar.sslr.api.Trivia;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
 import org.sonar.java.SonarComponents;
+import org.sonar.java.incremental.AnalysisCacheAware;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.List;
@@ -41,12 +45,13 @@ import java.util.Set;
 /**
  * Saves information about lines directly into Sonar by using {@link FileLinesContext}.
  */
-public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implements AstAndTokenVisitor {
+public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implements AstAndTokenVisitor, AnalysisCacheAware {
 
   private final SonarComponents sonarComponents;
   private final Charset charset;
   private final Set<Integer> linesOfCode = Sets.newHashSet();
   private final Set<Integer> linesOfComments = Sets.newHashSet();
+  private FileAnalysisCache analysisCache;
 
   public FileLinesVisitor(SonarComponents sonarComponents, Charset charset) {
     this.sonarComponents = sonarComponents;
@@ -54,9 +59,12 @@ public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implemen
   }
 
   @Override
-  public void leaveFile(AstNode astNode) {
-    FileLinesContext fileLinesContext = sonarComponents.fileLinesContextFor(getContext().getFile());
+  public void setAnalysisCache(FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
 
+  @Override
+  public void leaveFile(AstNode astNode) {
     // TODO minimize access to files, another one in LinesVisitor
     int fileLength;
     try {
@@ -64,14 +72,28 @@ public class FileLinesVisitor extends SquidAstVisitor<LexerlessGrammar> implemen
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
+    saveLines(getContext().getFile(), fileLength, linesOfCode, linesOfComments);
+    CachedFileAnalysis recording = analysisCache == null ? null : analysisCache.recording();
+    if (recording != null) {
+      recording.setFileLines(fileLength, linesOfCode, linesOfComments);
+    }
+
+    linesOfCode.clear();
+    linesOfComments.clear();
+  }
+
+  @Override
+  public void replay(File file, CachedFileAnalysis cachedAnalysis) {
+    saveLines(file, cachedAnalysis.getNumberOfLines(), cachedAnalysis.getLinesOfCode(), cachedAnalysis.getLinesOfComments());
+  }
+
+  private void saveLines(File file, int fileLength, Set<Integer> linesOfCode, Set<Integer> linesOfComments) {
+    FileLinesContext fileLinesContext = sonarComponents.fileLinesContextFor(file);
     for (int line = 1; line <= fileLength; line++) {
       fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, linesOfCode.contains(line) ? 1 : 0);
       fileLinesContext.setIntValue(CoreMetrics.COMMENT_LINES_DATA_KEY, line, linesOfComments.contains(line) ? 1 : 0);
     }
     fileLinesContext.save();
-
-    linesOfCode.clear();
-    linesOfComments.clear();
   }
 
   @Override
@@ -21,6 +21,7 @@ package org.sonar.java.ast.visitors;
 
 import org.sonar.api.source.Symbol;
 import org.sonar.api.source.Symbolizable;
+import org.sonar.java.incremental.CachedFileAnalysis;
 import org.sonar.java.model.InternalSyntaxToken;
 import org.sonar.java.resolve.SemanticModel;
 import org.sonar.plugins.java.api.tree.BaseTreeVisitor;
@@ -36,16 +37,27 @@ import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.plugins.java.api.tree.TypeParameterTree;
 import org.sonar.plugins.java.api.tree.VariableTree;
 
+import javax.annotation.Nullable;
+
 public class SonarSymbolTableVisitor extends BaseTreeVisitor {
 
   private final SemanticModel semanticModel;
   private final Symbolizable symbolizable;
   private final Symbolizable.SymbolTableBuilder symbolTableBuilder;
+  private final CachedFileAnalysis recording;
   private CompilationUnitTree outerClass;
 
   public SonarSymbolTableVisitor(Symbolizable symbolizable, SemanticModel semanticModel) {
+    this(symbolizable, semanticModel, null);
+  }
+
+  /**
+   * @param recording if not null, symbols and references are also recorded into it
+   */
+  public SonarSymbolTableVisitor(Symbolizable symbolizable, SemanticModel semanticModel, @Nullable CachedFileAnalysis recording) {
     this.symbolizable = symbolizable;
     this.semanticModel = semanticModel;
+    this.recording = recording;
     this.symbolTableBuilder = symbolizable.newSymbolTableBuilder();
   }
 
@@ -113,8 +125,12 @@ public class SonarSymbolTableVisitor extends BaseTreeVisitor {
 
   private void createSymbol(Tree tree, IdentifierTree identifier) {
     Symbol symbol = symbolTableBuilder.newSymbol(startOffsetFor(identifier), endOffsetFor(identifier));
+    CachedFileAnalysis.Symbol cachedSymbol = recording == null ? null : recording.addSymbol(startOffsetFor(identifier), endOffsetFor(identifier));
     for (IdentifierTree usage : semanticModel.getUsages(semanticModel.getSymbol(tree))) {
       symbolTableBuilder.newReference(symbol, startOffsetFor(usage));
+      if (cachedSymbol != null) {
+        cachedSymbol.addReference(startOffsetFor(usage));
+      }
     }
   }
 
@@ -30,6 +30,9 @@ import com.sonar.sslr.api.Token;
 import com.sonar.sslr.api.Trivia;
 import org.sonar.api.source.Highlightable;
 import org.sonar.java.SonarComponents;
+import org.sonar.java.incremental.AnalysisCacheAware;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.java.ast.api.JavaKeyword;
 import org.sonar.java.ast.parser.JavaLexer;
 import org.sonar.plugins.java.api.tree.AnnotationTree;
@@ -37,12 +40,13 @@ import org.sonar.plugins.java.api.tree.Tree.Kind;
 import org.sonar.squidbridge.SquidAstVisitor;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 
-public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar> implements AstAndTokenVisitor {
+public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar> implements AstAndTokenVisitor, AnalysisCacheAware {
 
   private final SonarComponents sonarComponents;
   private final Map<AstNodeType, String> types;
@@ -50,6 +54,8 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
 
   private Highlightable.HighlightingBuilder highlighting;
   private List<Integer> lineStart;
+  private FileAnalysisCache analysisCache;
+  private CachedFileAnalysis recording;
 
   public SyntaxHighlighterVisitor(SonarComponents sonarComponents, Charset charset) {
     this.sonarComponents = sonarComponents;
@@ -76,6 +82,20 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
     }
   }
 
+  @Override
+  public void setAnalysisCache(FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  @Override
+  public void replay(File file, CachedFileAnalysis cachedAnalysis) {
+    Highlightable.HighlightingBuilder cachedHighlighting = sonarComponents.highlightableFor(file).newHighlighting();
+    for (CachedFileAnalysis.Highlighting highlight : cachedAnalysis.getHighlightings()) {
+      cachedHighlighting.highlight(highlight.getStartOffset(), highlight.getEndOffset(), highlight.getTypeOfText());
+    }
+    cachedHighlighting.done();
+  }
+
   @Override
   public void visitFile(AstNode astNode) {
     if (astNode == null) {
@@ -84,6 +104,7 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
     }
 
     highlighting = sonarComponents.highlightableFor(getContext().getFile()).newHighlighting();
+    recording = analysisCache == null ? null : analysisCache.recording();
 
     lineStart = Lists.newArrayList();
     final String content;
@@ -103,7 +124,7 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
   @Override
   public void visitNode(AstNode astNode) {
     if (astNode.is(Kind.ANNOTATION)) {
-      highlighting.highlight(astNode.getFromIndex(), ((AstNode) ((AnnotationTree) astNode).annotationType()).getToIndex(), types.get(astNode.getType()));
+      highlight(astNode.getFromIndex(), ((AstNode) ((AnnotationTree) astNode).annotationType()).getToIndex(), types.get(astNode.getType()));
     } else {
       // FIXME Hack to support prepending of keywords in literals, such as "default 0" in annotation type methods
       AstNode target = astNode;
@@ -114,7 +135,7 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
           }
         }
       }
-      highlighting.highlight(target.getFromIndex(), target.getToIndex(), types.get(astNode.getType()));
+      highlight(target.getFromIndex(), target.getToIndex(), types.get(astNode.getType()));
     }
   }
 
@@ -124,11 +145,18 @@ public class SyntaxHighlighterVisitor extends SquidAstVisitor<LexerlessGrammar>
       if (trivia.isComment()) {
         Token triviaToken = trivia.getToken();
         int offset = getOffset(triviaToken.getLine(), triviaToken.getColumn());
-        highlighting.highlight(offset, offset + triviaToken.getValue().length(), "cppd");
+        highlight(offset, offset + triviaToken.getValue().length(), "cppd");
       }
     }
   }
 
+  private void highlight(int startOffset, int endOffset, String typeOfText) {
+    highlighting.highlight(startOffset, endOffset, typeOfText);
+    if (recording != null) {
+      recording.addHighlighting(startOffset, endOffset, typeOfText);
+    }
+  }
+
   /**
    * @param line starts from 1
    * @param column starts from 0
@@ -19,35 +19,78 @@
  */
 package org.sonar.java.bytecode;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.sonar.java.CompiledClassIndex;
 import org.sonar.java.bytecode.asm.AsmClass;
 import org.sonar.java.bytecode.asm.AsmClassProvider;
 import org.sonar.java.bytecode.asm.AsmClassProvider.DETAIL_LEVEL;
 import org.sonar.java.bytecode.asm.AsmClassProviderImpl;
 import org.sonar.java.bytecode.asm.AsmMethod;
+import org.sonar.java.bytecode.asm.AsmResource;
 import org.sonar.java.bytecode.loader.SquidClassLoader;
 import org.sonar.java.bytecode.visitor.BytecodeVisitor;
+import org.sonar.java.incremental.CachedClassAnalysis;
+import org.sonar.java.incremental.ClassAnalysisCache;
+import org.sonar.java.incremental.ClassAnalysisCacheAware;
 import org.sonar.plugins.java.api.JavaResourceLocator;
 import org.sonar.squidbridge.api.AnalysisException;
+import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.CodeScanner;
 import org.sonar.squidbridge.api.CodeVisitor;
+import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.squidbridge.indexer.SquidIndex;
 
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 public class BytecodeScanner extends CodeScanner<BytecodeVisitor> {
 
   private final SquidIndex indexer;
   private JavaResourceLocator javaResourceLocator;
+  private final CompiledClassIndex compiledClassIndex;
+  private boolean streaming = false;
+  private ClassAnalysisCache analysisCache;
 
   public BytecodeScanner(SquidIndex indexer, JavaResourceLocator javaResourceLocator) {
+    this(indexer, javaResourceLocator, null);
+  }
+
+  public BytecodeScanner(SquidIndex indexer, JavaResourceLocator javaResourceLocator, @Nullable CompiledClassIndex compiledClassIndex) {
     this.indexer = indexer;
     this.javaResourceLocator = javaResourceLocator;
+    this.compiledClassIndex = compiledClassIndex;
+  }
+
+  /**
+   * @param streaming whether the edges of the members of the classes are released once the visitors have been notified
+   * of each class, see {@link AsmClassProvider#streamClasses(Collection, DETAIL_LEVEL, AsmClassProvider.ClassStreamListener)}
+   */
+  public void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * @param analysisCache cache of the results of the previous analysis: the visitors are notified only of the classes
+   * whose results can not be reused
+   */
+  public void setAnalysisCache(@Nullable ClassAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+    for (BytecodeVisitor visitor : getVisitors()) {
+      if (visitor instanceof ClassAnalysisCacheAware) {
+        ((ClassAnalysisCacheAware) visitor).setClassAnalysisCache(analysisCache);
+      }
+    }
   }
 
   public BytecodeScanner scan(Collection<File> bytecodeFilesOrDirectories) {
-    ClassLoader classLoader = ClassLoaderBuilder.create(bytecodeFilesOrDirectories);
+    ClassLoader classLoader = ClassLoaderBuilder.create(bytecodeFilesOrDirectories, compiledClassIndex);
     scanClasses(javaResourceLocator.classKeys(), new AsmClassProviderImpl(classLoader));
     // TODO unchecked cast
     ((SquidClassLoader) classLoader).close();
@@ -55,12 +98,31 @@ public class BytecodeScanner extends CodeScanner<BytecodeVisitor> {
   }
 
   protected BytecodeScanner scanClasses(Collection<String> classes, AsmClassProvider classProvider) {
-    loadByteCodeInformation(classes, classProvider);
-    linkVirtualMethods(classes, classProvider);
-    notifyBytecodeVisitors(classes, classProvider);
+    if (streaming) {
+      streamClasses(classes, classProvider);
+    } else {
+      loadByteCodeInformation(classes, classProvider);
+      linkVirtualMethods(classes, classProvider);
+      notifyBytecodeVisitors(classes, classProvider);
+    }
     return this;
   }
 
+  private void streamClasses(final Collection<String> classes, final AsmClassProvider classProvider) {
+    final BytecodeVisitor[] visitorArray = getVisitors().toArray(new BytecodeVisitor[getVisitors().size()]);
+    classProvider.streamClasses(classes, DETAIL_LEVEL.STRUCTURE_AND_CALLS, new AsmClassProvider.ClassStreamListener() {
+      @Override
+      public void classesLoaded() {
+        linkVirtualMethods(classes, classProvider);
+      }
+
+      @Override
+      public void classLoaded(AsmClass asmClass) {
+        notifyBytecodeVisitors(asmClass, visitorArray);
+      }
+    });
+  }
+
   private void linkVirtualMethods(Collection<String> keys, AsmClassProvider classProvider) {
     VirtualMethodsLinker linker = new VirtualMethodsLinker();
     for (String key : keys) {
@@ -74,20 +136,117 @@ public class BytecodeScanner extends CodeScanner<BytecodeVisitor> {
   private void notifyBytecodeVisitors(Collection<String> keys, AsmClassProvider classProvider) {
     BytecodeVisitor[] visitorArray = getVisitors().toArray(new BytecodeVisitor[getVisitors().size()]);
     for (String key : keys) {
-      try {
-        AsmClass asmClass = classProvider.getClass(key, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
-        BytecodeVisitorNotifier visitorNotifier = new BytecodeVisitorNotifier(asmClass, visitorArray);
-        visitorNotifier.notifyVisitors(indexer, javaResourceLocator);
-      } catch (Exception exception) {
-        throw new AnalysisException("Unable to analyze .class file " + key, exception);
+      notifyBytecodeVisitors(classProvider.getClass(key, DETAIL_LEVEL.STRUCTURE_AND_CALLS), visitorArray);
+    }
+  }
+
+  private void notifyBytecodeVisitors(AsmClass asmClass, BytecodeVisitor[] visitorArray) {
+    if (analysisCache == null) {
+      notifyBytecodeVisitors(asmClass, visitorArray, null);
+      return;
+    }
+    String className = asmClass.getInternalName();
+    Set<String> unusedMethods = unusedMethods(asmClass);
+    CachedClassAnalysis cachedAnalysis = analysisCache.lookup(className, unusedMethods);
+    if (cachedAnalysis != null) {
+      replay(className, cachedAnalysis, visitorArray);
+    } else {
+      analysisCache.startRecording(className, linkedClasses(asmClass), unusedMethods);
+      notifyBytecodeVisitors(asmClass, visitorArray, analysisCache.recording());
+      analysisCache.stopRecording();
+    }
+  }
+
+  private void notifyBytecodeVisitors(AsmClass asmClass, BytecodeVisitor[] visitorArray, @Nullable CachedClassAnalysis recording) {
+    SourceFile sourceFile = recording == null ? null : getSourceFile(asmClass.getInternalName());
+    Set<CheckMessage> previousMessages = sourceFile == null ? null : checkMessages(sourceFile);
+    try {
+      BytecodeVisitorNotifier visitorNotifier = new BytecodeVisitorNotifier(asmClass, visitorArray);
+      visitorNotifier.notifyVisitors(indexer, javaResourceLocator);
+    } catch (Exception exception) {
+      throw new AnalysisException("Unable to analyze .class file " + asmClass.getInternalName(), exception);
+    }
+    if (sourceFile != null) {
+      Set<CheckMessage> newMessages = checkMessages(sourceFile);
+      newMessages.removeAll(previousMessages);
+      recording.recordIssues(newMessages, ImmutableList.copyOf(visitorArray));
+    }
+  }
+
+  private void replay(String className, CachedClassAnalysis cachedAnalysis, BytecodeVisitor[] visitorArray) {
+    for (BytecodeVisitor visitor : visitorArray) {
+      visitor.setSquidIndex(indexer);
+      visitor.setJavaResourceLocator(javaResourceLocator);
+      if (visitor instanceof ClassAnalysisCacheAware) {
+        ((ClassAnalysisCacheAware) visitor).replay(className, cachedAnalysis);
       }
     }
+    SourceFile sourceFile = getSourceFile(className);
+    if (sourceFile != null) {
+      cachedAnalysis.replayIssues(sourceFile, ImmutableList.copyOf(visitorArray));
+    }
   }
 
-  private void loadByteCodeInformation(Collection<String> keys, AsmClassProvider classProvider) {
-    for (String key : keys) {
-      classProvider.getClass(key, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+  @CheckForNull
+  private SourceFile getSourceFile(String className) {
+    String sourceFileKey = javaResourceLocator.findSourceFileKeyByClassName(className);
+    return sourceFileKey == null ? null : (SourceFile) indexer.search(sourceFileKey);
+  }
+
+  private static Set<CheckMessage> checkMessages(SourceFile sourceFile) {
+    Set<CheckMessage> checkMessages = Sets.newIdentityHashSet();
+    checkMessages.addAll(sourceFile.getCheckMessages());
+    return checkMessages;
+  }
+
+  /**
+   * Whether a method is used depends on the other classes of the module, so the methods of the class which are not used
+   * are part of the fingerprint of its analysis.
+   */
+  private static Set<String> unusedMethods(AsmClass asmClass) {
+    Set<String> unusedMethods = Sets.newHashSet();
+    for (AsmMethod method : asmClass.getMethods()) {
+      if (!method.isUsed()) {
+        unusedMethods.add(method.getKey());
+      }
+    }
+    return unusedMethods;
+  }
+
+  /**
+   * Classes the visitors may look at while visiting the given class: the classes it references and their super types, as
+   * well as its own super types.
+   */
+  private static Set<String> linkedClasses(AsmClass asmClass) {
+    Set<AsmClass> linkedClasses = Sets.newHashSet();
+    List<AsmResource> resources = Lists.<AsmResource>newArrayList(asmClass);
+    resources.addAll(asmClass.getMethods());
+    resources.addAll(asmClass.getFields());
+    for (AsmResource resource : resources) {
+      for (int i = 0; i < resource.getOutgoingEdgeCount(); i++) {
+        addWithSuperTypes(resource.getOutgoingEdgeTargetAsmClass(i), linkedClasses);
+      }
     }
+    addWithSuperTypes(asmClass, linkedClasses);
+    linkedClasses.remove(asmClass);
+    Set<String> linkedClassNames = Sets.newHashSetWithExpectedSize(linkedClasses.size());
+    for (AsmClass linkedClass : linkedClasses) {
+      linkedClassNames.add(linkedClass.getInternalName());
+    }
+    return linkedClassNames;
+  }
+
+  private static void addWithSuperTypes(@Nullable AsmClass asmClass, Set<AsmClass> linkedClasses) {
+    if (asmClass != null && linkedClasses.add(asmClass)) {
+      addWithSuperTypes(asmClass.getSuperClass(), linkedClasses);
+      for (AsmClass implementedInterface : asmClass.getImplementedInterfaces()) {
+        addWithSuperTypes(implementedInterface, linkedClasses);
+      }
+    }
+  }
+
+  private void loadByteCodeInformation(Collection<String> keys, AsmClassProvider classProvider) {
+    classProvider.loadClasses(keys, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
   }
 
   @Override
@@ -62,7 +62,8 @@ public class BytecodeVisitorNotifier {
   }
 
   private void callVisitEdgeForSpecificAsmResource(AsmResource resource) {
-    for (AsmEdge edge : resource.getOutgoingEdges()) {
+    for (int i = 0; i < resource.getOutgoingEdgeCount(); i++) {
+      AsmEdge edge = resource.getOutgoingEdge(i);
       for (BytecodeVisitor visitor : bytecodeVisitors) {
         visitor.visitEdge(edge);
       }
@@ -22,8 +22,10 @@ package org.sonar.java.bytecode;
 import com.google.common.collect.Lists;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sonar.java.CompiledClassIndex;
 import org.sonar.java.bytecode.loader.SquidClassLoader;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
@@ -38,6 +40,13 @@ public final class ClassLoaderBuilder {
   }
 
   public static ClassLoader create(Collection<File> bytecodeFilesOrDirectories) {
+    return create(bytecodeFilesOrDirectories, null);
+  }
+
+  /**
+   * @param compiledClassIndex index of the class files of the binary directories, used to avoid looking up classes which are not there
+   */
+  public static ClassLoader create(Collection<File> bytecodeFilesOrDirectories, @Nullable CompiledClassIndex compiledClassIndex) {
     List<File> files = Lists.newArrayList();
     for (File file : bytecodeFilesOrDirectories) {
       if (file.isFile() && file.getPath().endsWith(".class")) {
@@ -56,7 +65,7 @@ public final class ClassLoaderBuilder {
     }
 
     try {
-      return new SquidClassLoader(files);
+      return new SquidClassLoader(files, compiledClassIndex);
     } catch (Exception e) {
       throw new IllegalStateException("Can not create ClassLoader", e);
     }
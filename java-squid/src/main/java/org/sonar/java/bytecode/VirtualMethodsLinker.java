@@ -19,14 +19,28 @@
  */
 package org.sonar.java.bytecode;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import org.sonar.java.bytecode.asm.AsmClass;
 import org.sonar.java.bytecode.asm.AsmMethod;
 
+import java.util.Map;
+
+/**
+ * Links the methods which are called but not declared by a class to their implementation in a super class.
+ * <p/>
+ * Implementations are resolved through a virtual method table per class, computed once: the table of the super class,
+ * shared as is when the class implements no method, and otherwise copied with the methods of the class added.
+ */
 public class VirtualMethodsLinker {
 
+  private static final Map<String, AsmMethod> NO_METHODS = ImmutableMap.of();
+
+  private final Map<AsmClass, Map<String, AsmMethod>> virtualMethodTables = Maps.newHashMap();
+
   public void process(AsmMethod method) {
     if (!method.isBodyLoaded() && method.isUsed()) {
-      AsmMethod implementation = findImplementation(method.getParent(), method.getKey());
+      AsmMethod implementation = virtualMethodTable(method.getParent()).get(method.getKey());
       if (implementation != null) {
         implementation.setUsed(true);
         method.linkTo(implementation);
@@ -34,15 +48,25 @@ public class VirtualMethodsLinker {
     }
   }
 
-  private AsmMethod findImplementation(AsmClass asmClass, String methodKey) {
-    AsmMethod method = asmClass.getMethod(methodKey);
-    if (method != null && method.isBodyLoaded()) {
-      return method;
-    }
-    if (asmClass.getSuperClass() != null) {
-      return findImplementation(asmClass.getSuperClass(), methodKey);
+  private Map<String, AsmMethod> virtualMethodTable(AsmClass asmClass) {
+    Map<String, AsmMethod> table = virtualMethodTables.get(asmClass);
+    if (table == null) {
+      table = asmClass.getSuperClass() == null ? NO_METHODS : virtualMethodTable(asmClass.getSuperClass());
+      Map<String, AsmMethod> implementedMethods = null;
+      for (AsmMethod method : asmClass.getMethods()) {
+        if (method.isBodyLoaded()) {
+          if (implementedMethods == null) {
+            implementedMethods = Maps.newHashMap(table);
+          }
+          implementedMethods.put(method.getKey(), method);
+        }
+      }
+      if (implementedMethods != null) {
+        table = implementedMethods;
+      }
+      virtualMethodTables.put(asmClass, table);
     }
-    return null;
+    return table;
   }
 
 }
@@ -19,6 +19,8 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import java.util.Collection;
+
 public abstract class AsmClassProvider {
 
   public enum DETAIL_LEVEL {
@@ -52,4 +54,45 @@ public abstract class AsmClassProvider {
     return getClass(internalName, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
   }
 
+  /**
+   * Loads the given classes at the given level of detail, in the order of the collection.
+   */
+  public void loadClasses(Collection<String> internalNames, DETAIL_LEVEL level) {
+    for (String internalName : internalNames) {
+      getClass(internalName, level);
+    }
+  }
+
+  /**
+   * Loads the given classes like {@link #loadClasses(Collection, DETAIL_LEVEL)}, but without keeping the outgoing edges
+   * of the members of all the classes in memory at the same time: once every class is loaded and
+   * {@link ClassStreamListener#classesLoaded()} has returned, the classes are passed one at a time to
+   * {@link ClassStreamListener#classLoaded(AsmClass)}, along with the edges of their members.
+   * <p/>
+   * This implementation keeps all the edges.
+   */
+  public void streamClasses(Collection<String> internalNames, DETAIL_LEVEL level, ClassStreamListener listener) {
+    loadClasses(internalNames, level);
+    listener.classesLoaded();
+    for (String internalName : internalNames) {
+      listener.classLoaded(getClass(internalName, level));
+    }
+  }
+
+  public interface ClassStreamListener {
+
+    /**
+     * Called once all the classes are loaded, with the used flags of their members, but possibly without the outgoing
+     * edges of their members.
+     */
+    void classesLoaded();
+
+    /**
+     * Called for each class, in the order of the loaded classes, with the outgoing edges of its members, which may be
+     * released once this method returns.
+     */
+    void classLoaded(AsmClass asmClass);
+
+  }
+
 }
@@ -19,22 +19,38 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import org.apache.commons.io.IOUtils;
 import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.CheckForNull;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class AsmClassProviderImpl extends AsmClassProvider {
 
   private static final Logger LOG = LoggerFactory.getLogger(AsmClassProviderImpl.class);
+  private static final int MAX_DECODED_AHEAD_PER_WORKER = 16;
 
   private final ClassLoader classLoader;
   private final Map<String, AsmClass> asmClassCache = new HashMap<String, AsmClass>();
+  private final Map<String, Future<ClassNode>> decodedAhead = Maps.newHashMap();
+  private Set<String> analyzedClasses;
 
   public AsmClassProviderImpl() {
     this.classLoader = Thread.currentThread().getContextClassLoader();
@@ -57,6 +73,86 @@ public class AsmClassProviderImpl extends AsmClassProvider {
     return asmClass;
   }
 
+  /**
+   * Class files are read and decoded by a pool of workers, at most {@link #MAX_DECODED_AHEAD_PER_WORKER} classes per
+   * worker ahead of the class being loaded. The model itself is built on the calling thread, in the order of the given
+   * names, so that it does not depend on the number of workers.
+   * <p/>
+   * From then on, the other classes are considered as external: when only their structure is needed, they are loaded as
+   * stubs, see {@link AsmClassVisitor#AsmClassVisitor(AsmClassProvider, AsmClass, DETAIL_LEVEL, boolean)}.
+   */
+  @Override
+  public void loadClasses(Collection<String> internalNames, final DETAIL_LEVEL level) {
+    analyzedClasses = ImmutableSet.copyOf(internalNames);
+    decodeAhead(internalNames, new ClassProcessing() {
+      @Override
+      public void process(String internalName) {
+        AsmClassProviderImpl.this.getClass(internalName, level);
+      }
+    });
+  }
+
+  /**
+   * Classes are read twice: the first time, the outgoing edges of the members of each class are released as soon as
+   * it is loaded, once they have flagged the members they reference as used. The second time, the members of each
+   * class are loaded again, passed to the listener and released, so that only the edges of one class at a time, and of
+   * the classes decoded ahead, are in memory.
+   */
+  @Override
+  public void streamClasses(Collection<String> internalNames, final DETAIL_LEVEL level, final ClassStreamListener listener) {
+    analyzedClasses = ImmutableSet.copyOf(internalNames);
+    decodeAhead(internalNames, new ClassProcessing() {
+      @Override
+      public void process(String internalName) {
+        releaseMemberEdges(AsmClassProviderImpl.this.getClass(internalName, level));
+      }
+    });
+    listener.classesLoaded();
+    decodeAhead(internalNames, new ClassProcessing() {
+      @Override
+      public void process(String internalName) {
+        AsmClass asmClass = getAsmClassFromCacheOrCreateIt(internalName);
+        decoracteAsmClassFromBytecode(asmClass, level);
+        listener.classLoaded(asmClass);
+        releaseMemberEdges(asmClass);
+      }
+    });
+  }
+
+  /**
+   * Processes the classes on the calling thread, in the order of the given names, while the following ones are decoded
+   * ahead by the workers.
+   */
+  private void decodeAhead(Collection<String> internalNames, ClassProcessing processing) {
+    int workers = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try {
+      Iterator<String> ahead = internalNames.iterator();
+      for (String internalName : internalNames) {
+        while (decodedAhead.size() < workers * MAX_DECODED_AHEAD_PER_WORKER && ahead.hasNext()) {
+          String next = ahead.next();
+          if (!decodedAhead.containsKey(next)) {
+            decodedAhead.put(next, executor.submit(new ClassDecoding(next)));
+          }
+        }
+        processing.process(internalName);
+        decodedAhead.remove(internalName);
+      }
+    } finally {
+      decodedAhead.clear();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void releaseMemberEdges(AsmClass asmClass) {
+    for (AsmMethod method : asmClass.getMethods()) {
+      method.clearOutogingEdges();
+    }
+    for (AsmField field : asmClass.getFields()) {
+      field.clearOutogingEdges();
+    }
+  }
+
   private AsmClass getAsmClassFromCacheOrCreateIt(String internalName) {
     AsmClass asmClass = asmClassCache.get(internalName);
     if (asmClass == null) {
@@ -67,10 +163,48 @@ public class AsmClassProviderImpl extends AsmClassProvider {
   }
 
   private void decoracteAsmClassFromBytecode(AsmClass asmClass, DETAIL_LEVEL level) {
+    ClassNode classNode = decodedAhead(asmClass.getInternalName());
+    if (classNode == null) {
+      readAsmClass(asmClass, level);
+    } else {
+      try {
+        classNode.accept(newClassVisitor(asmClass, level));
+      } catch (Exception e) {
+        LOG.error("Unable to process bytecode of class '" + asmClass.getInternalName() + "'", e);
+      }
+    }
+  }
+
+  private AsmClassVisitor newClassVisitor(AsmClass asmClass, DETAIL_LEVEL level) {
+    boolean external = analyzedClasses != null && !analyzedClasses.contains(asmClass.getInternalName());
+    return new AsmClassVisitor(this, asmClass, level, external && level == DETAIL_LEVEL.STRUCTURE);
+  }
+
+  /**
+   * @return the class decoded by a worker, or null if it has not been submitted or could not be decoded, in which case
+   * it is read again on the calling thread to report the failure
+   */
+  @CheckForNull
+  private ClassNode decodedAhead(String internalName) {
+    Future<ClassNode> decoded = decodedAhead.get(internalName);
+    if (decoded == null) {
+      return null;
+    }
+    try {
+      return decoded.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  private void readAsmClass(AsmClass asmClass, DETAIL_LEVEL level) {
     InputStream input = null;
     try {
 
-      AsmClassVisitor classVisitor = new AsmClassVisitor(this, asmClass, level);
+      AsmClassVisitor classVisitor = newClassVisitor(asmClass, level);
       input = classLoader.getResourceAsStream(asmClass.getInternalName() + ".class");
       ClassReader asmReader = new ClassReader(input);
       asmReader.accept(classVisitor, 0);
@@ -85,4 +219,32 @@ public class AsmClassProviderImpl extends AsmClassProvider {
     }
   }
 
+  private interface ClassProcessing {
+    void process(String internalName);
+  }
+
+  private class ClassDecoding implements Callable<ClassNode> {
+
+    private final String internalName;
+
+    ClassDecoding(String internalName) {
+      this.internalName = internalName;
+    }
+
+    @Override
+    public ClassNode call() throws IOException {
+      InputStream input = classLoader.getResourceAsStream(internalName + ".class");
+      if (input == null) {
+        return null;
+      }
+      try {
+        ClassNode classNode = new ClassNode(Opcodes.ASM5);
+        new ClassReader(input).accept(classNode, 0);
+        return classNode;
+      } finally {
+        IOUtils.closeQuietly(input);
+      }
+    }
+  }
+
 }
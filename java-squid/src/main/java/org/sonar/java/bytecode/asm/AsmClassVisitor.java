@@ -30,12 +30,22 @@ public class AsmClassVisitor extends ClassVisitor {
   private final AsmClassProvider asmClassProvider;
   private final DETAIL_LEVEL level;
   private final AsmClass asmClass;
+  private final boolean stub;
 
   public AsmClassVisitor(AsmClassProvider asmClassProvider, AsmClass asmClass, DETAIL_LEVEL level) {
+    this(asmClassProvider, asmClass, level, false);
+  }
+
+  /**
+   * @param stub whether only the hierarchy and the members of the class are loaded, without the classes used by their
+   * signatures and the exceptions thrown by the methods, for a class which is referenced but not analyzed
+   */
+  public AsmClassVisitor(AsmClassProvider asmClassProvider, AsmClass asmClass, DETAIL_LEVEL level, boolean stub) {
     super(Opcodes.ASM5);
     this.asmClassProvider = asmClassProvider;
     this.level = level;
     this.asmClass = asmClass;
+    this.stub = stub;
   }
 
   @Override
@@ -54,7 +64,7 @@ public class AsmClassVisitor extends ClassVisitor {
           asmClass.addInterface(asmClassProvider.getClass(interfaceName, DETAIL_LEVEL.STRUCTURE));
         }
       }
-      if (signature != null) {
+      if (signature != null && !stub) {
         String[] internalNames = AsmSignature.extractInternalNames(signature);
         AsmClass[] asmClasses = internalNamesToAsmClasses(internalNames, DETAIL_LEVEL.NOTHING);
         asmClass.addUsesOfClasses(asmClasses);
@@ -68,6 +78,9 @@ public class AsmClassVisitor extends ClassVisitor {
   public FieldVisitor visitField(int access, String fieldName, String description, String signature, Object value) {
     AsmField field = asmClass.getFieldOrCreateIt(fieldName);
     field.setAccessFlags(access);
+    if (stub) {
+      return null;
+    }
     String[] internalNames = AsmSignature.extractInternalNames(description, signature);
     AsmClass[] asmClasses = internalNamesToAsmClasses(internalNames, DETAIL_LEVEL.NOTHING);
     field.addUsesOfClasses(asmClasses);
@@ -85,6 +98,9 @@ public class AsmClassVisitor extends ClassVisitor {
     method.setAccessFlags(access);
 
     method.clearOutogingEdges();
+    if (stub) {
+      return null;
+    }
 
     String[] internalNames = AsmSignature.extractInternalNames(description, signature);
     AsmClass[] asmClasses = internalNamesToAsmClasses(internalNames, DETAIL_LEVEL.NOTHING);
@@ -24,7 +24,7 @@ public class AsmField extends AsmResource {
   private final String name;
 
   public AsmField(AsmClass parent, String name) {
-    this.name = name;
+    this.name = MEMBER_NAMES.intern(name);
     this.parent = parent;
   }
 
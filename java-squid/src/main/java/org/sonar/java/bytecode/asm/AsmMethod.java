@@ -21,7 +21,6 @@ package org.sonar.java.bytecode.asm;
 
 import com.google.common.collect.ImmutableList;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class AsmMethod extends AsmResource {
@@ -40,32 +39,24 @@ public class AsmMethod extends AsmResource {
 
   public AsmMethod(AsmClass parent, String name, String descriptor) {
     this.parent = parent;
-    this.name = name;
-    key = name + descriptor;
+    this.name = MEMBER_NAMES.intern(name);
+    key = MEMBER_NAMES.intern(name + descriptor);
   }
 
   public AsmMethod(AsmClass parent, String key) {
     this.parent = parent;
-    this.key = key;
-    this.name = key.substring(0, key.indexOf('('));
+    this.key = MEMBER_NAMES.intern(key);
+    this.name = MEMBER_NAMES.intern(key.substring(0, key.indexOf('(')));
   }
 
   void addThrowsOfClasses(AsmClass[] asmClasses) {
     for (AsmClass asmClass : asmClasses) {
-      addEdge(new AsmEdge(this, asmClass, SourceCodeEdgeUsage.THROWS));
+      addEdge(asmClass, SourceCodeEdgeUsage.THROWS, 0);
     }
   }
 
   public List<AsmClass> getThrows() {
-    ImmutableList.Builder<AsmClass> builder = ImmutableList.builder();
-
-    for (AsmEdge edge : getOutgoingEdges()) {
-      if (edge.getUsage() == SourceCodeEdgeUsage.THROWS) {
-        builder.add((AsmClass) edge.getTo());
-      }
-    }
-
-    return builder.build();
+    return ImmutableList.copyOf(getEdgeTargets(SourceCodeEdgeUsage.THROWS, AsmClass.class));
   }
 
   public String getName() {
@@ -84,7 +75,7 @@ public class AsmMethod extends AsmResource {
   }
 
   public void setSignature(String signature) {
-    this.signature = signature;
+    this.signature = signature == null ? null : MEMBER_NAMES.intern(signature);
   }
 
   public String getSignature() {
@@ -92,23 +83,11 @@ public class AsmMethod extends AsmResource {
   }
 
   public List<AsmField> getCallsToField() {
-    List<AsmField> callsToField = new ArrayList<AsmField>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.CALLS_FIELD) {
-        callsToField.add((AsmField) usage.getTo());
-      }
-    }
-    return callsToField;
+    return getEdgeTargets(SourceCodeEdgeUsage.CALLS_FIELD, AsmField.class);
   }
 
   public List<AsmMethod> getCallsToMethod() {
-    List<AsmMethod> callsToMethod = new ArrayList<AsmMethod>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.CALLS_METHOD) {
-        callsToMethod.add((AsmMethod) usage.getTo());
-      }
-    }
-    return callsToMethod;
+    return getEdgeTargets(SourceCodeEdgeUsage.CALLS_METHOD, AsmMethod.class);
   }
 
   @Override
@@ -189,15 +168,15 @@ public class AsmMethod extends AsmResource {
 
   private void computeAccessedField() {
     if (!isConstructor()) {
-      for (AsmEdge edge : getOutgoingEdges()) {
-        if (isCallToNonStaticInternalField(edge)) {
-          if (isFieldAccesingDifferentField((AsmField) edge.getTo())) {
+      for (int i = 0; i < getOutgoingEdgeCount(); i++) {
+        if (isCallToNonStaticInternalField(i)) {
+          if (isFieldAccesingDifferentField((AsmField) getOutgoingEdgeTarget(i))) {
             accessedField = null;
             break;
           }
-          accessedField = (AsmField) edge.getTo();
-        } else if (isCallToNonStaticInternalMethod(edge)) {
-          AsmMethod method = (AsmMethod) edge.getTo();
+          accessedField = (AsmField) getOutgoingEdgeTarget(i);
+        } else if (isCallToNonStaticInternalMethod(i)) {
+          AsmMethod method = (AsmMethod) getOutgoingEdgeTarget(i);
           if (isMethodNotAccessorOrAccessingDifferentField(method)) {
             accessedField = null;
             break;
@@ -216,12 +195,14 @@ public class AsmMethod extends AsmResource {
     return accessedField != null && accessedField != field;
   }
 
-  private boolean isCallToNonStaticInternalField(AsmEdge edge) {
-    return edge.getTargetAsmClass() == getParent() && edge.getUsage() == SourceCodeEdgeUsage.CALLS_FIELD && !((AsmField) edge.getTo()).isStatic();
+  private boolean isCallToNonStaticInternalField(int edge) {
+    return getOutgoingEdgeTargetAsmClass(edge) == getParent() && getOutgoingEdgeUsage(edge) == SourceCodeEdgeUsage.CALLS_FIELD
+      && !getOutgoingEdgeTarget(edge).isStatic();
   }
 
-  private boolean isCallToNonStaticInternalMethod(AsmEdge edge) {
-    return edge.getTargetAsmClass() == getParent() && edge.getUsage() == SourceCodeEdgeUsage.CALLS_METHOD && !((AsmMethod) edge.getTo()).isStatic();
+  private boolean isCallToNonStaticInternalMethod(int edge) {
+    return getOutgoingEdgeTargetAsmClass(edge) == getParent() && getOutgoingEdgeUsage(edge) == SourceCodeEdgeUsage.CALLS_METHOD
+      && !getOutgoingEdgeTarget(edge).isStatic();
   }
 
   @Override
@@ -19,7 +19,11 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -27,10 +31,27 @@ import java.util.Set;
 
 public class AsmResource {
 
+  private static final AsmResource[] NO_TARGETS = new AsmResource[0];
+  private static final byte[] NO_USAGES = new byte[0];
+  private static final SourceCodeEdgeUsage[] USAGES = SourceCodeEdgeUsage.values();
+
+  /**
+   * Names, keys and signatures of members are shared by the classes which declare or reference the same member.
+   */
+  static final Interner<String> MEMBER_NAMES = Interners.newWeakInterner();
+
   private int accessFlags;
   AsmClass parent;
   boolean used = false;
-  private final List<AsmEdge> outgoingEdges = new ArrayList<AsmEdge>();
+
+  /**
+   * Outgoing edges are kept as parallel arrays rather than as {@link AsmEdge} objects, which are only created when the
+   * edges are read. Source line numbers are only allocated once an edge has a line.
+   */
+  private AsmResource[] edgeTargets = NO_TARGETS;
+  private byte[] edgeUsages = NO_USAGES;
+  private int[] edgeLines;
+  private int edgeCount;
 
   void setAccessFlags(int accessFlags) {
     this.accessFlags = accessFlags;
@@ -38,15 +59,15 @@ public class AsmResource {
 
   void addUsesOfClasses(AsmClass[] asmClasses) {
     for (AsmClass asmClass : asmClasses) {
-      addEdge(new AsmEdge(this, asmClass, SourceCodeEdgeUsage.USES));
+      addEdge(asmClass, SourceCodeEdgeUsage.USES, 0);
     }
   }
 
   public Set<AsmClass> getDistinctUsedAsmClasses() {
     Set<AsmClass> distinctUsedAsmClasses = new HashSet<AsmClass>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.USES) {
-        distinctUsedAsmClasses.add((AsmClass) usage.getTo());
+    for (int i = 0; i < edgeCount; i++) {
+      if (edgeUsage(i) == SourceCodeEdgeUsage.USES) {
+        distinctUsedAsmClasses.add((AsmClass) edgeTargets[i]);
       }
     }
     return distinctUsedAsmClasses;
@@ -54,26 +75,112 @@ public class AsmResource {
 
   public Set<AsmClass> getImplementedInterfaces() {
     Set<AsmClass> implementedInterfaces = new HashSet<AsmClass>();
-    for (AsmEdge usage : getOutgoingEdges()) {
-      if (usage.getUsage() == SourceCodeEdgeUsage.IMPLEMENTS) {
-        implementedInterfaces.add((AsmClass) usage.getTo());
+    for (int i = 0; i < edgeCount; i++) {
+      if (edgeUsage(i) == SourceCodeEdgeUsage.IMPLEMENTS) {
+        implementedInterfaces.add((AsmClass) edgeTargets[i]);
       }
     }
     return implementedInterfaces;
   }
 
   public void addEdge(AsmEdge edge) {
-    outgoingEdges.add(edge);
+    addEdge(edge.getTo(), edge.getUsage(), edge.getSourceLineNumber());
+  }
+
+  void addEdge(AsmResource to, SourceCodeEdgeUsage usage, int sourceLineNumber) {
+    to.setUsed(true);
+    if (edgeCount == edgeTargets.length) {
+      int capacity = Math.max(4, edgeCount * 2);
+      edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+      edgeUsages = Arrays.copyOf(edgeUsages, capacity);
+      if (edgeLines != null) {
+        edgeLines = Arrays.copyOf(edgeLines, capacity);
+      }
+    }
+    if (sourceLineNumber != 0 && edgeLines == null) {
+      edgeLines = new int[edgeTargets.length];
+    }
+    edgeTargets[edgeCount] = to;
+    edgeUsages[edgeCount] = (byte) usage.ordinal();
+    if (edgeLines != null) {
+      edgeLines[edgeCount] = sourceLineNumber;
+    }
+    edgeCount++;
   }
 
   public void clearOutogingEdges() {
-    outgoingEdges.clear();
+    edgeTargets = NO_TARGETS;
+    edgeUsages = NO_USAGES;
+    edgeLines = null;
+    edgeCount = 0;
   }
 
+  /**
+   * Creates a new {@link AsmEdge} for each outgoing edge. Prefer {@link #getOutgoingEdgeCount()} and the indexed
+   * accessors, which read the edges without allocating them.
+   */
   public Collection<AsmEdge> getOutgoingEdges() {
+    List<AsmEdge> outgoingEdges = new ArrayList<AsmEdge>(edgeCount);
+    for (int i = 0; i < edgeCount; i++) {
+      outgoingEdges.add(getOutgoingEdge(i));
+    }
     return outgoingEdges;
   }
 
+  public int getOutgoingEdgeCount() {
+    return edgeCount;
+  }
+
+  public AsmEdge getOutgoingEdge(int index) {
+    return new AsmEdge(this, getOutgoingEdgeTarget(index), getOutgoingEdgeUsage(index), getOutgoingEdgeSourceLineNumber(index));
+  }
+
+  public AsmResource getOutgoingEdgeTarget(int index) {
+    checkEdgeIndex(index);
+    return edgeTargets[index];
+  }
+
+  public SourceCodeEdgeUsage getOutgoingEdgeUsage(int index) {
+    checkEdgeIndex(index);
+    return edgeUsage(index);
+  }
+
+  public int getOutgoingEdgeSourceLineNumber(int index) {
+    checkEdgeIndex(index);
+    return edgeLines == null ? 0 : edgeLines[index];
+  }
+
+  /**
+   * Same as {@link AsmEdge#getTargetAsmClass()} for the edge at the given index.
+   */
+  public AsmClass getOutgoingEdgeTargetAsmClass(int index) {
+    AsmResource target = getOutgoingEdgeTarget(index);
+    return target.getParent() != null ? target.getParent() : (AsmClass) target;
+  }
+
+  private void checkEdgeIndex(int index) {
+    if (index < 0 || index >= edgeCount) {
+      throw new IndexOutOfBoundsException("Edge index: " + index + ", edge count: " + edgeCount);
+    }
+  }
+
+  /**
+   * Targets of the outgoing edges with the given usage, in the order in which the edges were added.
+   */
+  <T extends AsmResource> List<T> getEdgeTargets(SourceCodeEdgeUsage usage, Class<T> targetType) {
+    List<T> targets = new ArrayList<T>();
+    for (int i = 0; i < edgeCount; i++) {
+      if (edgeUsage(i) == usage) {
+        targets.add(targetType.cast(edgeTargets[i]));
+      }
+    }
+    return targets;
+  }
+
+  private SourceCodeEdgeUsage edgeUsage(int index) {
+    return USAGES[edgeUsages[index]];
+  }
+
   public AsmClass getParent() {
     return parent;
   }
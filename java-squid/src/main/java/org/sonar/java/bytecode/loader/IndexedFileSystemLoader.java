@@ -0,0 +1,64 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.loader;
+
+import org.sonar.java.CompiledClassIndex;
+
+import java.io.File;
+import java.net.URL;
+
+/**
+ * Loads classes from a directory whose class files are in a {@link CompiledClassIndex}, so that looking up a class
+ * which is not in the directory, typically a class of a library, does not hit the file system.
+ */
+class IndexedFileSystemLoader implements Loader {
+
+  private static final String CLASS_SUFFIX = ".class";
+
+  private final File baseDir;
+  private final CompiledClassIndex compiledClassIndex;
+  private final FileSystemLoader loader;
+
+  public IndexedFileSystemLoader(File baseDir, CompiledClassIndex compiledClassIndex) {
+    this.baseDir = baseDir;
+    this.compiledClassIndex = compiledClassIndex;
+    this.loader = new FileSystemLoader(baseDir);
+  }
+
+  @Override
+  public URL findResource(String name) {
+    return isMissingClass(name) ? null : loader.findResource(name);
+  }
+
+  @Override
+  public byte[] loadBytes(String name) {
+    return isMissingClass(name) ? null : loader.loadBytes(name);
+  }
+
+  private boolean isMissingClass(String name) {
+    return name.endsWith(CLASS_SUFFIX) && !compiledClassIndex.contains(baseDir, name.substring(0, name.length() - CLASS_SUFFIX.length()));
+  }
+
+  @Override
+  public void close() {
+    loader.close();
+  }
+
+}
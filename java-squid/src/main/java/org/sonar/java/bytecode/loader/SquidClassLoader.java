@@ -20,7 +20,9 @@
 package org.sonar.java.bytecode.loader;
 
 import com.google.common.collect.Iterators;
+import org.sonar.java.CompiledClassIndex;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -40,12 +42,20 @@ public class SquidClassLoader extends ClassLoader implements Closeable {
    * @param files ordered list of files and directories from which to load classes and resources
    */
   public SquidClassLoader(List<File> files) {
+    this(files, null);
+  }
+
+  /**
+   * @param files ordered list of files and directories from which to load classes and resources
+   * @param compiledClassIndex index of the class files of some of the directories, if any
+   */
+  public SquidClassLoader(List<File> files, @Nullable CompiledClassIndex compiledClassIndex) {
     super(null);
     loaders = new ArrayList<Loader>();
     for (File file : files) {
       if (file.exists()) {
         if (file.isDirectory()) {
-          loaders.add(new FileSystemLoader(file));
+          loaders.add(directoryLoader(file, compiledClassIndex));
         } else if (file.getName().endsWith(".jar")) {
           loaders.add(new JarLoader(file));
         }
@@ -53,6 +63,13 @@ public class SquidClassLoader extends ClassLoader implements Closeable {
     }
   }
 
+  private static Loader directoryLoader(File dir, @Nullable CompiledClassIndex compiledClassIndex) {
+    if (compiledClassIndex != null && compiledClassIndex.getBinaryDirs().contains(dir)) {
+      return new IndexedFileSystemLoader(dir, compiledClassIndex);
+    }
+    return new FileSystemLoader(dir);
+  }
+
   @Override
   protected Class findClass(String name) throws ClassNotFoundException {
     String resourceName = name.replace('.', '/') + ".class";
@@ -19,72 +19,81 @@
  */
 package org.sonar.java.bytecode.visitor;
 
-import org.sonar.api.design.Dependency;
 import org.sonar.api.resources.Resource;
-import org.sonar.graph.DirectedGraph;
 import org.sonar.java.bytecode.asm.AsmClass;
 import org.sonar.java.bytecode.asm.AsmEdge;
-import org.sonar.plugins.java.api.JavaResourceLocator;
+import org.sonar.java.incremental.CachedClassAnalysis;
+import org.sonar.java.incremental.ClassAnalysisCache;
+import org.sonar.java.incremental.ClassAnalysisCacheAware;
 
 import javax.annotation.Nullable;
 
-public class DependenciesVisitor extends BytecodeVisitor {
+public class DependenciesVisitor extends BytecodeVisitor implements ClassAnalysisCacheAware {
 
   @Nullable
   private Resource fromResource;
-  private final DirectedGraph<Resource, Dependency> graph;
-  private ResourceMapping resourceMapping;
+  private int fromVertex;
+  private final DependencyGraph graph;
+  private ClassAnalysisCache analysisCache;
 
-  public DependenciesVisitor(DirectedGraph<Resource, Dependency> graph) {
+  public DependenciesVisitor(DependencyGraph graph) {
     this.graph = graph;
   }
 
   @Override
-  public void setJavaResourceLocator(JavaResourceLocator javaResourceLocator) {
-    resourceMapping = javaResourceLocator.getResourceMapping();
-    super.setJavaResourceLocator(javaResourceLocator);
+  public void setClassAnalysisCache(ClassAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+  }
+
+  @Override
+  public void replay(String className, CachedClassAnalysis cachedAnalysis) {
+    visitClass(className);
+    for (String dependency : cachedAnalysis.getDependencies()) {
+      visitDependency(dependency);
+    }
   }
 
   @Override
   public void visitClass(AsmClass asmClass) {
-    fromResource = getResource(asmClass);
+    visitClass(asmClass.getInternalName());
+  }
+
+  private void visitClass(String className) {
+    fromResource = getResource(className);
+    if (fromResource != null) {
+      fromVertex = graph.vertex(fromResource);
+    }
   }
 
   @Override
   public void visitEdge(AsmEdge edge) {
-    AsmClass toAsmClass = edge.getTargetAsmClass();
-    Resource toResource = getResource(toAsmClass);
-    Dependency fileEdge = createDependency(fromResource, toResource, null);
-    if (fromResource != null && toResource != null) {
-      createDependency(fromResource.getParent(), toResource.getParent(), fileEdge);
+    String toClassName = edge.getTargetAsmClass().getInternalName();
+    CachedClassAnalysis recording = analysisCache == null ? null : analysisCache.recording();
+    if (recording != null) {
+      recording.addDependency(toClassName);
     }
+    visitDependency(toClassName);
   }
 
-
-  private Dependency createDependency(@Nullable Resource from, @Nullable Resource to, @Nullable Dependency subDependency) {
-    Dependency dependency = null;
-    if (canWeLinkNodes(from, to)) {
-      dependency = graph.getEdge(from, to);
-      if (dependency == null) {
-        dependency = new Dependency(from, to).setUsage("USES");
-        dependency.setWeight(1);
-        graph.addEdge(dependency);
-      }
-      if (subDependency != null && !resourceMapping.getSubDependencies(dependency).contains(subDependency)) {
-        resourceMapping.addSubDependency(dependency, subDependency);
-        dependency.setWeight(dependency.getWeight() + 1);
-        subDependency.setParent(dependency);
+  private void visitDependency(String toClassName) {
+    Resource toResource = getResource(toClassName);
+    if (canWeLinkNodes(fromResource, toResource)) {
+      int fileEdge = graph.addEdge(fromVertex, graph.vertex(toResource));
+      Resource fromPackage = fromResource.getParent();
+      Resource toPackage = toResource.getParent();
+      if (canWeLinkNodes(fromPackage, toPackage)) {
+        int packageEdge = graph.addEdge(graph.vertex(fromPackage), graph.vertex(toPackage));
+        graph.addSubDependency(packageEdge, fileEdge);
       }
     }
-    return dependency;
   }
 
-  private boolean canWeLinkNodes(@Nullable Resource from, @Nullable Resource to) {
+  private static boolean canWeLinkNodes(@Nullable Resource from, @Nullable Resource to) {
     return from != null && to != null && !from.equals(to);
   }
 
-  private Resource getResource(AsmClass asmClass) {
-    return javaResourceLocator.findResourceByClassName(asmClass.getInternalName());
+  private Resource getResource(String className) {
+    return javaResourceLocator.findResourceByClassName(className);
   }
 
 }
@@ -0,0 +1,216 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.visitor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dependencies between files and between packages, recorded with int ids for resources and edges while the bytecode is
+ * scanned, and converted to a {@link DirectedGraph} of {@link Dependency} once the scan is done.
+ * <p/>
+ * The weight of an edge is 1 plus the number of distinct edges registered as its sub-dependencies, as the weight of a
+ * dependency between two packages is the number of dependencies between their files.
+ */
+public class DependencyGraph {
+
+  public static final int NO_EDGE = -1;
+
+  private final Map<Resource, Integer> vertexIds = Maps.newHashMap();
+  private final List<Resource> vertices = Lists.newArrayList();
+
+  private final LongIntIndex edgeIds = new LongIntIndex();
+  private int edgeCount;
+  private int[] edgeFrom = new int[16];
+  private int[] edgeTo = new int[16];
+  private int[] edgeWeight = new int[16];
+
+  private final LongIntIndex subDependencyIds = new LongIntIndex();
+  private int subDependencyCount;
+  private int[] subDependencyParent = new int[16];
+  private int[] subDependencyEdge = new int[16];
+
+  public int vertex(Resource resource) {
+    Integer id = vertexIds.get(resource);
+    if (id == null) {
+      id = vertices.size();
+      vertexIds.put(resource, id);
+      vertices.add(resource);
+    }
+    return id;
+  }
+
+  public Resource getVertex(int vertex) {
+    return vertices.get(vertex);
+  }
+
+  /**
+   * @return the id of the edge between the given vertices, which is added with a weight of 1 if it does not exist yet
+   */
+  public int addEdge(int from, int to) {
+    long key = key(from, to);
+    int edge = edgeIds.get(key);
+    if (edge == NO_EDGE) {
+      edge = edgeCount;
+      if (edge == edgeFrom.length) {
+        edgeFrom = Arrays.copyOf(edgeFrom, edge * 2);
+        edgeTo = Arrays.copyOf(edgeTo, edge * 2);
+        edgeWeight = Arrays.copyOf(edgeWeight, edge * 2);
+      }
+      edgeFrom[edge] = from;
+      edgeTo[edge] = to;
+      edgeWeight[edge] = 1;
+      edgeIds.put(key, edge);
+      edgeCount++;
+    }
+    return edge;
+  }
+
+  public int getEdge(int from, int to) {
+    return edgeIds.get(key(from, to));
+  }
+
+  public int getWeight(int edge) {
+    return edgeWeight[edge];
+  }
+
+  public int edgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * Registers an edge as a sub-dependency of another one, for instance a dependency between two files as a
+   * sub-dependency of the dependency between their packages. The weight of the parent edge is increased the first time
+   * a given edge is registered.
+   */
+  public void addSubDependency(int parentEdge, int edge) {
+    long key = key(parentEdge, edge);
+    if (subDependencyIds.get(key) == NO_EDGE) {
+      int subDependency = subDependencyCount;
+      if (subDependency == subDependencyParent.length) {
+        subDependencyParent = Arrays.copyOf(subDependencyParent, subDependency * 2);
+        subDependencyEdge = Arrays.copyOf(subDependencyEdge, subDependency * 2);
+      }
+      subDependencyParent[subDependency] = parentEdge;
+      subDependencyEdge[subDependency] = edge;
+      subDependencyIds.put(key, subDependency);
+      subDependencyCount++;
+      edgeWeight[parentEdge]++;
+    }
+  }
+
+  /**
+   * Creates the {@link Dependency} of each edge, in the order in which edges were added, and registers sub-dependencies
+   * in the given resource mapping.
+   */
+  public DirectedGraph<Resource, Dependency> toDirectedGraph(ResourceMapping resourceMapping) {
+    DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+    Dependency[] dependencies = new Dependency[edgeCount];
+    for (int edge = 0; edge < edgeCount; edge++) {
+      Dependency dependency = new Dependency(vertices.get(edgeFrom[edge]), vertices.get(edgeTo[edge])).setUsage("USES");
+      dependency.setWeight(edgeWeight[edge]);
+      dependencies[edge] = dependency;
+      graph.addEdge(dependency);
+    }
+    for (int i = 0; i < subDependencyCount; i++) {
+      Dependency parent = dependencies[subDependencyParent[i]];
+      Dependency subDependency = dependencies[subDependencyEdge[i]];
+      resourceMapping.addSubDependency(parent, subDependency);
+      subDependency.setParent(parent);
+    }
+    return graph;
+  }
+
+  private static long key(int first, int second) {
+    return ((long) first << 32) | (second & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Open addressing hash index from a pair of ints packed in a long to an int, with linear probing.
+   */
+  private static final class LongIntIndex {
+
+    private long[] keys = new long[64];
+    private int[] values = emptyValues(64);
+    private int size;
+
+    int get(long key) {
+      int mask = keys.length - 1;
+      for (int slot = slot(key, mask); values[slot] != NO_EDGE; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return values[slot];
+        }
+      }
+      return NO_EDGE;
+    }
+
+    /**
+     * Only called for keys which are not in the index yet.
+     */
+    void put(long key, int value) {
+      if (2 * (size + 1) > keys.length) {
+        rehash(keys.length * 2);
+      }
+      insert(key, value);
+      size++;
+    }
+
+    private void insert(long key, int value) {
+      int mask = keys.length - 1;
+      int slot = slot(key, mask);
+      while (values[slot] != NO_EDGE) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      values[slot] = value;
+    }
+
+    private void rehash(int capacity) {
+      long[] oldKeys = keys;
+      int[] oldValues = values;
+      keys = new long[capacity];
+      values = emptyValues(capacity);
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldValues[i] != NO_EDGE) {
+          insert(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+
+    private static int slot(long key, int mask) {
+      long hash = key * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int[] emptyValues(int capacity) {
+      int[] emptyValues = new int[capacity];
+      Arrays.fill(emptyValues, NO_EDGE);
+      return emptyValues;
+    }
+  }
+
+}
@@ -20,66 +20,119 @@
 package org.sonar.java.filters;
 
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.issue.batch.IssueFilter;
 import org.sonar.api.issue.batch.IssueFilterChain;
 import org.sonar.api.rule.RuleKey;
 
-import java.util.Collection;
+import javax.annotation.CheckForNull;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 
 /**
  * Issue filter used to ignore issues in the block that follow the <code>@SuppressWarnings</code> annotation.
  * <p/>
  * Plugins, via {@link org.sonar.api.BatchExtension}s, must feed this filter by registering the
- * lines in which are covered by suppress warnings. Note that filters are disabled for the issues reported by
+ * ranges of lines which are covered by suppress warnings. Note that filters are disabled for the issues reported by
  * end-users from UI or web services.
  *
  * @since 3.6
  */
 public class SuppressWarningsFilter implements IssueFilter {
 
-  private final Map<String, Multimap<Integer, String>> suppressWarningsLinesByResource = Maps.newHashMap();
+  private final Map<String, ComponentSuppressions> suppressionsByResource = Maps.newHashMap();
 
-  public void addComponent(String componentKey, Multimap<Integer, String> warningLines) {
-    suppressWarningsLinesByResource.put(componentKey, warningLines);
+  public void addComponent(String componentKey, List<SuppressWarningsRange> ranges) {
+    suppressionsByResource.put(componentKey, new ComponentSuppressions(ranges));
   }
 
   @Override
   public boolean accept(Issue issue, IssueFilterChain chain) {
-    for (String warning : getWarningsByLine(issue)) {
-      if (issueShouldNotBeReported(warning, issue)) {
+    Integer line = issue.line();
+    ComponentSuppressions suppressions = suppressionsByResource.get(issue.componentKey());
+    if (line != null && suppressions != null) {
+      Suppression suppression = suppressions.at(line);
+      if (suppression != null && suppression.suppresses(issue.ruleKey())) {
         return false;
       }
     }
     return chain.accept(issue);
   }
 
-  private Collection<String> getWarningsByLine(Issue issue) {
-    Integer line = issue.line();
-    String componentKey = issue.componentKey();
-    if (line != null && suppressWarningsLinesByResource.containsKey(componentKey)) {
-      return suppressWarningsLinesByResource.get(componentKey).get(line);
-    }
-    return Sets.newTreeSet();
+  private static boolean isSuppressWarningRule(RuleKey ruleKey) {
+    return "S1309".equals(ruleKey.rule());
   }
 
-  private boolean issueShouldNotBeReported(String warning, Issue issue) {
-    RuleKey ruleKey = issue.ruleKey();
-    return (warningIsRuleKey(warning, ruleKey) || "all".equals(warning)) && !isSuppressWarningRule(ruleKey);
-  }
+  /**
+   * Suppressions of a component, as disjoint segments of lines sorted by start line: each segment holds the warnings of
+   * all the ranges which cover it, so that the suppression of a line is found by a binary search.
+   */
+  private static class ComponentSuppressions {
+
+    private final int[] segmentStarts;
+    private final Suppression[] segments;
+
+    ComponentSuppressions(List<SuppressWarningsRange> ranges) {
+      SortedSet<Integer> boundaries = Sets.newTreeSet();
+      for (SuppressWarningsRange range : ranges) {
+        boundaries.add(range.getStartLine());
+        boundaries.add(range.getEndLine() + 1);
+      }
+      segmentStarts = new int[boundaries.size()];
+      segments = new Suppression[boundaries.size()];
+      int i = 0;
+      for (int segmentStart : boundaries) {
+        segmentStarts[i] = segmentStart;
+        segments[i] = suppressionAt(ranges, segmentStart);
+        i++;
+      }
+    }
+
+    @CheckForNull
+    private static Suppression suppressionAt(List<SuppressWarningsRange> ranges, int line) {
+      Set<String> warnings = Sets.newHashSet();
+      for (SuppressWarningsRange range : ranges) {
+        if (range.getStartLine() <= line && line <= range.getEndLine()) {
+          warnings.addAll(range.getWarnings());
+        }
+      }
+      return warnings.isEmpty() ? null : new Suppression(warnings);
+    }
 
-  private boolean warningIsRuleKey(String warning, RuleKey ruleKey) {
-    try {
-      return ruleKey.equals(RuleKey.parse(warning));
-    } catch (IllegalArgumentException e) {
-      return false;
+    @CheckForNull
+    Suppression at(int line) {
+      int index = Arrays.binarySearch(segmentStarts, line);
+      if (index < 0) {
+        // insertion point minus one: last segment starting before the line
+        index = -index - 2;
+      }
+      return index < 0 ? null : segments[index];
     }
   }
 
-  private boolean isSuppressWarningRule(RuleKey ruleKey) {
-    return "S1309".equals(ruleKey.rule());
+  private static class Suppression {
+
+    private final boolean all;
+    private final Set<RuleKey> ruleKeys = Sets.newHashSet();
+
+    Suppression(Set<String> warnings) {
+      all = warnings.contains("all");
+      for (String warning : warnings) {
+        try {
+          ruleKeys.add(RuleKey.parse(warning));
+        } catch (IllegalArgumentException e) {
+          // not a rule key, for instance a warning of the compiler
+        }
+      }
+    }
+
+    boolean suppresses(RuleKey ruleKey) {
+      return (all || ruleKeys.contains(ruleKey)) && !isSuppressWarningRule(ruleKey);
+    }
   }
+
 }
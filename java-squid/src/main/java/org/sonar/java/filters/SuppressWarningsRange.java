@@ -0,0 +1,62 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.filters;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Lines covered by a <code>@SuppressWarnings</code> annotation, from the line of the annotation to the end of the
+ * annotated declaration, along with the warnings of the annotation.
+ */
+public final class SuppressWarningsRange implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int startLine;
+  private final int endLine;
+  private final List<String> warnings;
+
+  public SuppressWarningsRange(int startLine, int endLine, List<String> warnings) {
+    this.startLine = startLine;
+    this.endLine = endLine;
+    this.warnings = ImmutableList.copyOf(warnings);
+  }
+
+  public int getStartLine() {
+    return startLine;
+  }
+
+  public int getEndLine() {
+    return endLine;
+  }
+
+  public List<String> getWarnings() {
+    return warnings;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + startLine + ", " + endLine + "] " + warnings;
+  }
+
+}
@@ -0,0 +1,35 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import java.io.File;
+
+/**
+ * Implemented by visitors which contribute results to the {@link FileAnalysisCache}: they record their results in
+ * {@link FileAnalysisCache#recording()} while a file is analyzed, and have to save them again from the cache when the
+ * analysis of an unchanged file is skipped.
+ */
+public interface AnalysisCacheAware {
+
+  void setAnalysisCache(FileAnalysisCache analysisCache);
+
+  void replay(File file, CachedFileAnalysis cachedAnalysis);
+
+}
@@ -0,0 +1,141 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceFile;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results produced by the bytecode analysis of a single class, kept in the {@link ClassAnalysisCache} so that they can be
+ * replayed on the next analysis when neither the class file nor the class files of the classes it links to have changed.
+ */
+public class CachedClassAnalysis implements Serializable {
+
+  private static final long serialVersionUID = 2L;
+
+  private final long crc;
+  private final Map<String, Long> linkedClassCrcs = Maps.newHashMap();
+  private final Set<String> unusedMethods = Sets.newHashSet();
+
+  private final List<Issue> issues = Lists.newArrayList();
+  /**
+   * In the order of the edges of the class, which determines the order of the vertices and edges of the dependency graph.
+   */
+  private final Set<String> dependencies = Sets.newLinkedHashSet();
+
+  CachedClassAnalysis(long crc, Map<String, Long> linkedClassCrcs, Collection<String> unusedMethods) {
+    this.crc = crc;
+    this.linkedClassCrcs.putAll(linkedClassCrcs);
+    this.unusedMethods.addAll(unusedMethods);
+  }
+
+  long getCrc() {
+    return crc;
+  }
+
+  /**
+   * CRCs, keyed by class name, of the class files of the classes this class was analyzed against: the classes it
+   * references and all their super types.
+   */
+  Map<String, Long> getLinkedClassCrcs() {
+    return ImmutableMap.copyOf(linkedClassCrcs);
+  }
+
+  /**
+   * Keys of the methods of the class which were used by no other class of the module.
+   */
+  Set<String> getUnusedMethods() {
+    return ImmutableSet.copyOf(unusedMethods);
+  }
+
+  /**
+   * @param checks bytecode checks, in the order in which they are notified
+   */
+  public void recordIssues(Collection<CheckMessage> checkMessages, List<?> checks) {
+    for (CheckMessage checkMessage : checkMessages) {
+      issues.add(new Issue(checkMessage, checks.indexOf(checkMessage.getCheck())));
+    }
+  }
+
+  public void replayIssues(SourceFile sourceFile, List<?> checks) {
+    for (Issue issue : issues) {
+      if (issue.checkIndex >= 0 && issue.checkIndex < checks.size()) {
+        sourceFile.log(issue.toCheckMessage(checks.get(issue.checkIndex)));
+      }
+    }
+  }
+
+  public void addDependency(String className) {
+    dependencies.add(className);
+  }
+
+  /**
+   * Names of the classes referenced by the edges of the class, in the order of their first edge.
+   */
+  public Set<String> getDependencies() {
+    return ImmutableSet.copyOf(dependencies);
+  }
+
+  private static class Issue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int checkIndex;
+    @Nullable
+    private final Integer line;
+    @Nullable
+    private final Double cost;
+    private final String message;
+    private final boolean bypassExclusion;
+
+    Issue(CheckMessage checkMessage, int checkIndex) {
+      this.checkIndex = checkIndex;
+      line = checkMessage.getLine();
+      cost = checkMessage.getCost();
+      message = checkMessage.formatDefaultMessage();
+      bypassExclusion = checkMessage.isBypassExclusion();
+    }
+
+    CheckMessage toCheckMessage(Object check) {
+      CheckMessage checkMessage = new CheckMessage(check, message);
+      if (line != null) {
+        checkMessage.setLine(line);
+      }
+      if (cost != null) {
+        checkMessage.setCost(cost);
+      }
+      checkMessage.setBypassExclusion(bypassExclusion);
+      return checkMessage;
+    }
+  }
+
+}
@@ -0,0 +1,316 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.java.filters.SuppressWarningsRange;
+import org.sonar.squidbridge.api.CheckMessage;
+import org.sonar.squidbridge.api.SourceFile;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Results produced by the AST analysis of a single source file, kept in the {@link FileAnalysisCache} so that they can be
+ * replayed on the next analysis when neither the file nor any of its dependencies has changed.
+ */
+public class CachedFileAnalysis implements Serializable {
+
+  private static final long serialVersionUID = 2L;
+
+  private final String contentHash;
+  private String packageName = "";
+  private final Set<String> importedTypes = Sets.newHashSet();
+  private final Set<String> importedPackages = Sets.newHashSet();
+  private final Set<String> referencedTypes = Sets.newHashSet();
+  private final Map<String, String> dependencyHashes = Maps.newHashMap();
+
+  private final List<Issue> issues = Lists.newArrayList();
+  private final Set<Integer> noSonarLines = Sets.newHashSet();
+
+  private final Map<String, Double> measures = Maps.newHashMap();
+  private final List<Integer> methodComplexities = Lists.newArrayList();
+  private int fileComplexity;
+
+  private int numberOfLines;
+  private final Set<Integer> linesOfCode = Sets.newHashSet();
+  private final Set<Integer> linesOfComments = Sets.newHashSet();
+
+  private final List<Highlighting> highlightings = Lists.newArrayList();
+  private final List<Symbol> symbols = Lists.newArrayList();
+
+  private final Set<String> classKeys = Sets.newHashSet();
+  private final Map<String, Integer> methodStartLines = Maps.newHashMap();
+  private final List<SuppressWarningsRange> suppressWarningRanges = Lists.newArrayList();
+
+  public CachedFileAnalysis(String contentHash) {
+    this.contentHash = contentHash;
+  }
+
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  public String getPackageName() {
+    return packageName;
+  }
+
+  public Set<String> getImportedTypes() {
+    return importedTypes;
+  }
+
+  public Set<String> getImportedPackages() {
+    return importedPackages;
+  }
+
+  public void setDependencies(String packageName, Collection<String> importedTypes, Collection<String> importedPackages) {
+    this.packageName = packageName;
+    this.importedTypes.addAll(importedTypes);
+    this.importedPackages.addAll(importedPackages);
+  }
+
+  /**
+   * Top level types, as internal names, owning the symbols referenced by the file: they are dependencies even when they
+   * are neither imported nor in the same package, for instance through fully qualified names or inherited members.
+   */
+  public Set<String> getReferencedTypes() {
+    return referencedTypes;
+  }
+
+  public void addReferencedTypes(Collection<String> referencedTypes) {
+    this.referencedTypes.addAll(referencedTypes);
+  }
+
+  /**
+   * Content hashes, keyed by absolute path, of the project files this file was analyzed against.
+   */
+  public Map<String, String> getDependencyHashes() {
+    return dependencyHashes;
+  }
+
+  public void recordIssues(SourceFile sourceFile) {
+    for (CheckMessage checkMessage : sourceFile.getCheckMessages()) {
+      issues.add(new Issue(checkMessage));
+    }
+    noSonarLines.addAll(sourceFile.getNoSonarTagLines());
+  }
+
+  /**
+   * @param checksByClassName checks which do not report issues through a {@link RuleKey}, indexed by class name
+   */
+  public void replayIssues(SourceFile sourceFile, Map<String, Object> checksByClassName) {
+    for (Issue issue : issues) {
+      Object check = issue.ruleKey != null ? RuleKey.parse(issue.ruleKey) : checksByClassName.get(issue.checkClassName);
+      if (check != null) {
+        sourceFile.log(issue.toCheckMessage(check));
+      }
+    }
+    sourceFile.addNoSonarTagLines(Sets.newHashSet(noSonarLines));
+  }
+
+  public void putMeasure(String metricKey, double value) {
+    measures.put(metricKey, value);
+  }
+
+  public Map<String, Double> getMeasures() {
+    return ImmutableMap.copyOf(measures);
+  }
+
+  public void addMethodComplexity(int complexity) {
+    methodComplexities.add(complexity);
+  }
+
+  public List<Integer> getMethodComplexities() {
+    return ImmutableList.copyOf(methodComplexities);
+  }
+
+  public int getFileComplexity() {
+    return fileComplexity;
+  }
+
+  public void setFileComplexity(int fileComplexity) {
+    this.fileComplexity = fileComplexity;
+  }
+
+  public void setFileLines(int numberOfLines, Set<Integer> linesOfCode, Set<Integer> linesOfComments) {
+    this.numberOfLines = numberOfLines;
+    this.linesOfCode.addAll(linesOfCode);
+    this.linesOfComments.addAll(linesOfComments);
+  }
+
+  public int getNumberOfLines() {
+    return numberOfLines;
+  }
+
+  public Set<Integer> getLinesOfCode() {
+    return ImmutableSet.copyOf(linesOfCode);
+  }
+
+  public Set<Integer> getLinesOfComments() {
+    return ImmutableSet.copyOf(linesOfComments);
+  }
+
+  public void addHighlighting(int startOffset, int endOffset, String typeOfText) {
+    highlightings.add(new Highlighting(startOffset, endOffset, typeOfText));
+  }
+
+  public List<Highlighting> getHighlightings() {
+    return ImmutableList.copyOf(highlightings);
+  }
+
+  public Symbol addSymbol(int startOffset, int endOffset) {
+    Symbol symbol = new Symbol(startOffset, endOffset);
+    symbols.add(symbol);
+    return symbol;
+  }
+
+  public List<Symbol> getSymbols() {
+    return ImmutableList.copyOf(symbols);
+  }
+
+  public void setResources(Collection<String> classKeys, Map<String, Integer> methodStartLines, List<SuppressWarningsRange> suppressWarningRanges) {
+    this.classKeys.addAll(classKeys);
+    this.methodStartLines.putAll(methodStartLines);
+    this.suppressWarningRanges.addAll(suppressWarningRanges);
+  }
+
+  public Set<String> getClassKeys() {
+    return ImmutableSet.copyOf(classKeys);
+  }
+
+  public Map<String, Integer> getMethodStartLines() {
+    return ImmutableMap.copyOf(methodStartLines);
+  }
+
+  public List<SuppressWarningsRange> getSuppressWarningRanges() {
+    return ImmutableList.copyOf(suppressWarningRanges);
+  }
+
+  private static class Issue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Nullable
+    private final String ruleKey;
+    @Nullable
+    private final String checkClassName;
+    @Nullable
+    private final Integer line;
+    @Nullable
+    private final Double cost;
+    private final String message;
+    private final boolean bypassExclusion;
+
+    Issue(CheckMessage checkMessage) {
+      Object check = checkMessage.getCheck();
+      if (check instanceof RuleKey) {
+        ruleKey = check.toString();
+        checkClassName = null;
+      } else {
+        ruleKey = null;
+        checkClassName = check.getClass().getName();
+      }
+      line = checkMessage.getLine();
+      cost = checkMessage.getCost();
+      message = checkMessage.formatDefaultMessage();
+      bypassExclusion = checkMessage.isBypassExclusion();
+    }
+
+    CheckMessage toCheckMessage(Object check) {
+      CheckMessage checkMessage = new CheckMessage(check, message);
+      if (line != null) {
+        checkMessage.setLine(line);
+      }
+      if (cost != null) {
+        checkMessage.setCost(cost);
+      }
+      checkMessage.setBypassExclusion(bypassExclusion);
+      return checkMessage;
+    }
+  }
+
+  public static class Highlighting implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int startOffset;
+    private final int endOffset;
+    private final String typeOfText;
+
+    Highlighting(int startOffset, int endOffset, String typeOfText) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+      this.typeOfText = typeOfText;
+    }
+
+    public int getStartOffset() {
+      return startOffset;
+    }
+
+    public int getEndOffset() {
+      return endOffset;
+    }
+
+    public String getTypeOfText() {
+      return typeOfText;
+    }
+  }
+
+  public static class Symbol implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int startOffset;
+    private final int endOffset;
+    private final List<Integer> references = Lists.newArrayList();
+
+    Symbol(int startOffset, int endOffset) {
+      this.startOffset = startOffset;
+      this.endOffset = endOffset;
+    }
+
+    public void addReference(int startOffset) {
+      references.add(startOffset);
+    }
+
+    public int getStartOffset() {
+      return startOffset;
+    }
+
+    public int getEndOffset() {
+      return endOffset;
+    }
+
+    public List<Integer> getReferences() {
+      return ImmutableList.copyOf(references);
+    }
+  }
+
+}
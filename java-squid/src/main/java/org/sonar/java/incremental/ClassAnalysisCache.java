@@ -0,0 +1,177 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.java.CompiledClassIndex;
+
+import javax.annotation.CheckForNull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent, per class, cache of bytecode analysis results used by the incremental mode.
+ * <p/>
+ * An entry is reused only if the CRC of the class file is unchanged, if the CRC of the class file of every class it
+ * links to, directly or as a super type, is unchanged, if the same methods of the class are used by the other classes
+ * of the module, and if the analysis fingerprint is the one of the previous analysis. Otherwise the bytecode visitors
+ * are notified of the class again and its entry is recorded anew.
+ */
+public class ClassAnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ClassAnalysisCache.class);
+
+  /**
+   * CRC of a class which is not in the binary directories of the module.
+   */
+  static final long NOT_INDEXED = -1L;
+
+  private final File cacheFile;
+  private final String fingerprint;
+  private final CompiledClassIndex compiledClassIndex;
+  private final Map<String, CachedClassAnalysis> previousAnalyses;
+  private final Map<String, CachedClassAnalysis> currentAnalyses = Maps.newHashMap();
+  private CachedClassAnalysis recording;
+  private int reused;
+
+  @VisibleForTesting
+  ClassAnalysisCache(File cacheFile, String fingerprint, CompiledClassIndex compiledClassIndex, Map<String, CachedClassAnalysis> previousAnalyses) {
+    this.cacheFile = cacheFile;
+    this.fingerprint = fingerprint;
+    this.compiledClassIndex = compiledClassIndex;
+    this.previousAnalyses = previousAnalyses;
+  }
+
+  /**
+   * Loads the results of the previous analysis from the given file. They are discarded if the file can not be read or if
+   * it has been written with another fingerprint.
+   *
+   * @param configuration anything that, when changed, must invalidate all cached results (active rules, settings...)
+   * @param classpath libraries and binaries the bytecode analysis is performed against
+   * @param compiledClassIndex class files of the module, which provides their CRCs
+   */
+  public static ClassAnalysisCache load(File cacheFile, String configuration, Collection<File> classpath, CompiledClassIndex compiledClassIndex) {
+    String fingerprint = FileAnalysisCache.fingerprint(configuration, classpath);
+    Map<String, CachedClassAnalysis> previousAnalyses = Maps.newHashMap();
+    if (cacheFile.isFile()) {
+      ObjectInputStream in = null;
+      try {
+        in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(cacheFile))));
+        if (fingerprint.equals(in.readUTF())) {
+          previousAnalyses = (HashMap<String, CachedClassAnalysis>) in.readObject();
+        } else {
+          LOG.info("Configuration or classpath changed since previous analysis, bytecode analysis cache is discarded");
+        }
+      } catch (Exception e) {
+        LOG.warn("Unable to read bytecode analysis cache " + cacheFile.getAbsolutePath() + ", all classes will be analyzed", e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return new ClassAnalysisCache(cacheFile, fingerprint, compiledClassIndex, previousAnalyses);
+  }
+
+  /**
+   * @param unusedMethods keys of the methods of the class which are not used in the current analysis
+   * @return the results of the previous analysis of the given class, or null if they can not be reused
+   */
+  @CheckForNull
+  public CachedClassAnalysis lookup(String className, Set<String> unusedMethods) {
+    CachedClassAnalysis analysis = previousAnalyses.get(className);
+    if (analysis == null || analysis.getCrc() != crc(className) || !analysis.getUnusedMethods().equals(unusedMethods)) {
+      return null;
+    }
+    for (Map.Entry<String, Long> linkedClass : analysis.getLinkedClassCrcs().entrySet()) {
+      if (linkedClass.getValue() != crc(linkedClass.getKey())) {
+        return null;
+      }
+    }
+    currentAnalyses.put(className, analysis);
+    reused++;
+    return analysis;
+  }
+
+  /**
+   * @param linkedClasses names of the classes the class links to, directly or as super types
+   * @param unusedMethods keys of the methods of the class which are not used in the current analysis
+   */
+  public void startRecording(String className, Collection<String> linkedClasses, Collection<String> unusedMethods) {
+    Map<String, Long> linkedClassCrcs = Maps.newHashMapWithExpectedSize(linkedClasses.size());
+    for (String linkedClass : linkedClasses) {
+      linkedClassCrcs.put(linkedClass, crc(linkedClass));
+    }
+    recording = new CachedClassAnalysis(crc(className), linkedClassCrcs, unusedMethods);
+    currentAnalyses.put(className, recording);
+  }
+
+  /**
+   * @return the entry being recorded for the class currently analyzed, or null if results are not recorded
+   */
+  @CheckForNull
+  public CachedClassAnalysis recording() {
+    return recording;
+  }
+
+  public void stopRecording() {
+    recording = null;
+  }
+
+  public int reusedClasses() {
+    return reused;
+  }
+
+  public void save() {
+    ObjectOutputStream out = null;
+    try {
+      Files.createParentDirs(cacheFile);
+      out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile))));
+      out.writeUTF(fingerprint);
+      out.writeObject(new HashMap<String, CachedClassAnalysis>(currentAnalyses));
+    } catch (IOException e) {
+      LOG.warn("Unable to write bytecode analysis cache " + cacheFile.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+    LOG.info(reused + "/" + currentAnalyses.size() + " classes reused from bytecode analysis cache");
+  }
+
+  private long crc(String className) {
+    CompiledClassIndex.CompiledClass compiledClass = compiledClassIndex.get(className);
+    return compiledClass == null ? NOT_INDEXED : compiledClass.getCrc();
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+/**
+ * Implemented by bytecode visitors which contribute results to the {@link ClassAnalysisCache}, other than issues: they
+ * record their results in {@link ClassAnalysisCache#recording()} while a class is visited, and have to produce them
+ * again from the cache when the visit of an unchanged class is skipped.
+ */
+public interface ClassAnalysisCacheAware {
+
+  void setClassAnalysisCache(ClassAnalysisCache analysisCache);
+
+  void replay(String className, CachedClassAnalysis cachedAnalysis);
+
+}
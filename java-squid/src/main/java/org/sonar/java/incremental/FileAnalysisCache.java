@@ -0,0 +1,273 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent, per source file, cache of analysis results used by the incremental mode.
+ * <p/>
+ * An entry is reused only if the content of the file is unchanged, if the content of every project file it depends on
+ * (same package, imports and types owning the referenced symbols) is unchanged, and if the analysis fingerprint (active rules, classpath libraries...) is the
+ * one of the previous analysis. Otherwise the file is analyzed again and its entry is recorded anew.
+ */
+public class FileAnalysisCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FileAnalysisCache.class);
+
+  private final File cacheFile;
+  private final String fingerprint;
+  private final Map<String, CachedFileAnalysis> previousAnalyses;
+  private final Map<String, CachedFileAnalysis> currentAnalyses = Maps.newHashMap();
+  private final Map<String, String> contentHashes = Maps.newHashMap();
+  private CachedFileAnalysis recording;
+  private int reused;
+
+  @VisibleForTesting
+  FileAnalysisCache(File cacheFile, String fingerprint, Map<String, CachedFileAnalysis> previousAnalyses) {
+    this.cacheFile = cacheFile;
+    this.fingerprint = fingerprint;
+    this.previousAnalyses = previousAnalyses;
+  }
+
+  /**
+   * Loads the results of the previous analysis from the given file. They are discarded if the file can not be read or if
+   * it has been written with another fingerprint.
+   *
+   * @param configuration anything that, when changed, must invalidate all cached results (active rules, settings...)
+   * @param classpath libraries and binaries the semantic analysis is performed against
+   */
+  public static FileAnalysisCache load(File cacheFile, String configuration, Collection<File> classpath) {
+    String fingerprint = fingerprint(configuration, classpath);
+    Map<String, CachedFileAnalysis> previousAnalyses = Maps.newHashMap();
+    if (cacheFile.isFile()) {
+      ObjectInputStream in = null;
+      try {
+        in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(new FileInputStream(cacheFile))));
+        if (fingerprint.equals(in.readUTF())) {
+          previousAnalyses = (HashMap<String, CachedFileAnalysis>) in.readObject();
+        } else {
+          LOG.info("Configuration or classpath changed since previous analysis, incremental analysis cache is discarded");
+        }
+      } catch (Exception e) {
+        LOG.warn("Unable to read incremental analysis cache " + cacheFile.getAbsolutePath() + ", all files will be analyzed", e);
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return new FileAnalysisCache(cacheFile, fingerprint, previousAnalyses);
+  }
+
+  /**
+   * Directories of the classpath are not part of the fingerprint: they contain the output of the compilation of the
+   * project itself, whose changes are tracked through the dependency hashes of each entry.
+   */
+  @VisibleForTesting
+  static String fingerprint(String configuration, Collection<File> classpath) {
+    MessageDigest digest = newDigest();
+    digest.update(configuration.getBytes(Charsets.UTF_8));
+    for (File element : classpath) {
+      digest.update(element.getAbsolutePath().getBytes(Charsets.UTF_8));
+      if (element.isFile()) {
+        digest.update((element.length() + ":" + element.lastModified()).getBytes(Charsets.UTF_8));
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return the results of the previous analysis of the given file, or null if they can not be reused
+   */
+  @CheckForNull
+  public CachedFileAnalysis lookup(File file) {
+    String path = file.getAbsolutePath();
+    CachedFileAnalysis analysis = previousAnalyses.get(path);
+    if (analysis == null || !analysis.getContentHash().equals(contentHash(file))) {
+      return null;
+    }
+    for (Map.Entry<String, String> dependency : analysis.getDependencyHashes().entrySet()) {
+      if (!dependency.getValue().equals(contentHash(new File(dependency.getKey())))) {
+        return null;
+      }
+    }
+    currentAnalyses.put(path, analysis);
+    reused++;
+    return analysis;
+  }
+
+  public void startRecording(File file) {
+    recording = new CachedFileAnalysis(contentHash(file));
+    currentAnalyses.put(file.getAbsolutePath(), recording);
+  }
+
+  /**
+   * @return the entry being recorded for the file currently analyzed, or null if results are not recorded
+   */
+  @CheckForNull
+  public CachedFileAnalysis recording() {
+    return recording;
+  }
+
+  public void stopRecording() {
+    recording = null;
+  }
+
+  /**
+   * Drops the entry being recorded, typically because the file can not be parsed.
+   */
+  public void discardRecording(File file) {
+    currentAnalyses.remove(file.getAbsolutePath());
+    recording = null;
+  }
+
+  public int reusedFiles() {
+    return reused;
+  }
+
+  /**
+   * Resolves the dependencies of the recorded entries and writes all the entries of the current analysis.
+   */
+  public void save() {
+    resolveDependencies();
+    ObjectOutputStream out = null;
+    try {
+      Files.createParentDirs(cacheFile);
+      out = new ObjectOutputStream(new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(cacheFile))));
+      out.writeUTF(fingerprint);
+      out.writeObject(new HashMap<String, CachedFileAnalysis>(currentAnalyses));
+    } catch (IOException e) {
+      LOG.warn("Unable to write incremental analysis cache " + cacheFile.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(out);
+    }
+    LOG.info(reused + "/" + currentAnalyses.size() + " source files reused from incremental analysis cache");
+  }
+
+  private void resolveDependencies() {
+    Multimap<String, String> filesByPackage = HashMultimap.create();
+    Map<String, String> fileByType = Maps.newHashMap();
+    for (Map.Entry<String, CachedFileAnalysis> entry : currentAnalyses.entrySet()) {
+      CachedFileAnalysis analysis = entry.getValue();
+      filesByPackage.put(analysis.getPackageName(), entry.getKey());
+      for (String classKey : analysis.getClassKeys()) {
+        fileByType.put(classKey.replace('$', '/'), entry.getKey());
+      }
+    }
+    for (Map.Entry<String, CachedFileAnalysis> entry : currentAnalyses.entrySet()) {
+      CachedFileAnalysis analysis = entry.getValue();
+      analysis.getDependencyHashes().clear();
+      Set<String> dependencies = Sets.newHashSet(filesByPackage.get(analysis.getPackageName()));
+      for (String importedPackage : analysis.getImportedPackages()) {
+        dependencies.addAll(filesByPackage.get(importedPackage));
+      }
+      for (String importedType : analysis.getImportedTypes()) {
+        addIfNotNull(dependencies, fileByType.get(importedType));
+      }
+      for (String referencedType : analysis.getReferencedTypes()) {
+        addIfNotNull(dependencies, fileByType.get(referencedType));
+      }
+      dependencies.remove(entry.getKey());
+      for (String dependency : dependencies) {
+        analysis.getDependencyHashes().put(dependency, contentHash(new File(dependency)));
+      }
+    }
+  }
+
+  private static void addIfNotNull(Set<String> dependencies, @Nullable String dependency) {
+    if (dependency != null) {
+      dependencies.add(dependency);
+    }
+  }
+
+  private String contentHash(File file) {
+    String path = file.getAbsolutePath();
+    String hash = contentHashes.get(path);
+    if (hash == null) {
+      hash = file.isFile() ? hash(file) : "";
+      contentHashes.put(path, hash);
+    }
+    return hash;
+  }
+
+  private static String hash(File file) {
+    MessageDigest digest = newDigest();
+    InputStream in = null;
+    try {
+      in = new BufferedInputStream(new FileInputStream(file));
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+}
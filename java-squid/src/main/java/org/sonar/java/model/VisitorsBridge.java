@@ -23,19 +23,29 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.sonar.sslr.api.AstNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.source.Symbol;
+import org.sonar.api.source.Symbolizable;
 import org.sonar.java.CharsetAwareVisitor;
 import org.sonar.java.SonarComponents;
 import org.sonar.java.ast.visitors.ComplexityVisitor;
 import org.sonar.java.ast.visitors.SonarSymbolTableVisitor;
+import org.sonar.java.incremental.AnalysisCacheAware;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.java.resolve.SemanticModel;
 import org.sonar.plugins.java.api.JavaFileScanner;
 import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
 import org.sonar.plugins.java.api.tree.ClassTree;
 import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.IdentifierTree;
+import org.sonar.plugins.java.api.tree.ImportTree;
+import org.sonar.plugins.java.api.tree.MemberSelectExpressionTree;
 import org.sonar.plugins.java.api.tree.MethodTree;
 import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.squidbridge.SquidAstVisitor;
@@ -43,6 +53,7 @@ import org.sonar.squidbridge.api.CheckMessage;
 import org.sonar.squidbridge.api.SourceFile;
 import org.sonar.sslr.parser.LexerlessGrammar;
 
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.nio.charset.Charset;
@@ -51,15 +62,17 @@ import java.util.List;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements CharsetAwareVisitor {
+public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements CharsetAwareVisitor, AnalysisCacheAware {
 
   private static final Logger LOG = LoggerFactory.getLogger(VisitorsBridge.class);
 
   private final List<JavaFileScanner> scanners;
+  private final boolean needsSemantic;
   private final SonarComponents sonarComponents;
   private SemanticModel semanticModel;
   private List<File> projectClasspath;
   private boolean analyseAccessors;
+  private FileAnalysisCache analysisCache;
 
   @VisibleForTesting
   public VisitorsBridge(JavaFileScanner visitor) {
@@ -80,6 +93,8 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
       }
     }
     this.scanners = scannersBuilder.build();
+    // the symbol table highlighting the references of the file is only saved along with the semantic model it is built from
+    this.needsSemantic = needsSemantic(scanners);
     this.sonarComponents = sonarComponents;
     if (sonarComponents != null) {
       projectClasspath = sonarComponents.getJavaClasspath();
@@ -88,6 +103,15 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
     }
   }
 
+  private static boolean needsSemantic(List<JavaFileScanner> scanners) {
+    for (JavaFileScanner scanner : scanners) {
+      if (!(scanner instanceof SyntacticJavaFileScanner)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public void setAnalyseAccessors(boolean analyseAccessors) {
     this.analyseAccessors = analyseAccessors;
   }
@@ -101,18 +125,50 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
     }
   }
 
+  @Override
+  public void setAnalysisCache(FileAnalysisCache analysisCache) {
+    this.analysisCache = analysisCache;
+    for (JavaFileScanner scanner : scanners) {
+      if (scanner instanceof AnalysisCacheAware) {
+        ((AnalysisCacheAware) scanner).setAnalysisCache(analysisCache);
+      }
+    }
+  }
+
+  @Override
+  public void replay(File file, CachedFileAnalysis cachedAnalysis) {
+    if (sonarComponents != null) {
+      Symbolizable symbolizable = sonarComponents.symbolizableFor(file);
+      Symbolizable.SymbolTableBuilder symbolTableBuilder = symbolizable.newSymbolTableBuilder();
+      for (CachedFileAnalysis.Symbol cachedSymbol : cachedAnalysis.getSymbols()) {
+        Symbol symbol = symbolTableBuilder.newSymbol(cachedSymbol.getStartOffset(), cachedSymbol.getEndOffset());
+        for (Integer reference : cachedSymbol.getReferences()) {
+          symbolTableBuilder.newReference(symbol, reference);
+        }
+      }
+      symbolizable.setSymbolTable(symbolTableBuilder.build());
+    }
+    for (JavaFileScanner scanner : scanners) {
+      if (scanner instanceof AnalysisCacheAware) {
+        ((AnalysisCacheAware) scanner).replay(file, cachedAnalysis);
+      }
+    }
+  }
+
   @Override
   public void visitFile(@Nullable AstNode astNode) {
     semanticModel = null;
     if (astNode != null) {
       CompilationUnitTree tree = (CompilationUnitTree) astNode;
-      if (isNotJavaLangOrSerializable()) {
+      recordDependencies(tree);
+      if (needsSemantic && isNotJavaLangOrSerializable()) {
         try {
           semanticModel = SemanticModel.createFor(tree, getProjectClasspath());
         } catch (Exception e) {
           LOG.error("Unable to create symbol table for : " + getContext().getFile().getAbsolutePath(), e);
           return;
         }
+        recordReferencedTypes();
         createSonarSymbolTable(tree);
       } else {
         SemanticModel.handleMissingTypes(tree);
@@ -128,6 +184,72 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
     }
   }
 
+  private void recordDependencies(CompilationUnitTree tree) {
+    CachedFileAnalysis recording = analysisCache == null ? null : analysisCache.recording();
+    if (recording == null) {
+      return;
+    }
+    Set<String> importedTypes = Sets.newHashSet();
+    Set<String> importedPackages = Sets.newHashSet();
+    for (ImportTree importTree : tree.imports()) {
+      Tree qualifiedIdentifier = importTree.qualifiedIdentifier();
+      if (qualifiedIdentifier.is(Tree.Kind.MEMBER_SELECT)) {
+        MemberSelectExpressionTree memberSelect = (MemberSelectExpressionTree) qualifiedIdentifier;
+        String qualifier = internalName(memberSelect.expression());
+        if (importTree.isStatic()) {
+          importedTypes.add(qualifier);
+        } else if ("*".equals(memberSelect.identifier().name())) {
+          importedPackages.add(qualifier);
+        } else {
+          importedTypes.add(qualifier + "/" + memberSelect.identifier().name());
+        }
+      }
+    }
+    String packageName = ((JavaTree.CompilationUnitTreeImpl) tree).packageNameAsString().replace('.', '/');
+    recording.setDependencies(packageName, importedTypes, importedPackages);
+  }
+
+  private void recordReferencedTypes() {
+    CachedFileAnalysis recording = analysisCache == null ? null : analysisCache.recording();
+    if (recording == null) {
+      return;
+    }
+    Set<String> referencedTypes = Sets.newHashSet();
+    for (org.sonar.java.resolve.Symbol symbol : semanticModel.getSymbolUsed()) {
+      org.sonar.java.resolve.Symbol.TypeSymbol topLevelType = topLevelType(symbol);
+      if (topLevelType != null) {
+        referencedTypes.add(topLevelType.getFullyQualifiedName().replace('.', '/'));
+      }
+    }
+    recording.addReferencedTypes(referencedTypes);
+  }
+
+  /**
+   * Unlike {@link org.sonar.java.resolve.Symbol#outermostClass()}, tolerates symbols which are not owned by a package,
+   * like unknown symbols.
+   */
+  @CheckForNull
+  private static org.sonar.java.resolve.Symbol.TypeSymbol topLevelType(org.sonar.java.resolve.Symbol symbol) {
+    org.sonar.java.resolve.Symbol current = symbol;
+    org.sonar.java.resolve.Symbol result = null;
+    while (current != null && !current.isKind(org.sonar.java.resolve.Symbol.PCK)) {
+      result = current;
+      current = current.owner();
+    }
+    if (current == null || result == null || !result.isKind(org.sonar.java.resolve.Symbol.TYP)) {
+      return null;
+    }
+    return (org.sonar.java.resolve.Symbol.TypeSymbol) result;
+  }
+
+  private static String internalName(Tree tree) {
+    if (tree.is(Tree.Kind.MEMBER_SELECT)) {
+      MemberSelectExpressionTree memberSelect = (MemberSelectExpressionTree) tree;
+      return internalName(memberSelect.expression()) + "/" + memberSelect.identifier().name();
+    }
+    return ((IdentifierTree) tree).name();
+  }
+
   private boolean isNotJavaLangOrSerializable() {
     String[] path = getContext().peekSourceCode().getName().split(Pattern.quote(File.separator));
     boolean isJavaLang = path.length > 3 && "java".equals(path[path.length - 3]) && "lang".equals(path[path.length - 2]);
@@ -143,7 +265,8 @@ public class VisitorsBridge extends SquidAstVisitor<LexerlessGrammar> implements
 
   private void createSonarSymbolTable(CompilationUnitTree tree) {
     if (sonarComponents != null) {
-      SonarSymbolTableVisitor symVisitor = new SonarSymbolTableVisitor(sonarComponents.symbolizableFor(getContext().getFile()), semanticModel);
+      CachedFileAnalysis recording = analysisCache == null ? null : analysisCache.recording();
+      SonarSymbolTableVisitor symVisitor = new SonarSymbolTableVisitor(sonarComponents.symbolizableFor(getContext().getFile()), semanticModel, recording);
       symVisitor.visitCompilationUnit(tree);
     }
   }
@@ -180,8 +180,7 @@ public class SemanticModel {
     return Collections.unmodifiableCollection(usagesTree.get(symbol));
   }
 
-  @VisibleForTesting
-  Collection<Symbol> getSymbolUsed() {
+  public Collection<Symbol> getSymbolUsed() {
     return usagesTree.keySet();
   }
 
@@ -0,0 +1,93 @@
+/*
+ * License header, not counted as comment lines.
+ */
+package metrics;
+
+import java.io.InputStream;
+
+/**
+ * Documented public class.
+ */
+public class WithoutTrailingNewline {
+
+  public static final int CONSTANT = 0; // NOSONAR
+
+  private int field;
+
+  /**
+   * Documented accessor.
+   */
+  public int getField() {
+    return field;
+  }
+
+  public void setField(int field) {
+    this.field = field;
+  }
+
+  public int method(int a, InputStream stream) throws Exception {
+    int result = 0, other = 1;
+    for (int i = 0, j = 1; i < a && j > 0; i++, j--) {
+      result += i > 0 ? i : -i;
+    }
+    switch (a) {
+      case 0:
+      case 1:
+        result++;
+        break;
+      default:
+        result--;
+    }
+    try (InputStream in = stream) {
+      result += in.read();
+    } catch (RuntimeException e) {
+      throw e;
+    } finally {
+      other = 0;
+    }
+    Runnable runnable = new Runnable() {
+      @Override
+      public void run() {
+        if (field > 0) {
+          return;
+        }
+        field++;
+      }
+    };
+    class Local {
+      int local(int b) {
+        while (b > 0) {
+          b--;
+        }
+        return b;
+      }
+    }
+    /* multi
+       line
+
+       comment */
+    return result + other + new Local().local(a);
+  }
+
+  interface Nested {
+    void nested();
+
+    class InInterface {
+      boolean get() {
+        return true || false;
+      }
+    }
+  }
+
+  enum Kind {
+    A {
+      @Override
+      int value() {
+        return 1;
+      }
+    };
+
+    abstract int value();
+  }
+
+}
\ No newline at end of file
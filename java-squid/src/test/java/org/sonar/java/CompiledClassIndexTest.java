@@ -0,0 +1,111 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.zip.CRC32;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class CompiledClassIndexTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_index_class_files_by_vm_name() throws Exception {
+    File binaryDir = temp.newFolder();
+    File classFile = new File(binaryDir, "org/foo/Bar.class");
+    Files.createParentDirs(classFile);
+    Files.write(new byte[] {1, 2, 3}, classFile);
+    Files.write(new byte[] {4}, new File(binaryDir, "org/foo/Bar.java"));
+
+    CompiledClassIndex index = CompiledClassIndex.create(Lists.newArrayList(binaryDir, new File("nowhere")));
+    assertThat(index.isEmpty()).isFalse();
+    assertThat(index.classes()).hasSize(1);
+    CompiledClassIndex.CompiledClass compiledClass = index.get("org/foo/Bar");
+    assertThat(compiledClass.getName()).isEqualTo("org/foo/Bar");
+    assertThat(compiledClass.getFile()).isEqualTo(classFile);
+    assertThat(compiledClass.getSize()).isEqualTo(3);
+    assertThat(compiledClass.getLastModified()).isEqualTo(classFile.lastModified());
+    assertThat(compiledClass.getCrc()).isEqualTo(crc(new byte[] {1, 2, 3}));
+    assertThat(index.get("org/foo/Baz")).isNull();
+    assertThat(index.contains(binaryDir, "org/foo/Bar")).isTrue();
+    assertThat(index.contains(new File("nowhere"), "org/foo/Bar")).isFalse();
+  }
+
+  @Test
+  public void first_binary_dir_should_win() throws Exception {
+    File first = temp.newFolder();
+    File second = temp.newFolder();
+    Files.write(new byte[] {1}, new File(first, "A.class"));
+    Files.write(new byte[] {2}, new File(second, "A.class"));
+    Files.write(new byte[] {3}, new File(second, "B.class"));
+
+    CompiledClassIndex index = CompiledClassIndex.create(Lists.newArrayList(first, second));
+    assertThat(index.get("A").getFile()).isEqualTo(new File(first, "A.class"));
+    assertThat(index.contains(second, "A")).isTrue();
+    assertThat(index.classes()).hasSize(2);
+  }
+
+  @Test
+  public void should_reuse_saved_checksums_of_unchanged_class_files() throws Exception {
+    File binaryDir = temp.newFolder();
+    File classFile = new File(binaryDir, "A.class");
+    Files.write(new byte[] {1, 2}, classFile);
+    File indexFile = new File(temp.newFolder(), "index");
+
+    CompiledClassIndex index = CompiledClassIndex.load(Lists.newArrayList(binaryDir), indexFile);
+    long crc = index.get("A").getCrc();
+    index.save(indexFile);
+
+    // same size and modification time: checksum of previous analysis is reused, even if content is different
+    long lastModified = classFile.lastModified();
+    Files.write(new byte[] {3, 4}, classFile);
+    classFile.setLastModified(lastModified);
+    assertThat(CompiledClassIndex.load(Lists.newArrayList(binaryDir), indexFile).get("A").getCrc()).isEqualTo(crc);
+
+    classFile.setLastModified(lastModified - 10000);
+    assertThat(CompiledClassIndex.load(Lists.newArrayList(binaryDir), indexFile).get("A").getCrc()).isEqualTo(crc(new byte[] {3, 4}));
+  }
+
+  @Test
+  public void should_ignore_unreadable_index_file() throws Exception {
+    File binaryDir = temp.newFolder();
+    Files.write(new byte[] {1}, new File(binaryDir, "A.class"));
+    File indexFile = temp.newFile();
+    Files.write(new byte[] {42}, indexFile);
+
+    assertThat(CompiledClassIndex.load(Lists.newArrayList(binaryDir), indexFile).get("A").getCrc()).isEqualTo(crc(new byte[] {1}));
+  }
+
+  private static long crc(byte[] bytes) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(bytes);
+    return crc32.getValue();
+  }
+
+}
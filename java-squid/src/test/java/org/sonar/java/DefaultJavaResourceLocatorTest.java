@@ -45,6 +45,7 @@ public class DefaultJavaResourceLocatorTest {
     JavaClasspath javaClasspath = mock(JavaClasspath.class);
     when(javaClasspath.getBinaryDirs()).thenReturn(Lists.newArrayList(new File("target/test-classes")));
     when(javaClasspath.getElements()).thenReturn(Lists.newArrayList(new File("target/test-classes")));
+    when(javaClasspath.getCompiledClassIndex()).thenReturn(CompiledClassIndex.create(Lists.newArrayList(new File("target/test-classes"))));
     File baseDir = new File("src/test/java");
     when(project.getFileSystem()).thenReturn(pfs);
     when(pfs.getBasedir()).thenReturn(baseDir);
@@ -68,6 +69,7 @@ public class DefaultJavaResourceLocatorTest {
   @Test
   public void class_keys() throws Exception {
     assertThat(javaResourceLocator.classKeys()).hasSize(5);
+    assertThat(javaResourceLocator.classKeys()).isSameAs(javaResourceLocator.classKeys());
   }
 
   @Test
@@ -90,6 +92,7 @@ public class DefaultJavaResourceLocatorTest {
   @Test
   public void classFilesToAnalyze() throws Exception {
     assertThat(javaResourceLocator.classFilesToAnalyze()).hasSize(5);
+    assertThat(javaResourceLocator.classFilesToAnalyze()).isSameAs(javaResourceLocator.classFilesToAnalyze());
   }
 
   static class A { // NOSONAR
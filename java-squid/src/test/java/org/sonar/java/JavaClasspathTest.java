@@ -192,6 +192,21 @@ public class JavaClasspathTest {
     assertThat(javaClasspath.getElements()).onProperty("name").contains("hello.jar","world.jar");
   }
 
+  @Test
+  public void several_patterns_should_be_resolved_in_order() {
+    settings.setProperty(JavaClasspathProperties.SONAR_JAVA_LIBRARIES, "lib/h*.jar,**/*.jar,lib");
+    javaClasspath = createJavaClasspath();
+    assertThat(javaClasspath.getElements()).hasSize(6);
+    assertThat(javaClasspath.getElements().get(0).getName()).isEqualTo("hello.jar");
+    assertThat(javaClasspath.getElements().get(5).getName()).isEqualTo("lib");
+  }
+
+  @Test
+  public void several_patterns_should_fail_on_the_first_one_matching_nothing() {
+    settings.setProperty(JavaClasspathProperties.SONAR_JAVA_LIBRARIES, "lib/*.jar,toto/*.jar,**/titi.jar");
+    checkIllegalStateException("No files nor directories matching 'toto/*.jar'");
+  }
+
   @Test
   public void non_existing_resources_should_fail() throws Exception {
     settings.setProperty(JavaClasspathProperties.SONAR_JAVA_LIBRARIES, "toto/**/hello.jar");
@@ -19,7 +19,6 @@
  */
 package org.sonar.java;
 
-import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.sonar.java.model.VisitorsBridge;
 
@@ -54,13 +53,13 @@ public class JavaFilesCacheTest {
     assertThat(javaFilesCache.methodStartLines.keySet()).contains("org/sonar/java/JavaFilesCacheTest#method_start_lines_mapping()V");
     assertThat(javaFilesCache.methodStartLines.keySet()).contains("org/sonar/java/JavaFilesCacheTest$A#method()V");
     assertThat(javaFilesCache.methodStartLines.keySet()).contains("org/sonar/java/JavaFilesCacheTest#resource_file_mapping()V");
-    assertThat(javaFilesCache.suppressWarningLines.keySet()).hasSize(13);
-    for (Integer line : Lists.newArrayList(68, 69, 73, 74, 75, 76, 77, 78, 79, 80, 81, 82, 83)) {
-      assertThat(javaFilesCache.suppressWarningLines.get(line)).contains("all");
-    }
-    for (Integer line : Lists.newArrayList(77, 78, 79, 80, 81)) {
-      assertThat(javaFilesCache.suppressWarningLines.get(line)).contains("foo", "bar");
-    }
+    assertThat(javaFilesCache.suppressWarningRanges).hasSize(3);
+    assertThat(javaFilesCache.suppressWarningRanges.get(0).toString()).isEqualTo("[67, 68] [all]");
+    assertThat(javaFilesCache.suppressWarningRanges.get(1).toString()).isEqualTo("[72, 82] [all]");
+    assertThat(javaFilesCache.suppressWarningRanges.get(2).getStartLine()).isEqualTo(76);
+    assertThat(javaFilesCache.suppressWarningRanges.get(2).getEndLine()).isEqualTo(80);
+    assertThat(javaFilesCache.suppressWarningRanges.get(2).getWarnings()).containsOnly("foo", "bar");
+    assertThat(javaFilesCache.hasSuppressWarningRanges()).isTrue();
   }
 
   static class A {
@@ -20,20 +20,42 @@
 package org.sonar.java;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Measure;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.ProjectFileSystem;
+import org.sonar.java.ast.parser.JavaParser;
+import org.sonar.java.ast.visitors.AccessorVisitor;
+import org.sonar.java.ast.visitors.CommentLinesVisitor;
+import org.sonar.java.ast.visitors.ComplexityVisitor;
+import org.sonar.java.ast.visitors.LinesOfCodeVisitor;
+import org.sonar.java.ast.visitors.PublicApiChecker;
+import org.sonar.java.ast.visitors.StatementVisitor;
+import org.sonar.java.ast.visitors.SubscriptionVisitor;
+import org.sonar.plugins.java.api.tree.ClassTree;
+import org.sonar.plugins.java.api.tree.CompilationUnitTree;
+import org.sonar.plugins.java.api.tree.MethodTree;
+import org.sonar.plugins.java.api.tree.Tree;
 import org.sonar.squidbridge.api.CodeVisitor;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -127,6 +149,59 @@ public class MeasurerTest {
     checkMetric(false, baseDir, "Complexity.java", "complexity", 15.0);
   }
 
+  @Test
+  public void metrics_should_match_dedicated_visitors() throws IOException {
+    List<File> files = ImmutableList.of(
+      new File(baseDir, "Complexity.java"),
+      new File(baseDir, "Statements.java"),
+      new File(baseDir, "Comments.java"),
+      new File(baseDir, "Accessors.java"),
+      new File(baseDir, "WithoutTrailingNewline.java"),
+      new File("src/test/files/ast/PublicApi.java"),
+      new File("src/test/files/highlighter/Example.java"));
+    for (File file : files) {
+      checkMetricsOfDedicatedVisitors(file, true);
+      checkMetricsOfDedicatedVisitors(file, false);
+    }
+  }
+
+  private void checkMetricsOfDedicatedVisitors(File file, boolean separateAccessorsFromMethods) throws IOException {
+    CompilationUnitTree cut = (CompilationUnitTree) JavaParser.createParser(Charsets.UTF_8).parse(file);
+    PublicApiChecker publicApiChecker = separateAccessorsFromMethods ?
+      PublicApiChecker.newInstanceWithAccessorsSeparatedFromMethods() : PublicApiChecker.newInstanceWithAccessorsHandledAsMethods();
+    publicApiChecker.scan(cut);
+
+    Map<String, Double> measures = measures(file, separateAccessorsFromMethods);
+    String message = file.getName() + (separateAccessorsFromMethods ? " with accessors" : " without accessors");
+    assertThat(measures.get(CoreMetrics.COMPLEXITY_KEY)).as(message).isEqualTo((double) new ComplexityVisitor(separateAccessorsFromMethods).scan(cut));
+    assertThat(measures.get(CoreMetrics.COMPLEXITY_IN_FUNCTIONS_KEY)).as(message)
+      .isEqualTo((double) new MethodComplexitiesVisitor(separateAccessorsFromMethods).complexityInMethods(cut));
+    assertThat(measures.get(CoreMetrics.STATEMENTS_KEY)).as(message).isEqualTo((double) new StatementVisitor().numberOfStatements(cut));
+    assertThat(measures.get(CoreMetrics.PUBLIC_API_KEY)).as(message).isEqualTo(publicApiChecker.getPublicApi());
+    assertThat(measures.get(CoreMetrics.PUBLIC_UNDOCUMENTED_API_KEY)).as(message).isEqualTo(publicApiChecker.getUndocumentedPublicApi());
+    assertThat(measures.get(CoreMetrics.PUBLIC_DOCUMENTED_API_DENSITY_KEY)).as(message).isEqualTo(publicApiChecker.getDocumentedPublicApiDensity());
+    assertThat(measures.get(CoreMetrics.COMMENT_LINES_KEY)).as(message).isEqualTo((double) new CommentLinesVisitor().commentLines(cut));
+    assertThat(measures.get(CoreMetrics.NCLOC_KEY)).as(message).isEqualTo((double) new LinesOfCodeVisitor().linesOfCode(cut));
+    assertThat(measures.get(CoreMetrics.LINES_KEY)).as(message)
+      .isEqualTo((double) Files.toString(file, Charsets.UTF_8).split("(\r)?\n|\r", -1).length);
+  }
+
+  private Map<String, Double> measures(File file, boolean separateAccessorsFromMethods) {
+    SensorContext sensorContext = mock(SensorContext.class);
+    Measurer measurer = new Measurer(sonarProject, sensorContext, separateAccessorsFromMethods);
+    JavaConfiguration conf = new JavaConfiguration(Charsets.UTF_8);
+    conf.setSeparateAccessorsFromMethods(separateAccessorsFromMethods);
+    new JavaSquid(conf, null, measurer, null, new CodeVisitor[0])
+      .scan(Lists.newArrayList(file), Collections.<File>emptyList(), Collections.<File>emptyList());
+    ArgumentCaptor<Measure> captor = ArgumentCaptor.forClass(Measure.class);
+    verify(sensorContext, times(NB_OF_METRICS)).saveMeasure(any(org.sonar.api.resources.File.class), captor.capture());
+    Map<String, Double> measures = Maps.newHashMap();
+    for (Measure measure : captor.getAllValues()) {
+      measures.put(measure.getMetricKey(), measure.getValue());
+    }
+    return measures;
+  }
+
   private void checkMetric(String filename, String metric, double expectedValue) {
     checkMetric(true, baseDir, filename, metric, expectedValue);
   }
@@ -154,4 +229,53 @@ public class MeasurerTest {
     assertThat(checkedMetrics).isEqualTo(1);
   }
 
-}
\ No newline at end of file
+  /**
+   * Sum of the complexities of the methods of named classes, as computed before all metrics were computed in a single pass.
+   */
+  private static class MethodComplexitiesVisitor extends SubscriptionVisitor {
+
+    private final boolean separateAccessorsFromMethods;
+    private final AccessorVisitor accessorVisitor = new AccessorVisitor();
+    private final Deque<ClassTree> classTrees = new LinkedList<ClassTree>();
+    private int complexityInMethods;
+
+    MethodComplexitiesVisitor(boolean separateAccessorsFromMethods) {
+      this.separateAccessorsFromMethods = separateAccessorsFromMethods;
+    }
+
+    int complexityInMethods(CompilationUnitTree tree) {
+      complexityInMethods = 0;
+      scanTree(tree);
+      return complexityInMethods;
+    }
+
+    @Override
+    public List<Tree.Kind> nodesToVisit() {
+      return ImmutableList.of(Tree.Kind.CLASS, Tree.Kind.INTERFACE, Tree.Kind.ENUM, Tree.Kind.ANNOTATION_TYPE, Tree.Kind.METHOD, Tree.Kind.CONSTRUCTOR);
+    }
+
+    @Override
+    public void visitNode(Tree tree) {
+      if (isClassTree(tree)) {
+        classTrees.push((ClassTree) tree);
+      } else if (classTrees.peek().simpleName() != null) {
+        MethodTree methodTree = (MethodTree) tree;
+        if (!(separateAccessorsFromMethods && accessorVisitor.isAccessor(classTrees.peek(), methodTree))) {
+          complexityInMethods += new ComplexityVisitor(separateAccessorsFromMethods).scan(classTrees.peek(), methodTree);
+        }
+      }
+    }
+
+    @Override
+    public void leaveNode(Tree tree) {
+      if (isClassTree(tree)) {
+        classTrees.pop();
+      }
+    }
+
+    private static boolean isClassTree(Tree tree) {
+      return tree.is(Tree.Kind.CLASS) || tree.is(Tree.Kind.INTERFACE) || tree.is(Tree.Kind.ENUM) || tree.is(Tree.Kind.ANNOTATION_TYPE);
+    }
+  }
+
+}
@@ -0,0 +1,95 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.api.utils.WildcardPattern;
+
+import java.util.BitSet;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class MultiWildcardPatternMatcherTest {
+
+  private static final List<String> PATTERNS = ImmutableList.of(
+    "java/**/Pattern",
+    "java/util/*",
+    "java/util/Vector",
+    "**/web/**",
+    "org/sonar/?ava/**",
+    "**",
+    "com/**Impl");
+
+  private static final List<String> NAMES = ImmutableList.of(
+    "java/util/regex/Pattern",
+    "java/Pattern",
+    "java/util/Vector",
+    "java/util/concurrent/Future",
+    "org/sonar/web/Page",
+    "web/Page",
+    "org/sonar/java/JavaSquid",
+    "org/sonar/api/Plugin",
+    "com/foo/BarImpl",
+    "/java/util/Vector/",
+    "");
+
+  private final MultiWildcardPatternMatcher matcher = new MultiWildcardPatternMatcher(PATTERNS);
+
+  @Test
+  public void should_match_like_wildcard_patterns() {
+    for (String name : NAMES) {
+      BitSet matches = matcher.match(name);
+      for (int i = 0; i < PATTERNS.size(); i++) {
+        assertThat(matches.get(i)).as(PATTERNS.get(i) + " on " + name).isEqualTo(WildcardPattern.create(PATTERNS.get(i)).match(name));
+      }
+    }
+  }
+
+  @Test
+  public void should_match_nothing_without_patterns() {
+    assertThat(new MultiWildcardPatternMatcher(ImmutableList.<String>of()).match("java/util/Vector").isEmpty()).isTrue();
+  }
+
+  @Test
+  public void should_share_common_prefixes() {
+    BitSet matches = matcher.match("java/util/Vector");
+    assertThat(matches.get(0)).isFalse();
+    assertThat(matches.get(1)).isTrue();
+    assertThat(matches.get(2)).isTrue();
+    assertThat(matches.get(5)).isTrue();
+  }
+
+  @Test
+  public void should_tell_whether_names_below_a_directory_may_match() {
+    MultiWildcardPatternMatcher libraries = new MultiWildcardPatternMatcher(ImmutableList.of("target/lib/*.jar", "modules/**/classes"));
+    assertThat(libraries.matchesBelow("")).isTrue();
+    assertThat(libraries.matchesBelow("target")).isTrue();
+    assertThat(libraries.matchesBelow("target/lib")).isTrue();
+    assertThat(libraries.matchesBelow("target/lib/foo.jar")).isFalse();
+    assertThat(libraries.matchesBelow("target/classes")).isFalse();
+    assertThat(libraries.matchesBelow("src")).isFalse();
+    assertThat(libraries.matchesBelow("modules/a/b")).isTrue();
+    assertThat(new MultiWildcardPatternMatcher(ImmutableList.of("lib")).matchesBelow("")).isTrue();
+    assertThat(new MultiWildcardPatternMatcher(ImmutableList.of("")).matchesBelow("")).isFalse();
+  }
+
+}
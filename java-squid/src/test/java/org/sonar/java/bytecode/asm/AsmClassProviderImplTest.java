@@ -19,12 +19,15 @@
  */
 package org.sonar.java.bytecode.asm;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import org.junit.Test;
 import org.sonar.java.bytecode.ClassLoaderBuilder;
 import org.sonar.java.bytecode.asm.AsmClassProvider.DETAIL_LEVEL;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -108,4 +111,78 @@ public class AsmClassProviderImplTest {
     assertThat(asmClassProviderImpl.getClass("tags/Line", DETAIL_LEVEL.STRUCTURE_AND_CALLS).getDetailLevel()).isEqualTo(DETAIL_LEVEL.STRUCTURE_AND_CALLS);
   }
 
+  @Test
+  public void should_load_classes_decoded_by_workers() {
+    List<String> classes = ImmutableList.of("tags/File", "tags/Line", "tags/SourceFile", "tags/Tag", "tags/TagException", "java/lang/Integer");
+    asmClassProviderImpl = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    asmClassProviderImpl.loadClasses(classes, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+    AsmClassProviderImpl sequentialProvider = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+
+    for (String internalName : classes) {
+      AsmClass asmClass = asmClassProviderImpl.getClass(internalName, DETAIL_LEVEL.NOTHING);
+      AsmClass expected = sequentialProvider.getClass(internalName, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+      assertThat(asmClass.getDetailLevel()).isEqualTo(DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+      assertThat(asmClass.getSuperClass()).isEqualTo(expected.getSuperClass());
+      assertThat(asmClass.getMethods()).hasSize(expected.getMethods().size());
+      for (AsmMethod method : expected.getMethods()) {
+        assertThat(asmClass.getMethod(method.getKey()).getOutgoingEdges()).hasSize(method.getOutgoingEdges().size());
+      }
+    }
+    assertThat(asmClassProviderImpl.getClass("tags/Unknown").getSuperClass()).isNull();
+  }
+
+  @Test
+  public void should_load_external_classes_as_stubs() {
+    asmClassProviderImpl = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    asmClassProviderImpl.loadClasses(ImmutableList.of("tags/Line"), DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+
+    AsmClass fileClass = asmClassProviderImpl.getClass("tags/File", DETAIL_LEVEL.STRUCTURE);
+    assertThat(fileClass.getSuperClass().getInternalName()).isEqualTo("tags/Content");
+    AsmMethod readMethod = fileClass.getMethod("read()V");
+    assertThat(readMethod.isPublic()).isTrue();
+    assertThat(readMethod.getThrows()).isEmpty();
+    assertThat(readMethod.getDistinctUsedAsmClasses()).isEmpty();
+
+    fileClass = asmClassProviderImpl.getClass("tags/File", DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+    readMethod = fileClass.getMethod("read()V");
+    assertThat(readMethod.getThrows()).hasSize(1);
+  }
+
+  @Test
+  public void should_stream_classes_with_the_edges_of_one_class_at_a_time() {
+    final List<String> classes = ImmutableList.of("tags/File", "tags/Line", "tags/SourceFile", "tags/Tag", "tags/TagException");
+    final AsmClassProviderImpl expectedProvider = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    expectedProvider.loadClasses(classes, DETAIL_LEVEL.STRUCTURE_AND_CALLS);
+    asmClassProviderImpl = new AsmClassProviderImpl(ClassLoaderBuilder.create(new File("src/test/files/bytecode/bin/")));
+    final List<String> streamedClasses = Lists.newArrayList();
+    final int[] methodEdgesWhenLoaded = new int[1];
+
+    asmClassProviderImpl.streamClasses(classes, DETAIL_LEVEL.STRUCTURE_AND_CALLS, new AsmClassProvider.ClassStreamListener() {
+      @Override
+      public void classesLoaded() {
+        for (String internalName : classes) {
+          for (AsmMethod method : asmClassProviderImpl.getClass(internalName, DETAIL_LEVEL.NOTHING).getMethods()) {
+            methodEdgesWhenLoaded[0] += method.getOutgoingEdges().size();
+          }
+        }
+      }
+
+      @Override
+      public void classLoaded(AsmClass asmClass) {
+        streamedClasses.add(asmClass.getInternalName());
+        for (AsmMethod method : expectedProvider.getClass(asmClass.getInternalName(), DETAIL_LEVEL.NOTHING).getMethods()) {
+          AsmMethod streamedMethod = asmClass.getMethod(method.getKey());
+          assertThat(streamedMethod.isUsed()).isEqualTo(method.isUsed());
+          assertThat(streamedMethod.getOutgoingEdges()).hasSize(method.getOutgoingEdges().size());
+        }
+      }
+    });
+
+    assertThat(methodEdgesWhenLoaded[0]).isEqualTo(0);
+    assertThat(streamedClasses).isEqualTo(classes);
+    AsmMethod readMethod = asmClassProviderImpl.getClass("tags/File", DETAIL_LEVEL.NOTHING).getMethod("read()V");
+    assertThat(readMethod.getOutgoingEdges()).isEmpty();
+    assertThat(readMethod.isUsed()).isEqualTo(expectedProvider.getClass("tags/File", DETAIL_LEVEL.NOTHING).getMethod("read()V").isUsed());
+  }
+
 }
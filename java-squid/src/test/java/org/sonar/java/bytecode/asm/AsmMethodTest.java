@@ -52,6 +52,35 @@ public class AsmMethodTest {
     assertThat(method.getThrows()).containsExactly(class1, class2);
   }
 
+  @Test
+  public void indexed_outgoing_edges_should_match_outgoing_edges() {
+    AsmMethod method = new AsmMethod(stringClass, "toString()Ljava/lang/String;");
+    AsmField field = new AsmField(stringClass, "value");
+    method.addEdge(numberClass, SourceCodeEdgeUsage.USES, 0);
+    method.addEdge(field, SourceCodeEdgeUsage.CALLS_FIELD, 12);
+
+    assertThat(method.getOutgoingEdgeCount()).isEqualTo(2);
+    assertThat(method.getOutgoingEdgeTarget(1)).isSameAs(field);
+    assertThat(method.getOutgoingEdgeUsage(1)).isEqualTo(SourceCodeEdgeUsage.CALLS_FIELD);
+    assertThat(method.getOutgoingEdgeSourceLineNumber(0)).isEqualTo(0);
+    assertThat(method.getOutgoingEdgeSourceLineNumber(1)).isEqualTo(12);
+    assertThat(method.getOutgoingEdgeTargetAsmClass(0)).isSameAs(numberClass);
+    assertThat(method.getOutgoingEdgeTargetAsmClass(1)).isSameAs(stringClass);
+    int i = 0;
+    for (AsmEdge edge : method.getOutgoingEdges()) {
+      assertThat(edge.getTo()).isSameAs(method.getOutgoingEdgeTarget(i));
+      assertThat(edge.getUsage()).isEqualTo(method.getOutgoingEdgeUsage(i));
+      assertThat(edge.getSourceLineNumber()).isEqualTo(method.getOutgoingEdgeSourceLineNumber(i));
+      assertThat(edge.getTargetAsmClass()).isSameAs(method.getOutgoingEdgeTargetAsmClass(i));
+      i++;
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void indexed_outgoing_edge_should_be_in_bounds() {
+    new AsmMethod(stringClass, "toString()Ljava/lang/String;").getOutgoingEdgeTarget(0);
+  }
+
   @Test
   public void testAsmMethod() {
     AsmMethod method = new AsmMethod(new AsmClass("java/lang/String"), "toString()Ljava/lang/String;");
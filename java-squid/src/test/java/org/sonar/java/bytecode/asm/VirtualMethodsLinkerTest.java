@@ -0,0 +1,112 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.asm;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.sonar.java.bytecode.VirtualMethodsLinker;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class VirtualMethodsLinkerTest {
+
+  private final AsmClass root = new AsmClass("Root");
+  private final AsmClass withoutMethods = subClass("WithoutMethods", root);
+  private final AsmClass withOverride = subClass("WithOverride", withoutMethods);
+  private final AsmClass leaf = subClass("Leaf", withOverride);
+  private final AsmClass otherLeaf = subClass("OtherLeaf", withoutMethods);
+
+  @Test
+  public void should_link_like_a_walk_up_the_hierarchy() {
+    AsmMethod rootM1 = implementedMethod(root, "m1()V");
+    AsmMethod rootM2 = implementedMethod(root, "m2()V");
+    implementedMethod(root, "m3()V").setUsed(false);
+    AsmMethod overriddenM1 = implementedMethod(withOverride, "m1()V");
+
+    List<AsmMethod> calledMethods = ImmutableList.of(
+      calledMethod(leaf, "m1()V"),
+      calledMethod(leaf, "m2()V"),
+      calledMethod(leaf, "neverImplemented()V"),
+      calledMethod(otherLeaf, "m1()V"),
+      calledMethod(otherLeaf, "neverImplemented()V"),
+      calledMethod(withoutMethods, "m2()V"),
+      calledMethod(withOverride, "m2()V"));
+    AsmMethod unusedCall = new AsmMethod(leaf, "m3()V");
+    unusedCall.setBodyLoaded(false);
+    leaf.addMethod(unusedCall);
+
+    VirtualMethodsLinker linker = new VirtualMethodsLinker();
+    for (AsmClass asmClass : ImmutableList.of(leaf, otherLeaf, root, withoutMethods, withOverride)) {
+      for (AsmMethod method : asmClass.getMethods()) {
+        linker.process(method);
+      }
+    }
+
+    for (AsmMethod calledMethod : calledMethods) {
+      assertThat(calledMethod.getImplementationLinkage()).isSameAs(findImplementation(calledMethod.getParent(), calledMethod.getKey()));
+    }
+    assertThat(leaf.getMethod("m1()V").getImplementationLinkage()).isSameAs(overriddenM1);
+    assertThat(leaf.getMethod("m2()V").getImplementationLinkage()).isSameAs(rootM2);
+    assertThat(otherLeaf.getMethod("m1()V").getImplementationLinkage()).isSameAs(rootM1);
+    assertThat(leaf.getMethod("neverImplemented()V").getImplementationLinkage()).isNull();
+    assertThat(otherLeaf.getMethod("neverImplemented()V").getImplementationLinkage()).isNull();
+    assertThat(unusedCall.getImplementationLinkage()).isNull();
+    assertThat(root.getMethod("m3()V").isUsed()).isFalse();
+    assertThat(overriddenM1.isUsed()).isTrue();
+    assertThat(rootM2.isUsed()).isTrue();
+  }
+
+  /**
+   * Recursive resolution used before the virtual method tables.
+   */
+  private static AsmMethod findImplementation(AsmClass asmClass, String methodKey) {
+    AsmMethod method = asmClass.getMethod(methodKey);
+    if (method != null && method.isBodyLoaded()) {
+      return method;
+    }
+    if (asmClass.getSuperClass() != null) {
+      return findImplementation(asmClass.getSuperClass(), methodKey);
+    }
+    return null;
+  }
+
+  private static AsmClass subClass(String internalName, AsmClass superClass) {
+    AsmClass asmClass = new AsmClass(internalName);
+    asmClass.setSuperClass(superClass);
+    return asmClass;
+  }
+
+  private static AsmMethod implementedMethod(AsmClass asmClass, String key) {
+    AsmMethod method = new AsmMethod(asmClass, key);
+    asmClass.addMethod(method);
+    return method;
+  }
+
+  private static AsmMethod calledMethod(AsmClass asmClass, String key) {
+    AsmMethod method = new AsmMethod(asmClass, key);
+    method.setBodyLoaded(false);
+    method.setUsed(true);
+    asmClass.addMethod(method);
+    return method;
+  }
+
+}
@@ -19,16 +19,118 @@
  */
 package org.sonar.java.bytecode.visitor;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.junit.Rule;
 import org.junit.Test;
-import org.sonar.graph.DirectedGraph;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.resources.Resource;
+import org.sonar.java.CompiledClassIndex;
+import org.sonar.java.bytecode.asm.AsmClass;
+import org.sonar.java.bytecode.asm.AsmEdge;
+import org.sonar.java.incremental.CachedClassAnalysis;
+import org.sonar.java.incremental.ClassAnalysisCache;
+import org.sonar.plugins.java.api.JavaResourceLocator;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 import static org.fest.assertions.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class DependenciesVisitorTest {
 
+  private static final Set<String> NO_UNUSED_METHODS = Collections.emptySet();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private final JavaResourceLocator javaResourceLocator = mock(JavaResourceLocator.class);
+
   @Test
   public void testName() throws Exception {
   }
 
+  @Test
+  public void replay_should_build_the_same_graph_as_visit() throws Exception {
+    List<String> classNames = Lists.newArrayList();
+    for (int i = 0; i < 40; i++) {
+      classNames.add("org/p" + (i % 5) + "/C" + i);
+    }
+    Resource otherPackage = mock(Resource.class);
+    for (String className : classNames) {
+      resource(className, otherPackage);
+    }
+    File binaryDir = temp.newFolder("classes");
+    File fooFile = new File(binaryDir, "org/foo/Foo.class");
+    Files.createParentDirs(fooFile);
+    Files.write("foo", fooFile, Charsets.UTF_8);
+    resource("org/foo/Foo", mock(Resource.class));
+    File cacheFile = new File(temp.getRoot(), "cache");
+    CompiledClassIndex compiledClassIndex = CompiledClassIndex.create(ImmutableList.of(binaryDir));
+
+    // edges in an order which is not the one of a hash set, with duplicates and an unknown class
+    List<String> edges = Lists.newArrayList(Lists.reverse(classNames));
+    edges.addAll(classNames);
+    edges.add(3, "org/unknown/Unknown");
+    DependencyGraph visitedGraph = new DependencyGraph();
+    DependenciesVisitor visitor = visitor(visitedGraph);
+    ClassAnalysisCache cache = ClassAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList(), compiledClassIndex);
+    visitor.setClassAnalysisCache(cache);
+    cache.startRecording("org/foo/Foo", Collections.<String>emptySet(), NO_UNUSED_METHODS);
+    visitor.visitClass(new AsmClass("org/foo/Foo"));
+    for (String edge : edges) {
+      visitor.visitEdge(edge(edge));
+    }
+    cache.stopRecording();
+    cache.save();
+
+    DependencyGraph replayedGraph = new DependencyGraph();
+    DependenciesVisitor replayingVisitor = visitor(replayedGraph);
+    cache = ClassAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList(), compiledClassIndex);
+    replayingVisitor.setClassAnalysisCache(cache);
+    CachedClassAnalysis cachedAnalysis = cache.lookup("org/foo/Foo", NO_UNUSED_METHODS);
+    assertThat(cachedAnalysis).isNotNull();
+    replayingVisitor.replay("org/foo/Foo", cachedAnalysis);
+
+    // Foo, the referenced classes and the 2 packages
+    int vertexCount = classNames.size() + 1 + 2;
+    for (int vertex = 0; vertex < vertexCount; vertex++) {
+      assertThat(replayedGraph.getVertex(vertex)).isSameAs(visitedGraph.getVertex(vertex));
+    }
+    assertThat(replayedGraph.edgeCount()).isEqualTo(visitedGraph.edgeCount());
+    for (int from = 0; from < vertexCount; from++) {
+      for (int to = 0; to < vertexCount; to++) {
+        int edge = visitedGraph.getEdge(from, to);
+        assertThat(replayedGraph.getEdge(from, to)).isEqualTo(edge);
+        if (edge != DependencyGraph.NO_EDGE) {
+          assertThat(replayedGraph.getWeight(edge)).isEqualTo(visitedGraph.getWeight(edge));
+        }
+      }
+    }
+  }
+
+  private DependenciesVisitor visitor(DependencyGraph graph) {
+    DependenciesVisitor visitor = new DependenciesVisitor(graph);
+    visitor.setJavaResourceLocator(javaResourceLocator);
+    return visitor;
+  }
+
+  private void resource(String className, Resource parent) {
+    Resource resource = mock(Resource.class);
+    when(resource.getParent()).thenReturn(parent);
+    when(javaResourceLocator.findResourceByClassName(className)).thenReturn(resource);
+  }
+
+  private static AsmEdge edge(String className) {
+    AsmEdge edge = mock(AsmEdge.class);
+    when(edge.getTargetAsmClass()).thenReturn(new AsmClass(className));
+    return edge;
+  }
+
 }
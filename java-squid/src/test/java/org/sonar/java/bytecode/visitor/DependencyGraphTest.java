@@ -0,0 +1,99 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.bytecode.visitor;
+
+import org.junit.Test;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class DependencyGraphTest {
+
+  private final Resource fileA = mock(Resource.class);
+  private final Resource fileB = mock(Resource.class);
+  private final Resource fileC = mock(Resource.class);
+  private final Resource packageA = mock(Resource.class);
+  private final Resource packageB = mock(Resource.class);
+
+  @Test
+  public void should_merge_edges_and_count_distinct_sub_dependencies() {
+    DependencyGraph graph = new DependencyGraph();
+    int a = graph.vertex(fileA);
+    int b = graph.vertex(fileB);
+    int c = graph.vertex(fileC);
+    assertThat(graph.vertex(fileA)).isEqualTo(a);
+    assertThat(graph.getVertex(b)).isSameAs(fileB);
+
+    int ab = graph.addEdge(a, b);
+    int ac = graph.addEdge(a, c);
+    assertThat(graph.addEdge(a, b)).isEqualTo(ab);
+    assertThat(graph.getEdge(b, a)).isEqualTo(DependencyGraph.NO_EDGE);
+
+    int packageEdge = graph.addEdge(graph.vertex(packageA), graph.vertex(packageB));
+    graph.addSubDependency(packageEdge, ab);
+    graph.addSubDependency(packageEdge, ab);
+    graph.addSubDependency(packageEdge, ac);
+
+    assertThat(graph.edgeCount()).isEqualTo(3);
+    assertThat(graph.getWeight(ab)).isEqualTo(1);
+    assertThat(graph.getWeight(packageEdge)).isEqualTo(3);
+  }
+
+  @Test
+  public void should_convert_to_dependencies() {
+    DependencyGraph graph = new DependencyGraph();
+    int fileEdge = graph.addEdge(graph.vertex(fileA), graph.vertex(fileB));
+    int packageEdge = graph.addEdge(graph.vertex(packageA), graph.vertex(packageB));
+    graph.addSubDependency(packageEdge, fileEdge);
+    ResourceMapping resourceMapping = new ResourceMapping();
+
+    DirectedGraph<Resource, Dependency> directedGraph = graph.toDirectedGraph(resourceMapping);
+
+    Dependency fileDependency = directedGraph.getEdge(fileA, fileB);
+    Dependency packageDependency = directedGraph.getEdge(packageA, packageB);
+    assertThat(fileDependency.getUsage()).isEqualTo("USES");
+    assertThat(fileDependency.getWeight()).isEqualTo(1);
+    assertThat(fileDependency.getParent()).isSameAs(packageDependency);
+    assertThat(packageDependency.getWeight()).isEqualTo(2);
+    assertThat(resourceMapping.getSubDependencies(packageDependency)).containsOnly(fileDependency);
+    assertThat(directedGraph.getEdge(fileB, fileA)).isNull();
+  }
+
+  @Test
+  public void should_grow_with_many_edges() {
+    DependencyGraph graph = new DependencyGraph();
+    Resource[] resources = new Resource[100];
+    for (int i = 0; i < resources.length; i++) {
+      resources[i] = mock(Resource.class);
+      graph.vertex(resources[i]);
+    }
+    for (int from = 0; from < resources.length; from++) {
+      for (int to = 0; to < resources.length; to++) {
+        graph.addEdge(from, to);
+      }
+    }
+    assertThat(graph.edgeCount()).isEqualTo(10000);
+    assertThat(graph.getEdge(42, 17)).isEqualTo(42 * 100 + 17);
+  }
+
+}
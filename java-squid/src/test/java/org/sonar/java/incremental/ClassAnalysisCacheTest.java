@@ -0,0 +1,135 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.java.CompiledClassIndex;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ClassAnalysisCacheTest {
+
+  private static final Set<String> NO_UNUSED_METHODS = Collections.emptySet();
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File cacheFile;
+  private File binaryDir;
+  private File fooFile;
+  private File barFile;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheFile = new File(temp.getRoot(), "cache");
+    binaryDir = temp.newFolder("classes");
+    fooFile = new File(binaryDir, "org/foo/Foo.class");
+    barFile = new File(binaryDir, "org/bar/Bar.class");
+    Files.createParentDirs(fooFile);
+    Files.createParentDirs(barFile);
+    Files.write("foo", fooFile, Charsets.UTF_8);
+    Files.write("bar", barFile, Charsets.UTF_8);
+  }
+
+  @Test
+  public void unchanged_class_is_reused() {
+    analyze("configuration");
+
+    ClassAnalysisCache cache = load("configuration");
+    CachedClassAnalysis analysis = cache.lookup("org/foo/Foo", NO_UNUSED_METHODS);
+    assertThat(analysis).isNotNull();
+    assertThat(analysis.getDependencies()).containsOnly("org/bar/Bar");
+    assertThat(analysis.getLinkedClassCrcs().keySet()).containsOnly("org/bar/Bar", "java/lang/Object");
+    assertThat(analysis.getLinkedClassCrcs().get("java/lang/Object")).isEqualTo(ClassAnalysisCache.NOT_INDEXED);
+    assertThat(cache.reusedClasses()).isEqualTo(1);
+  }
+
+  @Test
+  public void modified_class_is_not_reused() throws Exception {
+    analyze("configuration");
+    Files.append("\n", fooFile, Charsets.UTF_8);
+
+    ClassAnalysisCache cache = load("configuration");
+    assertThat(cache.lookup("org/foo/Foo", NO_UNUSED_METHODS)).isNull();
+    assertThat(cache.lookup("org/bar/Bar", NO_UNUSED_METHODS)).isNotNull();
+  }
+
+  @Test
+  public void class_with_modified_linked_class_is_not_reused() throws Exception {
+    analyze("configuration");
+    Files.append("\n", barFile, Charsets.UTF_8);
+
+    ClassAnalysisCache cache = load("configuration");
+    assertThat(cache.lookup("org/foo/Foo", NO_UNUSED_METHODS)).isNull();
+    assertThat(cache.lookup("org/bar/Bar", NO_UNUSED_METHODS)).isNull();
+  }
+
+  @Test
+  public void class_whose_methods_are_not_used_anymore_is_not_reused() {
+    analyze("configuration");
+
+    ClassAnalysisCache cache = load("configuration");
+    assertThat(cache.lookup("org/bar/Bar", ImmutableSet.of("bar()V"))).isNull();
+  }
+
+  @Test
+  public void deleted_class_is_not_reused() {
+    analyze("configuration");
+    fooFile.delete();
+
+    assertThat(load("configuration").lookup("org/foo/Foo", NO_UNUSED_METHODS)).isNull();
+  }
+
+  @Test
+  public void cache_is_discarded_when_configuration_changes() {
+    analyze("configuration");
+
+    ClassAnalysisCache cache = load("other configuration");
+    assertThat(cache.lookup("org/foo/Foo", NO_UNUSED_METHODS)).isNull();
+    assertThat(cache.lookup("org/bar/Bar", NO_UNUSED_METHODS)).isNull();
+  }
+
+  private ClassAnalysisCache load(String configuration) {
+    CompiledClassIndex compiledClassIndex = CompiledClassIndex.create(ImmutableList.of(binaryDir));
+    return ClassAnalysisCache.load(cacheFile, configuration, Collections.<File>emptyList(), compiledClassIndex);
+  }
+
+  private void analyze(String configuration) {
+    ClassAnalysisCache cache = load(configuration);
+    cache.startRecording("org/foo/Foo", ImmutableSet.of("org/bar/Bar", "java/lang/Object"), NO_UNUSED_METHODS);
+    cache.recording().addDependency("org/bar/Bar");
+    cache.stopRecording();
+    cache.startRecording("org/bar/Bar", ImmutableSet.of("java/lang/Object"), NO_UNUSED_METHODS);
+    cache.stopRecording();
+    cache.save();
+  }
+
+}
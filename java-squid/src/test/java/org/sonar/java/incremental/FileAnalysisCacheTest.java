@@ -0,0 +1,155 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.incremental;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class FileAnalysisCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private File cacheFile;
+  private File fooFile;
+  private File barFile;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheFile = new File(temp.getRoot(), "cache");
+    fooFile = temp.newFile("Foo.java");
+    barFile = temp.newFile("Bar.java");
+    Files.write("package org.foo; import org.bar.Bar; class Foo {}", fooFile, Charsets.UTF_8);
+    Files.write("package org.bar; public class Bar {}", barFile, Charsets.UTF_8);
+  }
+
+  @Test
+  public void unchanged_file_is_reused() {
+    analyze("configuration");
+
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    CachedFileAnalysis analysis = cache.lookup(fooFile);
+    assertThat(analysis).isNotNull();
+    assertThat(analysis.getMeasures()).isEqualTo(ImmutableMap.of("ncloc", 1.0));
+    assertThat(analysis.getClassKeys()).containsOnly("org/foo/Foo");
+    assertThat(analysis.getDependencyHashes().keySet()).containsOnly(barFile.getAbsolutePath());
+    assertThat(cache.reusedFiles()).isEqualTo(1);
+  }
+
+  @Test
+  public void modified_file_is_not_reused() throws Exception {
+    analyze("configuration");
+    Files.append("\n", fooFile, Charsets.UTF_8);
+
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    assertThat(cache.lookup(fooFile)).isNull();
+    assertThat(cache.lookup(barFile)).isNotNull();
+  }
+
+  @Test
+  public void file_with_modified_dependency_is_not_reused() throws Exception {
+    analyze("configuration");
+    Files.append("\n", barFile, Charsets.UTF_8);
+
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    assertThat(cache.lookup(fooFile)).isNull();
+    assertThat(cache.lookup(barFile)).isNull();
+  }
+
+  @Test
+  public void file_with_modified_referenced_type_is_not_reused() throws Exception {
+    File qixFile = temp.newFile("Qix.java");
+    Files.write("package org.qix; class Qix { org.bar.Bar bar; }", qixFile, Charsets.UTF_8);
+    analyze("configuration");
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    cache.lookup(fooFile);
+    cache.lookup(barFile);
+    cache.startRecording(qixFile);
+    cache.recording().setDependencies("org/qix", Collections.<String>emptySet(), Collections.<String>emptySet());
+    cache.recording().addReferencedTypes(ImmutableSet.of("org/bar/Bar", "java/lang/Object"));
+    cache.stopRecording();
+    cache.save();
+
+    cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    assertThat(cache.lookup(qixFile).getDependencyHashes().keySet()).containsOnly(barFile.getAbsolutePath());
+
+    Files.append("\n", barFile, Charsets.UTF_8);
+    cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    assertThat(cache.lookup(qixFile)).isNull();
+  }
+
+  @Test
+  public void cache_is_discarded_when_configuration_changes() {
+    analyze("configuration");
+
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, "other configuration", Collections.<File>emptyList());
+    assertThat(cache.lookup(fooFile)).isNull();
+    assertThat(cache.lookup(barFile)).isNull();
+  }
+
+  @Test
+  public void discarded_recording_is_not_saved() {
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList());
+    cache.startRecording(fooFile);
+    assertThat(cache.recording()).isNotNull();
+    cache.discardRecording(fooFile);
+    assertThat(cache.recording()).isNull();
+    cache.save();
+
+    assertThat(FileAnalysisCache.load(cacheFile, "configuration", Collections.<File>emptyList()).lookup(fooFile)).isNull();
+  }
+
+  @Test
+  public void fingerprint_depends_on_libraries() throws Exception {
+    File library = temp.newFile("lib.jar");
+    String fingerprint = FileAnalysisCache.fingerprint("configuration", ImmutableList.of(library));
+    assertThat(FileAnalysisCache.fingerprint("configuration", ImmutableList.of(library))).isEqualTo(fingerprint);
+    Files.write("content", library, Charsets.UTF_8);
+    assertThat(FileAnalysisCache.fingerprint("configuration", ImmutableList.of(library))).isNotEqualTo(fingerprint);
+  }
+
+  private void analyze(String configuration) {
+    FileAnalysisCache cache = FileAnalysisCache.load(cacheFile, configuration, Collections.<File>emptyList());
+    cache.startRecording(fooFile);
+    cache.recording().setDependencies("org/foo", ImmutableSet.of("org/bar/Bar"), Collections.<String>emptySet());
+    cache.recording().setResources(ImmutableSet.of("org/foo/Foo"), Collections.<String, Integer>emptyMap(), HashMultimap.<Integer, String>create());
+    cache.recording().putMeasure("ncloc", 1.0);
+    cache.stopRecording();
+    cache.startRecording(barFile);
+    cache.recording().setDependencies("org/bar", Collections.<String>emptySet(), Collections.<String>emptySet());
+    cache.recording().setResources(ImmutableSet.of("org/bar/Bar"), Collections.<String, Integer>emptyMap(), HashMultimap.<Integer, String>create());
+    cache.stopRecording();
+    cache.save();
+  }
+
+}
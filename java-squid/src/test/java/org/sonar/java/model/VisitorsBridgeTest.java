@@ -0,0 +1,126 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.model;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.source.Symbolizable;
+import org.sonar.java.JavaAstScanner;
+import org.sonar.java.SonarComponents;
+import org.sonar.java.incremental.CachedFileAnalysis;
+import org.sonar.java.incremental.FileAnalysisCache;
+import org.sonar.plugins.java.api.JavaFileScanner;
+import org.sonar.plugins.java.api.JavaFileScannerContext;
+import org.sonar.plugins.java.api.SyntacticJavaFileScanner;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class VisitorsBridgeTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private static final File FILE = new File("src/test/files/highlighter/SonarSymTable.java");
+
+  @Test
+  public void semantic_model_should_not_be_computed_for_syntactic_scanners_only() {
+    SyntacticScanner scanner = new SyntacticScanner();
+    JavaAstScanner.scanSingleFile(FILE, new VisitorsBridge(ImmutableList.of(scanner), null));
+
+    assertThat(scanner.visited).isTrue();
+    assertThat(scanner.semanticModel).isNull();
+  }
+
+  @Test
+  public void semantic_model_should_be_computed_when_one_scanner_is_not_syntactic() {
+    SyntacticScanner syntacticScanner = new SyntacticScanner();
+    SemanticScanner semanticScanner = new SemanticScanner();
+    JavaAstScanner.scanSingleFile(FILE, new VisitorsBridge(ImmutableList.of(syntacticScanner, semanticScanner), null));
+
+    assertThat(syntacticScanner.semanticModel).isNotNull();
+    assertThat(semanticScanner.semanticModel).isSameAs(syntacticScanner.semanticModel);
+  }
+
+  @Test
+  public void symbol_table_should_be_saved_along_with_semantic_model() {
+    SonarComponents sonarComponents = mock(SonarComponents.class);
+    Symbolizable symbolizable = mock(Symbolizable.class);
+    Symbolizable.SymbolTableBuilder symbolTableBuilder = mock(Symbolizable.SymbolTableBuilder.class);
+    when(sonarComponents.symbolizableFor(any(File.class))).thenReturn(symbolizable);
+    when(symbolizable.newSymbolTableBuilder()).thenReturn(symbolTableBuilder);
+
+    SemanticScanner scanner = new SemanticScanner();
+    JavaAstScanner.scanSingleFile(FILE, new VisitorsBridge(ImmutableList.of(scanner), sonarComponents));
+
+    assertThat(scanner.semanticModel).isNotNull();
+    verify(symbolTableBuilder).build();
+    verify(symbolizable).setSymbolTable(any(Symbolizable.SymbolTable.class));
+  }
+
+  @Test
+  public void semantic_model_and_symbol_table_should_not_be_computed_for_syntactic_scanners_only() {
+    SonarComponents sonarComponents = mock(SonarComponents.class);
+
+    SyntacticScanner scanner = new SyntacticScanner();
+    JavaAstScanner.scanSingleFile(FILE, new VisitorsBridge(ImmutableList.of(scanner), sonarComponents));
+
+    assertThat(scanner.visited).isTrue();
+    assertThat(scanner.semanticModel).isNull();
+    verify(sonarComponents, never()).symbolizableFor(any(File.class));
+  }
+
+  @Test
+  public void types_owning_referenced_symbols_should_be_recorded() throws Exception {
+    FileAnalysisCache analysisCache = FileAnalysisCache.load(temp.newFile(), "configuration", Collections.<File>emptyList());
+    VisitorsBridge visitorsBridge = new VisitorsBridge(ImmutableList.of(new SemanticScanner()), null);
+    visitorsBridge.setAnalysisCache(analysisCache);
+    analysisCache.startRecording(FILE);
+    CachedFileAnalysis recording = analysisCache.recording();
+    JavaAstScanner.scanSingleFile(FILE, visitorsBridge);
+
+    assertThat(recording.getImportedTypes()).containsOnly("java/util/List");
+    assertThat(recording.getReferencedTypes()).contains("java/util/List", "java/lang/String", "Example");
+  }
+
+  private static class SemanticScanner implements JavaFileScanner {
+    Object semanticModel;
+    boolean visited;
+
+    @Override
+    public void scanFile(JavaFileScannerContext context) {
+      visited = true;
+      semanticModel = context.getSemanticModel();
+    }
+  }
+
+  private static class SyntacticScanner extends SemanticScanner implements SyntacticJavaFileScanner {
+  }
+
+}
@@ -21,6 +21,7 @@ package org.sonar.plugins.surefire;
 
 import com.google.common.collect.ImmutableList;
 import org.sonar.api.CoreProperties;
+import org.sonar.api.PropertyType;
 import org.sonar.api.config.PropertyDefinition;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.plugins.surefire.api.SurefireUtils;
@@ -41,6 +42,15 @@ public final class SurefireExtensions {
             .category(CoreProperties.CATEGORY_JAVA)
             .subCategory("JUnit")
             .build(),
+        PropertyDefinition.builder(SurefireUtils.SUREFIRE_MAX_STACK_TRACE_LENGTH_PROPERTY)
+            .name("Maximum length of stack traces")
+            .description("Stack traces of failed tests read from JUnit reports are truncated to this number of characters. Zero or a negative value means no limit.")
+            .defaultValue(Integer.toString(SurefireUtils.SUREFIRE_MAX_STACK_TRACE_LENGTH_DEFAULT))
+            .type(PropertyType.INTEGER)
+            .onQualifiers(Qualifiers.PROJECT)
+            .category(CoreProperties.CATEGORY_JAVA)
+            .subCategory("JUnit")
+            .build(),
 
         SurefireSensor.class,
         SurefireJavaParser.class);
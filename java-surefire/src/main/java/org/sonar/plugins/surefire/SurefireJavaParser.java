@@ -19,12 +19,15 @@
  */
 package org.sonar.plugins.surefire;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchExtension;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
+import org.sonar.api.config.Settings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
 import org.sonar.api.resources.Resource;
@@ -34,6 +37,7 @@ import org.sonar.api.utils.ParsingUtils;
 import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.StaxParser;
 import org.sonar.plugins.java.api.JavaResourceLocator;
+import org.sonar.plugins.surefire.api.SurefireUtils;
 import org.sonar.plugins.surefire.data.SurefireStaxHandler;
 import org.sonar.plugins.surefire.data.UnitTestClassReport;
 import org.sonar.plugins.surefire.data.UnitTestIndex;
@@ -42,7 +46,13 @@ import org.sonar.plugins.surefire.data.UnitTestResult;
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @since 2.4
@@ -52,10 +62,20 @@ public class SurefireJavaParser implements BatchExtension {
   private static final Logger LOGGER = LoggerFactory.getLogger(SurefireJavaParser.class);
   private final ResourcePerspectives perspectives;
   private final JavaResourceLocator javaResourceLocator;
+  private final int maxStackTraceLength;
 
   public SurefireJavaParser(ResourcePerspectives perspectives, JavaResourceLocator javaResourceLocator) {
+    this(perspectives, javaResourceLocator, SurefireUtils.SUREFIRE_MAX_STACK_TRACE_LENGTH_DEFAULT);
+  }
+
+  public SurefireJavaParser(ResourcePerspectives perspectives, JavaResourceLocator javaResourceLocator, Settings settings) {
+    this(perspectives, javaResourceLocator, settings.getInt(SurefireUtils.SUREFIRE_MAX_STACK_TRACE_LENGTH_PROPERTY));
+  }
+
+  private SurefireJavaParser(ResourcePerspectives perspectives, JavaResourceLocator javaResourceLocator, int maxStackTraceLength) {
     this.perspectives = perspectives;
     this.javaResourceLocator = javaResourceLocator;
+    this.maxStackTraceLength = maxStackTraceLength;
   }
 
 
@@ -97,15 +117,50 @@ public class SurefireJavaParser implements BatchExtension {
     save(index, context);
   }
 
+  /**
+   * Reports are parsed in parallel, each one into its own index, and the indexes are merged in the order of the reports
+   * so that the result does not depend on scheduling.
+   */
   private void parseFiles(File[] reports, UnitTestIndex index) {
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
-    StaxParser parser = new StaxParser(staxParser, false);
-    for (File report : reports) {
-      try {
-        parser.parse(report);
-      } catch (XMLStreamException e) {
-        throw new SonarException("Fail to parse the Surefire report: " + report, e);
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(reports.length, Runtime.getRuntime().availableProcessors()));
+    try {
+      List<Future<UnitTestIndex>> reportIndexes = Lists.newArrayListWithCapacity(reports.length);
+      for (final File report : reports) {
+        reportIndexes.add(executor.submit(new Callable<UnitTestIndex>() {
+          @Override
+          public UnitTestIndex call() {
+            return parseFile(report);
+          }
+        }));
+      }
+      for (Future<UnitTestIndex> reportIndex : reportIndexes) {
+        index.merge(getUninterruptibly(reportIndex));
       }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private UnitTestIndex parseFile(File report) {
+    UnitTestIndex index = new UnitTestIndex();
+    StaxParser parser = new StaxParser(new SurefireStaxHandler(index, maxStackTraceLength), false);
+    try {
+      parser.parse(report);
+    } catch (XMLStreamException e) {
+      throw new SonarException("Fail to parse the Surefire report: " + report, e);
+    }
+    return index;
+  }
+
+  private static UnitTestIndex getUninterruptibly(Future<UnitTestIndex> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new SonarException(e.getCause());
     }
   }
 
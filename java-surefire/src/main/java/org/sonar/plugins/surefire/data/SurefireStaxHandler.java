@@ -34,9 +34,18 @@ import java.util.Locale;
 public class SurefireStaxHandler implements XmlStreamHandler {
 
   private final UnitTestIndex index;
+  private final int maxStackTraceLength;
 
   public SurefireStaxHandler(UnitTestIndex index) {
+    this(index, 0);
+  }
+
+  /**
+   * @param maxStackTraceLength stack traces are truncated to this number of characters, no limit if zero or negative
+   */
+  public SurefireStaxHandler(UnitTestIndex index, int maxStackTraceLength) {
     this.index = index;
+    this.maxStackTraceLength = maxStackTraceLength;
   }
 
   @Override
@@ -74,10 +83,27 @@ public class SurefireStaxHandler implements XmlStreamHandler {
 
   private void setStackAndMessage(UnitTestResult result, SMInputCursor stackAndMessageCursor) throws XMLStreamException {
     result.setMessage(stackAndMessageCursor.getAttrValue("message"));
-    String stack = stackAndMessageCursor.collectDescendantText();
+    String stack = maxStackTraceLength > 0 ? collectDescendantText(stackAndMessageCursor, maxStackTraceLength) : stackAndMessageCursor.collectDescendantText();
     result.setStackTrace(stack);
   }
 
+  /**
+   * Same as {@link SMInputCursor#collectDescendantText()}, but text after the first {@code maxLength} characters is
+   * skipped instead of being accumulated.
+   */
+  private static String collectDescendantText(SMInputCursor cursor, int maxLength) throws XMLStreamException {
+    StringBuilder text = new StringBuilder();
+    SMInputCursor descendants = cursor.descendantMixedCursor();
+    SMEvent event;
+    for (event = descendants.getNext(); event != null; event = descendants.getNext()) {
+      if (event.hasText() && text.length() < maxLength) {
+        String chunk = descendants.getText();
+        text.append(chunk, 0, Math.min(chunk.length(), maxLength - text.length()));
+      }
+    }
+    return text.toString();
+  }
+
   private UnitTestResult parseTestResult(SMInputCursor testCaseCursor) throws XMLStreamException {
     UnitTestResult detail = new UnitTestResult();
     String name = getTestCaseName(testCaseCursor);
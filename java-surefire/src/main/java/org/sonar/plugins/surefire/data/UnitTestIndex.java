@@ -72,6 +72,15 @@ public class UnitTestIndex {
     return null;
   }
 
+  /**
+   * Adds the results of the other index to the ones of this index, class by class.
+   */
+  public void merge(UnitTestIndex other) {
+    for (Map.Entry<String, UnitTestClassReport> entry : other.indexByClassname.entrySet()) {
+      index(entry.getKey()).add(entry.getValue());
+    }
+  }
+
   public void remove(String classname) {
     indexByClassname.remove(classname);
   }
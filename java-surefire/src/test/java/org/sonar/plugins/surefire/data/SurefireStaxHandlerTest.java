@@ -114,9 +114,25 @@ public class SurefireStaxHandlerTest {
     assertThat(index.get("org.sonar.SecondTest").getTests(), is(4L));
   }
 
+  @Test
+  public void shouldTruncateStackTraces() throws XMLStreamException {
+    parse("errorsAndFailures.xml");
+    String stackTrace = index.get("org.sonar.Foo").getResults().get(0).getStackTrace();
+
+    index = new UnitTestIndex();
+    parse("errorsAndFailures.xml", 20);
+    UnitTestResult failure = index.get("org.sonar.Foo").getResults().get(0);
+    assertThat(failure.getStackTrace(), is(stackTrace.substring(0, 20)));
+    assertThat(failure.getMessage(), startsWith("expected"));
+  }
+
   private void parse(String path) throws XMLStreamException {
+    parse(path, 0);
+  }
+
+  private void parse(String path, int maxStackTraceLength) throws XMLStreamException {
     File xml = TestUtils.getResource(getClass(), path);
-    SurefireStaxHandler staxParser = new SurefireStaxHandler(index);
+    SurefireStaxHandler staxParser = new SurefireStaxHandler(index, maxStackTraceLength);
     StaxParser parser = new StaxParser(staxParser, false);
     parser.parse(xml);
   }
@@ -52,6 +52,23 @@ public class UnitTestIndexTest {
     assertSame(index.get("org.sonar.Foo"), report1);
   }
 
+  @Test
+  public void shouldMergeIndexes() {
+    UnitTestIndex index = new UnitTestIndex();
+    index.index("org.sonar.Foo").add(new UnitTestResult().setName("testOne").setStatus(UnitTestResult.STATUS_OK));
+    UnitTestIndex other = new UnitTestIndex();
+    other.index("org.sonar.Foo").add(new UnitTestResult().setName("testTwo").setStatus(UnitTestResult.STATUS_ERROR));
+    other.index("org.sonar.Bar").add(new UnitTestResult().setName("testThree").setStatus(UnitTestResult.STATUS_OK));
+
+    index.merge(other);
+
+    assertThat(index.size(), is(2));
+    assertThat(index.get("org.sonar.Foo").getTests(), is(2L));
+    assertThat(index.get("org.sonar.Foo").getErrors(), is(1L));
+    assertThat(index.get("org.sonar.Foo").getResults().get(1).getName(), is("testTwo"));
+    assertThat(index.get("org.sonar.Bar").getTests(), is(1L));
+  }
+
   @Test
   public void shouldRemoveClassname() {
     UnitTestIndex index = new UnitTestIndex();
@@ -0,0 +1,293 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.jacoco;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the coverage of each test in a compact format, to a sidecar file of the execution data file, instead of a
+ * JaCoCo session with the full probe arrays of the classes covered by the test:
+ * <pre>
+ *   file   : batch*
+ *   batch  : HEADER(byte) MAGIC(int) VERSION(byte) record*
+ *   record : CLASS(byte) id(long) name(UTF)
+ *          | TEST(byte) sessionId(UTF) classCount(varint) (classIndex(varint) hitCount(varint) probeIndexDelta(varint)*)*
+ * </pre>
+ * Each batch of snapshots is self-contained and appended under a file lock, so that several JVMs can write to the same
+ * file. Classes are indexed in the order of their CLASS record, written once per batch, before the first test covering
+ * the class. Indexes of hit probes are written in increasing order, each one as the difference with the previous one.
+ * <p/>
+ * Execution data of all the snapshots is merged in memory, and the classes having new hit probes are appended after each
+ * batch as a session to the execution data file, so that overall coverage is unchanged and does not depend on the JVM
+ * running its shutdown hooks.
+ */
+class CompactCoverageWriter {
+
+  static final String SUFFIX = ".tests";
+  static final byte HEADER_RECORD = 0x00;
+  static final int MAGIC = 0x534A5443;
+  static final byte FORMAT_VERSION = 2;
+  static final byte CLASS_RECORD = 0x01;
+  static final byte TEST_RECORD = 0x02;
+
+  private static final byte BLOCK_HEADER = 0x01;
+  private static final byte BLOCK_SESSIONINFO = 0x10;
+  private static final byte BLOCK_EXECUTIONDATA = 0x11;
+  private static final char MAGIC_NUMBER = 0xC0C0;
+
+  private final File executionDataFile;
+  private final Map<Long, ClassData> classes = new LinkedHashMap<Long, ClassData>();
+  private char formatVersion;
+  private long startTimeStamp = -1;
+
+  private Map<Long, Integer> batchClassIndexes;
+  private Map<Long, ClassData> batchMergedDelta;
+  private DataOutputStream batchClasses;
+  private DataOutputStream batchTests;
+
+  CompactCoverageWriter(File executionDataFile) {
+    this.executionDataFile = executionDataFile;
+  }
+
+  /**
+   * @param batch snapshots of execution data in the format of JaCoCo, as returned by {@code IAgent.getExecutionData}
+   */
+  void write(List<byte[]> batch) throws IOException {
+    ByteArrayOutputStream classesBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream testsBytes = new ByteArrayOutputStream();
+    batchClassIndexes = new HashMap<Long, Integer>();
+    batchMergedDelta = new LinkedHashMap<Long, ClassData>();
+    batchClasses = new DataOutputStream(classesBytes);
+    batchTests = new DataOutputStream(testsBytes);
+    for (byte[] executionData : batch) {
+      write(executionData);
+    }
+    if (batchTests.size() > 0) {
+      ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+      DataOutputStream header = new DataOutputStream(headerBytes);
+      header.writeByte(HEADER_RECORD);
+      header.writeInt(MAGIC);
+      header.writeByte(FORMAT_VERSION);
+      header.flush();
+      batchClasses.flush();
+      batchTests.flush();
+      append(new File(executionDataFile.getPath() + SUFFIX), headerBytes, classesBytes, testsBytes);
+    }
+    writeMergedDelta();
+  }
+
+  private void write(byte[] executionData) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(executionData));
+    String sessionId = "";
+    ByteArrayOutputStream testBytes = new ByteArrayOutputStream();
+    DataOutputStream test = new DataOutputStream(testBytes);
+    int classCount = 0;
+    int block;
+    while ((block = in.read()) != -1) {
+      switch (block) {
+        case BLOCK_HEADER:
+          if (in.readChar() != MAGIC_NUMBER) {
+            throw new IOException("Invalid execution data");
+          }
+          formatVersion = in.readChar();
+          break;
+        case BLOCK_SESSIONINFO:
+          sessionId = in.readUTF();
+          long start = in.readLong();
+          in.readLong();
+          if (startTimeStamp < 0) {
+            startTimeStamp = start;
+          }
+          break;
+        case BLOCK_EXECUTIONDATA:
+          if (writeClass(in.readLong(), in.readUTF(), readBooleanArray(in), sessionId.length() > 0, test)) {
+            classCount++;
+          }
+          break;
+        default:
+          throw new IOException("Unknown block type " + Integer.toHexString(block));
+      }
+    }
+    if (classCount > 0) {
+      test.flush();
+      batchTests.writeByte(TEST_RECORD);
+      batchTests.writeUTF(sessionId);
+      writeVarInt(batchTests, classCount);
+      testBytes.writeTo(batchTests);
+    }
+  }
+
+  private boolean writeClass(long id, String name, boolean[] probes, boolean isTest, DataOutputStream test) throws IOException {
+    ClassData classData = classes.get(id);
+    if (classData == null) {
+      classData = new ClassData(name, probes.length);
+      classes.put(id, classData);
+    }
+    int hitCount = 0;
+    for (int i = 0; i < probes.length; i++) {
+      if (probes[i]) {
+        hitCount++;
+        if (i < classData.probes.length && !classData.probes[i]) {
+          classData.probes[i] = true;
+          batchMergedDelta.put(id, classData);
+        }
+      }
+    }
+    if (!isTest || hitCount == 0) {
+      return false;
+    }
+    Integer index = batchClassIndexes.get(id);
+    if (index == null) {
+      index = batchClassIndexes.size();
+      batchClassIndexes.put(id, index);
+      batchClasses.writeByte(CLASS_RECORD);
+      batchClasses.writeLong(id);
+      batchClasses.writeUTF(name);
+    }
+    writeVarInt(test, index);
+    writeVarInt(test, hitCount);
+    int previous = 0;
+    for (int i = 0; i < probes.length; i++) {
+      if (probes[i]) {
+        writeVarInt(test, i - previous);
+        previous = i;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Appends the merged execution data of the classes having new hit probes in the batch to the execution data file. The
+   * reader of the file merges them with the ones of the previous batches.
+   */
+  private void writeMergedDelta() throws IOException {
+    if (batchMergedDelta.isEmpty()) {
+      return;
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream merged = new DataOutputStream(bytes);
+    merged.writeByte(BLOCK_HEADER);
+    merged.writeChar(MAGIC_NUMBER);
+    merged.writeChar(formatVersion);
+    merged.writeByte(BLOCK_SESSIONINFO);
+    merged.writeUTF("");
+    merged.writeLong(startTimeStamp);
+    merged.writeLong(System.currentTimeMillis());
+    for (Map.Entry<Long, ClassData> entry : batchMergedDelta.entrySet()) {
+      merged.writeByte(BLOCK_EXECUTIONDATA);
+      merged.writeLong(entry.getKey());
+      merged.writeUTF(entry.getValue().name);
+      writeBooleanArray(merged, entry.getValue().probes);
+    }
+    merged.flush();
+    append(executionDataFile, bytes);
+  }
+
+  /**
+   * Appends the given bytes under a file lock, so that several JVMs can write to the same file.
+   */
+  private static void append(File file, ByteArrayOutputStream... bytes) throws IOException {
+    FileOutputStream out = new FileOutputStream(file, true);
+    try {
+      FileLock lock = out.getChannel().lock();
+      try {
+        for (ByteArrayOutputStream b : bytes) {
+          b.writeTo(out);
+        }
+      } finally {
+        lock.release();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static boolean[] readBooleanArray(DataInputStream in) throws IOException {
+    boolean[] value = new boolean[readVarInt(in)];
+    int buffer = 0;
+    for (int i = 0; i < value.length; i++) {
+      if ((i % 8) == 0) {
+        buffer = in.readByte();
+      }
+      value[i] = (buffer & 0x01) != 0;
+      buffer >>>= 1;
+    }
+    return value;
+  }
+
+  private static void writeBooleanArray(DataOutputStream out, boolean[] value) throws IOException {
+    writeVarInt(out, value.length);
+    int buffer = 0;
+    int bufferSize = 0;
+    for (boolean b : value) {
+      if (b) {
+        buffer |= 0x01 << bufferSize;
+      }
+      bufferSize++;
+      if (bufferSize == 8) {
+        out.writeByte(buffer);
+        buffer = 0;
+        bufferSize = 0;
+      }
+    }
+    if (bufferSize > 0) {
+      out.writeByte(buffer);
+    }
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0xFF & in.readByte();
+    if ((value & 0x80) == 0) {
+      return value;
+    }
+    return (value & 0x7F) | (readVarInt(in) << 7);
+  }
+
+  static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    if ((value & 0xFFFFFF80) == 0) {
+      out.writeByte(value);
+    } else {
+      out.writeByte(0x80 | (value & 0x7F));
+      writeVarInt(out, value >>> 7);
+    }
+  }
+
+  private static class ClassData {
+    private final String name;
+    private final boolean[] probes;
+
+    ClassData(String name, int probeCount) {
+      this.name = name;
+      this.probes = new boolean[probeCount];
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.jacoco;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends snapshots of execution data to a file from a background thread, several snapshots at a time, so that tests
+ * do not wait for the file system.
+ * <p/>
+ * The file is locked while it is written, like the JaCoCo agent does, so that it can also be the destination file of
+ * the agent. In compact mode, the coverage of each test is written by a {@link CompactCoverageWriter} instead.
+ */
+class ExecutionDataAppender {
+
+  private static final int MAX_BATCH_SIZE = 256;
+  /**
+   * Each snapshot holds the probes of all the loaded classes, so tests are blocked rather than filling the heap when the
+   * file system can not keep up.
+   */
+  static final int MAX_PENDING_SNAPSHOTS = 64;
+  private static final byte[] END = new byte[0];
+
+  private static final byte BLOCK_HEADER = 0x01;
+  private static final byte BLOCK_SESSIONINFO = 0x10;
+
+  private final File file;
+  private final boolean compact;
+  private CompactCoverageWriter compactWriter;
+  private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<byte[]>(MAX_PENDING_SNAPSHOTS);
+  private final Thread thread;
+  private volatile IOException failure;
+
+  ExecutionDataAppender(File file) {
+    this(file, false);
+  }
+
+  ExecutionDataAppender(File file, boolean compact) {
+    this.file = file;
+    this.compact = compact;
+    this.thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        writeUntilEnd();
+      }
+    }, "JaCoCo coverage per test writer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Blocks while {@link #MAX_PENDING_SNAPSHOTS} snapshots are waiting to be written.
+   *
+   * @param executionData execution data in the format of JaCoCo, as returned by {@code IAgent.getExecutionData}
+   * @throws IOException if a previous snapshot could not be written
+   */
+  void append(byte[] executionData) throws IOException {
+    checkFailure();
+    if (!isEmpty(executionData)) {
+      put(executionData);
+    }
+  }
+
+  /**
+   * Waits for all the snapshots to be written, to be called once before the JVM exits.
+   */
+  void close() throws IOException {
+    put(END);
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    checkFailure();
+  }
+
+  private void put(byte[] executionData) throws IOException {
+    try {
+      while (!queue.offer(executionData, 1, TimeUnit.SECONDS)) {
+        checkFailure();
+        if (!thread.isAlive()) {
+          throw new IOException("Coverage per test writer is not running anymore");
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for coverage per test to be written");
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void writeUntilEnd() {
+    List<byte[]> batch = new ArrayList<byte[]>();
+    boolean end = false;
+    while (!end) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        batch.add(END);
+      }
+      queue.drainTo(batch, MAX_BATCH_SIZE);
+      end = batch.remove(END);
+      if (failure == null) {
+        try {
+          write(batch);
+        } catch (IOException e) {
+          failure = e;
+        } catch (RuntimeException e) {
+          // for instance OverlappingFileLockException, when the file is already locked by this JVM
+          failure = new IOException("Unable to write coverage per test to " + file, e);
+        }
+      }
+      batch.clear();
+    }
+  }
+
+  private void write(List<byte[]> batch) throws IOException {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (compact) {
+      if (compactWriter == null) {
+        compactWriter = new CompactCoverageWriter(file);
+      }
+      compactWriter.write(batch);
+      return;
+    }
+    FileOutputStream out = new FileOutputStream(file, true);
+    try {
+      FileLock lock = out.getChannel().lock();
+      try {
+        for (byte[] executionData : batch) {
+          out.write(executionData);
+        }
+      } finally {
+        lock.release();
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * A snapshot without any block of class execution data after its session info block does not contribute to coverage.
+   * Snapshots in any unexpected format are considered as not empty.
+   */
+  static boolean isEmpty(byte[] executionData) {
+    if (executionData.length == 0) {
+      return true;
+    }
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(executionData));
+    try {
+      if (in.readByte() != BLOCK_HEADER) {
+        return false;
+      }
+      // magic number and format version
+      in.readChar();
+      in.readChar();
+      if (in.readByte() != BLOCK_SESSIONINFO) {
+        return false;
+      }
+      // session id, start and dump time stamps
+      in.readUTF();
+      in.readLong();
+      in.readLong();
+      return in.available() == 0;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+}
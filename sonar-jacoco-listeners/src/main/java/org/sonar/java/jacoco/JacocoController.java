@@ -22,13 +22,27 @@ package org.sonar.java.jacoco;
 import org.jacoco.agent.rt.IAgent;
 import org.jacoco.agent.rt.RT;
 
+import java.io.File;
 import java.io.IOException;
 
 class JacocoController {
 
   private static final String ERROR = "Unable to access JaCoCo Agent - make sure that you use JaCoCo and version not lower than 0.6.2.";
 
+  /**
+   * System property giving the file to which execution data are appended in process, typically the destination file of
+   * the agent. When not set, the agent dumps execution data itself before and after each test.
+   */
+  static final String DESTFILE_PROPERTY = "sonar.jacoco.listeners.destfile";
+
+  /**
+   * System property which, when set to true along with {@link #DESTFILE_PROPERTY}, makes the coverage of each test be
+   * written in a compact format to a sidecar file, see {@link CompactCoverageWriter}.
+   */
+  static final String COMPACT_PROPERTY = "sonar.jacoco.listeners.compact";
+
   private final IAgent agent;
+  private final ExecutionDataAppender appender;
 
   private boolean testStarted;
 
@@ -49,10 +63,30 @@ class JacocoController {
     } catch (Exception e) {
       throw new JacocoControllerError(ERROR, e);
     }
+    String destFile = System.getProperty(DESTFILE_PROPERTY);
+    if (destFile == null) {
+      this.appender = null;
+    } else {
+      this.appender = new ExecutionDataAppender(new File(destFile), Boolean.getBoolean(COMPACT_PROPERTY));
+      Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+        @Override
+        public void run() {
+          close();
+        }
+      }));
+    }
   }
 
   JacocoController(IAgent agent) {
+    this(agent, null);
+  }
+
+  /**
+   * @param appender writer of the snapshots of execution data taken in process, null to let the agent dump them
+   */
+  JacocoController(IAgent agent, ExecutionDataAppender appender) {
     this.agent = agent;
+    this.appender = appender;
   }
 
   public synchronized void onTestStart(String name) {
@@ -73,12 +107,26 @@ class JacocoController {
   private void dump(String sessionId) {
     agent.setSessionId(sessionId);
     try {
-      agent.dump(true);
+      if (appender == null) {
+        agent.dump(true);
+      } else {
+        appender.append(agent.getExecutionData(true));
+      }
     } catch (IOException e) {
       throw new JacocoControllerError(e);
     }
   }
 
+  synchronized void close() {
+    if (appender != null) {
+      try {
+        appender.close();
+      } catch (IOException e) {
+        throw new JacocoControllerError(e);
+      }
+    }
+  }
+
   public static class JacocoControllerError extends Error {
     public JacocoControllerError(String message) {
       super(message);
@@ -0,0 +1,166 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.jacoco;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class CompactCoverageWriterTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_write_hit_probes_of_tests_and_merged_execution_data() throws Exception {
+    File execFile = new File(temp.getRoot(), "jacoco.exec");
+    CompactCoverageWriter writer = new CompactCoverageWriter(execFile);
+    writer.write(Arrays.asList(
+      snapshot("", 8L, "Bar", new boolean[] {true, false}),
+      snapshot("FooTest test", 7L, "Foo", new boolean[] {false, true, false, true})));
+
+    DataInputStream tests = new DataInputStream(new FileInputStream(new File(temp.getRoot(), "jacoco.exec" + CompactCoverageWriter.SUFFIX)));
+    try {
+      assertEquals(CompactCoverageWriter.HEADER_RECORD, tests.readByte());
+      assertEquals(CompactCoverageWriter.MAGIC, tests.readInt());
+      assertEquals(CompactCoverageWriter.FORMAT_VERSION, tests.readByte());
+      // only the class covered by the test is in the dictionary
+      assertEquals(CompactCoverageWriter.CLASS_RECORD, tests.readByte());
+      assertEquals(7L, tests.readLong());
+      assertEquals("Foo", tests.readUTF());
+      assertEquals(CompactCoverageWriter.TEST_RECORD, tests.readByte());
+      assertEquals("FooTest test", tests.readUTF());
+      // one class, of index 0, with 2 hit probes: 1 and 3
+      byte[] hits = new byte[5];
+      tests.readFully(hits);
+      assertEquals(Arrays.toString(new byte[] {1, 0, 2, 1, 2}), Arrays.toString(hits));
+      assertEquals(-1, tests.read());
+    } finally {
+      tests.close();
+    }
+
+    DataInputStream exec = new DataInputStream(new FileInputStream(execFile));
+    try {
+      assertEquals(0x01, exec.readByte());
+      assertEquals(0xC0C0, exec.readChar());
+      assertEquals(0x1007, exec.readChar());
+      assertEquals(0x10, exec.readByte());
+      assertEquals("", exec.readUTF());
+      assertEquals(1L, exec.readLong());
+      exec.readLong();
+      assertEquals(0x11, exec.readByte());
+      assertEquals(8L, exec.readLong());
+      assertEquals("Bar", exec.readUTF());
+      assertEquals(2, exec.readByte());
+      assertEquals(0x01, exec.readByte());
+      assertEquals(0x11, exec.readByte());
+      assertEquals(7L, exec.readLong());
+      assertEquals("Foo", exec.readUTF());
+      assertEquals(4, exec.readByte());
+      assertEquals(0x0A, exec.readByte());
+      assertEquals(-1, exec.read());
+    } finally {
+      exec.close();
+    }
+  }
+
+  @Test
+  public void should_not_write_anything_without_test_coverage() throws Exception {
+    File execFile = new File(temp.getRoot(), "jacoco.exec");
+    CompactCoverageWriter writer = new CompactCoverageWriter(execFile);
+    writer.write(Arrays.asList(snapshot("FooTest test", 7L, "Foo", new boolean[] {false})));
+    assertFalse(new File(temp.getRoot(), "jacoco.exec" + CompactCoverageWriter.SUFFIX).exists());
+    assertFalse(execFile.exists());
+  }
+
+  @Test
+  public void should_append_classes_with_new_hit_probes_after_each_batch() throws Exception {
+    File execFile = new File(temp.getRoot(), "jacoco.exec");
+    CompactCoverageWriter writer = new CompactCoverageWriter(execFile);
+    writer.write(Arrays.asList(snapshot("FooTest test", 7L, "Foo", new boolean[] {true, false})));
+    writer.write(Arrays.asList(
+      snapshot("FooTest test", 7L, "Foo", new boolean[] {true, false}),
+      snapshot("BarTest test", 8L, "Bar", new boolean[] {true})));
+    writer.write(Arrays.asList(snapshot("FooTest test", 7L, "Foo", new boolean[] {false, true})));
+
+    DataInputStream exec = new DataInputStream(new FileInputStream(execFile));
+    try {
+      assertMergedSession(exec, 7L, "Foo", 2, 0x01);
+      // Foo has no new hit probe
+      assertMergedSession(exec, 8L, "Bar", 1, 0x01);
+      assertMergedSession(exec, 7L, "Foo", 2, 0x03);
+      assertEquals(-1, exec.read());
+    } finally {
+      exec.close();
+    }
+  }
+
+  private static void assertMergedSession(DataInputStream exec, long classId, String className, int probeCount, int probes) throws IOException {
+    assertEquals(0x01, exec.readByte());
+    assertEquals(0xC0C0, exec.readChar());
+    assertEquals(0x1007, exec.readChar());
+    assertEquals(0x10, exec.readByte());
+    assertEquals("", exec.readUTF());
+    assertEquals(1L, exec.readLong());
+    exec.readLong();
+    assertEquals(0x11, exec.readByte());
+    assertEquals(classId, exec.readLong());
+    assertEquals(className, exec.readUTF());
+    assertEquals(probeCount, exec.readByte());
+    assertEquals(probes, exec.readByte());
+  }
+
+  private static byte[] snapshot(String sessionId, long classId, String className, boolean[] probes) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(0x01);
+    out.writeChar(0xC0C0);
+    out.writeChar(0x1007);
+    out.writeByte(0x10);
+    out.writeUTF(sessionId);
+    out.writeLong(1L);
+    out.writeLong(2L);
+    out.writeByte(0x11);
+    out.writeLong(classId);
+    out.writeUTF(className);
+    out.writeByte(probes.length);
+    int buffer = 0;
+    for (int i = 0; i < probes.length; i++) {
+      if (probes[i]) {
+        buffer |= 1 << i;
+      }
+    }
+    out.writeByte(buffer);
+    out.close();
+    return bytes.toByteArray();
+  }
+
+}
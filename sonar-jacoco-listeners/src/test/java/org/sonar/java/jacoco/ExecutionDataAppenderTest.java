@@ -0,0 +1,141 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.java.jacoco;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExecutionDataAppenderTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void should_append_snapshots_which_are_not_empty() throws Exception {
+    File file = temp.newFile();
+    ExecutionDataAppender appender = new ExecutionDataAppender(file);
+    byte[] first = snapshot("test1", true);
+    byte[] second = snapshot("test2", true);
+    appender.append(first);
+    appender.append(snapshot("", false));
+    appender.append(second);
+    appender.close();
+
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.write(first);
+    expected.write(second);
+    assertArrayEquals(expected.toByteArray(), read(file));
+  }
+
+  @Test
+  public void should_append_more_snapshots_than_pending_ones() throws Exception {
+    File file = temp.newFile();
+    ExecutionDataAppender appender = new ExecutionDataAppender(file);
+    byte[] snapshot = snapshot("test", true);
+    int count = 3 * ExecutionDataAppender.MAX_PENDING_SNAPSHOTS;
+    for (int i = 0; i < count; i++) {
+      appender.append(snapshot);
+    }
+    appender.close();
+
+    assertEquals(count * snapshot.length, file.length());
+  }
+
+  @Test
+  public void should_report_runtime_failures_of_writer() throws Exception {
+    File file = temp.newFile();
+    RandomAccessFile lockedFile = new RandomAccessFile(file, "rw");
+    try {
+      // locking again a file locked by the same JVM fails with OverlappingFileLockException
+      FileLock lock = lockedFile.getChannel().lock();
+      ExecutionDataAppender appender = new ExecutionDataAppender(file);
+      appender.append(snapshot("test1", true));
+      try {
+        appender.close();
+        fail();
+      } catch (IOException e) {
+        assertTrue(e.getCause() instanceof OverlappingFileLockException);
+      }
+      lock.release();
+    } finally {
+      lockedFile.close();
+    }
+  }
+
+  @Test
+  public void is_empty() throws Exception {
+    assertTrue(ExecutionDataAppender.isEmpty(new byte[0]));
+    assertTrue(ExecutionDataAppender.isEmpty(snapshot("", false)));
+    assertFalse(ExecutionDataAppender.isEmpty(snapshot("", true)));
+    assertFalse(ExecutionDataAppender.isEmpty(new byte[] {0x11}));
+  }
+
+  private static byte[] snapshot(String sessionId, boolean withData) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeByte(0x01);
+    out.writeChar(0xC0C0);
+    out.writeChar(0x1007);
+    out.writeByte(0x10);
+    out.writeUTF(sessionId);
+    out.writeLong(1L);
+    out.writeLong(2L);
+    if (withData) {
+      out.writeByte(0x11);
+      out.writeLong(42L);
+      out.writeUTF("Foo");
+    }
+    out.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] read(File file) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[1024];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        bytes.write(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    return bytes.toByteArray();
+  }
+
+}
@@ -30,9 +30,12 @@ import org.sonar.java.jacoco.JacocoController.JacocoControllerError;
 
 import java.io.IOException;
 
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -84,4 +87,34 @@ public class JacocoControllerTest {
     jacoco.onTestStart("test2");
   }
 
+  @Test
+  public void should_take_snapshots_in_process_when_appender_given() throws Exception {
+    ExecutionDataAppender appender = mock(ExecutionDataAppender.class);
+    byte[] executionData = new byte[] {1};
+    when(agent.getExecutionData(true)).thenReturn(executionData);
+    jacoco = new JacocoController(agent, appender);
+    jacoco.onTestStart("test");
+    jacoco.onTestFinish("test");
+    InOrder inOrder = Mockito.inOrder(agent, appender);
+    inOrder.verify(agent).setSessionId("");
+    inOrder.verify(agent).getExecutionData(true);
+    inOrder.verify(appender).append(executionData);
+    inOrder.verify(agent).setSessionId("test");
+    inOrder.verify(agent).getExecutionData(true);
+    inOrder.verify(appender).append(executionData);
+    verify(agent, never()).dump(anyBoolean());
+
+    jacoco.close();
+    verify(appender).close();
+  }
+
+  @Test
+  public void should_throw_exception_when_appending_failed() throws Exception {
+    ExecutionDataAppender appender = mock(ExecutionDataAppender.class);
+    doThrow(IOException.class).when(appender).append(any(byte[].class));
+    jacoco = new JacocoController(agent, appender);
+    thrown.expect(JacocoControllerError.class);
+    jacoco.onTestFinish("test");
+  }
+
 }
@@ -55,7 +55,8 @@ public class Bridges {
     boolean skipPackageDesignAnalysis = settings.getBoolean(CoreProperties.DESIGN_SKIP_PACKAGE_DESIGN_PROPERTY);
     //Design
     if (!skipPackageDesignAnalysis && squid.isBytecodeScanned()) {
-      DesignBridge designBridge = new DesignBridge(context, squid.getGraph(), resourceMapping, resourcePerspectives);
+      DesignBridge designBridge = new DesignBridge(context, squid.getGraph(), resourceMapping, resourcePerspectives,
+        settings.getInt(JavaPlugin.DESIGN_MAX_EXACT_COMPONENT_SIZE_PROPERTY));
       designBridge.saveDesign(project);
     }
     //Report Issues
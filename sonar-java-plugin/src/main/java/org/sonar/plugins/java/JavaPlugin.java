@@ -43,6 +43,15 @@ public class JavaPlugin extends SonarPlugin {
   public static final String SQUID_ANALYSE_ACCESSORS_PROPERTY = "sonar.squid.analyse.property.accessors";
   public static final boolean SQUID_ANALYSE_ACCESSORS_DEFAULT_VALUE = true;
 
+  public static final String INCREMENTAL_ANALYSIS_PROPERTY = "sonar.java.incremental";
+  public static final boolean INCREMENTAL_ANALYSIS_DEFAULT_VALUE = false;
+
+  public static final String DESIGN_MAX_EXACT_COMPONENT_SIZE_PROPERTY = "sonar.java.design.maxExactComponentSize";
+  public static final int DESIGN_MAX_EXACT_COMPONENT_SIZE_DEFAULT_VALUE = 200;
+
+  public static final String BYTECODE_STREAMING_PROPERTY = "sonar.java.bytecode.streaming";
+  public static final boolean BYTECODE_STREAMING_DEFAULT_VALUE = false;
+
   @Override
   public List getExtensions() {
     ImmutableList.Builder<Object> builder = ImmutableList.builder();
@@ -72,6 +81,16 @@ public class JavaPlugin extends SonarPlugin {
             .type(PropertyType.BOOLEAN)
             .onQualifiers(Qualifiers.PROJECT)
             .build(),
+        PropertyDefinition.builder(JavaPlugin.INCREMENTAL_ANALYSIS_PROPERTY)
+            .defaultValue(JavaPlugin.INCREMENTAL_ANALYSIS_DEFAULT_VALUE + "")
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Incremental analysis")
+            .description("Flag whether results of the previous analysis should be reused for source files which did not change, " +
+                "nor did any of the project files they depend on. Results are kept in the working directory.")
+            .type(PropertyType.BOOLEAN)
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
         PropertyDefinition.builder(CoreProperties.DESIGN_SKIP_DESIGN_PROPERTY)
             .defaultValue(CoreProperties.DESIGN_SKIP_DESIGN_DEFAULT_VALUE + "")
             .category(JAVA_CATEGORY)
@@ -80,6 +99,26 @@ public class JavaPlugin extends SonarPlugin {
             .type(PropertyType.BOOLEAN)
             .hidden()
             .build(),
+        PropertyDefinition.builder(JavaPlugin.DESIGN_MAX_EXACT_COMPONENT_SIZE_PROPERTY)
+            .defaultValue(JavaPlugin.DESIGN_MAX_EXACT_COMPONENT_SIZE_DEFAULT_VALUE + "")
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Design analysis exact component size")
+            .description("Largest number of packages, or of files of a package, which depend on each other in a cycle and whose cycles are searched " +
+                "exhaustively. Larger groups get an approximate set of feedback edges, and one cycle is counted per feedback edge.")
+            .type(PropertyType.INTEGER)
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
+        PropertyDefinition.builder(JavaPlugin.BYTECODE_STREAMING_PROPERTY)
+            .defaultValue(JavaPlugin.BYTECODE_STREAMING_DEFAULT_VALUE + "")
+            .category(JAVA_CATEGORY)
+            .subCategory(GENERAL_SUBCATEGORY)
+            .name("Stream bytecode analysis")
+            .description("Flag whether the bytecode of each class should be released as soon as it has been analyzed, so that the memory used by the " +
+                "bytecode analysis does not grow with the size of the module. Class files are then read twice.")
+            .type(PropertyType.BOOLEAN)
+            .onQualifiers(Qualifiers.PROJECT)
+            .build(),
 
         JavaRulesDefinition.class,
         JavaSonarWayProfile.class,
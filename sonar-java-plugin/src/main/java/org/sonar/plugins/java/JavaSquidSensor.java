@@ -20,6 +20,9 @@
 package org.sonar.plugins.java;
 
 import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.DependedUpon;
 import org.sonar.api.batch.DependsUpon;
@@ -33,6 +36,8 @@ import org.sonar.api.batch.rule.Checks;
 import org.sonar.api.checks.NoSonarFilter;
 import org.sonar.api.config.Settings;
 import org.sonar.api.profiles.RulesProfile;
+import org.sonar.api.rules.ActiveRule;
+import org.sonar.api.rules.ActiveRuleParam;
 import org.sonar.api.resources.Project;
 import org.sonar.java.DefaultJavaResourceLocator;
 import org.sonar.java.JavaClasspath;
@@ -42,19 +47,27 @@ import org.sonar.java.Measurer;
 import org.sonar.java.SonarComponents;
 import org.sonar.java.api.JavaUtils;
 import org.sonar.java.checks.CheckList;
+import org.sonar.java.incremental.ClassAnalysisCache;
+import org.sonar.java.incremental.FileAnalysisCache;
 import org.sonar.squidbridge.api.CodeVisitor;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.nio.charset.Charset;
+import java.security.CodeSource;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
 
 @Phase(name = Phase.Name.PRE)
 @DependsUpon(JavaUtils.BARRIER_BEFORE_SQUID)
 @DependedUpon(value = JavaUtils.BARRIER_AFTER_SQUID)
 public class JavaSquidSensor implements Sensor {
 
+  private static final Logger LOG = LoggerFactory.getLogger(JavaSquidSensor.class);
+
   private final JavaClasspath javaClasspath;
   private final SonarComponents sonarComponents;
   private final FileSystem fs;
@@ -87,9 +100,17 @@ public class JavaSquidSensor implements Sensor {
     Checks<CodeVisitor> checks = checkFactory.<CodeVisitor>create(CheckList.REPOSITORY_KEY).addAnnotatedChecks(CheckList.getChecks());
     Collection<CodeVisitor> checkList = checks.all();
     JavaConfiguration configuration = createConfiguration();
+    configuration.setCompiledClassIndex(javaClasspath.getCompiledClassIndex());
+    if (settings.getBoolean(JavaPlugin.INCREMENTAL_ANALYSIS_PROPERTY)) {
+      String fingerprint = analysisFingerprint(configuration, checkList);
+      configuration.setAnalysisCache(FileAnalysisCache.load(new File(fs.workDir(), "java-incremental-analysis.cache"), fingerprint, javaClasspath.getElements()));
+      configuration.setClassAnalysisCache(ClassAnalysisCache.load(new File(fs.workDir(), "java-bytecode-analysis.cache"), fingerprint, javaClasspath.getElements(),
+        configuration.getCompiledClassIndex()));
+    }
     Measurer measurer = new Measurer(project, context, configuration.separatesAccessorsFromMethods());
     JavaSquid squid = new JavaSquid(configuration, sonarComponents, measurer, javaResourceLocator, checkList.toArray(new CodeVisitor[checkList.size()]));
     squid.scan(getSourceFiles(), getTestFiles(), getBytecodeFiles());
+    javaClasspath.saveCompiledClassIndex();
     new Bridges(squid, settings).save(context, project, checks, javaResourceLocator.getResourceMapping(),
       sonarComponents.getResourcePerspectives(), noSonarFilter, profile);
   }
@@ -122,9 +143,62 @@ public class JavaSquidSensor implements Sensor {
     Charset charset = fs.encoding();
     JavaConfiguration conf = new JavaConfiguration(charset);
     conf.setSeparateAccessorsFromMethods(analyzePropertyAccessors);
+    conf.setStreamBytecode(settings.getBoolean(JavaPlugin.BYTECODE_STREAMING_PROPERTY));
     return conf;
   }
 
+  /**
+   * Every field is prefixed by its length, so that distinct configurations can not produce the same fingerprint.
+   */
+  private String analysisFingerprint(JavaConfiguration configuration, Collection<CodeVisitor> checkList) {
+    StringBuilder fingerprint = new StringBuilder();
+    appendField(fingerprint, JavaSquidSensor.class.getPackage().getImplementationVersion());
+    for (Class<?> pluginClass : new Class<?>[] {JavaSquidSensor.class, JavaSquid.class, CheckList.class}) {
+      appendField(fingerprint, binaryChecksum(pluginClass));
+    }
+    appendField(fingerprint, configuration.getCharset());
+    appendField(fingerprint, configuration.separatesAccessorsFromMethods());
+    for (CodeVisitor check : checkList) {
+      appendField(fingerprint, check.getClass().getName());
+    }
+    for (ActiveRule activeRule : profile.getActiveRules()) {
+      appendField(fingerprint, activeRule.getRepositoryKey());
+      appendField(fingerprint, activeRule.getRuleKey());
+      for (ActiveRuleParam param : activeRule.getActiveRuleParams()) {
+        appendField(fingerprint, param.getKey());
+        appendField(fingerprint, param.getValue());
+      }
+    }
+    return fingerprint.toString();
+  }
+
+  private static void appendField(StringBuilder fingerprint, @Nullable Object field) {
+    String value = String.valueOf(field);
+    fingerprint.append(value.length()).append(':').append(value);
+  }
+
+  /**
+   * The implementation version does not change between two builds of a snapshot, so the content of the jar the given
+   * class is loaded from is part of the fingerprint. When it can not be read, a value unique to this analysis is returned
+   * so that no previous result is reused.
+   */
+  private static String binaryChecksum(Class<?> pluginClass) {
+    try {
+      CodeSource codeSource = pluginClass.getProtectionDomain().getCodeSource();
+      if (codeSource != null && codeSource.getLocation() != null) {
+        File binary = new File(codeSource.getLocation().toURI());
+        if (binary.isFile()) {
+          CRC32 checksum = new CRC32();
+          checksum.update(Files.toByteArray(binary));
+          return Long.toHexString(checksum.getValue());
+        }
+      }
+    } catch (Exception e) {
+      LOG.debug("Unable to compute the checksum of the binary of " + pluginClass.getName(), e);
+    }
+    return UUID.randomUUID().toString();
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
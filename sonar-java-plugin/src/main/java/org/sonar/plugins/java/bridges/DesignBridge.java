@@ -19,7 +19,9 @@
  */
 package org.sonar.plugins.java.bridges;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.SensorContext;
@@ -33,35 +35,54 @@ import org.sonar.api.measures.PersistenceMode;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
+import org.sonar.api.utils.SonarException;
 import org.sonar.api.utils.TimeProfiler;
 import org.sonar.graph.Cycle;
 import org.sonar.graph.DirectedGraph;
-import org.sonar.graph.Dsm;
-import org.sonar.graph.DsmTopologicalSorter;
 import org.sonar.graph.Edge;
 import org.sonar.graph.IncrementalCyclesAndFESSolver;
 import org.sonar.graph.MinimumFeedbackEdgeSetSolver;
 import org.sonar.java.bytecode.visitor.ResourceMapping;
 import org.sonar.java.checks.CycleBetweenPackagesCheck;
+import org.sonar.plugins.java.JavaPlugin;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DesignBridge {
 
   private static final Logger LOG = LoggerFactory.getLogger(DesignBridge.class);
+  private static final int MAX_PENDING_PACKAGES_PER_WORKER = 4;
 
   private final SensorContext context;
   private final DirectedGraph<Resource, Dependency> graph;
   private final ResourceMapping resourceMapping;
   private final ResourcePerspectives resourcePerspectives;
+  private final int maxExactComponentSize;
 
   public DesignBridge(SensorContext context, DirectedGraph<Resource, Dependency> graph, ResourceMapping resourceMapping, ResourcePerspectives resourcePerspectives) {
+    this(context, graph, resourceMapping, resourcePerspectives, JavaPlugin.DESIGN_MAX_EXACT_COMPONENT_SIZE_DEFAULT_VALUE);
+  }
+
+  /**
+   * @param maxExactComponentSize number of packages or files of the largest strongly connected component whose cycles are
+   * searched, larger components get an approximate feedback edge set, see {@link GreedyFeedbackEdgeSetSolver}
+   */
+  public DesignBridge(SensorContext context, DirectedGraph<Resource, Dependency> graph, ResourceMapping resourceMapping, ResourcePerspectives resourcePerspectives,
+    int maxExactComponentSize) {
     this.context = context;
     this.graph = graph;
     this.resourceMapping = resourceMapping;
     this.resourcePerspectives = resourcePerspectives;
+    this.maxExactComponentSize = maxExactComponentSize;
   }
 
   public void saveDesign(Project sonarProject) {
@@ -69,16 +90,16 @@ public class DesignBridge {
     TimeProfiler profiler = new TimeProfiler(LOG).start("Package design analysis");
     LOG.debug("{} packages to analyze", directories.size());
 
-    IncrementalCyclesAndFESSolver<Resource> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<Resource>(graph, directories);
-    LOG.debug("{} cycles", cyclesAndFESSolver.getCycles().size());
+    CycleAnalysis packageCycles = analyzeCycles(directories, false);
+    LOG.debug("{} cycles", packageCycles.cycles);
 
-    Set<Edge> feedbackEdges = cyclesAndFESSolver.getFeedbackEdgeSet();
+    Set<Edge> feedbackEdges = packageCycles.feedbackEdges;
     LOG.debug("{} feedback edges", feedbackEdges.size());
-    int tangles = cyclesAndFESSolver.getWeightOfFeedbackEdgeSet();
+    int tangles = packageCycles.tangles;
 
     saveIssues(feedbackEdges);
     saveDependencies();
-    savePositiveMeasure(sonarProject, CoreMetrics.PACKAGE_CYCLES, cyclesAndFESSolver.getCycles().size());
+    savePositiveMeasure(sonarProject, CoreMetrics.PACKAGE_CYCLES, packageCycles.cycles);
     savePositiveMeasure(sonarProject, CoreMetrics.PACKAGE_FEEDBACK_EDGES, feedbackEdges.size());
     savePositiveMeasure(sonarProject, CoreMetrics.PACKAGE_TANGLES, tangles);
     savePositiveMeasure(sonarProject, CoreMetrics.PACKAGE_EDGES_WEIGHT, getEdgesWeight(directories));
@@ -89,9 +110,35 @@ public class DesignBridge {
 
     profiler.stop();
 
-    for (Resource sonarPackage : directories) {
-      onPackage(sonarPackage);
+    savePackages(directories);
+  }
+
+  /**
+   * Cycles are only searched inside the strongly connected components of the vertices, one component at a time.
+   *
+   * @param minimumFeedbackEdgeSet whether the feedback edge set of a component is computed from all its cycles by
+   * {@link MinimumFeedbackEdgeSetSolver}, or incrementally while cycles are searched
+   */
+  private CycleAnalysis analyzeCycles(Collection<Resource> vertices, boolean minimumFeedbackEdgeSet) {
+    CycleAnalysis analysis = new CycleAnalysis();
+    for (List<Resource> component : StronglyConnectedComponents.of(graph, vertices)) {
+      if (component.size() > maxExactComponentSize) {
+        LOG.debug("{} vertices in a strongly connected component, approximating its feedback edge set", component.size());
+        GreedyFeedbackEdgeSetSolver solver = new GreedyFeedbackEdgeSetSolver(graph, component);
+        // every edge of a strongly connected component is part of a cycle: count one cycle per feedback edge
+        analysis.add(solver.getEdges().size(), solver.getEdges(), solver.getWeightOfFeedbackEdgeSet());
+      } else {
+        IncrementalCyclesAndFESSolver<Resource> cyclesAndFESSolver = new IncrementalCyclesAndFESSolver<Resource>(graph, component);
+        Set<Cycle> cycles = cyclesAndFESSolver.getCycles();
+        if (minimumFeedbackEdgeSet) {
+          MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(cycles);
+          analysis.add(cycles.size(), solver.getEdges(), solver.getWeightOfFeedbackEdgeSet());
+        } else {
+          analysis.add(cycles.size(), cyclesAndFESSolver.getFeedbackEdgeSet(), cyclesAndFESSolver.getWeightOfFeedbackEdgeSet());
+        }
+      }
     }
+    return analysis;
   }
 
   private void savePositiveMeasure(Resource sonarResource, Metric metric, double value) {
@@ -100,23 +147,64 @@ public class DesignBridge {
     }
   }
 
-  private void onPackage(Resource sonarPackage) {
-    Collection<Resource> squidFiles = getResourcesForDirectory(sonarPackage);
-    if (squidFiles != null && !squidFiles.isEmpty()) {
-      IncrementalCyclesAndFESSolver<Resource> cycleDetector = new IncrementalCyclesAndFESSolver<Resource>(graph, squidFiles);
-      Set<Cycle> cycles = cycleDetector.getCycles();
-
-      MinimumFeedbackEdgeSetSolver solver = new MinimumFeedbackEdgeSetSolver(cycles);
-      Set<Edge> feedbackEdges = solver.getEdges();
-      int tangles = solver.getWeightOfFeedbackEdgeSet();
+  /**
+   * Packages are analyzed by a pool of workers, at most {@link #MAX_PENDING_PACKAGES_PER_WORKER} packages per worker
+   * being pending at a time, so that the matrices of all the packages are never in memory at once. Resources are looked
+   * up and measures saved on the calling thread, in the order of the packages.
+   */
+  private void savePackages(Collection<Resource> directories) {
+    int workers = Runtime.getRuntime().availableProcessors();
+    Deque<PendingPackage> pendingPackages = new ArrayDeque<PendingPackage>();
+    ExecutorService executor = Executors.newFixedThreadPool(workers);
+    try {
+      for (Resource sonarPackage : directories) {
+        final Collection<Resource> squidFiles = getResourcesForDirectory(sonarPackage);
+        if (squidFiles != null && !squidFiles.isEmpty()) {
+          pendingPackages.add(new PendingPackage(sonarPackage, executor.submit(new Callable<PackageDesign>() {
+            @Override
+            public PackageDesign call() {
+              return analyzePackage(squidFiles);
+            }
+          })));
+          while (pendingPackages.size() > workers * MAX_PENDING_PACKAGES_PER_WORKER) {
+            savePackage(pendingPackages.poll());
+          }
+        }
+      }
+      while (!pendingPackages.isEmpty()) {
+        savePackage(pendingPackages.poll());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
 
-      savePositiveMeasure(sonarPackage, CoreMetrics.FILE_CYCLES, cycles.size());
-      savePositiveMeasure(sonarPackage, CoreMetrics.FILE_FEEDBACK_EDGES, feedbackEdges.size());
-      savePositiveMeasure(sonarPackage, CoreMetrics.FILE_TANGLES, tangles);
-      savePositiveMeasure(sonarPackage, CoreMetrics.FILE_EDGES_WEIGHT, getEdgesWeight(squidFiles));
-      String dsmJson = serializeDsm(graph, squidFiles, feedbackEdges);
-      context.saveMeasure(sonarPackage, new Measure(CoreMetrics.DEPENDENCY_MATRIX, dsmJson));
+  private void savePackage(PendingPackage pendingPackage) {
+    PackageDesign design;
+    try {
+      design = pendingPackage.design.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SonarException(e);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause());
+      throw new SonarException(e.getCause());
     }
+    savePackage(pendingPackage.sonarPackage, design);
+  }
+
+  private PackageDesign analyzePackage(Collection<Resource> squidFiles) {
+    CycleAnalysis fileCycles = analyzeCycles(squidFiles, true);
+    String dsmJson = serializeDsm(graph, squidFiles, fileCycles.feedbackEdges);
+    return new PackageDesign(fileCycles, getEdgesWeight(squidFiles), dsmJson);
+  }
+
+  private void savePackage(Resource sonarPackage, PackageDesign design) {
+    savePositiveMeasure(sonarPackage, CoreMetrics.FILE_CYCLES, design.fileCycles.cycles);
+    savePositiveMeasure(sonarPackage, CoreMetrics.FILE_FEEDBACK_EDGES, design.fileCycles.feedbackEdges.size());
+    savePositiveMeasure(sonarPackage, CoreMetrics.FILE_TANGLES, design.fileCycles.tangles);
+    savePositiveMeasure(sonarPackage, CoreMetrics.FILE_EDGES_WEIGHT, design.edgesWeight);
+    context.saveMeasure(sonarPackage, new Measure(CoreMetrics.DEPENDENCY_MATRIX, design.dsmJson));
   }
 
   private Collection<Resource> getResourcesForDirectory(Resource sonarPackage) {
@@ -137,8 +225,8 @@ public class DesignBridge {
   }
 
   private String serializeDsm(DirectedGraph<Resource, Dependency> graph, Collection<Resource> sources, Set<Edge> feedbackEdges) {
-    Dsm<Resource> dsm = new Dsm<Resource>(graph, sources, feedbackEdges);
-    DsmTopologicalSorter.sort(dsm);
+    SparseDsm dsm = new SparseDsm(graph, sources, feedbackEdges);
+    dsm.sort();
     return DsmSerializer.serialize(dsm);
   }
 
@@ -166,5 +254,38 @@ public class DesignBridge {
     }
   }
 
+  private static final class CycleAnalysis {
+    private int cycles;
+    private final Set<Edge> feedbackEdges = Sets.newLinkedHashSet();
+    private int tangles;
+
+    void add(int cycles, Set<Edge> feedbackEdges, int tangles) {
+      this.cycles += cycles;
+      this.feedbackEdges.addAll(feedbackEdges);
+      this.tangles += tangles;
+    }
+  }
+
+  private static final class PendingPackage {
+    private final Resource sonarPackage;
+    private final Future<PackageDesign> design;
+
+    PendingPackage(Resource sonarPackage, Future<PackageDesign> design) {
+      this.sonarPackage = sonarPackage;
+      this.design = design;
+    }
+  }
+
+  private static final class PackageDesign {
+    private final CycleAnalysis fileCycles;
+    private final double edgesWeight;
+    private final String dsmJson;
+
+    PackageDesign(CycleAnalysis fileCycles, double edgesWeight, String dsmJson) {
+      this.fileCycles = fileCycles;
+      this.edgesWeight = edgesWeight;
+      this.dsmJson = dsmJson;
+    }
+  }
 
 }
@@ -19,29 +19,32 @@
  */
 package org.sonar.plugins.java.bridges;
 
-import org.sonar.api.design.Dependency;
+import com.google.common.base.Throwables;
 import org.sonar.api.resources.Resource;
-import org.sonar.graph.Dsm;
-import org.sonar.graph.DsmCell;
 
+import java.io.IOException;
+
+/**
+ * Writes a {@link SparseDsm} as the JSON matrix expected by the dependency matrix viewer, row after row, without
+ * building the matrix in memory: every cell is written, but only the non-empty ones are looked up.
+ */
 public final class DsmSerializer {
 
-  private Dsm dsm;
-  private StringBuilder json;
+  private final SparseDsm dsm;
+  private final Appendable json;
 
-  private DsmSerializer(Dsm<Resource> dsm) {
+  private DsmSerializer(SparseDsm dsm, Appendable json) {
     this.dsm = dsm;
-    this.json = new StringBuilder();
+    this.json = json;
   }
 
-  private String serialize() {
+  private void serialize() throws IOException {
     json.append('[');
     serializeRows();
     json.append(']');
-    return json.toString();
   }
 
-  private void serializeRows() {
+  private void serializeRows() throws IOException {
     for (int y = 0; y < dsm.getDimension(); y++) {
       if (y > 0) {
         json.append(',');
@@ -50,42 +53,58 @@ public final class DsmSerializer {
     }
   }
 
-  private void serializeRow(int y) {
-    Resource sonarResource = (Resource) dsm.getVertex(y);
+  private void serializeRow(int y) throws IOException {
+    Resource sonarResource = dsm.getVertex(y);
 
     json.append("{");
     if (sonarResource != null) {
       json.append("\"i\":");
-      json.append(sonarResource.getId());
+      json.append(String.valueOf(sonarResource.getId()));
       json.append(",\"n\":\"");
       json.append(sonarResource.getName());
       json.append("\",\"q\":\"");
       json.append(sonarResource.getQualifier());
       json.append("\",\"v\":[");
+      SparseDsm.Cell[] row = dsm.getRow(y);
+      int next = 0;
       for (int x = 0; x < dsm.getDimension(); x++) {
         if (x > 0) {
           json.append(',');
         }
-        serializeCell(y, x);
+        if (next < row.length && row[next].getPosition() == x) {
+          serializeCell(row[next]);
+          next++;
+        } else {
+          json.append("{}");
+        }
       }
       json.append("]");
     }
     json.append("}");
   }
 
-  private void serializeCell(int y, int x) {
-    DsmCell cell = dsm.getCell(x, y);
+  private void serializeCell(SparseDsm.Cell cell) throws IOException {
     json.append('{');
-    if (cell.getEdge() != null && cell.getWeight() > 0) {
+    if (cell.getEdge().getWeight() > 0) {
       json.append("\"i\":");
-      json.append(((Dependency) cell.getEdge()).getId());
+      json.append(String.valueOf(cell.getEdge().getId()));
       json.append(",\"w\":");
-      json.append(cell.getWeight());
+      json.append(String.valueOf(cell.getEdge().getWeight()));
     }
     json.append('}');
   }
 
-  public static String serialize(Dsm<Resource> dsm) {
-    return new DsmSerializer(dsm).serialize();
+  static void serialize(SparseDsm dsm, Appendable json) throws IOException {
+    new DsmSerializer(dsm, json).serialize();
+  }
+
+  static String serialize(SparseDsm dsm) {
+    StringBuilder json = new StringBuilder();
+    try {
+      serialize(dsm, json);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return json.toString();
   }
 }
@@ -0,0 +1,132 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.java.bridges;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.Edge;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approximate feedback edge set of a strongly connected component, used when the component is too large for its cycles
+ * to be searched: vertices are ordered with the greedy heuristic of Eades, Lin and Smyth, sinks last and sources first,
+ * and the edges going backward in this order form the feedback edge set. Runs in quadratic time in the number of
+ * vertices, whatever the number of cycles.
+ */
+final class GreedyFeedbackEdgeSetSolver {
+
+  private final Set<Edge> edges = Sets.newLinkedHashSet();
+  private int weightOfFeedbackEdgeSet;
+
+  GreedyFeedbackEdgeSetSolver(DirectedGraph<Resource, Dependency> graph, List<Resource> component) {
+    Map<Resource, Integer> positions = order(graph, component);
+    for (Resource from : component) {
+      for (Dependency dependency : graph.getOutgoingEdges(from)) {
+        Integer toPosition = positions.get(dependency.getTo());
+        if (toPosition != null && toPosition < positions.get(from)) {
+          edges.add(dependency);
+          weightOfFeedbackEdgeSet += dependency.getWeight();
+        }
+      }
+    }
+  }
+
+  private static Map<Resource, Integer> order(DirectedGraph<Resource, Dependency> graph, List<Resource> component) {
+    Set<Resource> remaining = Sets.newLinkedHashSet(component);
+    Map<Resource, Integer> inWeights = Maps.newHashMap();
+    Map<Resource, Integer> outWeights = Maps.newHashMap();
+    for (Resource vertex : component) {
+      inWeights.put(vertex, 0);
+      outWeights.put(vertex, 0);
+    }
+    for (Resource from : component) {
+      for (Dependency dependency : graph.getOutgoingEdges(from)) {
+        if (remaining.contains(dependency.getTo())) {
+          add(outWeights, from, dependency.getWeight());
+          add(inWeights, dependency.getTo(), dependency.getWeight());
+        }
+      }
+    }
+
+    List<Resource> sources = Lists.newArrayList();
+    LinkedList<Resource> sinks = Lists.newLinkedList();
+    while (!remaining.isEmpty()) {
+      Resource next = null;
+      int bestDelta = Integer.MIN_VALUE;
+      for (Resource vertex : remaining) {
+        if (outWeights.get(vertex) == 0) {
+          next = vertex;
+          break;
+        }
+        int delta = inWeights.get(vertex) == 0 ? Integer.MAX_VALUE : (outWeights.get(vertex) - inWeights.get(vertex));
+        if (delta > bestDelta) {
+          next = vertex;
+          bestDelta = delta;
+        }
+      }
+      remaining.remove(next);
+      if (outWeights.get(next) == 0) {
+        sinks.addFirst(next);
+      } else {
+        sources.add(next);
+      }
+      for (Dependency dependency : graph.getOutgoingEdges(next)) {
+        if (remaining.contains(dependency.getTo())) {
+          add(inWeights, dependency.getTo(), -dependency.getWeight());
+        }
+      }
+      for (Dependency dependency : graph.getIncomingEdges(next)) {
+        if (remaining.contains(dependency.getFrom())) {
+          add(outWeights, dependency.getFrom(), -dependency.getWeight());
+        }
+      }
+    }
+
+    Map<Resource, Integer> positions = Maps.newHashMap();
+    for (Resource vertex : sources) {
+      positions.put(vertex, positions.size());
+    }
+    for (Resource vertex : sinks) {
+      positions.put(vertex, positions.size());
+    }
+    return positions;
+  }
+
+  private static void add(Map<Resource, Integer> weights, Resource vertex, int weight) {
+    weights.put(vertex, weights.get(vertex) + weight);
+  }
+
+  Set<Edge> getEdges() {
+    return edges;
+  }
+
+  int getWeightOfFeedbackEdgeSet() {
+    return weightOfFeedbackEdgeSet;
+  }
+
+}
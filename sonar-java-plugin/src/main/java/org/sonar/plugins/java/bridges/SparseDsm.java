@@ -0,0 +1,220 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.java.bridges;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.Edge;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependency structure matrix which only stores its non-empty cells, so that its memory and the time to sort it grow
+ * with the number of dependencies between the vertices rather than with the square of their number. The topological
+ * order is the one of {@link org.sonar.graph.DsmTopologicalSorter}, so that the serialized matrix is unchanged.
+ */
+final class SparseDsm {
+
+  private final Resource[] vertices;
+  private final int[] order;
+  private final int[] positions;
+
+  private final int[] cellFrom;
+  private final int[] cellTo;
+  private final Dependency[] cellEdges;
+  private final boolean[] countedCells;
+
+  private final int[][] incomingCells;
+  private final int[][] outgoingCells;
+
+  SparseDsm(DirectedGraph<Resource, Dependency> graph, Collection<Resource> sources, Set<Edge> feedbackEdges) {
+    int dimension = sources.size();
+    vertices = sources.toArray(new Resource[dimension]);
+    order = new int[dimension];
+    positions = new int[dimension];
+    Map<Resource, Integer> indexes = Maps.newHashMapWithExpectedSize(dimension);
+    for (int i = 0; i < dimension; i++) {
+      order[i] = i;
+      positions[i] = i;
+      indexes.put(vertices[i], i);
+    }
+
+    List<Integer> froms = Lists.newArrayList();
+    List<Integer> tos = Lists.newArrayList();
+    List<Dependency> edges = Lists.newArrayList();
+    int[] incomingCounts = new int[dimension];
+    int[] outgoingCounts = new int[dimension];
+    for (int from = 0; from < dimension; from++) {
+      for (Dependency edge : graph.getOutgoingEdges(vertices[from])) {
+        Integer to = indexes.get(edge.getTo());
+        if (to != null) {
+          froms.add(from);
+          tos.add(to);
+          edges.add(edge);
+          incomingCounts[to]++;
+          outgoingCounts[from]++;
+        }
+      }
+    }
+    cellFrom = Ints.toArray(froms);
+    cellTo = Ints.toArray(tos);
+    cellEdges = edges.toArray(new Dependency[edges.size()]);
+    countedCells = new boolean[cellEdges.length];
+
+    incomingCells = new int[dimension][];
+    outgoingCells = new int[dimension][];
+    for (int i = 0; i < dimension; i++) {
+      incomingCells[i] = new int[incomingCounts[i]];
+      outgoingCells[i] = new int[outgoingCounts[i]];
+    }
+    Arrays.fill(incomingCounts, 0);
+    Arrays.fill(outgoingCounts, 0);
+    for (int cell = 0; cell < cellEdges.length; cell++) {
+      incomingCells[cellTo[cell]][incomingCounts[cellTo[cell]]++] = cell;
+      outgoingCells[cellFrom[cell]][outgoingCounts[cellFrom[cell]]++] = cell;
+      countedCells[cell] = cellEdges[cell].getWeight() != 0 && !feedbackEdges.contains(cellEdges[cell]);
+    }
+  }
+
+  int getDimension() {
+    return vertices.length;
+  }
+
+  Resource getVertex(int position) {
+    return vertices[order[position]];
+  }
+
+  /**
+   * Non-empty cells of the row at the given position, that is the dependencies of the other vertices on this one,
+   * ordered by the position of their source vertex.
+   */
+  Cell[] getRow(int position) {
+    int[] cells = incomingCells[order[position]];
+    Cell[] row = new Cell[cells.length];
+    for (int i = 0; i < cells.length; i++) {
+      row[i] = new Cell(positions[cellFrom[cells[i]]], cellEdges[cells[i]]);
+    }
+    Arrays.sort(row, CELL_POSITION_ORDERING);
+    return row;
+  }
+
+  /**
+   * Pushes to the left the vertices without incoming edges and to the right the vertices without outgoing edges, in
+   * turn, until every vertex is ordered. Feedback edges are ignored, so the matrix can always be sorted once the
+   * feedback edge set of its cycles is known.
+   *
+   * @throws IllegalStateException if the matrix still contains a cycle
+   */
+  void sort() {
+    int[] incomingCounts = new int[vertices.length];
+    int[] outgoingCounts = new int[vertices.length];
+    for (int cell = 0; cell < cellEdges.length; cell++) {
+      if (countedCells[cell]) {
+        incomingCounts[cellTo[cell]]++;
+        outgoingCounts[cellFrom[cell]]++;
+      }
+    }
+    int left = 0;
+    int right = vertices.length - 1;
+    boolean sorted = true;
+    while (sorted) {
+      sorted = false;
+      for (int i = left; i <= right; i++) {
+        if (incomingCounts[order[i]] == 0) {
+          removeFromUnsortedRange(order[i], incomingCounts, outgoingCounts);
+          permute(i, left);
+          left++;
+          sorted = true;
+        }
+      }
+      for (int i = left; i <= right; i++) {
+        if (outgoingCounts[order[i]] == 0) {
+          removeFromUnsortedRange(order[i], incomingCounts, outgoingCounts);
+          permute(i, right);
+          right--;
+          sorted = true;
+        }
+      }
+    }
+    if (left < right) {
+      throw new IllegalStateException("Can't find a topological order : the Dsm contains at least one cycle");
+    }
+  }
+
+  private void removeFromUnsortedRange(int vertex, int[] incomingCounts, int[] outgoingCounts) {
+    for (int cell : outgoingCells[vertex]) {
+      if (countedCells[cell]) {
+        incomingCounts[cellTo[cell]]--;
+      }
+    }
+    for (int cell : incomingCells[vertex]) {
+      if (countedCells[cell]) {
+        outgoingCounts[cellFrom[cell]]--;
+      }
+    }
+  }
+
+  private void permute(int fromPosition, int toPosition) {
+    int vertex = order[fromPosition];
+    order[fromPosition] = order[toPosition];
+    order[toPosition] = vertex;
+    positions[order[fromPosition]] = fromPosition;
+    positions[vertex] = toPosition;
+  }
+
+  private static final Comparator<Cell> CELL_POSITION_ORDERING = new Comparator<Cell>() {
+    @Override
+    public int compare(Cell left, Cell right) {
+      return Ints.compare(left.position, right.position);
+    }
+  };
+
+  static final class Cell {
+
+    private final int position;
+    private final Dependency edge;
+
+    private Cell(int position, Dependency edge) {
+      this.position = position;
+      this.edge = edge;
+    }
+
+    /**
+     * Position of the vertex depending on the vertex of the row.
+     */
+    int getPosition() {
+      return position;
+    }
+
+    Dependency getEdge() {
+      return edge;
+    }
+  }
+
+}
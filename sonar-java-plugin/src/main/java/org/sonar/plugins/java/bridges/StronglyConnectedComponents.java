@@ -0,0 +1,140 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.java.bridges;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Strongly connected components of the subgraph induced by some vertices, computed with an iterative version of Tarjan's
+ * algorithm. Only components of more than one vertex are kept, as the graph has no self loop: cycles can only be found
+ * inside them.
+ */
+final class StronglyConnectedComponents {
+
+  private final DirectedGraph<Resource, Dependency> graph;
+  private final Map<Resource, Integer> positions = Maps.newHashMap();
+  private final Map<Resource, Integer> indexes = Maps.newHashMap();
+  private final Map<Resource, Integer> lowLinks = Maps.newHashMap();
+  private final Deque<Resource> stack = new ArrayDeque<Resource>();
+  private final Set<Resource> onStack = Sets.newHashSet();
+  private final List<List<Resource>> components = Lists.newArrayList();
+
+  private StronglyConnectedComponents(DirectedGraph<Resource, Dependency> graph, Collection<Resource> vertices) {
+    this.graph = graph;
+    for (Resource vertex : vertices) {
+      positions.put(vertex, positions.size());
+    }
+  }
+
+  /**
+   * @return the non-trivial components, each one listing its vertices in the order of the given collection
+   */
+  static List<List<Resource>> of(DirectedGraph<Resource, Dependency> graph, Collection<Resource> vertices) {
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(graph, vertices);
+    for (Resource vertex : vertices) {
+      if (!scc.indexes.containsKey(vertex)) {
+        scc.visit(vertex);
+      }
+    }
+    return scc.components;
+  }
+
+  private void visit(Resource root) {
+    Deque<Frame> frames = new ArrayDeque<Frame>();
+    frames.push(enter(root));
+    while (!frames.isEmpty()) {
+      Frame frame = frames.peek();
+      if (frame.edges.hasNext()) {
+        Resource to = frame.edges.next().getTo();
+        if (!positions.containsKey(to)) {
+          continue;
+        }
+        Integer toIndex = indexes.get(to);
+        if (toIndex == null) {
+          frames.push(enter(to));
+        } else if (onStack.contains(to)) {
+          lowLinks.put(frame.vertex, Math.min(lowLinks.get(frame.vertex), toIndex));
+        }
+      } else {
+        frames.pop();
+        if (!frames.isEmpty()) {
+          Resource caller = frames.peek().vertex;
+          lowLinks.put(caller, Math.min(lowLinks.get(caller), lowLinks.get(frame.vertex)));
+        }
+        if (lowLinks.get(frame.vertex).equals(indexes.get(frame.vertex))) {
+          popComponent(frame.vertex);
+        }
+      }
+    }
+  }
+
+  private Frame enter(Resource vertex) {
+    indexes.put(vertex, indexes.size());
+    lowLinks.put(vertex, indexes.get(vertex));
+    stack.push(vertex);
+    onStack.add(vertex);
+    return new Frame(vertex, graph.getOutgoingEdges(vertex).iterator());
+  }
+
+  private void popComponent(Resource root) {
+    List<Resource> component = Lists.newArrayList();
+    Resource vertex;
+    do {
+      vertex = stack.pop();
+      onStack.remove(vertex);
+      component.add(vertex);
+    } while (!vertex.equals(root));
+    if (component.size() > 1) {
+      Collections.sort(component, new Comparator<Resource>() {
+        @Override
+        public int compare(Resource resource, Resource resource2) {
+          return positions.get(resource).compareTo(positions.get(resource2));
+        }
+      });
+      components.add(component);
+    }
+  }
+
+  private static final class Frame {
+    private final Resource vertex;
+    private final Iterator<Dependency> edges;
+
+    Frame(Resource vertex, Iterator<Dependency> edges) {
+      this.vertex = vertex;
+      this.edges = edges;
+    }
+  }
+
+}
@@ -19,11 +19,14 @@
  */
 package org.sonar.plugins.java.bridges;
 
+import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.component.ResourcePerspectives;
 import org.sonar.api.design.Dependency;
+import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.Metric;
+import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Resource;
 import org.sonar.graph.DirectedGraph;
@@ -34,6 +37,7 @@ import static org.mockito.Matchers.anyDouble;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class DesignBridgeTest {
 
@@ -49,4 +53,36 @@ public class DesignBridgeTest {
     verify(context, times(4)).saveMeasure(any(Resource.class), any(Metric.class), anyDouble());
 
   }
+
+  @Test
+  public void feedback_edges_of_large_components_are_approximated() {
+    Project project = mock(Project.class);
+    SensorContext context = mock(SensorContext.class);
+    // cycles a -> b -> a and a -> b -> c -> a
+    DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+    Directory a = mock(Directory.class);
+    Directory b = mock(Directory.class);
+    Directory c = mock(Directory.class);
+    graph.addEdge(new Dependency(a, b).setWeight(1));
+    graph.addEdge(new Dependency(b, a).setWeight(5));
+    graph.addEdge(new Dependency(b, c).setWeight(5));
+    graph.addEdge(new Dependency(c, a).setWeight(5));
+    ResourceMapping resourceMapping = mock(ResourceMapping.class);
+    when(resourceMapping.directories()).thenReturn(ImmutableSet.<Resource>of(a, b, c));
+
+    new DesignBridge(context, graph, resourceMapping, mock(ResourcePerspectives.class), 2).saveDesign(project);
+
+    // b is ordered first, then c and a: one cycle is counted for the only feedback edge, a -> b
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_CYCLES, 1.0);
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_FEEDBACK_EDGES, 1.0);
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_TANGLES, 1.0);
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_EDGES_WEIGHT, 16.0);
+
+    context = mock(SensorContext.class);
+    new DesignBridge(context, graph, resourceMapping, mock(ResourcePerspectives.class), 3).saveDesign(project);
+
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_CYCLES, 2.0);
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_FEEDBACK_EDGES, 1.0);
+    verify(context).saveMeasure(project, CoreMetrics.PACKAGE_TANGLES, 1.0);
+  }
 }
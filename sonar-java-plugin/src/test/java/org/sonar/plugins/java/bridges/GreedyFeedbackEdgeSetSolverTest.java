@@ -0,0 +1,80 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.java.bridges;
+
+import org.junit.Test;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class GreedyFeedbackEdgeSetSolverTest {
+
+  private final Resource a = mock(Resource.class);
+  private final Resource b = mock(Resource.class);
+  private final Resource c = mock(Resource.class);
+  private final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+
+  @Test
+  public void should_break_cycle_on_lightest_edge() {
+    Dependency ab = addEdge(a, b, 5);
+    addEdge(b, c, 5);
+    Dependency ca = addEdge(c, a, 1);
+
+    GreedyFeedbackEdgeSetSolver solver = new GreedyFeedbackEdgeSetSolver(graph, Arrays.asList(a, b, c));
+
+    assertThat(solver.getEdges()).containsOnly(ca);
+    assertThat(solver.getWeightOfFeedbackEdgeSet()).isEqualTo(1);
+    assertThat(solver.getEdges()).excludes(ab);
+  }
+
+  @Test
+  public void should_break_all_cycles() {
+    addEdge(a, b, 1);
+    addEdge(b, a, 1);
+    addEdge(b, c, 1);
+    addEdge(c, b, 1);
+    addEdge(c, a, 1);
+
+    GreedyFeedbackEdgeSetSolver solver = new GreedyFeedbackEdgeSetSolver(graph, Arrays.asList(a, b, c));
+
+    DirectedGraph<Resource, Dependency> remaining = new DirectedGraph<Resource, Dependency>();
+    for (Resource from : Arrays.asList(a, b, c)) {
+      for (Dependency dependency : graph.getOutgoingEdges(from)) {
+        if (!solver.getEdges().contains(dependency)) {
+          remaining.addEdge(dependency);
+        }
+      }
+    }
+    assertThat(StronglyConnectedComponents.of(remaining, Arrays.asList(a, b, c))).isEmpty();
+    assertThat(solver.getWeightOfFeedbackEdgeSet()).isEqualTo(solver.getEdges().size());
+  }
+
+  private Dependency addEdge(Resource from, Resource to, int weight) {
+    Dependency dependency = new Dependency(from, to).setWeight(weight);
+    graph.addEdge(dependency);
+    return dependency;
+  }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.java.bridges;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+import org.sonar.graph.Dsm;
+import org.sonar.graph.DsmCell;
+import org.sonar.graph.DsmTopologicalSorter;
+import org.sonar.graph.Edge;
+import org.sonar.graph.IncrementalCyclesAndFESSolver;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SparseDsmTest {
+
+  private final Resource a = resource(1, "A");
+  private final Resource b = resource(2, "B");
+  private final Resource c = resource(3, "C");
+  private final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+
+  @Test
+  public void should_sort_vertices_topologically() {
+    addEdge(a, b, 10L, 2);
+    addEdge(b, c, 11L, 3);
+
+    SparseDsm dsm = new SparseDsm(graph, Arrays.asList(c, b, a), Collections.<Edge>emptySet());
+    dsm.sort();
+
+    assertThat(dsm.getDimension()).isEqualTo(3);
+    assertThat(dsm.getVertex(0)).isSameAs(a);
+    assertThat(dsm.getVertex(1)).isSameAs(b);
+    assertThat(dsm.getVertex(2)).isSameAs(c);
+    assertThat(dsm.getRow(0)).isEmpty();
+    assertThat(dsm.getRow(2)).hasSize(1);
+    assertThat(dsm.getRow(2)[0].getPosition()).isEqualTo(1);
+  }
+
+  @Test
+  public void should_ignore_feedback_edges_when_sorting() {
+    addEdge(a, b, 10L, 2);
+    Dependency feedbackEdge = addEdge(b, a, 11L, 1);
+
+    SparseDsm dsm = new SparseDsm(graph, Arrays.asList(b, a), ImmutableSet.<Edge>of(feedbackEdge));
+    dsm.sort();
+
+    assertThat(dsm.getVertex(0)).isSameAs(a);
+    assertThat(dsm.getVertex(1)).isSameAs(b);
+    assertThat(dsm.getRow(0)).hasSize(1);
+    assertThat(dsm.getRow(0)[0].getEdge()).isSameAs(feedbackEdge);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void should_fail_to_sort_cycles() {
+    addEdge(a, b, 10L, 1);
+    addEdge(b, a, 11L, 1);
+
+    new SparseDsm(graph, Arrays.asList(a, b), Collections.<Edge>emptySet()).sort();
+  }
+
+  @Test
+  public void should_only_keep_edges_between_sources() {
+    addEdge(a, b, 10L, 1);
+    addEdge(c, a, 11L, 1);
+
+    SparseDsm dsm = new SparseDsm(graph, Arrays.asList(a, b), Collections.<Edge>emptySet());
+    dsm.sort();
+
+    assertThat(dsm.getRow(0)).isEmpty();
+    assertThat(dsm.getRow(1)).hasSize(1);
+  }
+
+  @Test
+  public void should_serialize_every_cell() {
+    addEdge(a, b, 10L, 2);
+    addEdge(b, c, 11L, 3);
+
+    SparseDsm dsm = new SparseDsm(graph, Arrays.asList(a, b, c), Collections.<Edge>emptySet());
+    dsm.sort();
+
+    assertThat(DsmSerializer.serialize(dsm)).isEqualTo("["
+      + "{\"i\":1,\"n\":\"A\",\"q\":\"FIL\",\"v\":[{},{},{}]},"
+      + "{\"i\":2,\"n\":\"B\",\"q\":\"FIL\",\"v\":[{\"i\":10,\"w\":2},{},{}]},"
+      + "{\"i\":3,\"n\":\"C\",\"q\":\"FIL\",\"v\":[{},{\"i\":11,\"w\":3},{}]}"
+      + "]");
+  }
+
+  @Test
+  public void should_sort_and_serialize_like_dsm_topological_sorter() {
+    Random random = new Random(42);
+    for (int dimension : new int[] {2, 5, 10, 20, 40}) {
+      for (int i = 0; i < 20; i++) {
+        DirectedGraph<Resource, Dependency> randomGraph = new DirectedGraph<Resource, Dependency>();
+        List<Resource> vertices = randomGraph(randomGraph, dimension, random);
+        // all the vertices but one, as sources of the matrix may not be all the vertices of the graph
+        List<Resource> sources = vertices.subList(0, dimension - 1);
+        Set<Edge> feedbackEdges = new IncrementalCyclesAndFESSolver<Resource>(randomGraph, sources).getFeedbackEdgeSet();
+
+        Dsm<Resource> expected = new Dsm<Resource>(randomGraph, sources, feedbackEdges);
+        DsmTopologicalSorter.sort(expected);
+        SparseDsm dsm = new SparseDsm(randomGraph, sources, feedbackEdges);
+        dsm.sort();
+
+        assertThat(dsm.getDimension()).isEqualTo(expected.getDimension());
+        for (int vertex = 0; vertex < dsm.getDimension(); vertex++) {
+          assertThat(dsm.getVertex(vertex)).isSameAs(expected.getVertex(vertex));
+        }
+        assertThat(DsmSerializer.serialize(dsm)).isEqualTo(serialize(expected));
+      }
+    }
+  }
+
+  /**
+   * Vertices in a random order, with random edges which make cycles as soon as there are a few vertices.
+   */
+  private static List<Resource> randomGraph(DirectedGraph<Resource, Dependency> randomGraph, int dimension, Random random) {
+    List<Resource> vertices = Lists.newArrayList();
+    for (int vertex = 0; vertex < dimension; vertex++) {
+      vertices.add(resource(vertex, "R" + vertex));
+    }
+    long id = 0;
+    for (Resource from : vertices) {
+      for (Resource to : vertices) {
+        if (from != to && random.nextInt(dimension) < 2) {
+          Dependency dependency = new Dependency(from, to).setWeight(1 + random.nextInt(5));
+          dependency.setId(id++);
+          randomGraph.addEdge(dependency);
+        }
+      }
+    }
+    Collections.shuffle(vertices, random);
+    return vertices;
+  }
+
+  /**
+   * Serialization of a {@link Dsm}, as done before {@link SparseDsm}.
+   */
+  private static String serialize(Dsm<Resource> dsm) {
+    StringBuilder json = new StringBuilder("[");
+    for (int y = 0; y < dsm.getDimension(); y++) {
+      if (y > 0) {
+        json.append(',');
+      }
+      Resource resource = dsm.getVertex(y);
+      json.append("{\"i\":").append(resource.getId())
+        .append(",\"n\":\"").append(resource.getName())
+        .append("\",\"q\":\"").append(resource.getQualifier())
+        .append("\",\"v\":[");
+      for (int x = 0; x < dsm.getDimension(); x++) {
+        if (x > 0) {
+          json.append(',');
+        }
+        DsmCell cell = dsm.getCell(x, y);
+        json.append('{');
+        if (cell.getEdge() != null && cell.getWeight() > 0) {
+          json.append("\"i\":").append(((Dependency) cell.getEdge()).getId()).append(",\"w\":").append(cell.getWeight());
+        }
+        json.append('}');
+      }
+      json.append("]}");
+    }
+    return json.append(']').toString();
+  }
+
+  private Dependency addEdge(Resource from, Resource to, long id, int weight) {
+    Dependency dependency = new Dependency(from, to).setWeight(weight);
+    dependency.setId(id);
+    graph.addEdge(dependency);
+    return dependency;
+  }
+
+  private static Resource resource(int id, String name) {
+    Resource resource = mock(Resource.class);
+    when(resource.getId()).thenReturn(id);
+    when(resource.getName()).thenReturn(name);
+    when(resource.getQualifier()).thenReturn("FIL");
+    return resource;
+  }
+
+}
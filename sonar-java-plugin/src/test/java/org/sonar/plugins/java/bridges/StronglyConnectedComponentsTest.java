@@ -0,0 +1,88 @@
+/*
+ * SonarQube Java
+ * Copyright (C) 2012 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.java.bridges;
+
+import org.junit.Test;
+import org.sonar.api.design.Dependency;
+import org.sonar.api.resources.Resource;
+import org.sonar.graph.DirectedGraph;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class StronglyConnectedComponentsTest {
+
+  private final Resource a = mock(Resource.class);
+  private final Resource b = mock(Resource.class);
+  private final Resource c = mock(Resource.class);
+  private final Resource d = mock(Resource.class);
+  private final Resource e = mock(Resource.class);
+  private final DirectedGraph<Resource, Dependency> graph = new DirectedGraph<Resource, Dependency>();
+
+  @Test
+  public void should_keep_non_trivial_components_in_order_of_vertices() {
+    addEdge(a, b);
+    addEdge(b, c);
+    addEdge(c, a);
+    addEdge(c, d);
+    addEdge(d, e);
+    addEdge(e, d);
+
+    List<List<Resource>> components = StronglyConnectedComponents.of(graph, Arrays.asList(a, b, c, d, e));
+
+    assertThat(components).hasSize(2);
+    assertThat(components).contains(Arrays.asList(a, b, c), Arrays.asList(d, e));
+  }
+
+  @Test
+  public void should_ignore_vertices_outside_of_the_given_ones() {
+    addEdge(a, b);
+    addEdge(b, c);
+    addEdge(c, a);
+
+    assertThat(StronglyConnectedComponents.of(graph, Arrays.asList(a, b))).isEmpty();
+    assertThat(StronglyConnectedComponents.of(graph, Arrays.asList(d))).isEmpty();
+  }
+
+  @Test
+  public void should_not_overflow_the_stack_on_long_paths() {
+    Resource[] resources = new Resource[20000];
+    for (int i = 0; i < resources.length; i++) {
+      resources[i] = mock(Resource.class);
+      if (i > 0) {
+        addEdge(resources[i - 1], resources[i]);
+      }
+    }
+    addEdge(resources[resources.length - 1], resources[0]);
+
+    List<List<Resource>> components = StronglyConnectedComponents.of(graph, Arrays.asList(resources));
+
+    assertThat(components).hasSize(1);
+    assertThat(components.get(0)).hasSize(resources.length);
+  }
+
+  private void addEdge(Resource from, Resource to) {
+    graph.addEdge(new Dependency(from, to).setWeight(1));
+  }
+
+}